@@ -0,0 +1,126 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention;
+
+import com.google.common.collect.Maps;
+import me.ryanhamshire.griefprevention.claim.Claim;
+import me.ryanhamshire.griefprevention.configuration.BinaryClaimStorageData;
+import me.ryanhamshire.griefprevention.configuration.ClaimLogStorage;
+import me.ryanhamshire.griefprevention.configuration.ClaimStorageData;
+import me.ryanhamshire.griefprevention.configuration.ClaimStorageQueue;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import org.spongepowered.api.world.storage.WorldProperties;
+import org.spongepowered.common.SpongeImpl;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+//manages claim data stored in one binary log per world, everything else stays in the file system
+public class BinaryDataStore extends FlatFileDataStore {
+
+    // World UUID -> claim log
+    private final Map<UUID, ClaimLogStorage> claimLogs = Maps.newHashMap();
+
+    public BinaryDataStore() {
+    }
+
+    @Override
+    String getStorageFormat() {
+        return "binary";
+    }
+
+    @Override
+    boolean canConvertFrom(String storageFormat) {
+        return storageFormat.equals("file");
+    }
+
+    @Override
+    List<ParsedClaim> readClaimData(Path worldDataPath, WorldProperties worldProperties) throws Exception {
+        final Path claimDataPath = worldDataPath.resolve("ClaimData");
+        final Path logPath = worldDataPath.resolve(ClaimLogStorage.FILE_NAME);
+        if (Files.notExists(logPath)) {
+            File[] files = claimDataPath.toFile().listFiles();
+            if (files != null && files.length > 0) {
+                // switched from claim files, the old folder is kept as a backup
+                int count = ClaimLogStorage.importClaimFiles(claimDataPath, logPath);
+                Files.move(claimDataPath, getBackupPath(claimDataPath));
+                Files.createDirectories(claimDataPath);
+                GriefPrevention.instance.getLogger().info("[" + worldProperties.getWorldName() + "] Converted " + count + " claim files to " + logPath + ".");
+            }
+        }
+
+        final ClaimLogStorage log = new ClaimLogStorage(logPath);
+        final Map<UUID, CommentedConfigurationNode> claims = log.open();
+        this.claimLogs.put(worldProperties.getUniqueId(), log);
+
+        final List<Callable<ParsedClaim>> tasks = new ArrayList<>(claims.size());
+        for (Map.Entry<UUID, CommentedConfigurationNode> entry : claims.entrySet()) {
+            final UUID claimId = entry.getKey();
+            final CommentedConfigurationNode root = entry.getValue();
+            final Path claimPath = claimDataPath.resolve(claimId.toString());
+            tasks.add(() -> parseClaim(claimPath, claimId, new BinaryClaimStorageData(log, claimId, claimPath, root)));
+        }
+        return this.parseClaims(tasks);
+    }
+
+    @Override
+    void deleteUnloadableClaim(ParsedClaim parsedClaim, WorldProperties worldProperties) {
+        final ClaimLogStorage log = this.claimLogs.get(worldProperties.getUniqueId());
+        ClaimStorageQueue.execute(() -> {
+            try {
+                log.delete(parsedClaim.claimId);
+            } catch (IOException e) {
+                GriefPrevention.addLogEntry("Unable to delete claim " + parsedClaim.claimId + " from \"" + log.getPath() + "\": " + e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    ClaimStorageData createClaimStorage(Claim claim, Path claimFilePath) {
+        return new BinaryClaimStorageData(this.claimLogs.get(claim.world.getUniqueId()), claim, claimFilePath);
+    }
+
+    @Override
+    public void unloadWorldData(WorldProperties worldProperties) {
+        super.unloadWorldData(worldProperties);
+        ClaimLogStorage log = this.claimLogs.remove(worldProperties.getUniqueId());
+        if (log != null) {
+            try {
+                log.close();
+            } catch (IOException e) {
+                SpongeImpl.getLogger().error("Failed to close claim log " + log.getPath() + " of world " + worldProperties.getWorldName()
+                        + " (" + worldProperties.getUniqueId() + ")", e);
+                GriefPrevention.addLogEntry("Error: Unable to close claim log \"" + log.getPath() + "\".");
+            }
+        }
+    }
+}
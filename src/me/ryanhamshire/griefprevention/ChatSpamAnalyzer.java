@@ -0,0 +1,330 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention;
+
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+/**
+ * Scores chat messages and monitored commands for spam.
+ *
+ * <p>Each player keeps a small ring of fingerprints of their recent messages.
+ * A fingerprint is a simhash over case folded character trigrams, so near
+ * duplicates are found without keeping or copying the messages themselves.
+ * Chat may arrive off the main thread, so all state is guarded per player.</p>
+ */
+public class ChatSpamAnalyzer {
+
+    public enum Action {
+        ALLOW,
+        MUTE,
+        // mute, and warn the player about spam penalties for the first time
+        WARN,
+        KICK
+    }
+
+    public enum Reason {
+        PRE_MOVEMENT("pre-movement chat"),
+        REPEAT("repeat message"),
+        SIMILAR("similar message"),
+        IP_ADDRESS("IP address"),
+        GIBBERISH("gibberish"),
+        TOO_FREQUENT("too-frequent text");
+
+        private final String description;
+
+        Reason(String description) {
+            this.description = description;
+        }
+
+        @Override
+        public String toString() {
+            return this.description;
+        }
+    }
+
+    private static final int HISTORY_SIZE = 4;
+    // max differing simhash bits for two messages to count as similar
+    private static final int SIMILAR_BITS = 16;
+    private static final long REPEAT_WINDOW = TimeUnit.MILLISECONDS.toNanos(750);
+    private static final long FAST_WINDOW = TimeUnit.MILLISECONDS.toNanos(1500);
+    private static final long SHORT_WINDOW = TimeUnit.MILLISECONDS.toNanos(3000);
+    private static final long SIMILAR_WINDOW = TimeUnit.SECONDS.toNanos(10);
+
+    private final ConcurrentHashMap<UUID, History> histories = new ConcurrentHashMap<>();
+
+    // last chat message shown, regardless of who sent it
+    private final Object lastChatLock = new Object();
+    private String lastChatMessage = "";
+    private long lastChatTime;
+    // number of identical messages in a row
+    private int duplicateMessageCount = 0;
+
+    /**
+     * Scores a message and records it in the sender's history.
+     *
+     * @param playerUniqueId The sender
+     * @param message The raw message
+     * @param preMovement Whether the sender must move before chatting
+     * @return What to do with the message
+     */
+    public Action analyze(UUID playerUniqueId, String message, boolean preMovement) {
+        return this.analyze(playerUniqueId, message, preMovement, System.nanoTime());
+    }
+
+    // now is a System.nanoTime timestamp, passed in so recorded chat can be replayed
+    Action analyze(UUID playerUniqueId, String message, boolean preMovement, long now) {
+        final History history = this.histories.computeIfAbsent(playerUniqueId, key -> new History());
+        synchronized (history) {
+            boolean spam = preMovement;
+            Reason reason = preMovement ? Reason.PRE_MOVEMENT : null;
+
+            // always mute an exact match to the last chat message
+            synchronized (this.lastChatLock) {
+                if (reason != null && message.equals(this.lastChatMessage) && now - this.lastChatTime < REPEAT_WINDOW) {
+                    history.spamCount += ++this.duplicateMessageCount;
+                    spam = true;
+                    reason = Reason.REPEAT;
+                } else {
+                    this.lastChatMessage = message;
+                    this.lastChatTime = now;
+                    this.duplicateMessageCount = 0;
+                }
+            }
+
+            final long sinceLastMessage = history.size == 0 ? Long.MAX_VALUE : now - history.lastMessageTime;
+            // if the message came too close to the last one
+            if (sinceLastMessage < FAST_WINDOW) {
+                history.spamCount++;
+                spam = true;
+            }
+
+            // where other types of spam are concerned, casing isn't significant
+            final int length = message.length();
+            long exactHash = 0xcbf29ce484222325L;
+            long shingle = 0;
+            final long[] counters = history.counters;
+            Arrays.fill(counters, 0);
+            int shingles = 0;
+            int symbolsCount = 0;
+            int whitespaceCount = 0;
+            for (int i = 0; i < length; i++) {
+                final char character = message.charAt(i);
+                final char folded = Character.toLowerCase(Character.toUpperCase(character));
+                exactHash = (exactHash ^ folded) * 0x100000001b3L;
+                shingle = ((shingle << 16) | folded) & 0xffffffffffffL;
+                // one shingle per trigram, or a single one for messages shorter than that
+                if (i >= 2 || i == length - 1) {
+                    // adds one to the counter of every set bit at once, a carry rarely goes past a few planes
+                    long carry = mix(shingle);
+                    for (int plane = 0; carry != 0; plane++) {
+                        final long sum = counters[plane] ^ carry;
+                        carry &= counters[plane];
+                        counters[plane] = sum;
+                    }
+                    shingles++;
+                }
+                if (!Character.isLetterOrDigit(character)) {
+                    symbolsCount++;
+                }
+                if (Character.isWhitespace(character)) {
+                    whitespaceCount++;
+                }
+            }
+            // a bit is kept when it was set in more than half of the shingles
+            final long simHash = countersAbove(counters, shingles >>> 1);
+
+            // if it's very similar to a recent message from the same player
+            if (reason == null && history.hasSimilar(exactHash, simHash, length, now)) {
+                history.spamCount++;
+                spam = true;
+                reason = Reason.SIMILAR;
+            }
+
+            // filter IP addresses
+            if (reason == null && GriefPrevention.instance.containsBlockedIP(message)) {
+                history.spamCount++;
+                spam = true;
+                reason = Reason.IP_ADDRESS;
+            }
+
+            // if the message was mostly non-alpha-numerics or doesn't include much
+            // whitespace, consider it a spam (probably ansi art or random text gibberish)
+            if (reason == null && length > 5) {
+                if (symbolsCount > length / 2 || (length > 15 && whitespaceCount < length / 10)) {
+                    spam = true;
+                    if (history.spamCount > 0) {
+                        reason = Reason.GIBBERISH;
+                    }
+                    history.spamCount++;
+                }
+            }
+
+            // very short messages close together are spam
+            if (reason == null && length < 5 && sinceLastMessage < SHORT_WINDOW) {
+                spam = true;
+                history.spamCount++;
+            }
+
+            history.record(exactHash, simHash, length, now);
+            history.mutedReason = null;
+            if (!spam) {
+                history.spamCount = 0;
+                history.spamWarned = false;
+                return Action.ALLOW;
+            }
+
+            // anything above level 8 for a player which has received a warning
+            if (history.spamCount > 8 && history.spamWarned) {
+                return Action.KICK;
+            }
+
+            // mute anything at or above level 4, and warn the first time
+            boolean warn = false;
+            if (history.spamCount >= 4) {
+                if (reason == null) {
+                    reason = Reason.TOO_FREQUENT;
+                }
+                if (!history.spamWarned) {
+                    history.spamWarned = true;
+                    warn = true;
+                }
+            }
+
+            history.mutedReason = reason;
+            if (reason == null) {
+                return Action.ALLOW;
+            }
+            return warn ? Action.WARN : Action.MUTE;
+        }
+    }
+
+    // why the player's last message was muted
+    @Nullable
+    public Reason getMutedReason(UUID playerUniqueId) {
+        final History history = this.histories.get(playerUniqueId);
+        if (history == null) {
+            return null;
+        }
+        synchronized (history) {
+            return history.mutedReason;
+        }
+    }
+
+    public void removePlayer(UUID playerUniqueId) {
+        this.histories.remove(playerUniqueId);
+    }
+
+    // remedy any CAPS SPAM, exception for very short messages which could be emoticons like =D or XD
+    public static boolean isShouting(String message) {
+        final int length = message.length();
+        if (length <= 4) {
+            return false;
+        }
+
+        int upperCount = 0;
+        for (int i = 0; i < length; i++) {
+            final char character = message.charAt(i);
+            if (Character.toUpperCase(character) == character) {
+                upperCount++;
+            }
+        }
+        if (length <= 5) {
+            return upperCount == length;
+        }
+        return upperCount > length - length / 4;
+    }
+
+    // compares every counter against the threshold, from the highest plane down
+    private static long countersAbove(long[] counters, int threshold) {
+        long above = 0;
+        long equal = -1L;
+        for (int plane = counters.length - 1; plane >= 0; plane--) {
+            final long thresholdBits = ((threshold >>> plane) & 1) != 0 ? -1L : 0;
+            above |= equal & counters[plane] & ~thresholdBits;
+            equal &= ~(counters[plane] ^ thresholdBits);
+        }
+        return above;
+    }
+
+    private static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+
+    private static final class History {
+
+        // ring of recent message fingerprints, oldest overwritten first
+        final long[] exactHashes = new long[HISTORY_SIZE];
+        final long[] simHashes = new long[HISTORY_SIZE];
+        final int[] lengths = new int[HISTORY_SIZE];
+        final long[] times = new long[HISTORY_SIZE];
+        int next;
+        int size;
+        long lastMessageTime;
+        // simhash scratch space reused for every message, 64 counters stored as bit planes
+        final long[] counters = new long[Integer.SIZE];
+
+        int spamCount;
+        boolean spamWarned;
+        Reason mutedReason;
+
+        boolean hasSimilar(long exactHash, long simHash, int length, long now) {
+            for (int i = 0; i < this.size; i++) {
+                if (now - this.times[i] >= SIMILAR_WINDOW) {
+                    continue;
+                }
+
+                final int shorter = Math.min(length, this.lengths[i]);
+                final int longer = Math.max(length, this.lengths[i]);
+                if (shorter <= 5) {
+                    if (shorter == longer && exactHash == this.exactHashes[i]) {
+                        return true;
+                    }
+                } else if (shorter >= longer - longer / 4 && Long.bitCount(simHash ^ this.simHashes[i]) <= SIMILAR_BITS) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void record(long exactHash, long simHash, int length, long now) {
+            this.exactHashes[this.next] = exactHash;
+            this.simHashes[this.next] = simHash;
+            this.lengths[this.next] = length;
+            this.times[this.next] = now;
+            this.next = (this.next + 1) % HISTORY_SIZE;
+            if (this.size < HISTORY_SIZE) {
+                this.size++;
+            }
+            this.lastMessageTime = now;
+        }
+    }
+}
@@ -24,55 +24,82 @@
  */
 package me.ryanhamshire.griefprevention;
 
-import com.google.common.io.Files;
-import org.spongepowered.api.Sponge;
-import org.spongepowered.api.scheduler.Scheduler;
+import me.ryanhamshire.griefprevention.configuration.category.LoggingCategory;
 
 import java.io.File;
-import java.nio.charset.Charset;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.Date;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.concurrent.TimeUnit;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
 
+/**
+ * Writes the abridged GriefPrevention logs.
+ *
+ * <p>Callers only push a record into a bounded lock-free ring buffer. A
+ * single writer thread drains it, formats each record and appends it to the
+ * current log file through one reused channel. A new file is started every
+ * day and whenever the current one reaches the configured size.</p>
+ */
 public class CustomLogger {
 
-    private final SimpleDateFormat timestampFormat = new SimpleDateFormat("HH:mm");
-    private final SimpleDateFormat filenameFormat = new SimpleDateFormat("yyyy_MM_dd");
-    private final String logFolderPath = DataStore.dataLayerFolderPath + File.separator + "Logs";
-    private final int secondsBetweenWrites = 10;
+    private static final CustomLogEntryTypes[] ENTRY_TYPES = CustomLogEntryTypes.values();
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+    private static final DateTimeFormatter FILENAME_FORMAT = DateTimeFormatter.ofPattern("yyyy_MM_dd");
+    private static final long IDLE_WAIT_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long FULL_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final char FORMATTER_CHAR = '§';
+
+    private final Path logFolderPath = DataStore.dataLayerFolderPath.resolve("Logs");
+    private final RecordBuffer records;
+    private final AtomicLongArray entryCounts = new AtomicLongArray(ENTRY_TYPES.length);
+    private final AtomicLongArray droppedCounts = new AtomicLongArray(ENTRY_TYPES.length);
+    private final Thread writerThread;
+    private volatile boolean running = true;
 
-    // stringbuilder is not thread safe, stringbuffer is
-    private StringBuffer queuedEntries = new StringBuffer();
+    // writer thread only
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final StringBuilder line = new StringBuilder(256);
+    private FileChannel channel;
+    private LocalDate channelDate;
+    private int channelIndex;
 
     CustomLogger() {
         // ensure log folder exists
-        File logFolder = new File(this.logFolderPath);
-        logFolder.mkdirs();
+        this.logFolderPath.toFile().mkdirs();
 
         // delete any outdated log files immediately
         this.deleteExpiredLogs();
 
-        // unless disabled, schedule recurring tasks
-        int daysToKeepLogs = GriefPrevention.getGlobalConfig().getConfig().logging.loggingDaysToKeep;
-        if (daysToKeepLogs > 0) {
-            Scheduler scheduler = Sponge.getGame().getScheduler();
-            scheduler.createTaskBuilder().async().execute(new EntryWriter()).delay(this.secondsBetweenWrites, TimeUnit.SECONDS).interval(this
-                    .secondsBetweenWrites, TimeUnit.SECONDS).submit(GriefPrevention.instance);
-            scheduler.createTaskBuilder().async().execute(new ExpiredLogRemover()).delay(1, TimeUnit.DAYS).interval(1, TimeUnit.DAYS)
-                    .submit(GriefPrevention
-                            .instance);
-        }
+        this.records = new RecordBuffer(Math.max(16, GriefPrevention.getGlobalConfig().getConfig().logging.loggingBufferSize));
+        this.writerThread = new Thread(this::runWriter, "GriefPrevention Log Writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
     }
 
-    private static final Pattern inlineFormatterPattern = Pattern.compile("�.");
-
     void addEntry(String entry, CustomLogEntryTypes entryType) {
         // if disabled, do nothing
-        int daysToKeepLogs = GriefPrevention.getGlobalConfig().getConfig().logging.loggingDaysToKeep;
-        if (daysToKeepLogs == 0) {
+        final LoggingCategory logging = GriefPrevention.getGlobalConfig().getConfig().logging;
+        if (logging.loggingDaysToKeep == 0 || !this.running) {
             return;
         }
 
@@ -81,11 +108,18 @@ void addEntry(String entry, CustomLogEntryTypes entryType) {
             return;
         }
 
-        // otherwise write to the in-memory buffer, after removing formatters
-        Matcher matcher = inlineFormatterPattern.matcher(entry);
-        entry = matcher.replaceAll("");
-        String timestamp = this.timestampFormat.format(new Date());
-        this.queuedEntries.append(timestamp + " " + entry + "\n");
+        // formatting happens on the writer thread
+        final Record record = new Record(System.currentTimeMillis(), entryType, entry);
+        while (!this.records.offer(record)) {
+            // the writer can't wait on itself
+            if (!logging.loggingBlockWhenFull || !this.running || Thread.currentThread() == this.writerThread) {
+                this.droppedCounts.incrementAndGet(entryType.ordinal());
+                return;
+            }
+            LockSupport.unpark(this.writerThread);
+            LockSupport.parkNanos(this, FULL_WAIT_NANOS);
+        }
+        this.entryCounts.incrementAndGet(entryType.ordinal());
     }
 
     private boolean isEnabledType(CustomLogEntryTypes entryType) {
@@ -108,64 +142,209 @@ private boolean isEnabledType(CustomLogEntryTypes entryType) {
         return true;
     }
 
-    void writeEntries() {
+    // the number of entries accepted for the type since startup
+    public long getEntryCount(CustomLogEntryTypes entryType) {
+        return this.entryCounts.get(entryType.ordinal());
+    }
+
+    // the number of entries of the type dropped because the buffer was full
+    public long getDroppedCount(CustomLogEntryTypes entryType) {
+        return this.droppedCounts.get(entryType.ordinal());
+    }
+
+    public int getQueuedCount() {
+        return this.records.size();
+    }
+
+    // writes everything still buffered and stops the writer thread
+    void close() {
+        this.running = false;
+        LockSupport.unpark(this.writerThread);
         try {
-            // if nothing to write, stop here
-            if (this.queuedEntries.length() == 0) {
-                return;
+            this.writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runWriter() {
+        while (this.running) {
+            if (!this.writeEntries()) {
+                LockSupport.parkNanos(this, IDLE_WAIT_NANOS);
+            }
+        }
+
+        this.writeEntries();
+        this.closeChannel();
+    }
+
+    // returns false if there was nothing to write
+    private boolean writeEntries() {
+        Record record = this.records.poll();
+        if (record == null) {
+            return false;
+        }
+
+        final boolean json = GriefPrevention.getGlobalConfig().getConfig().logging.loggingJsonFormat;
+        do {
+            this.line.setLength(0);
+            if (json) {
+                this.formatJson(record);
+            } else {
+                this.formatText(record);
             }
+            this.encode();
+        } while ((record = this.records.poll()) != null);
 
-            // determine filename based on date
-            String filename = this.filenameFormat.format(new Date()) + ".log";
-            String filepath = this.logFolderPath + File.separator + filename;
-            File logFile = new File(filepath);
+        this.flush();
+        return true;
+    }
 
-            // dump content
-            Files.append(this.queuedEntries.toString(), logFile, Charset.forName("UTF-8"));
+    private void formatText(Record record) {
+        this.line.append(TIMESTAMP_FORMAT.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(record.time), ZoneId.systemDefault())))
+                .append(' ');
+        appendStripped(this.line, record.message, false);
+        this.line.append('\n');
+    }
 
-            // in case of a failure to write the above due to exception,
-            // the unwritten entries will remain the buffer for the next write
-            // to retry
-            this.queuedEntries.setLength(0);
-        } catch (Exception e) {
+    private void formatJson(Record record) {
+        this.line.append("{\"time\":\"").append(Instant.ofEpochMilli(record.time)).append("\",\"type\":\"").append(record.type.name())
+                .append("\",\"message\":\"");
+        appendStripped(this.line, record.message, true);
+        this.line.append("\"}\n");
+    }
+
+    // removes inline formatters and optionally escapes the message for json
+    private static void appendStripped(StringBuilder builder, String message, boolean escape) {
+        for (int i = 0; i < message.length(); i++) {
+            final char c = message.charAt(i);
+            if (c == FORMATTER_CHAR) {
+                i++;
+                continue;
+            }
+            if (!escape) {
+                builder.append(c);
+            } else if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c == '\n') {
+                builder.append("\\n");
+            } else if (c == '\r') {
+                builder.append("\\r");
+            } else if (c == '\t') {
+                builder.append("\\t");
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+    }
+
+    private void encode() {
+        final CharBuffer chars = CharBuffer.wrap(this.line);
+        this.encoder.reset();
+        while (this.encoder.encode(chars, this.writeBuffer, true) == CoderResult.OVERFLOW) {
+            this.flush();
+        }
+        while (this.encoder.flush(this.writeBuffer) == CoderResult.OVERFLOW) {
+            this.flush();
+        }
+    }
+
+    private void flush() {
+        this.writeBuffer.flip();
+        try {
+            if (this.writeBuffer.hasRemaining()) {
+                final FileChannel channel = this.getChannel();
+                while (this.writeBuffer.hasRemaining()) {
+                    channel.write(this.writeBuffer);
+                }
+
+                final long maxFileSize = GriefPrevention.getGlobalConfig().getConfig().logging.loggingMaxFileSize * 1024L * 1024L;
+                if (maxFileSize > 0 && channel.size() >= maxFileSize) {
+                    // continue in the next file of the day
+                    this.closeChannel();
+                    this.channelIndex++;
+                }
+            }
+        } catch (IOException e) {
+            // entries that failed to write are dropped, the channel is reopened on the next write
             e.printStackTrace();
+            this.closeChannel();
+        } finally {
+            this.writeBuffer.clear();
+        }
+    }
+
+    private FileChannel getChannel() throws IOException {
+        final LocalDate today = LocalDate.now();
+        if (!today.equals(this.channelDate)) {
+            this.closeChannel();
+            this.channelDate = today;
+            this.channelIndex = 0;
+            this.deleteExpiredLogs();
+        }
+
+        if (this.channel == null) {
+            final long maxFileSize = GriefPrevention.getGlobalConfig().getConfig().logging.loggingMaxFileSize * 1024L * 1024L;
+            File logFile = this.getLogFile(today, this.channelIndex);
+            // skip files of the day that were already filled before a restart
+            while (maxFileSize > 0 && logFile.length() >= maxFileSize) {
+                logFile = this.getLogFile(today, ++this.channelIndex);
+            }
+            this.channel = FileChannel.open(logFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
         }
+        return this.channel;
+    }
+
+    private File getLogFile(LocalDate date, int index) {
+        final String extension = GriefPrevention.getGlobalConfig().getConfig().logging.loggingJsonFormat ? ".json" : ".log";
+        final String filename = FILENAME_FORMAT.format(date) + (index == 0 ? "" : "." + index) + extension;
+        return this.logFolderPath.resolve(filename).toFile();
+    }
+
+    private void closeChannel() {
+        if (this.channel == null) {
+            return;
+        }
+
+        try {
+            this.channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        this.channel = null;
     }
 
     private void deleteExpiredLogs() {
         try {
             // get list of log files
-            File logFolder = new File(this.logFolderPath);
-            File[] files = logFolder.listFiles();
+            File[] files = this.logFolderPath.toFile().listFiles();
+            if (files == null) {
+                return;
+            }
 
             // delete any created before x days ago
             int daysToKeepLogs = GriefPrevention.getGlobalConfig().getConfig().logging.loggingDaysToKeep;
-            Calendar expirationBoundary = Calendar.getInstance();
-            expirationBoundary.add(Calendar.DATE, -daysToKeepLogs);
-            for (int i = 0; i < files.length; i++) {
-                File file = files[i];
+            LocalDate expirationBoundary = LocalDate.now().minusDays(daysToKeepLogs);
+            for (File file : files) {
                 if (file.isDirectory()) {
                     continue; // skip any folders
                 }
 
-                String filename = file.getName().replace(".log", "");
-                String[] dateParts = filename.split("_"); // format is
-                // yyyy_MM_dd
-                if (dateParts.length != 3) {
+                // format is yyyy_MM_dd[.index].log
+                String filename = file.getName();
+                int dotIndex = filename.indexOf('.');
+                if (dotIndex < 0) {
                     continue;
                 }
 
                 try {
-                    int year = Integer.parseInt(dateParts[0]);
-                    int month = Integer.parseInt(dateParts[1]) - 1;
-                    int day = Integer.parseInt(dateParts[2]);
-
-                    Calendar filedate = Calendar.getInstance();
-                    filedate.set(year, month, day);
-                    if (filedate.before(expirationBoundary)) {
+                    LocalDate fileDate = LocalDate.parse(filename.substring(0, dotIndex), FILENAME_FORMAT);
+                    if (fileDate.isBefore(expirationBoundary)) {
                         file.delete();
                     }
-                } catch (NumberFormatException e) {
+                } catch (DateTimeParseException e) {
                     // throw this away - effectively ignoring any files without
                     // the correct filename format
                     GriefPrevention.addLogEntry("Ignoring an unexpected file in the abridged logs folder: " + file.getName(),
@@ -177,20 +356,74 @@ private void deleteExpiredLogs() {
         }
     }
 
-    // transfers the internal buffer to a log file
-    private class EntryWriter implements Runnable {
+    private static final class Record {
 
-        @Override
-        public void run() {
-            writeEntries();
+        final long time;
+        final CustomLogEntryTypes type;
+        final String message;
+
+        Record(long time, CustomLogEntryTypes type, String message) {
+            this.time = time;
+            this.type = type;
+            this.message = message;
         }
     }
 
-    private class ExpiredLogRemover implements Runnable {
+    // bounded multi producer, single consumer ring buffer, each slot's sequence tells whose turn it is
+    private static final class RecordBuffer {
+
+        private final Record[] slots;
+        private final AtomicLongArray sequences;
+        private final int mask;
+        private final AtomicLong tail = new AtomicLong();
+        private volatile long head;
+
+        RecordBuffer(int capacity) {
+            final int size = Integer.highestOneBit(capacity - 1) << 1;
+            this.slots = new Record[size];
+            this.sequences = new AtomicLongArray(size);
+            this.mask = size - 1;
+            for (int i = 0; i < size; i++) {
+                this.sequences.set(i, i);
+            }
+        }
+
+        boolean offer(Record record) {
+            while (true) {
+                final long position = this.tail.get();
+                final int index = (int) position & this.mask;
+                final long difference = this.sequences.get(index) - position;
+                if (difference == 0) {
+                    if (this.tail.compareAndSet(position, position + 1)) {
+                        this.slots[index] = record;
+                        // publishes the slot to the consumer
+                        this.sequences.lazySet(index, position + 1);
+                        return true;
+                    }
+                } else if (difference < 0) {
+                    // the consumer hasn't freed this slot yet
+                    return false;
+                }
+            }
+        }
+
+        // consumer only
+        Record poll() {
+            final long position = this.head;
+            final int index = (int) position & this.mask;
+            if (this.sequences.get(index) != position + 1) {
+                return null;
+            }
+
+            final Record record = this.slots[index];
+            this.slots[index] = null;
+            this.sequences.lazySet(index, position + this.mask + 1);
+            this.head = position + 1;
+            return record;
+        }
 
-        @Override
-        public void run() {
-            deleteExpiredLogs();
+        int size() {
+            return (int) Math.max(0, this.tail.get() - this.head);
         }
     }
 }
@@ -30,11 +30,15 @@
 import com.google.common.collect.Maps;
 import com.google.common.io.Files;
 import me.ryanhamshire.griefprevention.claim.Claim;
+import me.ryanhamshire.griefprevention.claim.ClaimContextCalculator;
+import me.ryanhamshire.griefprevention.claim.ClaimEntityCounter;
+import me.ryanhamshire.griefprevention.claim.ClaimRegionCache;
 import me.ryanhamshire.griefprevention.claim.ClaimWorldManager;
 import me.ryanhamshire.griefprevention.claim.ClaimsMode;
 import me.ryanhamshire.griefprevention.claim.CreateClaimResult;
 import me.ryanhamshire.griefprevention.configuration.ClaimTemplateStorage;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
+import me.ryanhamshire.griefprevention.configuration.PlayerStorageData;
 import me.ryanhamshire.griefprevention.configuration.SubDivisionDataConfig;
 import me.ryanhamshire.griefprevention.configuration.types.DimensionConfig;
 import me.ryanhamshire.griefprevention.configuration.types.GlobalConfig;
@@ -45,7 +49,6 @@
 import me.ryanhamshire.griefprevention.util.BlockUtils;
 import me.ryanhamshire.griefprevention.util.WordFinder;
 import net.minecraft.item.ItemStack;
-import net.minecraft.util.math.ChunkPos;
 import ninja.leaping.configurate.commented.CommentedConfigurationNode;
 import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
 import org.apache.commons.lang3.StringUtils;
@@ -80,6 +83,7 @@
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -107,7 +111,7 @@ public abstract class DataStore {
     public static Map<UUID, GriefPreventionConfig<WorldConfig>> worldConfigMap = Maps.newHashMap();
     public static Map<String, ClaimTemplateStorage> globalTemplates = new HashMap<>();
     public static GriefPreventionConfig<GlobalConfig> globalConfig;
-    public static Map<UUID, PlayerData> GLOBAL_PLAYER_DATA = Maps.newHashMap();
+    public static PlayerDataCache GLOBAL_PLAYER_DATA = new PlayerDataCache();
     public static boolean USE_GLOBAL_PLAYER_STORAGE = true;
 
     // in-memory cache for messages
@@ -140,8 +144,8 @@ public abstract class DataStore {
     static final String SUBDIVISION_VIDEO_URL_RAW = "http://bit.ly/mcgpsub";
 
     public static boolean generateMessages = true;
-    // matcher for banned words
-    public WordFinder bannedWordFinder;
+    // matcher for banned words, replaced as a whole on reload
+    public volatile WordFinder bannedWordFinder;
     private boolean deletingSubdivisions = false;
 
     // list of UUIDs which are soft-muted
@@ -352,20 +356,10 @@ public void deleteClaim(Claim claim, boolean fireEvent) {
         }
 
         if (claim.parent == null || claim.cuboid) {
-            Set<Long> chunkHashes = claim.getChunkHashes();
-            for (Long chunkHash : chunkHashes) {
-                Set<Claim> claimsInChunk = claimWorldManager.getChunksToClaimsMap().get(chunkHash);
-                if (claimsInChunk != null && claimsInChunk.size() > 0) {
-                    Iterator<Claim> iterator = claimsInChunk.iterator();
-                    while (iterator.hasNext()) {
-                        Claim claimInChunk = iterator.next();
-                        if (claimInChunk.id.equals(claim.id)) {
-                            iterator.remove();
-                        }
-                    }
-                }
-            }
+            claimWorldManager.getClaimIndex().removeClaim(claim);
         }
+        ClaimRegionCache.invalidate();
+        ClaimContextCalculator.invalidate();
         // revert visuals for all players watching this claim
         List<UUID> playersWatching = new ArrayList<>(claim.playersWatching);
         for (UUID playerUniqueId : playersWatching) {
@@ -376,6 +370,7 @@ public void deleteClaim(Claim claim, boolean fireEvent) {
             }
         }
 
+        GPPermissionCache.invalidate();
         if (fireEvent) {
             ClaimDeletedEvent ev = new ClaimDeletedEvent(claim);
             Sponge.getGame().getEventManager().post(ev);
@@ -405,7 +400,7 @@ public Claim getClaimAt(Location<World> location, boolean ignoreHeight, WeakRefe
             return null;
         }
 
-        Set<Claim> claimsInChunk = claimWorldManager.getChunksToClaimsMap().get(ChunkPos.chunkXZ2Int(location.getBlockX() >> 4, location.getBlockZ() >> 4));
+        Claim[] claimsInChunk = claimWorldManager.getClaimIndex().getClaimsInChunk(location.getBlockX() >> 4, location.getBlockZ() >> 4);
         if (claimsInChunk == null) {
             GPTimings.CLAIM_GETCLAIM.stopTimingIfSync();
             return claimWorldManager.getWildernessClaim();
@@ -433,6 +428,33 @@ public Claim getClaimAt(Location<World> location, boolean ignoreHeight, WeakRefe
         return claimWorldManager.getWildernessClaim();
     }
 
+    // gets the claim at a specific location, reusing the region cached for the moving entity when it hasn't left it
+    public Claim getClaimAt(Location<World> location, ClaimRegionCache regionCache) {
+        Claim claim = regionCache.getClaim(location);
+        if (claim != null) {
+            return claim;
+        }
+
+        claim = this.getClaimAt(location, false, null);
+        ClaimWorldManager claimWorldManager = this.getClaimWorldManager(location.getExtent().getProperties());
+        if (claim != null && claimWorldManager != null) {
+            regionCache.update(claim, location, claimWorldManager.getClaimIndex());
+        } else {
+            regionCache.clear();
+        }
+        return claim;
+    }
+
+    // true if no claim is in or next to the chunk of the location
+    public boolean isClaimFree(Location<World> location) {
+        ClaimWorldManager claimWorldManager = this.getClaimWorldManager(location.getExtent().getProperties());
+        if (claimWorldManager == null) {
+            // getClaimAt finds no claim in a world without a manager either
+            return true;
+        }
+        return claimWorldManager.getClaimIndex().isClaimFree(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+    }
+
     // finds a claim by ID
     public Claim getClaim(WorldProperties worldProperties, UUID id) {
         return this.getClaimWorldManager(worldProperties).getClaimByUUID(id);
@@ -510,6 +532,8 @@ public CreateClaimResult createClaim(World world, int x1, int x2, int y1, int y2
             newClaim.setClaimData(subData);
             newClaim.getClaimStorage().getConfig().getSubdivisions().put(claimId, subData);
             newClaim.parent.children.add(newClaim);
+            ClaimRegionCache.invalidate();
+            ClaimContextCalculator.invalidate();
             newClaim.parent.getClaimStorage().getConfig().setRequiresSave(true);
             newClaim.parent.getClaimStorage().save();
         } else {
@@ -522,6 +546,7 @@ public CreateClaimResult createClaim(World world, int x1, int x2, int y1, int y2
         // otherwise add this new claim to the data store to make it effective
         if (newClaim.parent == null) {
             this.addClaim(newClaim, true);
+            ClaimEntityCounter.rescan(newClaim);
         }
 
         newClaim.context = new Context("gp_claim", newClaim.id.toString());
@@ -537,28 +562,33 @@ public Claim doesClaimOverlap(Claim claim) {
         }
 
         ClaimWorldManager claimWorldManager = this.getClaimWorldManager(claim.world.getProperties());
-        Set<Long> chunkHashes = claim.getChunkHashes();
-        for (Long chunkHash : chunkHashes) {
-            Set<Claim> claimsInChunk = claimWorldManager.getChunksToClaimsMap().get(chunkHash);
-            if (claimsInChunk == null || claimsInChunk.size() == 0) {
-                continue;
-            }
+        final int smallChunkX = claim.getLesserBoundaryCorner().getBlockX() >> 4;
+        final int smallChunkZ = claim.getLesserBoundaryCorner().getBlockZ() >> 4;
+        final int largeChunkX = claim.getGreaterBoundaryCorner().getBlockX() >> 4;
+        final int largeChunkZ = claim.getGreaterBoundaryCorner().getBlockZ() >> 4;
+        for (int chunkX = smallChunkX; chunkX <= largeChunkX; chunkX++) {
+            for (int chunkZ = smallChunkZ; chunkZ <= largeChunkZ; chunkZ++) {
+                Claim[] claimsInChunk = claimWorldManager.getClaimIndex().getClaimsInChunk(chunkX, chunkZ);
+                if (claimsInChunk == null) {
+                    continue;
+                }
 
-            for (Claim otherClaim : claimsInChunk) {
-                // if we find an existing claim which will be overlapped
-                if (claim.parent != null && otherClaim.id == claim.parent.id) {
-                    // check children
-                    for (Claim subdivision : otherClaim.children) {
-                        if (claim.overlaps(subdivision) || subdivision.overlaps(claim)) {
-                            // result = fail, return conflicting claim
-                            return subdivision;
+                for (Claim otherClaim : claimsInChunk) {
+                    // if we find an existing claim which will be overlapped
+                    if (claim.parent != null && otherClaim.id == claim.parent.id) {
+                        // check children
+                        for (Claim subdivision : otherClaim.children) {
+                            if (claim.overlaps(subdivision) || subdivision.overlaps(claim)) {
+                                // result = fail, return conflicting claim
+                                return subdivision;
+                            }
                         }
                     }
-                }
 
-                if ((claim.parent == null || (claim.parent != null && otherClaim.id != claim.parent.id)) && (claim.overlaps(otherClaim) || otherClaim.overlaps(claim))) {
-                    // result = fail, return conflicting claim
-                    return otherClaim;
+                    if ((claim.parent == null || (claim.parent != null && otherClaim.id != claim.parent.id)) && (claim.overlaps(otherClaim) || otherClaim.overlaps(claim))) {
+                        // result = fail, return conflicting claim
+                        return otherClaim;
+                    }
                 }
             }
         }
@@ -630,6 +660,7 @@ public void extendClaim(Claim claim, int newDepth) {
         }
 
         claim.updateClaimStorageData();
+        claim.getClaimStorage().save();
     }
 
     // starts a siege on a claim
@@ -867,6 +898,18 @@ public boolean deleteAllAdminClaims(World world) {
         return adminClaimDeleted;
     }
 
+    // claims owned by a player in every loaded world
+    public List<Claim> getOwnerClaims(UUID playerUniqueId) {
+        List<Claim> claimList = new ArrayList<>();
+        for (ClaimWorldManager claimWorldManager : this.claimWorldManagers.values()) {
+            List<Claim> ownerClaims = claimWorldManager.getOwnerClaims(playerUniqueId);
+            if (ownerClaims != null) {
+                claimList.addAll(ownerClaims);
+            }
+        }
+        return claimList;
+    }
+
     // deletes all claims owned by a player
     public void deleteClaimsForPlayer(UUID playerID) {
         // make a list of the player's claims
@@ -924,7 +967,6 @@ public Claim resizeCuboidClaim(Claim claim, int smallX, int smallY, int smallZ,
             }
         }
 
-        Set<Long> currentChunkHashes = claim.getChunkHashes();
         claim.lesserBoundaryCorner = new Location<World>(claim.world, smallX, smallY, smallZ);
         claim.greaterBoundaryCorner = new Location<World>(claim.world, bigX, bigY, bigZ);
         Claim overlapClaim = this.doesClaimOverlap(claim);
@@ -934,28 +976,13 @@ public Claim resizeCuboidClaim(Claim claim, int smallX, int smallY, int smallZ,
             return overlapClaim;
         }
 
-        // resize validated, remove invalid chunkHashes
-        Set<Long> newChunkHashes = claim.getChunkHashes();
-        ClaimWorldManager claimWorldManager = GriefPrevention.instance.dataStore.getClaimWorldManager(claim.world.getProperties());
+        // resize validated, move claim to its new chunks
         if (claim.parent == null) {
-            currentChunkHashes.removeAll(newChunkHashes);
-            for (Long chunkHash : currentChunkHashes) {
-                Set<Claim> claimsInChunk = claimWorldManager.getChunksToClaimsMap().get(chunkHash);
-                if (claimsInChunk != null && claimsInChunk.size() > 0) {
-                    claimsInChunk.remove(claim);
-                }
-            }
-            // add new chunk hashes
-            for (Long chunkHash : newChunkHashes) {
-                Set<Claim> claimsInChunk = claimWorldManager.getChunksToClaimsMap().get(chunkHash);
-                if (claimsInChunk == null) {
-                    claimsInChunk = new HashSet<>();
-                    claimWorldManager.getChunksToClaimsMap().put(chunkHash, claimsInChunk);
-                }
-
-                claimsInChunk.add(claim);
-            }
+            this.getClaimWorldManager(claim.world.getProperties()).getClaimIndex().updateClaim(claim);
+            ClaimEntityCounter.rescan(claim);
         }
+        ClaimRegionCache.invalidate();
+        ClaimContextCalculator.invalidate();
 
         claim.getClaimData().setLesserBoundaryCorner(BlockUtils.positionToString(claim.lesserBoundaryCorner));
         claim.getClaimData().setGreaterBoundaryCorner(BlockUtils.positionToString(claim.greaterBoundaryCorner));
@@ -1025,18 +1052,11 @@ public Claim resizeClaim(Claim claim, int newx1, int newx2, int newy1, int newy2
         }
 
         if (claim.parent == null) {
-            Set<Long> chunkHashes = claim.getChunkHashes();
-            ClaimWorldManager claimWorldManager = GriefPrevention.instance.dataStore.getClaimWorldManager(claim.world.getProperties());
-            for (Long chunkHash : chunkHashes) {
-                Set<Claim> claimsInChunk = claimWorldManager.getChunksToClaimsMap().get(chunkHash);
-                if (claimsInChunk == null) {
-                    claimsInChunk = new HashSet<Claim>();
-                    claimWorldManager.getChunksToClaimsMap().put(chunkHash, claimsInChunk);
-                }
-    
-                claimsInChunk.add(claim);
-            }
+            this.getClaimWorldManager(claim.world.getProperties()).getClaimIndex().updateClaim(claim);
+            ClaimEntityCounter.rescan(claim);
         }
+        ClaimRegionCache.invalidate();
+        ClaimContextCalculator.invalidate();
 
         claim.getClaimData().setLesserBoundaryCorner(BlockUtils.positionToString(claim.lesserBoundaryCorner));
         claim.getClaimData().setGreaterBoundaryCorner(BlockUtils.positionToString(claim.greaterBoundaryCorner));
@@ -1446,9 +1466,9 @@ public Set<Claim> getNearbyClaims(Location<World> location) {
                 for (int chunkZ = lesserChunk.get().getPosition().getZ(); chunkZ <= greaterChunk.get().getPosition().getZ(); chunkZ++) {
                     Optional<Chunk> chunk = location.getExtent().getChunk(chunkX, 0, chunkZ);
                     if (chunk.isPresent()) {
-                        Set<Claim> claimsInChunk = claimWorldManager.getChunksToClaimsMap().get(ChunkPos.chunkXZ2Int(chunkX, chunkZ));
+                        Claim[] claimsInChunk = claimWorldManager.getClaimIndex().getClaimsInChunk(chunkX, chunkZ);
                         if (claimsInChunk != null) {
-                            claims.addAll(claimsInChunk);
+                            Collections.addAll(claims, claimsInChunk);
                         }
                     }
                 }
@@ -1521,6 +1541,9 @@ public void setupDefaultPermissions(World world) {
         contexts.add(world.getContext());
         this.setFlagDefaultPermissions(contexts, GPFlags.DEFAULT_WILDERNESS_FLAGS);
         this.setOptionDefaultPermissions(contexts);
+        // global option defaults, so they show up for any permission plugin listing options
+        this.setOptionDefaultPermissions(new HashSet<>());
+        GPPermissionCache.invalidate();
     }
 
     private void setFlagDefaultPermissions(Set<Context> contexts, Map<String, Tristate> defaultFlags) {
@@ -1548,6 +1571,26 @@ private void setFlagDefaultPermissions(Set<Context> contexts, Map<String, Trista
         }
     }
 
+    // evicts offline players past the player data cache size, main thread only
+    public void evictPlayerData() {
+        if (USE_GLOBAL_PLAYER_STORAGE) {
+            GLOBAL_PLAYER_DATA.evict();
+            return;
+        }
+        for (ClaimWorldManager claimWorldManager : this.claimWorldManagers.values()) {
+            claimWorldManager.getPlayerDataList().evict();
+        }
+    }
+
+    // re-resolves the options of all loaded players, must be called after GPOptionCache is invalidated
+    public void refreshPlayerOptions() {
+        for (ClaimWorldManager claimWorldManager : this.claimWorldManagers.values()) {
+            for (PlayerData playerData : claimWorldManager.getPlayerDataList().values()) {
+                playerData.refreshPlayerOptions();
+            }
+        }
+    }
+
     private void setOptionDefaultPermissions(Set<Context> contexts) {
         final SubjectData globalSubjectData = GriefPrevention.GLOBAL_SUBJECT.getTransientSubjectData();
         for (Map.Entry<String, String> optionEntry : GPOptions.DEFAULT_OPTIONS.entrySet()) {
@@ -1557,6 +1600,11 @@ private void setOptionDefaultPermissions(Set<Context> contexts) {
 
     abstract PlayerData getPlayerDataFromStorage(UUID playerID);
 
+    // creates the storage backing a player's data
+    public PlayerStorageData createPlayerStorageData(WorldProperties worldProperties, UUID playerUniqueId, Path playerFilePath) {
+        return new PlayerStorageData(playerFilePath);
+    }
+
     public abstract void loadWorldData(World world);
 
     public abstract void unloadWorldData(WorldProperties worldProperties);
@@ -26,515 +26,608 @@
 package me.ryanhamshire.griefprevention;
 
 import com.flowpowered.math.vector.Vector3i;
+import com.google.common.collect.Maps;
+import com.google.common.reflect.TypeToken;
 import me.ryanhamshire.griefprevention.claim.Claim;
+import me.ryanhamshire.griefprevention.configuration.ClaimDataConfig;
+import me.ryanhamshire.griefprevention.configuration.ClaimLogStorage;
+import me.ryanhamshire.griefprevention.configuration.ClaimStorageData;
+import me.ryanhamshire.griefprevention.configuration.ClaimStorageQueue;
+import me.ryanhamshire.griefprevention.configuration.DatabaseClaimStorageData;
+import me.ryanhamshire.griefprevention.configuration.DatabasePlayerStorageData;
+import me.ryanhamshire.griefprevention.configuration.IClaimData;
+import me.ryanhamshire.griefprevention.configuration.PlayerStorageData;
+import me.ryanhamshire.griefprevention.configuration.SubDivisionDataConfig;
 import me.ryanhamshire.griefprevention.util.BlockUtils;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.commented.SimpleCommentedConfigurationNode;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+import ninja.leaping.configurate.objectmapping.ObjectMappingException;
 import org.spongepowered.api.Sponge;
-import org.spongepowered.api.entity.living.player.User;
-import org.spongepowered.api.service.user.UserStorageService;
-import org.spongepowered.api.world.Location;
-import org.spongepowered.api.world.World;
+import org.spongepowered.api.service.sql.SqlService;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.serializer.TextSerializers;
 import org.spongepowered.api.world.storage.WorldProperties;
 
+import java.io.File;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Optional;
-import java.util.Properties;
+import java.util.Map;
 import java.util.UUID;
-
-//manages data stored in the file system
-public class DatabaseDataStore extends DataStore {
-
-    private Connection databaseConnection = null;
-
-    private String databaseUrl;
-    private String userName;
-    private String password;
-
-    DatabaseDataStore(String url, String userName, String password) throws Exception {
-        this.databaseUrl = url;
-        this.userName = userName;
-        this.password = password;
-
-        this.initialize();
+import java.util.concurrent.Callable;
+
+import javax.annotation.Nullable;
+import javax.sql.DataSource;
+
+//manages claim and player data stored in a SQL database, world configs stay in the file system
+public class DatabaseDataStore extends FlatFileDataStore {
+
+    private static final String CLAIM_TABLE = "gp_claim";
+    private static final String TRUST_TABLE = "gp_claim_trust";
+    private static final String PLAYER_TABLE = "gp_player_data";
+
+    private static final String TRUST_ACCESSOR = "accessor";
+    private static final String TRUST_BUILDER = "builder";
+    private static final String TRUST_CONTAINER = "container";
+    private static final String TRUST_MANAGER = "manager";
+
+    private static final String GLOBAL_PLAYER_WORLD = "global";
+
+    private static final String SELECT_CLAIMS = "SELECT * FROM " + CLAIM_TABLE + " WHERE world_id = ?";
+    private static final String SELECT_TRUSTS = "SELECT t.claim_id, t.trust_type, t.subject_id FROM " + TRUST_TABLE + " t INNER JOIN "
+            + CLAIM_TABLE + " c ON t.claim_id = c.id WHERE c.world_id = ?";
+    private static final String UPDATE_CLAIM = "UPDATE " + CLAIM_TABLE + " SET world_id = ?, parent_id = ?, owner_id = ?, claim_type = ?, "
+            + "cuboid = ?, inherit_parent = ?, lesser_x = ?, lesser_y = ?, lesser_z = ?, greater_x = ?, greater_y = ?, greater_z = ?, "
+            + "date_created = ?, date_last_active = ?, name = ?, greeting = ?, farewell = ? WHERE id = ?";
+    private static final String INSERT_CLAIM = "INSERT INTO " + CLAIM_TABLE + " (world_id, parent_id, owner_id, claim_type, cuboid, "
+            + "inherit_parent, lesser_x, lesser_y, lesser_z, greater_x, greater_y, greater_z, date_created, date_last_active, name, greeting, "
+            + "farewell, id) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String DELETE_SUBDIVISION_TRUSTS = "DELETE FROM " + TRUST_TABLE + " WHERE claim_id IN (SELECT id FROM "
+            + CLAIM_TABLE + " WHERE parent_id = ?)";
+    private static final String DELETE_SUBDIVISIONS = "DELETE FROM " + CLAIM_TABLE + " WHERE parent_id = ?";
+    private static final String DELETE_TRUSTS = "DELETE FROM " + TRUST_TABLE + " WHERE claim_id = ?";
+    private static final String DELETE_CLAIM = "DELETE FROM " + CLAIM_TABLE + " WHERE id = ?";
+    private static final String INSERT_TRUST = "INSERT INTO " + TRUST_TABLE + " (claim_id, trust_type, subject_id) VALUES (?, ?, ?)";
+    private static final String SELECT_PLAYERS = "SELECT * FROM " + PLAYER_TABLE + " WHERE world_id = ?";
+    private static final String UPDATE_PLAYER = "UPDATE " + PLAYER_TABLE + " SET accrued_blocks = ?, bonus_blocks = ?, cuboid_mode = ? "
+            + "WHERE world_id = ? AND player_id = ?";
+    private static final String INSERT_PLAYER = "INSERT INTO " + PLAYER_TABLE + " (accrued_blocks, bonus_blocks, cuboid_mode, world_id, "
+            + "player_id) VALUES (?, ?, ?, ?, ?)";
+
+    private final String databaseUrl;
+    private DataSource dataSource;
+    // World key -> player UUID -> last saved values, mirrors the player table so storage never has to query it
+    private final Map<String, Map<UUID, int[]>> playerRows = Maps.newConcurrentMap();
+
+    DatabaseDataStore(String url, String userName, String password) {
+        this.databaseUrl = createConnectionUrl(url, userName, password);
     }
 
-    @SuppressWarnings({"unused", "null"})
     @Override
     void initialize() throws Exception {
         try {
-            // load the java driver for mySQL
-            Class.forName("com.mysql.jdbc.Driver");
+            SqlService sqlService = Sponge.getServiceManager().provide(SqlService.class)
+                    .orElseThrow(() -> new IllegalStateException("No SQL service is available."));
+            // pooled by the SQL service
+            this.dataSource = sqlService.getDataSource(GriefPrevention.instance, this.databaseUrl);
         } catch (Exception e) {
-            GriefPrevention.addLogEntry("ERROR: Unable to load Java's mySQL database driver.  Check to make sure you've installed it properly.");
+            GriefPrevention.addLogEntry("ERROR: Unable to connect to database.  Check your config file settings.");
             throw e;
         }
 
         try {
-            this.refreshDataConnection();
-        } catch (Exception e2) {
-            GriefPrevention.addLogEntry("ERROR: Unable to connect to database.  Check your config file settings.");
-            throw e2;
+            ClaimStorageQueue.submitAndWait(() -> {
+                this.createTables();
+                return null;
+            });
+        } catch (Exception e) {
+            GriefPrevention.addLogEntry("ERROR: Unable to create the necessary database table.  Details:");
+            GriefPrevention.addLogEntry(e.getMessage());
+            GriefPrevention.instance.getLogger().error("Failed to create the database tables " + CLAIM_TABLE + ", " + TRUST_TABLE + " and "
+                    + PLAYER_TABLE + ".", e);
+            throw e;
         }
 
-        try {
-            // ensure the data tables exist
-            Statement statement = databaseConnection.createStatement();
-
-            statement.execute("CREATE TABLE IF NOT EXISTS griefprevention_nextclaimid (nextid INT(15));");
-
-            statement.execute(
-                    "CREATE TABLE IF NOT EXISTS griefprevention_claimdata (id INT(15), owner VARCHAR(50), lessercorner VARCHAR(100), greatercorner "
-                            + "VARCHAR(100), builders VARCHAR(1000), containers VARCHAR(1000), accessors VARCHAR(1000), managers VARCHAR(1000), "
-                            + "parentid INT(15));");
+        super.initialize();
+    }
 
-            statement.execute(
-                    "CREATE TABLE IF NOT EXISTS griefprevention_playerdata (name VARCHAR(50), lastlogin DATETIME, accruedblocks INT(15), "
-                            + "bonusblocks INT(15));");
+    @Override
+    String getStorageFormat() {
+        return "database";
+    }
 
-            statement.execute("CREATE TABLE IF NOT EXISTS griefprevention_schemaversion (version INT(15));");
+    @Override
+    boolean canConvertFrom(String storageFormat) {
+        return storageFormat.equals("file") || storageFormat.equals("binary");
+    }
 
-            // if the next claim id table is empty, this is a brand new database
-            // which will write using the latest schema
-            // otherwise, schema version is determined by schemaversion table
-            // (or =0 if table is empty, see getSchemaVersion())
-            ResultSet results = statement.executeQuery("SELECT * FROM griefprevention_nextclaimid;");
-            if (!results.next()) {
-                this.setSchemaVersion(latestSchemaVersion);
+    @Override
+    List<ParsedClaim> readClaimData(Path worldDataPath, WorldProperties worldProperties) throws Exception {
+        final UUID worldUniqueId = worldProperties.getUniqueId();
+        final Path claimDataPath = worldDataPath.resolve("ClaimData");
+        final Map<UUID, CommentedConfigurationNode> claims = ClaimStorageQueue.submitAndWait(() -> this.loadClaimData(worldUniqueId));
+        if (claims.isEmpty()) {
+            final Path logPath = worldDataPath.resolve(ClaimLogStorage.FILE_NAME);
+            if (Files.exists(logPath)) {
+                return this.importClaimLog(logPath, claimDataPath, worldProperties);
             }
-        } catch (Exception e3) {
-            GriefPrevention.addLogEntry("ERROR: Unable to create the necessary database table.  Details:");
-            GriefPrevention.addLogEntry(e3.getMessage());
-            e3.printStackTrace();
-            throw e3;
+            return this.importClaimFiles(claimDataPath, worldProperties);
         }
 
-        // load group data into memory
-        Statement statement = databaseConnection.createStatement();
-        // load next claim number into memory
-        ResultSet results = statement.executeQuery("SELECT * FROM griefprevention_nextclaimid;");
-
-        // if there's nothing yet, add it
-        if (!results.next()) {
-            statement.execute("INSERT INTO griefprevention_nextclaimid VALUES(0);");
+        final List<Callable<ParsedClaim>> tasks = new ArrayList<>(claims.size());
+        for (Map.Entry<UUID, CommentedConfigurationNode> entry : claims.entrySet()) {
+            final UUID claimId = entry.getKey();
+            final CommentedConfigurationNode root = entry.getValue();
+            final Path claimPath = claimDataPath.resolve(claimId.toString());
+            tasks.add(() -> parseClaim(claimPath, claimId, new DatabaseClaimStorageData(this, claimId, claimPath, root)));
         }
+        return this.parseClaims(tasks);
+    }
 
-        if (this.getSchemaVersion() == 0) {
-            try {
-                this.refreshDataConnection();
-
-                // pull ALL player data from the database
-                statement = this.databaseConnection.createStatement();
-                results = statement.executeQuery("SELECT * FROM griefprevention_playerdata;");
-
-                // make a list of changes to be made
-                HashMap<String, UUID> changes = new HashMap<String, UUID>();
-
-                ArrayList<String> namesToConvert = new ArrayList<String>();
-                while (results.next()) {
-                    // get the id
-                    String playerName = results.getString("name");
-
-                    // add to list of names to convert to UUID
-                    namesToConvert.add(playerName);
-                }
-
-                // reset results cursor
-                results.beforeFirst();
-
-                // for each result
-                while (results.next()) {
-                    // get the id
-                    String playerName = results.getString("name");
-
-                    // try to convert player name to UUID
-                    try {
-                        Optional<User> user = Sponge.getGame().getServiceManager().provide(UserStorageService.class).get().get(playerName);
-
-                        // if successful, update the playerdata row by replacing
-                        // the player's name with the player's UUID
-                        if (user.isPresent()) {
-                            changes.put(playerName, user.get().getUniqueId());
-                        }
-                    }
-                    // otherwise leave it as-is. no harm done - it won't be
-                    // requested by name, and this update only happens once.
-                    catch (Exception ex) {
-                    }
-                }
-
-                // refresh data connection in case data migration took a long time
-                this.refreshDataConnection();
-
-                for (String name : changes.keySet()) {
-                    try {
-                        statement = this.databaseConnection.createStatement();
-                        statement.execute(
-                                "UPDATE griefprevention_playerdata SET name = '" + changes.get(name).toString() + "' WHERE name = '" + name + "';");
-                    } catch (SQLException e) {
-                        GriefPrevention.addLogEntry("Unable to convert player data for " + name + ".  Skipping.");
-                        GriefPrevention.addLogEntry(e.getMessage());
-                    }
-                }
-            } catch (SQLException e) {
-                GriefPrevention.addLogEntry("Unable to convert player data.  Details:");
-                GriefPrevention.addLogEntry(e.getMessage());
-                e.printStackTrace();
-            }
+    // copies existing claim files into the database the first time a world is loaded, the files are left untouched
+    private List<ParsedClaim> importClaimFiles(Path claimDataPath, WorldProperties worldProperties) throws Exception {
+        final File[] files = claimDataPath.toFile().listFiles();
+        if (files == null || files.length == 0) {
+            return new ArrayList<>();
         }
 
-        // load claims data into memory
-        results = statement.executeQuery("SELECT * FROM griefprevention_claimdata;");
-
-        ArrayList<Claim> claimsToRemove = new ArrayList<Claim>();
-        ArrayList<Claim> subdivisionsToLoad = new ArrayList<Claim>();
-        List<World> validWorlds = (List<World>) Sponge.getGame().getServer().getWorlds();
+        final List<Callable<ParsedClaim>> tasks = new ArrayList<>(files.length);
+        for (File file : files) {
+            if (!file.isFile() || file.getName().endsWith(ClaimStorageData.TEMP_FILE_SUFFIX)) {
+                continue;
+            }
 
-        while (results.next()) {
+            final UUID claimId;
             try {
-                // problematic claims will be removed from secondary storage,
-                // and never added to in-memory data store
-                boolean removeClaim = false;
-
-                long parentId = results.getLong("parentid");
-                long claimID = results.getLong("id");
+                claimId = UUID.fromString(file.getName());
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
 
-                Location<World> lesserBoundaryCorner = null;
-                Location<World> greaterBoundaryCorner = null;
-                String lesserCornerString = "(location not available)";
+            final Path claimPath = file.toPath();
+            tasks.add(() -> {
                 try {
-                    lesserCornerString = results.getString("lessercorner");
-                    Vector3i lesserPos = BlockUtils.positionFromString(lesserCornerString);
-                    // lesserBoundaryCorner = positionFromString(lesserCornerString);
-
-                    String greaterCornerString = results.getString("greatercorner");
-                    //greaterBoundaryCorner = positionFromString(greaterCornerString);
+                    CommentedConfigurationNode root = HoconConfigurationLoader.builder().setPath(claimPath).build()
+                            .load(ClaimStorageData.getConfigurationOptions());
+                    ClaimStorageData claimStorage = new DatabaseClaimStorageData(this, claimId, claimPath, root);
+                    claimStorage.save();
+                    return parseClaim(claimPath, claimId, claimStorage);
                 } catch (Exception e) {
-                    if (e.getMessage().contains("World not found")) {
-                        removeClaim = true;
-                        GriefPrevention.addLogEntry("Removing a claim in a world which does not exist: " + lesserCornerString);
-                        continue;
-                    } else {
-                        throw e;
-                    }
-                }
-
-                String ownerName = results.getString("owner");
-                Optional<User> owner = Optional.empty();
-                if (ownerName.isEmpty() || ownerName.startsWith("--")) {
-                    owner = Optional.empty(); // administrative land claim or subdivision
-                } else if (this.getSchemaVersion() < 1) {
-                    try {
-                        owner = Sponge.getGame().getServiceManager().provide(UserStorageService.class).get().get(ownerName);
-                    } catch (Exception ex) {
-                        GriefPrevention.addLogEntry("This owner name did not convert to a UUID: " + ownerName + ".");
-                        GriefPrevention.addLogEntry("  Converted land claim to administrative @ " + lesserBoundaryCorner.toString());
-                    }
-                }
-
-                String managersString = results.getString("managers");
-                List<String> managerNames = Arrays.asList(managersString.split(";"));
-                managerNames = this.convertNameListToUUIDList(managerNames);
-
-                Claim claim = new Claim(lesserBoundaryCorner, greaterBoundaryCorner, Claim.Type.BASIC);
-                claim.ownerID = owner.get().getUniqueId();
-
-                if (removeClaim) {
-                    claimsToRemove.add(claim);
-                } else if (parentId == -1) {
-                    // top level claim
-                    this.addClaim(claim, false);
-                } else {
-                    // subdivision
-                    subdivisionsToLoad.add(claim);
+                    return new ParsedClaim(claimPath, claimId, null, null, null, e);
                 }
-            } catch (SQLException e) {
-                GriefPrevention.addLogEntry("Unable to load a claim.  Details: " + e.getMessage() + " ... " + results.toString());
-                e.printStackTrace();
-            }
+            });
         }
 
-        // add subdivisions to their parent claims
-        for (Claim childClaim : subdivisionsToLoad) {
-            // find top level claim parent
-            Claim topLevelClaim = this.getClaimAt(childClaim.getLesserBoundaryCorner(), true, null);
-
-            if (topLevelClaim == null) {
-                claimsToRemove.add(childClaim);
-                GriefPrevention.addLogEntry("Removing orphaned claim subdivision: " + childClaim.getLesserBoundaryCorner().toString());
-                continue;
-            }
+        final List<ParsedClaim> parsedClaims = this.parseClaims(tasks);
+        GriefPrevention.instance.getLogger().info("[" + worldProperties.getWorldName() + "] Importing " + parsedClaims.size() + " claim files into the database.");
+        return parsedClaims;
+    }
 
-            // add this claim to the list of children of the current top level
-            // claim
-            childClaim.parent = topLevelClaim;
-            topLevelClaim.children.add(childClaim);
+    // copies a binary claim log into the database, the log is kept as a backup
+    private List<ParsedClaim> importClaimLog(Path logPath, Path claimDataPath, WorldProperties worldProperties) throws Exception {
+        final ClaimLogStorage log = new ClaimLogStorage(logPath);
+        final Map<UUID, CommentedConfigurationNode> claims;
+        try {
+            claims = log.open();
+        } finally {
+            log.close();
         }
 
-        for (int i = 0; i < claimsToRemove.size(); i++) {
-            this.deleteClaimFromSecondaryStorage(claimsToRemove.get(i));
+        final List<Callable<ParsedClaim>> tasks = new ArrayList<>(claims.size());
+        for (Map.Entry<UUID, CommentedConfigurationNode> entry : claims.entrySet()) {
+            final UUID claimId = entry.getKey();
+            final CommentedConfigurationNode root = entry.getValue();
+            final Path claimPath = claimDataPath.resolve(claimId.toString());
+            tasks.add(() -> {
+                ClaimStorageData claimStorage = new DatabaseClaimStorageData(this, claimId, claimPath, root);
+                claimStorage.save();
+                return parseClaim(claimPath, claimId, claimStorage);
+            });
         }
 
-        if (this.getSchemaVersion() <= 2) {
-            this.refreshDataConnection();
-            statement = this.databaseConnection.createStatement();
-            statement.execute("DELETE FROM griefprevention_claimdata WHERE id='-1';");
+        final List<ParsedClaim> parsedClaims = this.parseClaims(tasks);
+        // everything must be in the database before the log goes away
+        ClaimStorageQueue.flushAndWait();
+        Files.move(logPath, getBackupPath(logPath));
+        GriefPrevention.instance.getLogger().info("[" + worldProperties.getWorldName() + "] Imported " + parsedClaims.size() + " claims from " + logPath + " into the database.");
+        return parsedClaims;
+    }
+
+    @Override
+    void readPlayerData(Path worldDataPath, WorldProperties worldProperties) throws Exception {
+        final String worldKey = getPlayerWorldKey(worldProperties);
+        Map<UUID, int[]> rows = this.playerRows.get(worldKey);
+        if (rows == null) {
+            rows = ClaimStorageQueue.submitAndWait(() -> this.loadPlayerData(worldKey));
+            this.playerRows.put(worldKey, rows);
         }
 
-        super.initialize();
+        // existing player files are carried over as their players are loaded
+        super.readPlayerData(worldDataPath, worldProperties);
     }
 
-    // see datastore.cs. this will ALWAYS be a top level claim
     @Override
-    public void writeClaimToStorage(Claim claim) {
-        try {
-            this.refreshDataConnection();
-
-            // wipe out any existing data about this claim
-            this.deleteClaimFromSecondaryStorage(claim);
+    public PlayerStorageData createPlayerStorageData(WorldProperties worldProperties, UUID playerUniqueId, Path playerFilePath) {
+        final String worldKey = getPlayerWorldKey(worldProperties);
+        final Map<UUID, int[]> rows = this.playerRows.computeIfAbsent(worldKey, k -> Maps.newConcurrentMap());
+        final int[] row = rows.get(playerUniqueId);
+        if (row != null) {
+            return new DatabasePlayerStorageData(this, worldKey, playerUniqueId, row[0], row[1], row[2] != 0);
+        }
 
-            // write claim data to the database
-            this.writeClaimData(claim);
-        } catch (SQLException e) {
-            //GriefPrevention.AddLogEntry("Unable to save data for claim at " + this.locationToString(claim.lesserBoundaryCorner) + ".  Details:");
-            GriefPrevention.addLogEntry(e.getMessage());
+        if (playerFilePath.toFile().isFile()) {
+            // not in the database yet, carry over the player's file
+            PlayerStorageData fileStorage = new PlayerStorageData(playerFilePath);
+            PlayerStorageData playerStorage = new DatabasePlayerStorageData(this, worldKey, playerUniqueId,
+                    fileStorage.getConfig().getAccruedClaimBlocks(), fileStorage.getConfig().getBonusClaimBlocks(), fileStorage.getConfig().getCuboidMode());
+            playerStorage.getConfig().setRequiresSave(true);
+            playerStorage.save();
+            return playerStorage;
         }
+        return new DatabasePlayerStorageData(this, worldKey, playerUniqueId, 0, 0, false);
     }
 
-    // actually writes claim data to the database
-    private void writeClaimData(Claim claim) throws SQLException {
-        /*String lesserCornerString = this.locationToString(claim.getLesserBoundaryCorner());
-        String greaterCornerString = this.locationToString(claim.getGreaterBoundaryCorner());
-        String owner = "";
-        if (claim.ownerID != null)
-            owner = claim.ownerID.toString();
-
-        ArrayList<String> builders = new ArrayList<String>();
-        ArrayList<String> containers = new ArrayList<String>();
-        ArrayList<String> accessors = new ArrayList<String>();
-        ArrayList<String> managers = new ArrayList<String>();
+    public void savePlayerData(String worldKey, UUID playerUniqueId, int accruedClaimBlocks, int bonusClaimBlocks, boolean cuboidMode) {
+        final int[] row = new int[] {accruedClaimBlocks, bonusClaimBlocks, cuboidMode ? 1 : 0};
+        this.playerRows.computeIfAbsent(worldKey, k -> Maps.newConcurrentMap()).put(playerUniqueId, row);
+        ClaimStorageQueue.execute(() -> {
+            try (Connection connection = this.dataSource.getConnection()) {
+                this.writePlayerData(connection, worldKey, playerUniqueId, row);
+            } catch (SQLException e) {
+                GriefPrevention.addLogEntry("Unable to save player data for " + playerUniqueId + ".  Details:");
+                GriefPrevention.addLogEntry(e.getMessage());
+            }
+        });
+    }
 
-        claim.getPermissions(builders, containers, accessors, managers);
+    @Override
+    void deleteUnloadableClaim(ParsedClaim parsedClaim, WorldProperties worldProperties) {
+        ClaimStorageQueue.execute(() -> {
+            try {
+                this.deleteClaimData(parsedClaim.claimId);
+            } catch (SQLException e) {
+                GriefPrevention.addLogEntry("Unable to delete claim " + parsedClaim.claimId + " from the database: " + e.getMessage());
+            }
+        });
+    }
 
-        String buildersString = "";
-        for (int i = 0; i < builders.size(); i++) {
-            buildersString += builders.get(i) + ";";
-        }
+    @Override
+    ClaimStorageData createClaimStorage(Claim claim, Path claimFilePath) {
+        return new DatabaseClaimStorageData(this, claim, claimFilePath);
+    }
 
-        String containersString = "";
-        for (int i = 0; i < containers.size(); i++) {
-            containersString += containers.get(i) + ";";
+    @Override
+    public void unloadWorldData(WorldProperties worldProperties) {
+        super.unloadWorldData(worldProperties);
+        if (!DataStore.USE_GLOBAL_PLAYER_STORAGE) {
+            this.playerRows.remove(getPlayerWorldKey(worldProperties));
         }
+    }
 
-        String accessorsString = "";
-        for (int i = 0; i < accessors.size(); i++) {
-            accessorsString += accessors.get(i) + ";";
+    private void createTables() throws SQLException {
+        try (Connection connection = this.dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            if (!tableExists(connection, CLAIM_TABLE)) {
+                statement.execute("CREATE TABLE " + CLAIM_TABLE + " (id CHAR(36) NOT NULL, world_id CHAR(36) NOT NULL, parent_id CHAR(36), "
+                        + "owner_id CHAR(36), claim_type VARCHAR(16) NOT NULL, cuboid BOOLEAN NOT NULL, inherit_parent BOOLEAN NOT NULL, "
+                        + "lesser_x INT NOT NULL, lesser_y INT NOT NULL, lesser_z INT NOT NULL, greater_x INT NOT NULL, greater_y INT NOT NULL, "
+                        + "greater_z INT NOT NULL, date_created VARCHAR(40), date_last_active VARCHAR(40), name TEXT, greeting TEXT, farewell TEXT, "
+                        + "PRIMARY KEY (id))");
+                statement.execute("CREATE INDEX " + CLAIM_TABLE + "_world ON " + CLAIM_TABLE + " (world_id)");
+                statement.execute("CREATE INDEX " + CLAIM_TABLE + "_parent ON " + CLAIM_TABLE + " (parent_id)");
+            }
+            if (!tableExists(connection, TRUST_TABLE)) {
+                statement.execute("CREATE TABLE " + TRUST_TABLE + " (claim_id CHAR(36) NOT NULL, trust_type VARCHAR(16) NOT NULL, "
+                        + "subject_id CHAR(36) NOT NULL, PRIMARY KEY (claim_id, trust_type, subject_id))");
+            }
+            if (!tableExists(connection, PLAYER_TABLE)) {
+                statement.execute("CREATE TABLE " + PLAYER_TABLE + " (world_id VARCHAR(36) NOT NULL, player_id CHAR(36) NOT NULL, "
+                        + "accrued_blocks INT NOT NULL, bonus_blocks INT NOT NULL, cuboid_mode BOOLEAN NOT NULL, PRIMARY KEY (world_id, player_id))");
+            }
         }
+    }
 
-        String managersString = "";
-        for (int i = 0; i < managers.size(); i++) {
-            managersString += managers.get(i) + ";";
-        }
+    // writer thread only
+    private Map<UUID, CommentedConfigurationNode> loadClaimData(UUID worldUniqueId) throws SQLException, ObjectMappingException {
+        final Map<UUID, CommentedConfigurationNode> claims = new LinkedHashMap<>();
+        final Map<UUID, CommentedConfigurationNode> claimNodes = Maps.newHashMap();
+        final Map<UUID, UUID> subdivisionParents = new LinkedHashMap<>();
+        final Map<UUID, CommentedConfigurationNode> subdivisionNodes = Maps.newHashMap();
+        try (Connection connection = this.dataSource.getConnection()) {
+            try (PreparedStatement statement = connection.prepareStatement(SELECT_CLAIMS)) {
+                statement.setString(1, worldUniqueId.toString());
+                try (ResultSet results = statement.executeQuery()) {
+                    while (results.next()) {
+                        final UUID claimId = UUID.fromString(results.getString("id"));
+                        final String parentId = results.getString("parent_id");
+                        final CommentedConfigurationNode node;
+                        if (parentId == null) {
+                            CommentedConfigurationNode root = SimpleCommentedConfigurationNode.root(ClaimStorageData.getConfigurationOptions());
+                            node = root.getNode(GriefPrevention.MOD_ID);
+                            node.getNode(ClaimStorageData.MAIN_WORLD_UUID).setValue(worldUniqueId.toString());
+                            final String ownerId = results.getString("owner_id");
+                            if (ownerId != null) {
+                                node.getNode(ClaimStorageData.MAIN_OWNER_UUID).setValue(ownerId);
+                            }
+                            claims.put(claimId, root);
+                            claimNodes.put(claimId, node);
+                        } else {
+                            node = SimpleCommentedConfigurationNode.root(ClaimStorageData.getConfigurationOptions());
+                            node.getNode(ClaimStorageData.SUB_INHERIT_PARENT).setValue(results.getBoolean("inherit_parent"));
+                            subdivisionParents.put(claimId, UUID.fromString(parentId));
+                            subdivisionNodes.put(claimId, node);
+                        }
+                        readClaimRow(results, node);
+                    }
+                }
+            }
 
-        long parentId;
-        if (claim.parent == null) {
-            parentId = -1;
-        } else {
-            parentId = claim.parent.id;
+            try (PreparedStatement statement = connection.prepareStatement(SELECT_TRUSTS)) {
+                statement.setString(1, worldUniqueId.toString());
+                try (ResultSet results = statement.executeQuery()) {
+                    while (results.next()) {
+                        final UUID claimId = UUID.fromString(results.getString("claim_id"));
+                        CommentedConfigurationNode node = claimNodes.get(claimId);
+                        if (node == null) {
+                            node = subdivisionNodes.get(claimId);
+                        }
+                        final String trustKey = getTrustKey(results.getString("trust_type"));
+                        if (node != null && trustKey != null) {
+                            node.getNode(trustKey).getAppendedNode().setValue(results.getString("subject_id"));
+                        }
+                    }
+                }
+            }
         }
 
-        try {
-            this.refreshDataConnection();
-
-            Statement statement = databaseConnection.createStatement();
-            statement.execute(
-                    "INSERT INTO griefprevention_claimdata (id, owner, lessercorner, greatercorner, builders, containers, accessors, managers,
-                    parentid) VALUES("
-                            +
-                            claim.id + ", '" +
-                            owner + "', '" +
-                            lesserCornerString + "', '" +
-                            greaterCornerString + "', '" +
-                            buildersString + "', '" +
-                            containersString + "', '" +
-                            accessorsString + "', '" +
-                            managersString + "', " +
-                            parentId +
-                            ");");
-        } catch (SQLException e) {
-            GriefPrevention.AddLogEntry("Unable to save data for claim at " + this.locationToString(claim.lesserBoundaryCorner) + ".  Details:");
-            GriefPrevention.AddLogEntry(e.getMessage());
-        }*/
-    }
-
-    // deletes a claim from the database
-    @Override
-    void deleteClaimFromSecondaryStorage(Claim claim) {
-        try {
-            this.refreshDataConnection();
-
-            Statement statement = this.databaseConnection.createStatement();
-            statement.execute("DELETE FROM griefprevention_claimdata WHERE id='" + claim.id + "';");
-        } catch (SQLException e) {
-            GriefPrevention.addLogEntry("Unable to delete data for claim " + claim.id + ".  Details:");
-            GriefPrevention.addLogEntry(e.getMessage());
-            e.printStackTrace();
+        for (Map.Entry<UUID, UUID> entry : subdivisionParents.entrySet()) {
+            final CommentedConfigurationNode parentNode = claimNodes.get(entry.getValue());
+            if (parentNode == null) {
+                GriefPrevention.addLogEntry("Skipping orphaned claim subdivision " + entry.getKey() + ".");
+                continue;
+            }
+            parentNode.getNode("subdivisions", entry.getKey().toString()).setValue(subdivisionNodes.get(entry.getKey()));
         }
+        return claims;
     }
 
-    /*@Override
-    PlayerData getPlayerDataFromStorage(UUID playerID) {
-        PlayerData playerData = new PlayerData();
-        playerData.playerID = playerID;
-
-        try {
-            this.refreshDataConnection();
+    private static void readClaimRow(ResultSet results, CommentedConfigurationNode node) throws SQLException, ObjectMappingException {
+        node.getNode(ClaimStorageData.MAIN_CLAIM_TYPE).setValue(results.getString("claim_type"));
+        node.getNode(ClaimStorageData.MAIN_CLAIM_CUBOID).setValue(results.getBoolean("cuboid"));
+        node.getNode(ClaimStorageData.MAIN_LESSER_BOUNDARY_CORNER).setValue(
+                positionToString(results.getInt("lesser_x"), results.getInt("lesser_y"), results.getInt("lesser_z")));
+        node.getNode(ClaimStorageData.MAIN_GREATER_BOUNDARY_CORNER).setValue(
+                positionToString(results.getInt("greater_x"), results.getInt("greater_y"), results.getInt("greater_z")));
+        node.getNode(ClaimStorageData.MAIN_CLAIM_DATE_CREATED).setValue(results.getString("date_created"));
+        node.getNode(ClaimStorageData.MAIN_CLAIM_DATE_LAST_ACTIVE).setValue(results.getString("date_last_active"));
+        readText(results.getString("name"), node.getNode(ClaimStorageData.MAIN_CLAIM_NAME));
+        readText(results.getString("greeting"), node.getNode(ClaimStorageData.MAIN_CLAIM_GREETING));
+        readText(results.getString("farewell"), node.getNode(ClaimStorageData.MAIN_CLAIM_FAREWELL));
+    }
 
-            Statement statement = this.databaseConnection.createStatement();
-            ResultSet results = statement.executeQuery("SELECT * FROM griefprevention_playerdata WHERE name='" + playerID.toString() + "';");
+    // same format as BlockUtils#positionToString
+    private static String positionToString(int x, int y, int z) {
+        return x + ";" + y + ";" + z;
+    }
 
-            // if data for this player exists, use it
-            if (results.next()) {
-                playerData.setLastLogin(results.getTimestamp("lastlogin"));
-                playerData.setAccruedClaimBlocks(results.getInt("accruedblocks"));
-                playerData.setBonusClaimBlocks(results.getInt("bonusblocks"));
-            }
-        } catch (SQLException e) {
-            StringWriter errors = new StringWriter();
-            e.printStackTrace(new PrintWriter(errors));
-            GriefPrevention.AddLogEntry(playerID + " " + errors.toString(), CustomLogEntryTypes.Exception);
+    private static void readText(@Nullable String json, CommentedConfigurationNode node) throws ObjectMappingException {
+        if (json != null && !json.isEmpty()) {
+            node.setValue(TypeToken.of(Text.class), TextSerializers.JSON.deserialize(json));
         }
+    }
 
-        return playerData;
-    }*/
+    // writer thread only, replaces the claim, its subdivisions and all their trusts in one transaction
+    public void writeClaimData(UUID claimId, ClaimDataConfig claimData) throws SQLException {
+        try (Connection connection = this.dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                this.deleteChildren(connection, claimId);
+                try (PreparedStatement update = connection.prepareStatement(UPDATE_CLAIM)) {
+                    setClaimRow(update, claimId, null, claimData);
+                    if (update.executeUpdate() == 0) {
+                        try (PreparedStatement insert = connection.prepareStatement(INSERT_CLAIM)) {
+                            setClaimRow(insert, claimId, null, claimData);
+                            insert.executeUpdate();
+                        }
+                    }
+                }
 
-    // saves changes to player data. MUST be called after you're done making
-    // changes, otherwise a reload will lose them
-    @Override
-    public void overrideSavePlayerData(UUID playerID, PlayerData playerData) {
-        // never save data for the "administrative" account. an empty string for
-        // player name indicates administrative account
-        if (playerID == null) {
-            return;
+                try (PreparedStatement insertClaim = connection.prepareStatement(INSERT_CLAIM);
+                        PreparedStatement insertTrust = connection.prepareStatement(INSERT_TRUST)) {
+                    addTrustRows(insertTrust, claimId, claimData);
+                    for (Map.Entry<UUID, SubDivisionDataConfig> entry : claimData.getSubdivisions().entrySet()) {
+                        setClaimRow(insertClaim, entry.getKey(), claimId, entry.getValue());
+                        // subdivisions inherit the world of their parent
+                        insertClaim.setString(1, String.valueOf(claimData.getWorldUniqueId()));
+                        insertClaim.addBatch();
+                        addTrustRows(insertTrust, entry.getKey(), entry.getValue());
+                    }
+                    insertClaim.executeBatch();
+                    insertTrust.executeBatch();
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
         }
-
-        //this.savePlayerData(playerID.toString(), playerData);
     }
 
-   /* private void savePlayerData(String playerID, PlayerData playerData) {
-        try {
-            this.refreshDataConnection();
-
-            SimpleDateFormat sqlFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
-            String dateString = sqlFormat.format(playerData.getLastLogin());
-
-            Statement statement = databaseConnection.createStatement();
-            statement.execute("DELETE FROM griefprevention_playerdata WHERE name='" + playerID.toString() + "';");
-            statement = databaseConnection.createStatement();
-            statement.execute("INSERT INTO griefprevention_playerdata (name, lastlogin, accruedblocks, bonusblocks) VALUES ('" + playerID.toString()
-                    + "', '" + dateString + "', " + playerData.getAccruedClaimBlocks() + ", " + playerData.getBonusClaimBlocks() + ");");
-        } catch (SQLException e) {
-            StringWriter errors = new StringWriter();
-            e.printStackTrace(new PrintWriter(errors));
-            GriefPrevention.AddLogEntry(playerID + " " + errors.toString(), CustomLogEntryTypes.Exception);
-        }
-    }*/
-
-    void close() {
-        if (this.databaseConnection != null) {
+    // writer thread only
+    public void deleteClaimData(UUID claimId) throws SQLException {
+        try (Connection connection = this.dataSource.getConnection()) {
+            connection.setAutoCommit(false);
             try {
-                if (!this.databaseConnection.isClosed()) {
-                    this.databaseConnection.close();
+                this.deleteChildren(connection, claimId);
+                try (PreparedStatement statement = connection.prepareStatement(DELETE_CLAIM)) {
+                    statement.setString(1, claimId.toString());
+                    statement.executeUpdate();
                 }
+                connection.commit();
             } catch (SQLException e) {
+                connection.rollback();
+                throw e;
             }
-            ;
         }
-
-        this.databaseConnection = null;
     }
 
-    private void refreshDataConnection() throws SQLException {
-        if (this.databaseConnection == null || !this.databaseConnection.isValid(3)) {
-            // set username/pass properties
-            Properties connectionProps = new Properties();
-            connectionProps.put("user", this.userName);
-            connectionProps.put("password", this.password);
-            connectionProps.put("autoReconnect", "true");
-            connectionProps.put("maxReconnects", String.valueOf(Integer.MAX_VALUE));
-
-            // establish connection
-            this.databaseConnection = DriverManager.getConnection(this.databaseUrl, connectionProps);
+    private void deleteChildren(Connection connection, UUID claimId) throws SQLException {
+        for (String sql : new String[] {DELETE_SUBDIVISION_TRUSTS, DELETE_SUBDIVISIONS, DELETE_TRUSTS}) {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setString(1, claimId.toString());
+                statement.executeUpdate();
+            }
         }
     }
 
-    @Override
-    protected int getSchemaVersionFromStorage() {
+    private static void setClaimRow(PreparedStatement statement, UUID claimId, @Nullable UUID parentId, IClaimData claimData) throws SQLException {
+        Vector3i lesser;
+        Vector3i greater;
         try {
-            this.refreshDataConnection();
+            lesser = BlockUtils.positionFromString(claimData.getLesserBoundaryCorner());
+            greater = BlockUtils.positionFromString(claimData.getGreaterBoundaryCorner());
+        } catch (Exception e) {
+            throw new SQLException("Claim " + claimId + " has invalid boundary corners.", e);
+        }
 
-            Statement statement = this.databaseConnection.createStatement();
-            ResultSet results = statement.executeQuery("SELECT * FROM griefprevention_schemaversion;");
+        final UUID ownerId = parentId == null ? claimData.getOwnerUniqueId() : null;
+        statement.setString(1, String.valueOf(claimData.getWorldUniqueId()));
+        statement.setString(2, parentId == null ? null : parentId.toString());
+        statement.setString(3, ownerId == null ? null : ownerId.toString());
+        statement.setString(4, claimData.getClaimType().name());
+        statement.setBoolean(5, claimData.isCuboid());
+        statement.setBoolean(6, claimData.inheritParent());
+        statement.setInt(7, lesser.getX());
+        statement.setInt(8, lesser.getY());
+        statement.setInt(9, lesser.getZ());
+        statement.setInt(10, greater.getX());
+        statement.setInt(11, greater.getY());
+        statement.setInt(12, greater.getZ());
+        statement.setString(13, claimData.getDateCreated());
+        statement.setString(14, claimData.getDateLastActive());
+        statement.setString(15, writeText(claimData.getClaimName()));
+        statement.setString(16, writeText(claimData.getGreetingMessage()));
+        statement.setString(17, writeText(claimData.getFarewellMessage()));
+        statement.setString(18, claimId.toString());
+    }
 
-            // if there's nothing yet, assume 0 and add it
-            if (!results.next()) {
-                this.setSchemaVersion(0);
-                return 0;
-            }
+    @Nullable
+    private static String writeText(@Nullable Text text) {
+        return text == null ? null : TextSerializers.JSON.serialize(text);
+    }
 
-            // otherwise return the value that's in the table
-            else {
-                return results.getInt("version");
-            }
+    private static void addTrustRows(PreparedStatement statement, UUID claimId, IClaimData claimData) throws SQLException {
+        addTrustRows(statement, claimId, TRUST_ACCESSOR, claimData.getAccessors());
+        addTrustRows(statement, claimId, TRUST_BUILDER, claimData.getBuilders());
+        addTrustRows(statement, claimId, TRUST_CONTAINER, claimData.getContainers());
+        addTrustRows(statement, claimId, TRUST_MANAGER, claimData.getManagers());
+    }
 
-        } catch (SQLException e) {
-            GriefPrevention.addLogEntry("Unable to retrieve schema version from database.  Details:");
-            GriefPrevention.addLogEntry(e.getMessage());
-            e.printStackTrace();
-            return 0;
+    private static void addTrustRows(PreparedStatement statement, UUID claimId, String trustType, List<UUID> subjects) throws SQLException {
+        // trust lists may name a subject twice, which would break the primary key and roll back the whole claim
+        for (UUID subject : new LinkedHashSet<>(subjects)) {
+            statement.setString(1, claimId.toString());
+            statement.setString(2, trustType);
+            statement.setString(3, subject.toString());
+            statement.addBatch();
         }
     }
 
-    @Override
-    protected void updateSchemaVersionInStorage(int versionToSet) {
-        try {
-            this.refreshDataConnection();
-
-            Statement statement = databaseConnection.createStatement();
-            statement.execute("DELETE FROM griefprevention_schemaversion;");
-            statement.execute("INSERT INTO griefprevention_schemaversion VALUES (" + versionToSet + ");");
-        } catch (SQLException e) {
-            GriefPrevention.addLogEntry("Unable to set next schema version to " + versionToSet + ".  Details:");
-            GriefPrevention.addLogEntry(e.getMessage());
+    @Nullable
+    private static String getTrustKey(String trustType) {
+        switch (trustType) {
+            case TRUST_ACCESSOR:
+                return ClaimStorageData.MAIN_ACCESSORS;
+            case TRUST_BUILDER:
+                return ClaimStorageData.MAIN_BUILDERS;
+            case TRUST_CONTAINER:
+                return ClaimStorageData.MAIN_CONTAINERS;
+            case TRUST_MANAGER:
+                return ClaimStorageData.MAIN_MANAGERS;
+            default:
+                return null;
         }
     }
 
-    @Override
-    PlayerData getPlayerDataFromStorage(UUID playerID) {
-        return null;
+    // writer thread only
+    private Map<UUID, int[]> loadPlayerData(String worldKey) throws SQLException {
+        final Map<UUID, int[]> rows = Maps.newConcurrentMap();
+        try (Connection connection = this.dataSource.getConnection();
+                PreparedStatement statement = connection.prepareStatement(SELECT_PLAYERS)) {
+            statement.setString(1, worldKey);
+            try (ResultSet results = statement.executeQuery()) {
+                while (results.next()) {
+                    rows.put(UUID.fromString(results.getString("player_id")), new int[] {results.getInt("accrued_blocks"),
+                            results.getInt("bonus_blocks"), results.getBoolean("cuboid_mode") ? 1 : 0});
+                }
+            }
+        }
+        return rows;
     }
 
-    @Override
-    public PlayerData getOrCreatePlayerData(WorldProperties worldProperties, UUID playerUniqueId) {
-        return null;
+    private void writePlayerData(Connection connection, String worldKey, UUID playerUniqueId, int[] row) throws SQLException {
+        try (PreparedStatement update = connection.prepareStatement(UPDATE_PLAYER)) {
+            setPlayerRow(update, worldKey, playerUniqueId, row);
+            if (update.executeUpdate() == 0) {
+                try (PreparedStatement insert = connection.prepareStatement(INSERT_PLAYER)) {
+                    setPlayerRow(insert, worldKey, playerUniqueId, row);
+                    insert.executeUpdate();
+                }
+            }
+        }
     }
 
-    @Override
-    public void loadWorldData(World world) {
+    private static void setPlayerRow(PreparedStatement statement, String worldKey, UUID playerUniqueId, int[] row) throws SQLException {
+        statement.setInt(1, row[0]);
+        statement.setInt(2, row[1]);
+        statement.setBoolean(3, row[2] != 0);
+        statement.setString(4, worldKey);
+        statement.setString(5, playerUniqueId.toString());
     }
 
-    @Override
-    public void unloadWorldData(WorldProperties worldProperties) {
+    private static String getPlayerWorldKey(WorldProperties worldProperties) {
+        return DataStore.USE_GLOBAL_PLAYER_STORAGE ? GLOBAL_PLAYER_WORLD : worldProperties.getUniqueId().toString();
     }
 
-    @Override
-    void loadClaimTemplates() {
+    private static boolean tableExists(Connection connection, String table) throws SQLException {
+        final DatabaseMetaData metaData = connection.getMetaData();
+        // some databases store unquoted names in upper case
+        for (String name : new String[] {table, table.toUpperCase()}) {
+            try (ResultSet results = metaData.getTables(null, null, name, null)) {
+                if (results.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
+    // the SQL service reads credentials from the url
+    private static String createConnectionUrl(String url, String userName, String password) {
+        final int hostIndex = url.indexOf("://");
+        if (userName.isEmpty() || hostIndex < 0 || url.indexOf('@', hostIndex) >= 0) {
+            return url;
+        }
+
+        try {
+            String credentials = URLEncoder.encode(userName, "UTF-8");
+            if (!password.isEmpty()) {
+                credentials += ":" + URLEncoder.encode(password, "UTF-8");
+            }
+            return url.substring(0, hostIndex + 3) + credentials + "@" + url.substring(hostIndex + 3);
+        } catch (UnsupportedEncodingException e) {
+            return url;
+        }
+    }
 }
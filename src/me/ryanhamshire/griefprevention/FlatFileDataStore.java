@@ -27,18 +27,25 @@
 
 import com.flowpowered.math.vector.Vector3i;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import me.ryanhamshire.griefprevention.claim.Claim;
+import me.ryanhamshire.griefprevention.claim.ClaimContextCalculator;
+import me.ryanhamshire.griefprevention.claim.ClaimRegionCache;
 import me.ryanhamshire.griefprevention.claim.ClaimWorldManager;
+import me.ryanhamshire.griefprevention.configuration.ClaimLogStorage;
 import me.ryanhamshire.griefprevention.configuration.ClaimStorageData;
+import me.ryanhamshire.griefprevention.configuration.ClaimStorageQueue;
 import me.ryanhamshire.griefprevention.configuration.ClaimTemplateStorage;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig.Type;
 import me.ryanhamshire.griefprevention.configuration.SubDivisionDataConfig;
+import me.ryanhamshire.griefprevention.configuration.category.StorageCategory;
 import me.ryanhamshire.griefprevention.configuration.types.DimensionConfig;
 import me.ryanhamshire.griefprevention.util.BlockUtils;
 import me.ryanhamshire.griefprevention.util.RedProtectMigrator;
 import org.apache.commons.io.FileUtils;
 import org.spongepowered.api.Sponge;
+import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.scheduler.Task;
 import org.spongepowered.api.service.context.Context;
 import org.spongepowered.api.world.DimensionType;
@@ -55,11 +62,25 @@
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.annotation.Nullable;
 
 //manages data stored in the file system
 public class FlatFileDataStore extends DataStore {
@@ -72,6 +93,8 @@ public class FlatFileDataStore extends DataStore {
     public final static Path playerDataPath = Paths.get("GriefPreventionData", "PlayerData");
     public final static Path redProtectDataPath = Paths.get("config", "RedProtect", "data");
     public final static Map<UUID, Task> cleanupClaimTasks = Maps.newHashMap();
+    // records the claim storage format of each world so unsupported format switches are caught
+    final static String STORAGE_FORMAT_FILE_NAME = "_claimStorageFormat";
     private final Path rootConfigPath = Sponge.getGame().getSavesDirectory().resolve("config").resolve("GriefPrevention").resolve("worlds");
     public static Path rootWorldSavePath;
 
@@ -88,10 +111,54 @@ void initialize() throws Exception {
         }
 
         rootWorldSavePath = Sponge.getGame().getSavesDirectory().resolve(Sponge.getServer().getDefaultWorldName());
+        this.checkStorageFormats();
 
         super.initialize();
     }
 
+    // the value of claim-storage-format this store handles
+    String getStorageFormat() {
+        return "file";
+    }
+
+    // whether claims stored in the given format are converted when a world loads
+    boolean canConvertFrom(String storageFormat) {
+        return storageFormat.equals("binary");
+    }
+
+    // refuses to start if any world has claims in a format this store can't convert, they would be lost otherwise
+    private void checkStorageFormats() throws IOException {
+        if (!Files.isDirectory(this.rootConfigPath)) {
+            return;
+        }
+
+        final List<Path> worldDataPaths;
+        try (Stream<Path> paths = Files.walk(this.rootConfigPath, 4)) {
+            worldDataPaths = paths.filter(path -> path.getFileName().toString().equals(STORAGE_FORMAT_FILE_NAME)
+                    || path.getFileName().toString().equals(ClaimLogStorage.FILE_NAME))
+                    .map(Path::getParent).distinct().collect(Collectors.toList());
+        }
+
+        for (Path worldDataPath : worldDataPaths) {
+            final String storageFormat = readStorageFormat(worldDataPath);
+            if (storageFormat != null && !storageFormat.equals(this.getStorageFormat()) && !this.canConvertFrom(storageFormat)) {
+                throw new IllegalStateException("The claims in " + worldDataPath + " are stored in the '" + storageFormat
+                        + "' format which can't be converted to '" + this.getStorageFormat() + "'. Set claim-storage-format back to '"
+                        + storageFormat + "'.");
+            }
+        }
+    }
+
+    @Nullable
+    static String readStorageFormat(Path worldDataPath) throws IOException {
+        final Path formatPath = worldDataPath.resolve(STORAGE_FORMAT_FILE_NAME);
+        if (Files.exists(formatPath)) {
+            return new String(Files.readAllBytes(formatPath), StandardCharsets.UTF_8).trim();
+        }
+        // worlds last loaded before the format was recorded
+        return Files.exists(worldDataPath.resolve(ClaimLogStorage.FILE_NAME)) ? "binary" : null;
+    }
+
     @Override
     public void loadClaimTemplates() {
         try {
@@ -193,19 +260,27 @@ public void loadWorldData(World world) {
 
         // Load Claim Data
         try {
-            File[] files = newWorldDataPath.resolve("ClaimData").toFile().listFiles();
-            if (files != null && files.length > 0) {
-                this.loadClaimData(files, worldProperties);
-                GriefPrevention.instance.getLogger().info("[" + worldProperties.getWorldName() + "] " + files.length + " total claims loaded.");
+            final long startTime = System.nanoTime();
+            long parseTime = startTime;
+            long indexTime = startTime;
+            int claimCount = 0;
+            List<ParsedClaim> parsedClaims = this.readClaimData(newWorldDataPath, worldProperties);
+            Files.write(newWorldDataPath.resolve(STORAGE_FORMAT_FILE_NAME), this.getStorageFormat().getBytes(StandardCharsets.UTF_8));
+            if (!parsedClaims.isEmpty()) {
+                parseTime = System.nanoTime();
+                this.loadClaimData(parsedClaims, worldProperties);
+                indexTime = System.nanoTime();
+                claimCount = parsedClaims.size();
+                GriefPrevention.instance.getLogger().info("[" + worldProperties.getWorldName() + "] " + claimCount + " total claims loaded.");
             }
 
-            if (GriefPrevention.getGlobalConfig().getConfig().playerdata.useGlobalPlayerDataStorage) {
-                files = globalPlayerDataPath.toFile().listFiles();
-            } else {
-                files = newWorldDataPath.resolve("PlayerData").toFile().listFiles();
-            }
-            if (files != null && files.length > 0) {
-                this.loadPlayerData(worldProperties, files);
+            this.readPlayerData(newWorldDataPath, worldProperties);
+            final long linkTime = System.nanoTime();
+            if (claimCount > 0) {
+                GriefPrevention.instance.getLogger().info("[" + worldProperties.getWorldName() + "] Claim data loaded in "
+                        + TimeUnit.NANOSECONDS.toMillis(linkTime - startTime) + "ms (parse: " + TimeUnit.NANOSECONDS.toMillis(parseTime - startTime)
+                        + "ms, index: " + TimeUnit.NANOSECONDS.toMillis(indexTime - parseTime) + "ms, player link: "
+                        + TimeUnit.NANOSECONDS.toMillis(linkTime - indexTime) + "ms)");
             }
 
             // If a wilderness claim was not loaded, create a new one
@@ -222,6 +297,9 @@ public void loadWorldData(World world) {
 
     public void unloadWorldData(WorldProperties worldProperties) {
         ClaimWorldManager claimWorldManager = this.getClaimWorldManager(worldProperties);
+        // make sure pending claim changes reach disk before the claims are released
+        claimWorldManager.save();
+        ClaimStorageQueue.flushAndWait();
         for (Claim claim : claimWorldManager.getWorldClaims()) {
             claim.unload();
         }
@@ -238,79 +316,155 @@ public void unloadWorldData(WorldProperties worldProperties) {
         DataStore.worldConfigMap.remove(worldProperties.getUniqueId());
     }
 
-    void loadClaimData(File[] files, WorldProperties worldProperties) throws Exception {
-        for (int i = 0; i < files.length; i++) {
-            if (files[i].isFile()) // avoids folders
-            {
-                // the filename is the claim ID. try to parse it
-                UUID claimId;
-
-                try {
-                    claimId = UUID.fromString(files[i].getName());
-                } catch (Exception e) {
-                    GriefPrevention.instance.getLogger().error("Could not read claim file " + files[i].getAbsolutePath());
-                    continue;
-                }
-
-                try {
-                   this.loadClaim(files[i], worldProperties, claimId);
+    // publishes parsed claims to the world manager, must be called on the main thread
+    void loadClaimData(List<ParsedClaim> parsedClaims, WorldProperties worldProperties) {
+        for (ParsedClaim parsedClaim : parsedClaims) {
+            try {
+                if (parsedClaim.error != null) {
+                    throw parsedClaim.error;
                 }
+                this.loadClaim(parsedClaim, worldProperties);
+            }
 
-                // if there's any problem with the file's content, log an error message and skip it
-                catch (Exception e) {
-                    if (e.getMessage() != null && e.getMessage().contains("World not found")) {
-                        files[i].delete();
-                    } else {
-                        StringWriter errors = new StringWriter();
-                        e.printStackTrace(new PrintWriter(errors));
-                        GriefPrevention.addLogEntry(files[i].getName() + " " + errors.toString(), CustomLogEntryTypes.Exception);
-                    }
+            // if there's any problem with the file's content, log an error message and skip it
+            catch (Exception e) {
+                if (e.getMessage() != null && e.getMessage().contains("World not found")) {
+                    this.deleteUnloadableClaim(parsedClaim, worldProperties);
+                } else {
+                    StringWriter errors = new StringWriter();
+                    e.printStackTrace(new PrintWriter(errors));
+                    GriefPrevention.addLogEntry(parsedClaim.path.getFileName() + " " + errors.toString(), CustomLogEntryTypes.Exception);
                 }
             }
         }
     }
 
-    void loadPlayerData(WorldProperties worldProperties, File[] files) throws Exception {
+    // removes a claim that will never load from storage
+    void deleteUnloadableClaim(ParsedClaim parsedClaim, WorldProperties worldProperties) {
+        parsedClaim.path.toFile().delete();
+    }
+
+    // reads the claims of a world into detached storage
+    List<ParsedClaim> readClaimData(Path worldDataPath, WorldProperties worldProperties) throws Exception {
+        final Path claimDataPath = worldDataPath.resolve("ClaimData");
+        final Path logPath = worldDataPath.resolve(ClaimLogStorage.FILE_NAME);
+        if (Files.exists(logPath)) {
+            // switched back from binary storage, the log is kept as a backup
+            int count = ClaimLogStorage.exportClaimFiles(logPath, claimDataPath);
+            Files.move(logPath, getBackupPath(logPath));
+            GriefPrevention.instance.getLogger().info("[" + worldProperties.getWorldName() + "] Converted " + count + " claims from " + logPath + " to claim files.");
+        }
+
+        final File[] files = claimDataPath.toFile().listFiles();
+        if (files == null) {
+            return Collections.emptyList();
+        }
+
+        final List<Callable<ParsedClaim>> tasks = new ArrayList<>(files.length);
         for (int i = 0; i < files.length; i++) {
-            if (files[i].isFile()) // avoids folders
+            final File file = files[i];
+            if (file.isFile()) // avoids folders
             {
+                // leftover from an interrupted write, the claim file itself is still intact
+                if (file.getName().endsWith(ClaimStorageData.TEMP_FILE_SUFFIX)) {
+                    file.delete();
+                    continue;
+                }
+
                 // the filename is the claim ID. try to parse it
-                UUID playerUUID;
+                final UUID claimId;
 
                 try {
-                    playerUUID = UUID.fromString(files[i].getName());
+                    claimId = UUID.fromString(file.getName());
                 } catch (Exception e) {
-                    GriefPrevention.instance.getLogger().error("Could not read player file " + files[i].getAbsolutePath());
+                    GriefPrevention.instance.getLogger().error("Could not read claim file " + file.getAbsolutePath());
                     continue;
                 }
 
-                /*if (!Sponge.getServer().getPlayer(playerUUID).isPresent()) {
-                    return;
-                }*/
+                tasks.add(() -> parseClaim(file.toPath(), claimId, new ClaimStorageData(file.toPath())));
+            }
+        }
+        return this.parseClaims(tasks);
+    }
 
+    // runs claim parse tasks, in parallel if enabled
+    List<ParsedClaim> parseClaims(List<Callable<ParsedClaim>> tasks) throws InterruptedException {
+        final List<ParsedClaim> parsedClaims = new ArrayList<>(tasks.size());
+        final StorageCategory storageConfig = GriefPrevention.getGlobalConfig().getConfig().storage;
+        int threads = storageConfig.claimLoadingThreads > 0 ? storageConfig.claimLoadingThreads : Runtime.getRuntime().availableProcessors();
+        threads = Math.min(threads, tasks.size());
+        if (!storageConfig.parallelClaimLoading || threads <= 1) {
+            for (Callable<ParsedClaim> task : tasks) {
                 try {
-                    this.getOrCreatePlayerData(worldProperties, playerUUID);
+                    parsedClaims.add(task.call());
+                } catch (Exception e) {
+                    // parseClaim never throws
                 }
+            }
+            return parsedClaims;
+        }
 
-                // if there's any problem with the file's content, log an error message and skip it
-                catch (Exception e) {
-                    if (e.getMessage() != null && e.getMessage().contains("World not found")) {
-                        files[i].delete();
-                    } else {
-                        StringWriter errors = new StringWriter();
-                        e.printStackTrace(new PrintWriter(errors));
-                        GriefPrevention.addLogEntry(files[i].getName() + " " + errors.toString(), CustomLogEntryTypes.Exception);
-                    }
+        final ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactoryBuilder().setNameFormat("GriefPrevention Claim Loader #%d").setDaemon(true).build());
+        try {
+            // invokeAll keeps file order so claims publish the same way as a sequential load
+            for (Future<ParsedClaim> future : executor.invokeAll(tasks)) {
+                try {
+                    parsedClaims.add(future.get());
+                } catch (ExecutionException e) {
+                    // parseClaim never throws
                 }
             }
+        } finally {
+            executor.shutdownNow();
+        }
+        return parsedClaims;
+    }
+
+    // safe to call off the main thread, touches nothing but the claim storage
+    static ParsedClaim parseClaim(Path claimPath, UUID claimId, ClaimStorageData claimStorage) {
+        try {
+            if (claimStorage.getConfig() == null) {
+                throw new Exception("Claim file '" + claimPath.getFileName() + "' could not be read. Skipping...");
+            }
+
+            // boundaries
+            String lesserCorner = claimStorage.getConfig().getLesserBoundaryCorner();
+            String greaterCorner = claimStorage.getConfig().getGreaterBoundaryCorner();
+            if (lesserCorner == null || greaterCorner == null) {
+                throw new Exception("Claim file '" + claimPath.getFileName() + "' has corrupted data and cannot be loaded. Skipping...");
+            }
+            Vector3i lesserBoundaryCornerPos = BlockUtils.positionFromString(lesserCorner);
+            Vector3i greaterBoundaryCornerPos = BlockUtils.positionFromString(greaterCorner);
+            return new ParsedClaim(claimPath, claimId, claimStorage, lesserBoundaryCornerPos, greaterBoundaryCornerPos, null);
+        } catch (Exception e) {
+            return new ParsedClaim(claimPath, claimId, null, null, null, e);
         }
     }
 
-    Claim loadClaim(File claimFile, WorldProperties worldProperties, UUID claimId)
-            throws Exception {
+    // finds a free name to move replaced data to
+    static Path getBackupPath(Path path) {
+        Path backupPath = path.resolveSibling(path.getFileName() + ".converted");
+        if (Files.exists(backupPath)) {
+            backupPath = path.resolveSibling(path.getFileName() + ".converted-" + System.currentTimeMillis());
+        }
+        return backupPath;
+    }
+
+    // loads the stored player data of a world
+    // everyone else is loaded on demand and evicted again by the player data cache
+    void readPlayerData(Path worldDataPath, WorldProperties worldProperties) throws Exception {
+        for (Player player : Sponge.getServer().getOnlinePlayers()) {
+            this.getOrCreatePlayerData(worldProperties, player.getUniqueId());
+        }
+    }
+
+    Claim loadClaim(ParsedClaim parsedClaim, WorldProperties worldProperties) throws Exception {
         Claim claim;
 
-        ClaimStorageData claimStorage = new ClaimStorageData(claimFile.toPath());
+        final Path claimFile = parsedClaim.path;
+        final UUID claimId = parsedClaim.claimId;
+        final ClaimStorageData claimStorage = parsedClaim.storage;
         // identify world the claim is in
         UUID worldUniqueId = claimStorage.getConfig().getWorldUniqueId();
         if (!worldProperties.getUniqueId().equals(worldUniqueId)) {
@@ -327,15 +481,8 @@ Claim loadClaim(File claimFile, WorldProperties worldProperties, UUID claimId)
         }
 
         // boundaries
-        String lesserCorner = claimStorage.getConfig().getLesserBoundaryCorner();
-        String greaterCorner = claimStorage.getConfig().getGreaterBoundaryCorner();
-        if (lesserCorner == null || greaterCorner == null) {
-            throw new Exception("Claim file '" + claimFile.getName() + "' has corrupted data and cannot be loaded. Skipping...");
-        }
-        Vector3i lesserBoundaryCornerPos = BlockUtils.positionFromString(claimStorage.getConfig().getLesserBoundaryCorner());
-        Vector3i greaterBoundaryCornerPos = BlockUtils.positionFromString(claimStorage.getConfig().getGreaterBoundaryCorner());
-        Location<World> lesserBoundaryCorner = new Location<World>(world, lesserBoundaryCornerPos);
-        Location<World> greaterBoundaryCorner = new Location<World>(world, greaterBoundaryCornerPos);
+        Location<World> lesserBoundaryCorner = new Location<World>(world, parsedClaim.lesserBoundaryCorner);
+        Location<World> greaterBoundaryCorner = new Location<World>(world, parsedClaim.greaterBoundaryCorner);
 
         // owner
         UUID ownerID = claimStorage.getConfig().getOwnerUniqueId();
@@ -353,11 +500,6 @@ Claim loadClaim(File claimFile, WorldProperties worldProperties, UUID claimId)
         claim.setClaimStorage(claimStorage);
         claim.setClaimData(claimStorage.getConfig());
         claim.context = new Context("gp_claim", claim.id.toString());
-        // Initialize owner's player data for any tasks that may need to check player options such as CleanupUnusedClaimsTask
-        if (claim.isBasicClaim()) {
-            claim.ownerPlayerData = this.claimWorldManagers.get(claim.world.getUniqueId()).getOrCreatePlayerData(claim.ownerID);
-        }
-
         // add parent claim first
         this.addClaim(claim, false);
         if (!claim.isWildernessClaim()) {
@@ -382,6 +524,8 @@ Claim loadClaim(File claimFile, WorldProperties worldProperties, UUID claimId)
                 subDivision.setClaimData(subDivisionData);
                 // add subdivision to parent
                 claim.children.add(subDivision);
+                ClaimRegionCache.invalidate();
+                ClaimContextCalculator.invalidate();
             }
         }
         return claim;
@@ -396,10 +540,7 @@ public void writeClaimToStorage(Claim claim) {
             claimDataFolderPath = DataStore.worldConfigMap.get(claim.world.getUniqueId()).getPath().getParent().resolve("ClaimData");
 
             UUID claimId = claim.parent != null ? claim.parent.id : claim.id;
-            File claimFile = new File(claimDataFolderPath + File.separator + claimId);
-            if (!claimFile.exists()) {
-                claimFile.createNewFile();
-            }
+            Path claimFilePath = claimDataFolderPath.resolve(claimId.toString());
 
             if (claim.id == null) {
                 claim.id = UUID.randomUUID();
@@ -411,7 +552,7 @@ public void writeClaimToStorage(Claim claim) {
                     claim.setClaimStorage(claim.parent.getClaimStorage());
                     claim.setClaimData(new SubDivisionDataConfig());
                 } else {
-                    claimStorage = new ClaimStorageData(claim, claimFile.toPath());
+                    claimStorage = this.createClaimStorage(claim, claimFilePath);
                     claim.setClaimStorage(claimStorage);
                     claim.setClaimData(claimStorage.getConfig());
                 }
@@ -429,15 +570,14 @@ public void writeClaimToStorage(Claim claim) {
         }
     }
 
+    ClaimStorageData createClaimStorage(Claim claim, Path claimFilePath) {
+        return new ClaimStorageData(claim, claimFilePath);
+    }
+
     // deletes a claim from the file system
     @Override
     void deleteClaimFromSecondaryStorage(Claim claim) {
-        try {
-            Files.delete(claim.getClaimStorage().filePath);
-        } catch (IOException e) {
-            e.printStackTrace();
-            GriefPrevention.addLogEntry("Error: Unable to delete claim file \"" + claim.getClaimStorage().filePath + "\".");
-        }
+        ClaimStorageQueue.delete(claim.getClaimStorage());
     }
 
     @Override
@@ -508,4 +648,25 @@ PlayerData getPlayerDataFromStorage(UUID playerID) {
     void overrideSavePlayerData(UUID playerID, PlayerData playerData) {
     }
 
+
+    // claim file contents read ahead of publishing, the storage is not shared until the claim is loaded
+    static final class ParsedClaim {
+
+        final Path path;
+        final UUID claimId;
+        @Nullable final ClaimStorageData storage;
+        @Nullable final Vector3i lesserBoundaryCorner;
+        @Nullable final Vector3i greaterBoundaryCorner;
+        @Nullable final Exception error;
+
+        ParsedClaim(Path path, UUID claimId, @Nullable ClaimStorageData storage, @Nullable Vector3i lesserBoundaryCorner,
+                @Nullable Vector3i greaterBoundaryCorner, @Nullable Exception error) {
+            this.path = path;
+            this.claimId = claimId;
+            this.storage = storage;
+            this.lesserBoundaryCorner = lesserBoundaryCorner;
+            this.greaterBoundaryCorner = greaterBoundaryCorner;
+            this.error = error;
+        }
+    }
 }
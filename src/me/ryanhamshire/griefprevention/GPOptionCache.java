@@ -0,0 +1,127 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention;
+
+import me.ryanhamshire.griefprevention.util.PlayerUtils;
+import org.spongepowered.api.service.permission.Subject;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches the {@link GPOptions} resolved for each subject.
+ *
+ * <p>The defaults are parsed once. Resolved options are reused until
+ * {@link #invalidate()} is called, which happens whenever an option is set
+ * through a command or the config is reloaded. Entries expire along with the
+ * permission cache so edits made directly through the permission plugin are
+ * picked up without a reload.</p>
+ */
+public class GPOptionCache {
+
+    private static final Options DEFAULTS = new Options();
+    private static final Map<String, Options> OPTIONS = new ConcurrentHashMap<>();
+    private static final AtomicLong VERSION = new AtomicLong();
+    private static volatile long expirationMillis = 30000;
+
+    public static Options getDefaults() {
+        return DEFAULTS;
+    }
+
+    public static Options get(Subject subject) {
+        final long version = VERSION.get();
+        final long now = System.currentTimeMillis();
+        Options options = OPTIONS.get(subject.getIdentifier());
+        if (options != null && options.version == version && options.expires >= now) {
+            return options;
+        }
+
+        options = new Options(subject, version, now + expirationMillis);
+        // options resolved concurrently with an option change are never stored
+        if (expirationMillis > 0 && version == VERSION.get()) {
+            OPTIONS.put(subject.getIdentifier(), options);
+        }
+        return options;
+    }
+
+    // changes on every invalidation, lets other caches built from options tell when they are stale
+    public static long getVersion() {
+        return VERSION.get();
+    }
+
+    // must be called whenever an option is changed
+    public static void invalidate() {
+        VERSION.incrementAndGet();
+        OPTIONS.clear();
+    }
+
+    public static void setExpiration(int seconds) {
+        expirationMillis = seconds * 1000L;
+        invalidate();
+    }
+
+    public static int size() {
+        return OPTIONS.size();
+    }
+
+    public static final class Options {
+
+        public final double abandonReturnRatio;
+        public final int blocksAccruedPerHour;
+        public final int chestClaimExpiration;
+        public final int createClaimLimit;
+        public final int initialClaimBlocks;
+        public final int maxAccruedBlocks;
+        public final int playerClaimExpiration;
+        private final long version;
+        private final long expires;
+
+        // the defaults, parsed from GPOptions
+        private Options() {
+            this.abandonReturnRatio = Double.parseDouble(GPOptions.DEFAULT_OPTIONS.get(GPOptions.ABANDON_RETURN_RATIO));
+            this.blocksAccruedPerHour = Integer.parseInt(GPOptions.DEFAULT_OPTIONS.get(GPOptions.BLOCKS_ACCRUED_PER_HOUR));
+            this.chestClaimExpiration = Integer.parseInt(GPOptions.DEFAULT_OPTIONS.get(GPOptions.CHEST_CLAIM_EXPIRATION));
+            this.createClaimLimit = Integer.parseInt(GPOptions.DEFAULT_OPTIONS.get(GPOptions.CREATE_CLAIM_LIMIT));
+            this.initialClaimBlocks = Integer.parseInt(GPOptions.DEFAULT_OPTIONS.get(GPOptions.INITIAL_CLAIM_BLOCKS));
+            this.maxAccruedBlocks = Integer.parseInt(GPOptions.DEFAULT_OPTIONS.get(GPOptions.MAX_ACCRUED_BLOCKS));
+            this.playerClaimExpiration = Integer.parseInt(GPOptions.DEFAULT_OPTIONS.get(GPOptions.PLAYER_CLAIM_EXPIRATION));
+            this.version = -1;
+            this.expires = Long.MAX_VALUE;
+        }
+
+        private Options(Subject subject, long version, long expires) {
+            this.abandonReturnRatio = PlayerUtils.getOptionDoubleValue(subject, GPOptions.ABANDON_RETURN_RATIO, DEFAULTS.abandonReturnRatio);
+            this.blocksAccruedPerHour = PlayerUtils.getOptionIntValue(subject, GPOptions.BLOCKS_ACCRUED_PER_HOUR, DEFAULTS.blocksAccruedPerHour);
+            this.chestClaimExpiration = PlayerUtils.getOptionIntValue(subject, GPOptions.CHEST_CLAIM_EXPIRATION, DEFAULTS.chestClaimExpiration);
+            this.createClaimLimit = PlayerUtils.getOptionIntValue(subject, GPOptions.CREATE_CLAIM_LIMIT, DEFAULTS.createClaimLimit);
+            this.initialClaimBlocks = PlayerUtils.getOptionIntValue(subject, GPOptions.INITIAL_CLAIM_BLOCKS, DEFAULTS.initialClaimBlocks);
+            this.maxAccruedBlocks = PlayerUtils.getOptionIntValue(subject, GPOptions.MAX_ACCRUED_BLOCKS, DEFAULTS.maxAccruedBlocks);
+            this.playerClaimExpiration = PlayerUtils.getOptionIntValue(subject, GPOptions.PLAYER_CLAIM_EXPIRATION, DEFAULTS.playerClaimExpiration);
+            this.version = version;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention;
+
+import me.ryanhamshire.griefprevention.claim.Claim;
+import org.spongepowered.api.util.Tristate;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+/**
+ * Caches the results of {@link GPPermissionHandler#getClaimPermission}.
+ *
+ * <p>Every cached decision is tagged with the version that was current when
+ * its lookup started. {@link #invalidate()} bumps the version so decisions
+ * computed concurrently with a permission change are never stored. Entries
+ * also expire so edits made directly through the permission plugin are
+ * picked up without a reload. Once the cache is full, the least recently
+ * used decision makes room for the next one.</p>
+ */
+public class GPPermissionCache {
+
+    private static final int MAX_ENTRIES = 100000;
+    // access ordered, guarded by itself as lookups come from async chat and permission checks too
+    private static final Map<Key, Decision> DECISIONS = new LinkedHashMap<Key, Decision>(16, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Decision> eldest) {
+            return this.size() > MAX_ENTRIES;
+        }
+    };
+    private static final AtomicLong VERSION = new AtomicLong();
+    private static volatile long expirationMillis = 30000;
+
+    public static long getVersion() {
+        return VERSION.get();
+    }
+
+    @Nullable
+    public static Tristate get(Claim claim, String permission, String sourceId, @Nullable UUID userId) {
+        if (expirationMillis <= 0) {
+            return null;
+        }
+
+        final Key key = new Key(claim.id, permission, sourceId, userId);
+        final Decision decision;
+        synchronized (DECISIONS) {
+            decision = DECISIONS.get(key);
+        }
+        if (decision == null || decision.version != VERSION.get() || decision.expires < System.currentTimeMillis()) {
+            return null;
+        }
+
+        return decision.value;
+    }
+
+    public static void put(Claim claim, String permission, String sourceId, @Nullable UUID userId, long version, Tristate value) {
+        if (expirationMillis <= 0 || version != VERSION.get()) {
+            return;
+        }
+        final Key key = new Key(claim.id, permission, sourceId, userId);
+        final Decision decision = new Decision(version, value, System.currentTimeMillis() + expirationMillis);
+        synchronized (DECISIONS) {
+            DECISIONS.put(key, decision);
+        }
+    }
+
+    // must be called whenever flags, trust or anything else used to resolve a claim permission changes
+    public static void invalidate() {
+        VERSION.incrementAndGet();
+        synchronized (DECISIONS) {
+            DECISIONS.clear();
+        }
+    }
+
+    public static void setExpiration(int seconds) {
+        expirationMillis = seconds * 1000L;
+        invalidate();
+    }
+
+    public static int size() {
+        synchronized (DECISIONS) {
+            return DECISIONS.size();
+        }
+    }
+
+    private static final class Key {
+
+        private final UUID claimId;
+        private final String permission;
+        private final String sourceId;
+        private final UUID userId;
+        private final int hash;
+
+        Key(UUID claimId, String permission, String sourceId, UUID userId) {
+            this.claimId = claimId;
+            this.permission = permission;
+            this.sourceId = sourceId;
+            this.userId = userId;
+            int result = claimId.hashCode();
+            result = 31 * result + permission.hashCode();
+            result = 31 * result + sourceId.hashCode();
+            result = 31 * result + (userId == null ? 0 : userId.hashCode());
+            this.hash = result;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+
+            Key other = (Key) obj;
+            return this.hash == other.hash
+                    && this.permission.equals(other.permission)
+                    && this.sourceId.equals(other.sourceId)
+                    && this.claimId.equals(other.claimId)
+                    && Objects.equals(this.userId, other.userId);
+        }
+    }
+
+    private static final class Decision {
+
+        private final long version;
+        private final Tristate value;
+        private final long expires;
+
+        Decision(long version, Tristate value, long expires) {
+            this.version = version;
+            this.value = value;
+            this.expires = expires;
+        }
+    }
+}
@@ -24,17 +24,13 @@
  */
 package me.ryanhamshire.griefprevention;
 
-import com.google.common.collect.Maps;
 import me.ryanhamshire.griefprevention.claim.Claim;
-import net.minecraft.block.Block;
-import net.minecraft.block.state.IBlockState;
-import net.minecraft.entity.EnumCreatureType;
-import net.minecraft.entity.item.EntityItem;
 import net.minecraft.item.ItemBlock;
 import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.block.BlockState;
 import org.spongepowered.api.block.BlockType;
 import org.spongepowered.api.entity.Entity;
+import org.spongepowered.api.entity.EntityType;
 import org.spongepowered.api.entity.Item;
 import org.spongepowered.api.entity.living.Living;
 import org.spongepowered.api.entity.living.player.User;
@@ -43,17 +39,13 @@
 import org.spongepowered.api.plugin.PluginContainer;
 import org.spongepowered.api.service.context.Context;
 import org.spongepowered.api.util.Tristate;
-import org.spongepowered.common.SpongeImplHooks;
 
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 
 public class GPPermissionHandler {
 
-    private static final String UNKNOWN_CONTEXT = "unknown:unknown";
-    private static final Map<BlockState, Integer> BLOCKSTATE_META_CACHE = Maps.newHashMap();
-
     public static Tristate getClaimPermission(Claim claim, String flagPermission, Object source, Object target, User user) {
         if (claim == null) {
             return Tristate.UNDEFINED;
@@ -65,16 +57,23 @@ public static Tristate getClaimPermission(Claim claim, String flagPermission, Ob
             }
         }
 
-        String sourceId = getPermissionIdentifier(source);
-        String targetPermission = flagPermission;
-        String targetId = getPermissionIdentifier(target);
-        if (!targetId.isEmpty()) {
-            targetPermission += "." + targetId;
+        final String sourceId = getPermissionIdentifier(source);
+        final String targetPermission = GPPermissionRegistry.getPermissionNode(flagPermission, getPermissionIdentifier(target));
+        final UUID userId = user != null ? user.getUniqueId() : null;
+        Tristate value = GPPermissionCache.get(claim, targetPermission, sourceId, userId);
+        if (value != null) {
+            return value;
         }
 
+        final long cacheVersion = GPPermissionCache.getVersion();
+        value = resolveClaimPermission(claim, targetPermission, sourceId, user);
+        GPPermissionCache.put(claim, targetPermission, sourceId, userId, cacheVersion, value);
+        return value;
+    }
+
+    private static Tristate resolveClaimPermission(Claim claim, String targetPermission, String sourceId, User user) {
         // first check source for deny
-        Context sourceContext = GriefPrevention.CUSTOM_CONTEXTS.get(sourceId);
-        targetPermission = targetPermission.replace(":", ".");
+        Context sourceContext = GPPermissionRegistry.getSourceContext(sourceId);
         // First check for claim flag overrides
         Tristate override = getFlagOverride(claim, targetPermission);
         if (override != Tristate.UNDEFINED) {
@@ -113,8 +112,7 @@ public static Tristate getUserPermission(User user, Claim claim, String permissi
         }
         // If source context is not null, check with mod id this time
         if (sourceContext != null) {
-            String modId = sourceContext.getValue().split(":")[0];
-            Context modContext = GriefPrevention.CUSTOM_CONTEXTS.get(modId);
+            Context modContext = GPPermissionRegistry.getModContext(sourceContext);
             contexts = new HashSet<>();
             if (modContext != null) {
                 contexts.add(modContext);
@@ -182,8 +180,7 @@ public static Tristate getClaimFlagPermission(Claim claim, String permission, Co
         // If source context is not null, check with mod id this time
         if (sourceContext != null) {
             contexts = new HashSet<>();
-            String modId = sourceContext.getValue().split(":")[0];
-            Context modContext = GriefPrevention.CUSTOM_CONTEXTS.get(modId);
+            Context modContext = GPPermissionRegistry.getModContext(sourceContext);
             if (modContext != null) {
                 contexts.add(modContext);
             }
@@ -255,89 +252,50 @@ public static Tristate getFlagOverride(Claim claim, String permission) {
         return Tristate.UNDEFINED;
     }
 
-    @SuppressWarnings("deprecation")
     public static String getPermissionIdentifier(Object obj) {
         if (obj != null) {
-            if (obj instanceof Entity) {
+            if (obj instanceof Item) {
+                return GPPermissionRegistry.getItemTypeId(((Item) obj).getItemType());
+            } else if (obj instanceof Entity) {
                 Entity targetEntity = (Entity) obj;
                 net.minecraft.entity.Entity mcEntity = (net.minecraft.entity.Entity) targetEntity;
-                String targetId = "";
-                if (mcEntity instanceof EntityItem) {
-                    EntityItem mcItem = (EntityItem) mcEntity;
-                    net.minecraft.item.ItemStack itemStack = (net.minecraft.item.ItemStack) mcItem.getEntityItem();
-                    if (itemStack != null && itemStack.getItem() != null) {
-                        ItemType itemType = (ItemType) itemStack.getItem();
-                        targetId = itemType.getId() + "." + itemStack.getItemDamage();
-                    }
-                } else {
-                    if (targetEntity.getType() != null) {
-                        targetId = targetEntity.getType().getId();
-                    }
+                EntityType entityType = targetEntity.getType();
+                if (entityType == null) {
+                    return "";
                 }
                 // Workaround for pixelmon using same class for most entities.
                 // In this circumstance, we will use the entity name instead
-                if (targetId.equals("pixelmon:pixelmon")) {
-                    targetId = "pixelmon:" + mcEntity.getName().toLowerCase();
-                }
-                if (targetEntity instanceof Living) {
-                    for (EnumCreatureType type : EnumCreatureType.values()) {
-                        if (SpongeImplHooks.isCreatureOfType(mcEntity, type)) {
-                            String[] parts = targetId.split(":");
-                            targetId =  parts[0] + "." + GPFlags.SPAWN_TYPES.inverse().get(type) + "." + parts[1];
-                            break;
-                        }
+                if (entityType.getId().equals("pixelmon:pixelmon")) {
+                    String targetId = "pixelmon:" + mcEntity.getName().toLowerCase();
+                    if (targetEntity instanceof Living) {
+                        return GPPermissionRegistry.getLivingEntityId(targetId, mcEntity);
                     }
+                    return targetId;
                 }
-
-                if (targetEntity instanceof Item) {
-                    targetId = ((Item) targetEntity).getItemType().getId();
-                }
-
-                if (!targetId.equals(UNKNOWN_CONTEXT) && GriefPrevention.CUSTOM_CONTEXTS.get(targetId) == null) {
-                    GriefPrevention.CUSTOM_CONTEXTS.put(targetId, new Context("gp_source", targetId));
+                if (targetEntity instanceof Living) {
+                    return GPPermissionRegistry.getLivingEntityTypeId(entityType, mcEntity);
                 }
 
-                return targetId.toLowerCase();
+                return GPPermissionRegistry.getEntityTypeId(entityType);
             } else if (obj instanceof BlockType) {
-                String targetId = ((BlockType) obj).getId();
-                if (!targetId.equals(UNKNOWN_CONTEXT) && GriefPrevention.CUSTOM_CONTEXTS.get(targetId) == null) {
-                    GriefPrevention.CUSTOM_CONTEXTS.put(targetId, new Context("gp_source", targetId));
-                }
-
-                return targetId;
+                return GPPermissionRegistry.getBlockTypeId((BlockType) obj);
             } else if (obj instanceof BlockSnapshot) {
-                BlockSnapshot blockSnapshot = (BlockSnapshot) obj;
-                BlockState blockstate = blockSnapshot.getState();
-                String targetId = blockstate.getType().getId() + "." + getBlockStateMeta(blockstate);
-                return targetId.toLowerCase();
+                return GPPermissionRegistry.getBlockStateId(((BlockSnapshot) obj).getState());
             } else if (obj instanceof BlockState) {
-                BlockState blockstate = (BlockState) obj;
-                String targetId = blockstate.getType().getId() + "." + getBlockStateMeta(blockstate);
-                return targetId.toLowerCase();
+                return GPPermissionRegistry.getBlockStateId((BlockState) obj);
             } else if (obj instanceof ItemStack) {
                 ItemStack itemstack = (ItemStack) obj;
-                String targetId = "";
+                net.minecraft.item.ItemStack nmsStack = (net.minecraft.item.ItemStack)(Object) itemstack;
+                String baseId = null;
                 if (itemstack.getItem() instanceof ItemBlock) {
-                    ItemBlock itemBlock = (ItemBlock) itemstack.getItem();
-                    net.minecraft.item.ItemStack nmsStack = (net.minecraft.item.ItemStack)(Object) itemstack;
-                    BlockState blockState = ((BlockState) itemBlock.getBlock().getStateFromMeta(nmsStack.getItemDamage()));
-                    targetId = blockState.getType().getId() + "." + nmsStack.getItemDamage();//.replace("[", ".[");
+                    baseId = ((BlockType) ((ItemBlock) itemstack.getItem()).getBlock()).getId();
                 } else {
-                    targetId = itemstack.getItem().getId() + "." + ((net.minecraft.item.ItemStack)(Object) itemstack).getItemDamage();
-                }
-
-                if (!targetId.equals(UNKNOWN_CONTEXT) && GriefPrevention.CUSTOM_CONTEXTS.get(targetId) == null) {
-                    GriefPrevention.CUSTOM_CONTEXTS.put(targetId, new Context("gp_source", targetId));
+                    baseId = itemstack.getItem().getId();
                 }
 
-                return targetId.toLowerCase();
+                return GPPermissionRegistry.getItemStackId(itemstack.getItem(), baseId, nmsStack.getItemDamage());
             } else if (obj instanceof ItemType) {
-                String targetId = ((ItemType) obj).getId().toLowerCase();
-                if (!targetId.equals(UNKNOWN_CONTEXT) && GriefPrevention.CUSTOM_CONTEXTS.get(targetId) == null) {
-                    GriefPrevention.CUSTOM_CONTEXTS.put(targetId, new Context("gp_source", targetId));
-                }
-
-                return targetId;
+                return GPPermissionRegistry.getItemTypeId((ItemType) obj);
             } else if (obj instanceof String) {
                 return obj.toString().toLowerCase();
             } else if (obj instanceof PluginContainer) {
@@ -347,14 +305,4 @@ public static String getPermissionIdentifier(Object obj) {
 
         return "";
     }
-
-    private static int getBlockStateMeta(BlockState state) {
-        Integer meta = BLOCKSTATE_META_CACHE.get(state);
-        if (meta == null) {
-            Block mcBlock = (net.minecraft.block.Block) state.getType();
-            meta = mcBlock.getMetaFromState((IBlockState) state);
-            BLOCKSTATE_META_CACHE.put(state, meta);
-        }
-        return meta;
-    }
 }
@@ -0,0 +1,224 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention;
+
+import com.google.common.collect.Maps;
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.EnumCreatureType;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.BlockType;
+import org.spongepowered.api.entity.EntityType;
+import org.spongepowered.api.item.ItemType;
+import org.spongepowered.api.service.context.Context;
+import org.spongepowered.common.SpongeImplHooks;
+import org.spongepowered.common.entity.SpongeEntityType;
+
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Interned permission identifiers, nodes and source contexts used by
+ * {@link GPPermissionHandler}.
+ *
+ * <p>Identifiers and contexts are registered from the catalog scan performed
+ * at server start. Flag permission nodes are built once per (flag, target)
+ * pair and reused afterwards so flag checks do no string building.</p>
+ */
+public class GPPermissionRegistry {
+
+    private static final String UNKNOWN_CONTEXT = "unknown:unknown";
+    // Damage values above this are rare enough to not be worth caching
+    private static final int MAX_CACHED_ITEM_DAMAGE = 4096;
+
+    private static final Map<BlockState, String> BLOCKSTATE_IDS = Maps.newConcurrentMap();
+    private static final Map<BlockType, String> BLOCKTYPE_IDS = Maps.newConcurrentMap();
+    private static final Map<EntityType, String> ENTITYTYPE_IDS = Maps.newConcurrentMap();
+    private static final Map<EntityType, String> LIVING_ENTITYTYPE_IDS = Maps.newConcurrentMap();
+    private static final Map<ItemType, String> ITEMTYPE_IDS = Maps.newConcurrentMap();
+    private static final Map<ItemType, String[]> ITEMSTACK_IDS = Maps.newConcurrentMap();
+    // Source context -> mod context
+    private static final Map<Context, Context> MOD_CONTEXTS = Maps.newConcurrentMap();
+    // Flag permission -> target id -> permission node
+    private static final Map<String, Map<String, String>> PERMISSION_NODES = Maps.newConcurrentMap();
+
+    public static void registerEntityType(EntityType entityType) {
+        String entityId = entityType.getId();
+        registerSourceContext(entityId);
+        registerSourceContext(((SpongeEntityType) entityType).getModId());
+        ENTITYTYPE_IDS.put(entityType, entityId.toLowerCase());
+    }
+
+    public static void registerBlockType(BlockType blockType) {
+        String blockId = blockType.getId();
+        registerSourceContext(blockId);
+        registerSourceContext(blockId.split(":")[0]);
+        BLOCKTYPE_IDS.put(blockType, blockId);
+        for (IBlockState blockState : ((Block) blockType).getBlockState().getValidStates()) {
+            getBlockStateId((BlockState) blockState);
+        }
+    }
+
+    public static void registerItemType(ItemType itemType) {
+        registerSourceContext(itemType.getId());
+        ITEMTYPE_IDS.put(itemType, itemType.getId().toLowerCase());
+    }
+
+    public static String getBlockTypeId(BlockType blockType) {
+        String id = BLOCKTYPE_IDS.get(blockType);
+        if (id == null) {
+            id = blockType.getId();
+            registerSourceContext(id);
+            BLOCKTYPE_IDS.put(blockType, id);
+        }
+        return id;
+    }
+
+    public static String getBlockStateId(BlockState blockState) {
+        String id = BLOCKSTATE_IDS.get(blockState);
+        if (id == null) {
+            Block mcBlock = (Block) blockState.getType();
+            id = (blockState.getType().getId() + "." + mcBlock.getMetaFromState((IBlockState) blockState)).toLowerCase();
+            BLOCKSTATE_IDS.put(blockState, id);
+        }
+        return id;
+    }
+
+    public static String getEntityTypeId(EntityType entityType) {
+        String id = ENTITYTYPE_IDS.get(entityType);
+        if (id == null) {
+            id = entityType.getId();
+            registerSourceContext(id);
+            id = id.toLowerCase();
+            ENTITYTYPE_IDS.put(entityType, id);
+        }
+        return id;
+    }
+
+    // creature types are class based so the first entity seen decides the id for its type
+    public static String getLivingEntityTypeId(EntityType entityType, net.minecraft.entity.Entity mcEntity) {
+        String id = LIVING_ENTITYTYPE_IDS.get(entityType);
+        if (id == null) {
+            id = getLivingEntityId(entityType.getId(), mcEntity);
+            LIVING_ENTITYTYPE_IDS.put(entityType, id);
+        }
+        return id;
+    }
+
+    public static String getLivingEntityId(String entityId, net.minecraft.entity.Entity mcEntity) {
+        for (EnumCreatureType type : EnumCreatureType.values()) {
+            if (SpongeImplHooks.isCreatureOfType(mcEntity, type)) {
+                String[] parts = entityId.split(":");
+                entityId = parts[0] + "." + GPFlags.SPAWN_TYPES.inverse().get(type) + "." + parts[1];
+                break;
+            }
+        }
+
+        registerSourceContext(entityId);
+        return entityId.toLowerCase();
+    }
+
+    public static String getItemTypeId(ItemType itemType) {
+        String id = ITEMTYPE_IDS.get(itemType);
+        if (id == null) {
+            id = itemType.getId().toLowerCase();
+            registerSourceContext(id);
+            ITEMTYPE_IDS.put(itemType, id);
+        }
+        return id;
+    }
+
+    // baseId is the id of the item, or of its block for item blocks
+    public static String getItemStackId(ItemType itemType, String baseId, int damage) {
+        if (damage < 0 || damage >= MAX_CACHED_ITEM_DAMAGE) {
+            return createItemStackId(baseId, damage);
+        }
+
+        String[] ids = ITEMSTACK_IDS.get(itemType);
+        if (ids == null || ids.length <= damage) {
+            String[] newIds = new String[Integer.highestOneBit(damage) << 1];
+            if (ids != null) {
+                System.arraycopy(ids, 0, newIds, 0, ids.length);
+            }
+            ids = newIds;
+            ITEMSTACK_IDS.put(itemType, ids);
+        }
+
+        String id = ids[damage];
+        if (id == null) {
+            id = createItemStackId(baseId, damage);
+            ids[damage] = id;
+        }
+        return id;
+    }
+
+    private static String createItemStackId(String baseId, int damage) {
+        String id = baseId + "." + damage;
+        registerSourceContext(id);
+        return id.toLowerCase();
+    }
+
+    public static String getPermissionNode(String flagPermission, String targetId) {
+        Map<String, String> nodes = PERMISSION_NODES.get(flagPermission);
+        if (nodes == null) {
+            nodes = Maps.newConcurrentMap();
+            PERMISSION_NODES.put(flagPermission, nodes);
+        }
+
+        String node = nodes.get(targetId);
+        if (node == null) {
+            node = targetId.isEmpty() ? flagPermission : flagPermission + "." + targetId;
+            node = node.replace(":", ".");
+            nodes.put(targetId, node);
+        }
+        return node;
+    }
+
+    @Nullable
+    public static Context getSourceContext(String sourceId) {
+        return GriefPrevention.CUSTOM_CONTEXTS.get(sourceId);
+    }
+
+    // returns the context of the mod owning a source, if any
+    @Nullable
+    public static Context getModContext(Context sourceContext) {
+        Context modContext = MOD_CONTEXTS.get(sourceContext);
+        if (modContext == null) {
+            modContext = GriefPrevention.CUSTOM_CONTEXTS.get(sourceContext.getValue().split(":")[0]);
+            if (modContext == null) {
+                return null;
+            }
+            MOD_CONTEXTS.put(sourceContext, modContext);
+        }
+        return modContext;
+    }
+
+    private static void registerSourceContext(String sourceId) {
+        if (!sourceId.equals(UNKNOWN_CONTEXT) && GriefPrevention.CUSTOM_CONTEXTS.get(sourceId) == null) {
+            GriefPrevention.CUSTOM_CONTEXTS.put(sourceId, new Context("gp_source", sourceId));
+        }
+    }
+}
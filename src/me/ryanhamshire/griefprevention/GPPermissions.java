@@ -76,12 +76,14 @@ public class GPPermissions {
     public static final String COMMAND_DELETE_CLAIMS = "griefprevention.admin.command.delete-claims";
     public static final String COMMAND_DELETE_ADMIN_CLAIMS = "griefprevention.admin.command.delete-admin-claims";
     public static final String COMMAND_LIST_ADMIN_CLAIMS = "griefprevention.admin.command.list-admin-claims";
+    public static final String COMMAND_CLAIM_ENTITIES = "griefprevention.admin.command.claim-entities";
     public static final String COMMAND_IGNORE_CLAIMS = "griefprevention.admin.command.ignore-claims";
     public static final String COMMAND_SET_ACCRUED_CLAIM_BLOCKS = "griefprevention.admin.command.set-accrued-claim-blocks";
     public static final String COMMAND_RESTORE_NATURE = "griefprevention.admin.command.restore-nature";
     public static final String COMMAND_RESTORE_NATURE_AGGRESSIVE = "griefprevention.admin.command.restore-nature-aggressive";
     public static final String COMMAND_RESTORE_NATURE_FILL = "griefprevention.admin.command.restore-nature-fill";
     public static final String COMMAND_RELOAD = "griefprevention.admin.command.reload";
+    public static final String COMMAND_STATS = "griefprevention.admin.command.stats";
     public static final String SET_ADMIN_FLAGS = "griefprevention.admin.claim.set-admin-flags";
     public static final String LIST_BASIC_CLAIMS = "griefprevention.admin.claim.list-basic-claims";
     public static final String MANAGE_FLAG_DEFAULTS = "griefprevention.admin.claim.manage.flag-defaults";
@@ -35,6 +35,10 @@ public class GPTimings {
     public static final Timing BLOCK_PLACE_EVENT = Timings.of(GriefPrevention.instance.pluginContainer, "onBlockPlace");
     public static final Timing BLOCK_POST_EVENT = Timings.of(GriefPrevention.instance.pluginContainer, "onBlockPost");
     public static final Timing BLOCK_PRE_EVENT = Timings.of(GriefPrevention.instance.pluginContainer, "onBlockPre");
+    // only started when an event returns early because no claim is near, the count shows how often that happens
+    public static final Timing BLOCK_NOTIFY_CLAIM_FREE = Timings.of(GriefPrevention.instance.pluginContainer, "onBlockNotify - claim free", BLOCK_NOTIFY_EVENT);
+    public static final Timing BLOCK_PLACE_CLAIM_FREE = Timings.of(GriefPrevention.instance.pluginContainer, "onBlockPlace - claim free", BLOCK_PLACE_EVENT);
+    public static final Timing BLOCK_PRE_CLAIM_FREE = Timings.of(GriefPrevention.instance.pluginContainer, "onBlockPre - claim free", BLOCK_PRE_EVENT);
     public static final Timing ENTITY_EXPLOSION_PRE_EVENT = Timings.of(GriefPrevention.instance.pluginContainer, "onEntityExplosionPre");
     public static final Timing ENTITY_EXPLOSION_DETONATE_EVENT = Timings.of(GriefPrevention.instance.pluginContainer, "onEntityExplosionDetonate");
     public static final Timing ENTITY_ATTACK_EVENT = Timings.of(GriefPrevention.instance.pluginContainer, "onEntityAttack");
@@ -41,6 +41,7 @@
 import com.google.inject.Inject;
 import me.ryanhamshire.griefprevention.claim.Claim;
 import me.ryanhamshire.griefprevention.claim.ClaimContextCalculator;
+import me.ryanhamshire.griefprevention.claim.ClaimEntityCounter;
 import me.ryanhamshire.griefprevention.claim.ClaimWorldManager;
 import me.ryanhamshire.griefprevention.claim.ClaimsMode;
 import me.ryanhamshire.griefprevention.command.CommandAccessTrust;
@@ -57,6 +58,7 @@
 import me.ryanhamshire.griefprevention.command.CommandClaimDelete;
 import me.ryanhamshire.griefprevention.command.CommandClaimDeleteAll;
 import me.ryanhamshire.griefprevention.command.CommandClaimDeleteAllAdmin;
+import me.ryanhamshire.griefprevention.command.CommandClaimEntities;
 import me.ryanhamshire.griefprevention.command.CommandClaimFarewell;
 import me.ryanhamshire.griefprevention.command.CommandClaimFlag;
 import me.ryanhamshire.griefprevention.command.CommandClaimFlagDebug;
@@ -80,6 +82,7 @@
 import me.ryanhamshire.griefprevention.command.CommandDebug;
 import me.ryanhamshire.griefprevention.command.CommandGivePet;
 import me.ryanhamshire.griefprevention.command.CommandGpReload;
+import me.ryanhamshire.griefprevention.command.CommandGpStats;
 import me.ryanhamshire.griefprevention.command.CommandIgnorePlayer;
 import me.ryanhamshire.griefprevention.command.CommandIgnoredPlayerList;
 import me.ryanhamshire.griefprevention.command.CommandPermissionTrust;
@@ -98,20 +101,23 @@
 import me.ryanhamshire.griefprevention.command.CommandUnseparate;
 import me.ryanhamshire.griefprevention.command.CommandUntrust;
 import me.ryanhamshire.griefprevention.command.CommandUntrustAll;
+import me.ryanhamshire.griefprevention.configuration.ClaimStorageQueue;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig.Type;
+import me.ryanhamshire.griefprevention.configuration.category.DatabaseCategory;
 import me.ryanhamshire.griefprevention.configuration.types.DimensionConfig;
 import me.ryanhamshire.griefprevention.configuration.types.GlobalConfig;
 import me.ryanhamshire.griefprevention.configuration.types.WorldConfig;
 import me.ryanhamshire.griefprevention.event.BlockEventHandler;
 import me.ryanhamshire.griefprevention.event.EntityEventHandler;
 import me.ryanhamshire.griefprevention.event.PlayerEventHandler;
+import me.ryanhamshire.griefprevention.event.SpawnEntityEvaluator;
 import me.ryanhamshire.griefprevention.event.WorldEventHandler;
 import me.ryanhamshire.griefprevention.task.CleanupUnusedClaimsTask;
 import me.ryanhamshire.griefprevention.task.DeliverClaimBlocksTask;
 import me.ryanhamshire.griefprevention.task.IgnoreLoaderThread;
 import me.ryanhamshire.griefprevention.task.PvPImmunityValidationTask;
-import me.ryanhamshire.griefprevention.task.RestoreNatureProcessingTask;
+import me.ryanhamshire.griefprevention.task.RestoreNatureQueue;
 import me.ryanhamshire.griefprevention.task.SendPlayerMessageTask;
 import me.ryanhamshire.griefprevention.util.PlayerUtils;
 import net.minecraft.entity.EnumCreatureType;
@@ -139,6 +145,7 @@
 import org.spongepowered.api.event.cause.NamedCause;
 import org.spongepowered.api.event.game.state.GameAboutToStartServerEvent;
 import org.spongepowered.api.event.game.state.GameStartedServerEvent;
+import org.spongepowered.api.event.game.state.GameStoppingServerEvent;
 import org.spongepowered.api.event.service.ChangeServiceProviderEvent;
 import org.spongepowered.api.item.ItemType;
 import org.spongepowered.api.item.ItemTypes;
@@ -160,7 +167,6 @@
 import org.spongepowered.api.world.World;
 import org.spongepowered.api.world.storage.WorldProperties;
 import org.spongepowered.common.SpongeImplHooks;
-import org.spongepowered.common.entity.SpongeEntityType;
 import org.spongepowered.common.interfaces.world.IMixinDimensionType;
 
 import java.io.IOException;
@@ -200,6 +206,7 @@ public class GriefPrevention {
     public static User WORLD_USER;
     public static final String PUBLIC_NAME = "[GPPublic]";
     public static final String WORLD_USER_NAME = "[GPWorld]";
+    private static final Pattern IP_ADDRESS_PATTERN = Pattern.compile("([0-9]{1,3}\\.){3}[0-9]{1,3}");
 
     // GP Custom Subjects
     public static Subject GLOBAL_SUBJECT;
@@ -210,7 +217,7 @@ public class GriefPrevention {
     public static final Context WILDERNESS_CLAIM_FLAG_DEFAULT_CONTEXT = new Context("gp_claim_defaults", "WILDERNESS");
     public static final Context ADMIN_CLAIM_FLAG_OVERRIDE_CONTEXT = new Context("gp_claim_overrides", "ADMIN");
     public static final Context BASIC_CLAIM_FLAG_OVERRIDE_CONTEXT = new Context("gp_claim_overrides", "BASIC");
-    public static final Map<String, Context> CUSTOM_CONTEXTS = Maps.newHashMap();
+    public static final Map<String, Context> CUSTOM_CONTEXTS = Maps.newConcurrentMap();
 
     // this handles data storage, like player and region data
     public DataStore dataStore;
@@ -242,6 +249,10 @@ public Logger getLogger() {
         return this.logger;
     }
 
+    public CustomLogger getCustomLogger() {
+        return this.customLogger;
+    }
+
     // adds a server log entry
     public static void addLogEntry(String entry, CustomLogEntryTypes customLogType, boolean verbose) {
         if (customLogType == CustomLogEntryTypes.Debug && !GriefPrevention.debugLogging) {
@@ -300,6 +311,8 @@ public static void addLogEntry(String entry) {
     public void onChangeServiceProvider(ChangeServiceProviderEvent event) {
         if (event.getNewProvider() instanceof PermissionService && this.validateSpongeVersion()) {
             ((PermissionService) event.getNewProvider()).registerContextCalculator(new ClaimContextCalculator());
+            GPPermissionCache.invalidate();
+            GPOptionCache.invalidate();
         }
     }
 
@@ -345,10 +358,18 @@ public void onAboutToStart(GameAboutToStartServerEvent event) {
 
         if (this.dataStore == null) {
             try {
-                this.dataStore = new FlatFileDataStore();
+                final String storageFormat = getGlobalConfig().getConfig().storage.claimStorageFormat;
+                if (storageFormat.equalsIgnoreCase("binary")) {
+                    this.dataStore = new BinaryDataStore();
+                } else if (storageFormat.equalsIgnoreCase("database")) {
+                    final DatabaseCategory database = getGlobalConfig().getConfig().database;
+                    this.dataStore = new DatabaseDataStore(database.dbURL, database.dbUsername, database.dbPassword);
+                } else {
+                    this.dataStore = new FlatFileDataStore();
+                }
                 this.dataStore.initialize();
             } catch (Exception e) {
-                addLogEntry("Unable to initialize the file system data store.  Details:");
+                addLogEntry("Unable to initialize the data store.  Details:");
                 addLogEntry(e.getMessage());
                 e.printStackTrace();
                 return;
@@ -358,26 +379,15 @@ public void onAboutToStart(GameAboutToStartServerEvent event) {
         this.economyService = Sponge.getServiceManager().provide(EconomyService.class);
         GLOBAL_SUBJECT = GriefPrevention.instance.permissionService.getDefaults();
         for (EntityType entityType : Sponge.getRegistry().getAllOf(EntityType.class)) {
-            String entityId = entityType.getId();
-            CUSTOM_CONTEXTS.put(entityId, new Context("gp_source", entityId));
-            String modId = ((SpongeEntityType) entityType).getModId();
-            if (CUSTOM_CONTEXTS.get(modId) == null) {
-                CUSTOM_CONTEXTS.put(modId, new Context("gp_source", modId));
-            }
+            GPPermissionRegistry.registerEntityType(entityType);
         }
         for (BlockType blockType : Sponge.getRegistry().getAllOf(BlockType.class)) {
-            String blockId = blockType.getId();
-            CUSTOM_CONTEXTS.put(blockId, new Context("gp_source", blockId));
-            String modId = blockId.split(":")[0];
-            if (CUSTOM_CONTEXTS.get(modId) == null) {
-                CUSTOM_CONTEXTS.put(modId, new Context("gp_source", modId));
-            }
+            GPPermissionRegistry.registerBlockType(blockType);
         }
         for (ItemType itemType : Sponge.getRegistry().getAllOf(ItemType.class)) {
-            String itemId = itemType.getId();
-            CUSTOM_CONTEXTS.put(itemId, new Context("gp_source", itemId));
+            GPPermissionRegistry.registerItemType(itemType);
         }
-        String dataMode = (this.dataStore instanceof FlatFileDataStore) ? "(File Mode)" : "(Database Mode)";
+        String dataMode = (this.dataStore instanceof BinaryDataStore) ? "(Binary Mode)" : (this.dataStore instanceof DatabaseDataStore) ? "(Database Mode)" : "(File Mode)";
         Sponge.getGame().getEventManager().registerListeners(this, new BlockEventHandler(dataStore));
         Sponge.getGame().getEventManager().registerListeners(this, new PlayerEventHandler(dataStore, this));
         Sponge.getGame().getEventManager().registerListeners(this, new EntityEventHandler(dataStore));
@@ -402,16 +412,32 @@ public void onServerStarted(GameStartedServerEvent event) {
                 .getOrCreate(GameProfile.of(GriefPrevention.WORLD_USER_UUID, GriefPrevention.WORLD_USER_NAME));
         // unless claim block accrual is disabled, start the recurring per 10
         // minute event to give claim blocks to online players
-        DeliverClaimBlocksTask task = new DeliverClaimBlocksTask(null);
+        DeliverClaimBlocksTask task = new DeliverClaimBlocksTask();
         Sponge.getGame().getScheduler().createTaskBuilder().interval(5, TimeUnit.MINUTES).execute(task)
                 .submit(GriefPrevention.instance);
 
+        // write queued claim changes off the main thread
+        Sponge.getGame().getScheduler().createTaskBuilder().intervalTicks(1).execute(ClaimStorageQueue::flush)
+                .submit(GriefPrevention.instance);
+
+        // capture and apply restore nature chunks within a per tick budget
+        Sponge.getGame().getScheduler().createTaskBuilder().intervalTicks(1).execute(RestoreNatureQueue::tick)
+                .submit(GriefPrevention.instance);
+
+        // trim the player data caches once a second
+        Sponge.getGame().getScheduler().createTaskBuilder().intervalTicks(20).execute(() -> this.dataStore.evictPlayerData())
+                .submit(GriefPrevention.instance);
+
+        // recheck counted claim entities within a per tick budget
+        Sponge.getGame().getScheduler().createTaskBuilder().intervalTicks(1).execute(ClaimEntityCounter::reconcile)
+                .submit(GriefPrevention.instance);
+
         // run cleanup task
         int cleanupTaskInterval = GriefPrevention.getGlobalConfig().getConfig().claim.cleanupTaskInterval;
         if (cleanupTaskInterval > 0) {
             CleanupUnusedClaimsTask cleanupTask = new CleanupUnusedClaimsTask();
-            Sponge.getGame().getScheduler().createTaskBuilder().delay(cleanupTaskInterval, TimeUnit.MINUTES).execute(cleanupTask)
-                    .submit(GriefPrevention.instance);
+            Sponge.getGame().getScheduler().createTaskBuilder().delay(cleanupTaskInterval, TimeUnit.MINUTES).intervalTicks(1)
+                    .execute(cleanupTask).submit(GriefPrevention.instance);
         }
 
         // if economy is enabled
@@ -438,6 +464,24 @@ public void onServerStarted(GameStartedServerEvent event) {
         this.logger.info("Loaded successfully.");
     }
 
+    @Listener
+    public void onServerStopping(GameStoppingServerEvent event) {
+        if (this.dataStore != null) {
+            for (ClaimWorldManager claimWorldManager : this.dataStore.claimWorldManagers.values()) {
+                claimWorldManager.save();
+            }
+            ClaimStorageQueue.shutdown();
+        }
+        GriefPrevention.addLogEntry("Spawn events evaluated: " + SpawnEntityEvaluator.getTotalEvents() + ", entities: "
+                + SpawnEntityEvaluator.getTotalEntities() + ", permission groups: " + SpawnEntityEvaluator.getTotalGroups()
+                + ", average group size: " + SpawnEntityEvaluator.getAverageGroupSize() + ", max group size: "
+                + SpawnEntityEvaluator.getMaxGroupSize() + ", time saved: " + SpawnEntityEvaluator.getSavedMillis() + "ms.");
+        RestoreNatureQueue.shutdown();
+        if (this.customLogger != null) {
+            this.customLogger.close();
+        }
+    }
+
     // handles sub commands
     public void registerBaseCommands() {
 
@@ -493,6 +537,13 @@ public void registerBaseCommands() {
                 .executor(new CommandClaimAdminList())
                 .build(), "adminclaimlist", "adminclaimslist", "claimadminlist");
 
+        Sponge.getCommandManager().register(this, CommandSpec.builder()
+                .description(Text.of("Lists claims by the number of entities inside them"))
+                .permission(GPPermissions.COMMAND_CLAIM_ENTITIES)
+                .arguments(optional(GenericArguments.world(Text.of("world"))))
+                .executor(new CommandClaimEntities())
+                .build(), "claimentities", "claimentitylist");
+
         Sponge.getCommandManager().register(this, CommandSpec.builder()
                 .description(Text.of("Bans the specified item id or item in hand if no id is specified."))
                 .permission(GPPermissions.COMMAND_BAN_ITEM)
@@ -802,6 +853,12 @@ public void registerBaseCommands() {
                 .executor(new CommandGpReload())
                 .build(), "gpreload");
 
+        Sponge.getCommandManager().register(this, CommandSpec.builder()
+                .description(Text.of("Shows the claim storage queue, write latency and spawn event counters"))
+                .permission(GPPermissions.COMMAND_STATS)
+                .executor(new CommandGpStats())
+                .build(), "gpstats");
+
         Sponge.getCommandManager().register(this, CommandSpec.builder()
                 .description(Text.of("Grants a player permission to grant their level of permission to others"))
                 .permission(GPPermissions.COMMAND_GIVE_PERMISSION_TRUST).arguments(string(Text.of("target")))
@@ -959,6 +1016,8 @@ public void loadConfig() {
             this.modificationTool = Sponge.getRegistry().getType(ItemType.class, DataStore.globalConfig.getConfig().claim.modificationTool).orElse(ItemTypes.NONE);
             this.investigationTool = Sponge.getRegistry().getType(ItemType.class, DataStore.globalConfig.getConfig().claim.investigationTool).orElse(ItemTypes.NONE);
             this.maxInspectionDistance = DataStore.globalConfig.getConfig().general.maxClaimInspectionDistance;
+            GPPermissionCache.setExpiration(DataStore.globalConfig.getConfig().general.permissionCacheExpiration);
+            GPOptionCache.setExpiration(DataStore.globalConfig.getConfig().general.permissionCacheExpiration);
             for (World world : Sponge.getGame().getServer().getWorlds()) {
                 DimensionType dimType = world.getProperties().getDimensionType();
                 Path dimPath = rootConfigPath.resolve(((IMixinDimensionType) dimType).getModId()).resolve(((IMixinDimensionType) dimType).getEnumName());
@@ -974,13 +1033,11 @@ public void loadConfig() {
                         new GriefPreventionConfig<DimensionConfig>(Type.DIMENSION, dimPath.resolve("dimension.conf")));
                 DataStore.worldConfigMap.put(world.getProperties().getUniqueId(), new GriefPreventionConfig<>(Type.WORLD,
                         dimPath.resolve(world.getProperties().getWorldName()).resolve("world.conf")));
+            }
 
-                // refresh player data
-                for (ClaimWorldManager claimWorldManager : GriefPrevention.instance.dataStore.claimWorldManagers.values()) {
-                    for (PlayerData playerData : claimWorldManager.getPlayerDataList().values()) {
-                        playerData.refreshPlayerOptions();
-                    }
-                }
+            // refresh player data
+            if (this.dataStore != null) {
+                this.dataStore.refreshPlayerOptions();
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -1279,32 +1336,18 @@ public void restoreClaim(Claim claim, long delayInTicks) {
     }
 
     public void restoreChunk(Chunk chunk, int miny, boolean aggressiveMode, long delayInTicks, Player playerReceivingVisualization) {
-        // build a snapshot of this chunk, including 1 block boundary outside of
-        // the chunk all the way around
-        int maxHeight = chunk.getWorld().getDimension().getBuildHeight();
-        BlockSnapshot[][][] snapshots = new BlockSnapshot[18][maxHeight][18];
-        BlockSnapshot startBlock = chunk.createSnapshot(0, 0, 0);
-        Location<World> startLocation =
-                new Location<World>(chunk.getWorld(), startBlock.getPosition().getX() - 1, 0, startBlock.getPosition().getZ() - 1);
-        for (int x = 0; x < snapshots.length; x++) {
-            for (int z = 0; z < snapshots[0][0].length; z++) {
-                for (int y = 0; y < snapshots[0].length; y++) {
-                    snapshots[x][y][z] = chunk.getWorld()
-                            .createSnapshot(startLocation.getBlockX() + x, startLocation.getBlockY() + y, startLocation.getBlockZ() + z);
-                }
-            }
+        // the chunk is captured when its turn comes, so changes made during the delay are taken into account
+        World world = chunk.getWorld();
+        int chunkX = chunk.getPosition().getX();
+        int chunkZ = chunk.getPosition().getZ();
+        if (delayInTicks <= 0) {
+            RestoreNatureQueue.restoreChunk(world, chunkX, chunkZ, miny, aggressiveMode, playerReceivingVisualization);
+            return;
         }
 
-        // create task to process those data in another thread
-        Location<World> lesserBoundaryCorner = startBlock.getLocation().get();
-        Location<World> greaterBoundaryCorner = chunk.createSnapshot(15, 0, 15).getLocation().get();
-
-        // create task when done processing, this task will create a main thread task to actually update the world with processing results
-        RestoreNatureProcessingTask task = new RestoreNatureProcessingTask(snapshots, miny, chunk.getWorld().getDimension().getType(),
-                lesserBoundaryCorner.getBiome(), lesserBoundaryCorner, greaterBoundaryCorner, this.getSeaLevel(chunk.getWorld()),
-                aggressiveMode, claimModeIsActive(lesserBoundaryCorner.getExtent().getProperties(), ClaimsMode.Creative),
-                playerReceivingVisualization);
-        Sponge.getGame().getScheduler().createTaskBuilder().async().delayTicks(delayInTicks).execute(task).submit(this);
+        Sponge.getGame().getScheduler().createTaskBuilder().delayTicks(delayInTicks)
+                .execute(() -> RestoreNatureQueue.restoreChunk(world, chunkX, chunkZ, miny, aggressiveMode, playerReceivingVisualization))
+                .submit(this);
     }
 
     @SuppressWarnings("unused")
@@ -1358,9 +1401,14 @@ public int getSeaLevel(World world) {
     }
 
     public boolean containsBlockedIP(String message) {
-        message = message.replace("\r\n", "");
-        Pattern ipAddressPattern = Pattern.compile("([0-9]{1,3}\\.){3}[0-9]{1,3}");
-        Matcher matcher = ipAddressPattern.matcher(message);
+        // nothing can look like an address without a dot
+        if (message.indexOf('.') < 0) {
+            return false;
+        }
+        if (message.indexOf('\r') >= 0) {
+            message = message.replace("\r\n", "");
+        }
+        Matcher matcher = IP_ADDRESS_PATTERN.matcher(message);
 
         // if it looks like an IP address
         if (matcher.find()) {
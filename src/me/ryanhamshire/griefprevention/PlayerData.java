@@ -31,9 +31,6 @@
 import me.ryanhamshire.griefprevention.claim.ClaimPermission;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
 import me.ryanhamshire.griefprevention.configuration.PlayerStorageData;
-import me.ryanhamshire.griefprevention.util.PlayerUtils;
-import org.spongepowered.api.block.BlockSnapshot;
-import org.spongepowered.api.data.Transaction;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.entity.living.player.User;
 import org.spongepowered.api.scheduler.Task;
@@ -69,8 +66,8 @@ public class PlayerData {
 
     private PlayerStorageData playerStorage;
 
-    // where this player was the last time we checked on him for earning claim blocks
-    public Location<World> lastAfkCheckLocation;
+    // block boundaries this player crossed since the last time we checked on him for earning claim blocks
+    public int afkCheckMovement;
 
     // what "mode" the shovel is in determines what it will do when it's used
     public ShovelMode shovelMode = ShovelMode.Basic;
@@ -108,20 +105,11 @@ public class PlayerData {
     @SuppressWarnings("unused")
     private Date lastLogin;
 
-    // the player's last chat message, or slash command complete with parameters
+    // the player's last sign text, so the same sign isn't logged twice
     public String lastMessage = "";
 
-    // last time the player sent a chat message or used a monitored slash command
-    public Date lastMessageTimestamp = new Date();
-
-    // number of consecutive "spams"
-    public int spamCount = 0;
-
-    // whether the player recently received a warning
-    public boolean spamWarned = false;
-
     // visualization
-    public List<Transaction<BlockSnapshot>> visualBlocks;
+    public VisualizationBlocks visualBlocks;
     public UUID visualClaimId;
     public Task visualRevertTask;
 
@@ -210,13 +198,14 @@ public void refreshPlayerOptions() {
             Subject subject = GriefPrevention.instance.permissionService.getUserSubjects().get(this.playerID.toString());
             this.playerSubject = new WeakReference<>(subject);
         }
-        this.optionAbandonReturnRatio = PlayerUtils.getOptionDoubleValue(this.playerSubject.get(), GPOptions.ABANDON_RETURN_RATIO, 1.0);
-        this.optionBlocksAccruedPerHour = PlayerUtils.getOptionIntValue(this.playerSubject.get(), GPOptions.BLOCKS_ACCRUED_PER_HOUR, 120);
-        this.optionChestClaimExpiration = PlayerUtils.getOptionIntValue(this.playerSubject.get(), GPOptions.CHEST_CLAIM_EXPIRATION, 7);
-        this.optionCreateClaimLimit = PlayerUtils.getOptionIntValue(this.playerSubject.get(), GPOptions.CREATE_CLAIM_LIMIT, 0);
-        this.optionInitialClaimBlocks = PlayerUtils.getOptionIntValue(this.playerSubject.get(), GPOptions.INITIAL_CLAIM_BLOCKS, 100);
-        this.optionMaxAccruedBlocks = PlayerUtils.getOptionIntValue(this.playerSubject.get(), GPOptions.MAX_ACCRUED_BLOCKS, 80000);
-        this.optionPlayerClaimExpiration = PlayerUtils.getOptionIntValue(this.playerSubject.get(), GPOptions.PLAYER_CLAIM_EXPIRATION, 14);
+        final GPOptionCache.Options options = GPOptionCache.get(this.playerSubject.get());
+        this.optionAbandonReturnRatio = options.abandonReturnRatio;
+        this.optionBlocksAccruedPerHour = options.blocksAccruedPerHour;
+        this.optionChestClaimExpiration = options.chestClaimExpiration;
+        this.optionCreateClaimLimit = options.createClaimLimit;
+        this.optionInitialClaimBlocks = options.initialClaimBlocks;
+        this.optionMaxAccruedBlocks = options.maxAccruedBlocks;
+        this.optionPlayerClaimExpiration = options.playerClaimExpiration;
     }
 
     public void revertActiveVisual(Player player) {
@@ -231,14 +220,11 @@ public void revertActiveVisual(Player player) {
             }
         }
         this.visualClaimId = null;
-        if (this.visualBlocks == null || !player.getWorld().equals(this.visualBlocks.get(0).getFinal().getLocation().get().getExtent())) {
+        if (this.visualBlocks == null || this.visualBlocks.isEmpty() || !player.getWorld().equals(this.visualBlocks.getWorld())) {
             return;
         }
 
-        for (int i = 0; i < this.visualBlocks.size(); i++) {
-            BlockSnapshot snapshot = this.visualBlocks.get(i).getOriginal();
-            player.sendBlockChange(snapshot.getPosition(), snapshot.getState());
-        }
+        this.visualBlocks.sendRealBlocks(player);
     }
 
     // whether or not this player is "in" pvp combat
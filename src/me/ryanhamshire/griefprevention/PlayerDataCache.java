@@ -0,0 +1,152 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention;
+
+import me.ryanhamshire.griefprevention.claim.ClaimWorldManager;
+import me.ryanhamshire.griefprevention.configuration.ClaimStorageQueue;
+import me.ryanhamshire.griefprevention.configuration.PlayerStorageData;
+import org.spongepowered.api.Sponge;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.Nullable;
+
+/**
+ * Bounded cache of loaded {@link PlayerData}.
+ *
+ * <p>Once the cache grows past the configured size, offline players are
+ * evicted least recently used first and their storage is written out. Online
+ * players are never evicted. Evicted claim owners leave a {@link PlayerSummary}
+ * behind so claim expiration doesn't have to load them again, until
+ * {@link GPOptionCache} is invalidated.</p>
+ *
+ * <p>Eviction runs from a main thread task, as lookups may come from other
+ * threads. Storage dropped from memory is handed back by
+ * {@link #takeReleasedStorage} until its write has completed, so reloading a player never reads a file
+ * that is about to be overwritten.</p>
+ */
+public class PlayerDataCache {
+
+    // access ordered, so iteration starts at the least recently used player
+    private final LinkedHashMap<UUID, PlayerData> playerData = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<UUID, PlayerSummary> summaries = new HashMap<>();
+    // Player UUID -> storage dropped from memory that is still waiting on the writer thread
+    private final Map<UUID, PlayerStorageData> releasedStorages = new ConcurrentHashMap<>();
+
+    @Nullable
+    public synchronized PlayerData get(UUID playerUniqueId) {
+        return this.playerData.get(playerUniqueId);
+    }
+
+    public synchronized void put(UUID playerUniqueId, PlayerData playerData) {
+        this.playerData.put(playerUniqueId, playerData);
+        this.summaries.remove(playerUniqueId);
+    }
+
+    @Nullable
+    public synchronized PlayerData remove(UUID playerUniqueId) {
+        return this.playerData.remove(playerUniqueId);
+    }
+
+    // copy of the loaded player data, safe to iterate while players are loaded or evicted
+    public synchronized List<PlayerData> values() {
+        return new ArrayList<>(this.playerData.values());
+    }
+
+    public synchronized int size() {
+        return this.playerData.size();
+    }
+
+    public synchronized void clear() {
+        this.playerData.clear();
+        this.summaries.clear();
+    }
+
+    // storage of a dropped player whose write is still queued, null once the write completed
+    @Nullable
+    public PlayerStorageData takeReleasedStorage(UUID playerUniqueId) {
+        return this.releasedStorages.remove(playerUniqueId);
+    }
+
+    // writes storage that is dropped from memory, must be called on the main thread
+    public void releaseStorage(UUID playerUniqueId, PlayerStorageData storage) {
+        this.releasedStorages.put(playerUniqueId, storage);
+        PlayerStorageData.saveAll(Collections.singletonList(storage));
+        // the writer thread runs tasks in order, so this only happens once the storage was written
+        ClaimStorageQueue.execute(() -> this.releasedStorages.remove(playerUniqueId, storage));
+    }
+
+    // summary of a loaded or evicted player, null if the player was never loaded
+    @Nullable
+    public synchronized PlayerSummary getSummary(UUID playerUniqueId) {
+        PlayerData loaded = this.playerData.get(playerUniqueId);
+        if (loaded != null) {
+            return new PlayerSummary(loaded);
+        }
+        PlayerSummary summary = this.summaries.get(playerUniqueId);
+        if (summary != null && summary.optionVersion != GPOptionCache.getVersion()) {
+            // options changed since the player was evicted, the owner has to be loaded again to resolve them
+            this.summaries.remove(playerUniqueId);
+            return null;
+        }
+        return summary;
+    }
+
+    // must be called on the main thread
+    public synchronized void evict() {
+        int excess = this.playerData.size() - GriefPrevention.getGlobalConfig().getConfig().playerdata.cacheSize;
+        if (excess <= 0 || GriefPrevention.getGlobalConfig().getConfig().playerdata.cacheSize <= 0) {
+            return;
+        }
+
+        Iterator<PlayerData> iterator = this.playerData.values().iterator();
+        while (excess > 0 && iterator.hasNext()) {
+            PlayerData evicted = iterator.next();
+            if (Sponge.getServer().getPlayer(evicted.playerID).isPresent()) {
+                continue;
+            }
+
+            iterator.remove();
+            excess--;
+            if (!evicted.getClaims().isEmpty()) {
+                // the summary is tagged with the current options version, so its values must be current too
+                evicted.refreshPlayerOptions();
+                this.summaries.put(evicted.playerID, new PlayerSummary(evicted));
+            }
+
+            ClaimWorldManager claimWorldManager = GriefPrevention.instance.dataStore.getClaimWorldManager(evicted.worldProperties);
+            claimWorldManager.removePlayerStorage(evicted.playerID);
+            this.releaseStorage(evicted.playerID, evicted.getStorageData());
+        }
+    }
+}
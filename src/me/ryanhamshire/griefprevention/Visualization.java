@@ -28,29 +28,30 @@
 import me.ryanhamshire.griefprevention.claim.Claim;
 import me.ryanhamshire.griefprevention.task.VisualizationApplicationTask;
 import net.minecraft.block.state.IBlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.chunk.Chunk;
 import org.spongepowered.api.Sponge;
-import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.block.BlockState;
 import org.spongepowered.api.block.BlockType;
 import org.spongepowered.api.block.BlockTypes;
-import org.spongepowered.api.data.Transaction;
 import org.spongepowered.api.data.property.block.MatterProperty;
 import org.spongepowered.api.entity.living.player.Player;
-import org.spongepowered.api.util.Direction;
 import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
+import java.util.Arrays;
 
 //represents a visualization sent to a player
 //FEATURE: to show players visually where claim boundaries are, we send them fake block change packets
 //the result is that those players see new blocks, but the world hasn't been changed.  other players can't see the new blocks, either.
 public class Visualization {
 
-    public ArrayList<Transaction<BlockSnapshot>> elements;
-    private ArrayList<Transaction<BlockSnapshot>> newElements;
+    // materials of the border blocks, resolved to block states when elements are created
+    private static final byte CORNER = 0;
+    private static final byte ACCENT = 1;
+    private static final byte FILLER = 2;
+
+    public final VisualizationBlocks elements = new VisualizationBlocks();
     private VisualizationType type;
     private Claim claim;
     private Location<World> lesserBoundaryCorner;
@@ -69,16 +70,14 @@ public class Visualization {
     private BlockType cornerMaterial;
     private BlockType accentMaterial;
     private BlockType fillerMaterial = BlockTypes.DIAMOND_BLOCK; // used for 3d cuboids
-    private BlockSnapshot.Builder snapshotBuilder;
+    // border of the claim, only rebuilt when the claim shape changes
+    private Shape shape;
     public boolean displaySubdivisions = false;
     private static int STEP = 10;
 
     public Visualization(VisualizationType type) {
         initBlockVisualTypes(type);
         this.type = type;
-        this.snapshotBuilder = Sponge.getGame().getRegistry().createBuilder(BlockSnapshot.Builder.class);
-        this.elements = new ArrayList<Transaction<BlockSnapshot>>();
-        this.newElements = new ArrayList<>();
     }
 
     public Visualization(Claim claim, VisualizationType type) {
@@ -91,9 +90,6 @@ public Visualization(Location<World> lesserBoundaryCorner, Location<World> great
         this.lesserBoundaryCorner = lesserBoundaryCorner;
         this.greaterBoundaryCorner = greaterBoundaryCorner;
         this.type = type;
-        this.snapshotBuilder = Sponge.getGame().getRegistry().createBuilder(BlockSnapshot.Builder.class);
-        this.elements = new ArrayList<Transaction<BlockSnapshot>>();
-        this.newElements = new ArrayList<>();
     }
 
     public void initBlockVisualTypes(VisualizationType type) {
@@ -145,8 +141,7 @@ public void apply(Player player) {
         playerData.revertActiveVisual(player);
 
         // if he's online, create a task to send him the visualization
-        if (player.isOnline() && this.elements.size() > 0
-                && this.elements.get(0).getOriginal().getLocation().get().getExtent().equals(player.getWorld())) {
+        if (player.isOnline() && !this.elements.isEmpty() && this.elements.getWorld().equals(player.getWorld())) {
             Sponge.getGame().getScheduler().createTaskBuilder().delayTicks(1L)
                     .execute(new VisualizationApplicationTask(player, playerData, this)).submit(GriefPrevention.instance);
         }
@@ -168,23 +163,17 @@ public void revert(Player player) {
 
         // remove any elements which are too far away
         if (!this.cuboidVisual) {
-            this.removeElementsOutOfRange(this.elements, minx, minz, maxx, maxz);
+            this.elements.removeOutOfRange(minx, minz, maxx, maxz);
         }
 
-        // send real block information for any remaining elements
-        for (int i = 0; i < this.elements.size(); i++) {
-            BlockSnapshot snapshot = this.elements.get(i).getOriginal();
-
-            // check player still in world where visualization exists
-            if (i == 0) {
-                if (!player.getWorld().equals(snapshot.getLocation().get().getExtent())) {
-                    return;
-                }
-            }
-
-            player.sendBlockChange(snapshot.getPosition(), snapshot.getState());
+        // check player still in world where visualization exists
+        if (!this.elements.isEmpty() && !player.getWorld().equals(this.elements.getWorld())) {
+            return;
         }
 
+        // send real block information for any remaining elements
+        this.elements.sendRealBlocks(player);
+
         playerData.visualBlocks = null;
         if (playerData.visualRevertTask != null) {
             playerData.visualRevertTask.cancel();
@@ -193,15 +182,13 @@ public void revert(Player player) {
 
     public static Visualization fromClick(Location<World> location, int height, VisualizationType visualizationType, PlayerData playerData) {
         Visualization visualization = new Visualization(visualizationType);
-        BlockSnapshot blockClicked =
-                visualization.snapshotBuilder.from(location).blockState(visualization.cornerMaterial.getDefaultState()).build();
-        visualization.elements.add(new Transaction<BlockSnapshot>(blockClicked.getLocation().get().createSnapshot(), blockClicked));
+        visualization.elements.add(location.getExtent(), location.getBlockX(), location.getBlockY(), location.getBlockZ(),
+                visualization.cornerMaterial.getDefaultState());
         return visualization;
     }
 
     public void resetVisuals() {
         this.elements.clear();
-        this.newElements.clear();
     }
 
     public void createClaimBlockVisualWithType(int height, Location<World> locality, PlayerData playerData, VisualizationType visualType) {
@@ -254,17 +241,18 @@ private void addClaimElements(int height, Location<World> locality, PlayerData p
         this.maxx = claim.cuboid ? bigx : locality.getBlockX() + 75;
         this.maxz = claim.cuboid ? bigz : locality.getBlockZ() + 75;
 
-        // initialize visualization elements without Y values and real data
-        // that will be added later for only the visualization elements within
-        // visualization range
-
         if (this.smallx == this.bigx && this.smally == this.bigy && this.smallz == this.bigz) {
-            BlockSnapshot blockClicked =
-                    snapshotBuilder.from(new Location<World>(world, smallx, smally, smallz)).blockState(cornerMaterial.getDefaultState()).build();
-            elements.add(new Transaction<BlockSnapshot>(blockClicked.getLocation().get().createSnapshot(), blockClicked));
+            this.elements.add(world, smallx, smally, smallz, cornerMaterial.getDefaultState());
             return;
         }
 
+        // the border only depends on the claim shape, so it is reused until the claim is resized
+        // don't show corners while subdividing
+        boolean showCorners = playerData == null || playerData.claimSubdividing == null;
+        if (this.shape == null || !this.shape.matches(this, claim.cuboid, showCorners)) {
+            this.shape = new Shape(this, claim.cuboid, showCorners);
+        }
+
         if (claim.cuboid) {
             this.addVisuals3D(claim, playerData);
         } else {
@@ -273,203 +261,74 @@ private void addClaimElements(int height, Location<World> locality, PlayerData p
     }
 
     public void addVisuals3D(Claim claim, PlayerData playerData) {
-        World world = claim.world;
-
-        this.addTopLine(world, smally, cornerMaterial, accentMaterial);
-        for (int y = smally + STEP; y < bigy - STEP / 2; y += STEP) {
-            this.addTopLine(world, y, fillerMaterial, fillerMaterial);
-        }
-        this.addTopLine(world, bigy, cornerMaterial, accentMaterial);
-        this.addBottomLine(world, smally, cornerMaterial, accentMaterial);
-        for (int y = smally + STEP; y < bigy - STEP / 2; y += STEP) {
-            this.addBottomLine(world, y, fillerMaterial, fillerMaterial);
-        }
-        this.addBottomLine(world, bigy, cornerMaterial, accentMaterial);
-        this.addLeftLine(world, smally, cornerMaterial, accentMaterial);
-        for (int y = smally + STEP; y < bigy - STEP / 2; y += STEP) {
-            this.addLeftLine(world, y, fillerMaterial, fillerMaterial);
-        }
-        this.addLeftLine(world, bigy, cornerMaterial, accentMaterial);
-        this.addRightLine(world, smally, cornerMaterial, accentMaterial);
-        for (int y = smally + STEP; y < bigy - STEP / 2; y += STEP) {
-            this.addRightLine(world, y, fillerMaterial, fillerMaterial);
-        }
-        this.addRightLine(world, bigy, cornerMaterial, accentMaterial);
-        // don't show corners while subdividing
-        if (playerData == null || (playerData.claimSubdividing == null)) {
-            // top corners
-            this.addCorners(world, bigy - 1, accentMaterial);
-            // bottom corners
-            this.addCorners(world, smally + 1, accentMaterial);
+        final World world = claim.world;
+        final BlockState[] states = this.getMaterialStates();
+        final Shape shape = this.shape;
+        for (int i = 0; i < shape.size; i++) {
+            this.elements.add(world, shape.positions[i * 3], shape.positions[i * 3 + 1], shape.positions[i * 3 + 2], states[shape.materials[i]]);
         }
-
-        this.elements.addAll(newElements);
     }
 
     public void addVisuals2D(Claim claim, int height, boolean liquidTransparent) {
-        World world = claim.world;
-        this.addTopLine(world, 0, cornerMaterial, accentMaterial);
-        this.addBottomLine(world, 0, cornerMaterial, accentMaterial);
-        this.addLeftLine(world, 0, cornerMaterial, accentMaterial);
-        this.addRightLine(world, 0, cornerMaterial, accentMaterial);
-
-        // remove any out of range elements
-        this.removeElementsOutOfRange(this.newElements, minx, minz, maxx, maxz);
-
-        for (int i = 0; i < newElements.size(); i++) {
-            BlockSnapshot element = newElements.get(i).getFinal();
-            if (!claim.contains(element.getLocation().get(), true, false)) {
-                newElements.remove(i--);
-            }
-        }
-        // set Y values and real block information for any remaining visualization blocks
-        ArrayList<Transaction<BlockSnapshot>> actualElements = new ArrayList<Transaction<BlockSnapshot>>();
-        for (Transaction<BlockSnapshot> element : newElements) {
-            Location<World> tempLocation = element.getFinal().getLocation().get();
-            Location<World> visibleLocation =
-                    getVisibleLocation(tempLocation.getExtent(), tempLocation.getBlockX(), height, tempLocation.getBlockZ(), liquidTransparent);
-            element = new Transaction<BlockSnapshot>(element.getOriginal().withLocation(visibleLocation).withState(visibleLocation.getBlock()),
-                    element.getFinal().withLocation(visibleLocation));
-            height = element.getFinal().getPosition().getY();
-            actualElements.add(element);
-        }
-
-        this.elements.addAll(actualElements);
-    }
-
-    public void addCorners(World world, int y, BlockType accentMaterial) {
-        BlockSnapshot corner1 =
-                snapshotBuilder.from(new Location<World>(world, smallx, y, bigz)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(corner1.getLocation().get().createSnapshot(), corner1));
-        BlockSnapshot corner2 =
-                snapshotBuilder.from(new Location<World>(world, bigx, y, bigz)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(corner2.getLocation().get().createSnapshot(), corner2));
-        BlockSnapshot corner3 =
-                snapshotBuilder.from(new Location<World>(world, bigx, y, smallz)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(corner3.getLocation().get().createSnapshot(), corner3));
-        BlockSnapshot corner4 =
-                snapshotBuilder.from(new Location<World>(world, smallx, y, smallz)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(corner4.getLocation().get().createSnapshot(), corner4));
-    }
-
-    public void addTopLine(World world, int y, BlockType cornerMaterial, BlockType accentMaterial) {
-        BlockSnapshot topVisualBlock1 =
-                snapshotBuilder.from(new Location<World>(world, smallx, y, bigz)).blockState(cornerMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(topVisualBlock1.getLocation().get().createSnapshot(), topVisualBlock1));
-        BlockSnapshot topVisualBlock2 =
-                snapshotBuilder.from(new Location<World>(world, smallx + 1, y, bigz)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(topVisualBlock2.getLocation().get().createSnapshot(), topVisualBlock2));
-        BlockSnapshot topVisualBlock3 =
-                snapshotBuilder.from(new Location<World>(world, bigx - 1, y, bigz)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(topVisualBlock3.getLocation().get().createSnapshot(), topVisualBlock3));
-
-        for (int x = smallx + STEP; x < bigx - STEP / 2; x += STEP) {
-            if ((y != 0 && x >= smallx && x <= bigx) || (x > minx && x < maxx)) {
-                BlockSnapshot visualBlock =
-                        snapshotBuilder.from(new Location<World>(world, x, y, bigz)).blockState(accentMaterial.getDefaultState()).build();
-                newElements.add(new Transaction<BlockSnapshot>(visualBlock.getLocation().get().createSnapshot(), visualBlock));
+        final World world = claim.world;
+        final BlockState[] states = this.getMaterialStates();
+        final Shape shape = this.shape;
+        final BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        for (int i = 0; i < shape.size; i++) {
+            final int x = shape.positions[i * 3];
+            final int z = shape.positions[i * 3 + 2];
+            // skip any out of range elements
+            if (x < minx || x > maxx || z < minz || z > maxz) {
+                continue;
             }
-        }
-    }
-
-    public void addBottomLine(World world, int y, BlockType cornerMaterial, BlockType accentMaterial) {
-        BlockSnapshot bottomVisualBlock1 =
-                this.snapshotBuilder.from(new Location<World>(world, smallx + 1, y, smallz)).blockState(accentMaterial.getDefaultState()).build();
-        this.newElements.add(new Transaction<BlockSnapshot>(bottomVisualBlock1.getLocation().get().createSnapshot(), bottomVisualBlock1));
-        BlockSnapshot bottomVisualBlock2 =
-                this.snapshotBuilder.from(new Location<World>(world, bigx - 1, y, smallz)).blockState(accentMaterial.getDefaultState()).build();
-        this.newElements.add(new Transaction<BlockSnapshot>(bottomVisualBlock2.getLocation().get().createSnapshot(), bottomVisualBlock2));
-
-        for (int x = smallx + STEP; x < bigx - STEP / 2; x += STEP) {
-            if ((y != 0 && x >= smallx && x <= bigx) || (x > minx && x < maxx)) {
-                BlockSnapshot visualBlock =
-                        this.snapshotBuilder.from(new Location<World>(world, x, y, smallz)).blockState(accentMaterial.getDefaultState()).build();
-                newElements.add(new Transaction<BlockSnapshot>(visualBlock.getLocation().get().createSnapshot(), visualBlock));
+            // remove any elements outside the claim
+            if (!claim.contains(new Location<World>(world, x, 0, z), true, false)) {
+                continue;
             }
-        }
-    }
 
-    public void addLeftLine(World world, int y, BlockType cornerMaterial, BlockType accentMaterial) {
-        BlockSnapshot leftVisualBlock1 =
-                snapshotBuilder.from(new Location<World>(world, smallx, y, smallz)).blockState(cornerMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(leftVisualBlock1.getLocation().get().createSnapshot(), leftVisualBlock1));
-        BlockSnapshot leftVisualBlock2 =
-                snapshotBuilder.from(new Location<World>(world, smallx, y, smallz + 1)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(leftVisualBlock2.getLocation().get().createSnapshot(), leftVisualBlock2));
-        BlockSnapshot leftVisualBlock3 =
-                snapshotBuilder.from(new Location<World>(world, smallx, y, bigz - 1)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(leftVisualBlock3.getLocation().get().createSnapshot(), leftVisualBlock3));
-
-        for (int z = smallz + STEP; z < bigz - STEP / 2; z += STEP) {
-            if ((y != 0 && z >= smallz && z <= bigz) || (z > minz && z < maxz)) {
-                BlockSnapshot visualBlock =
-                        snapshotBuilder.from(new Location<World>(world, smallx, y, z)).blockState(accentMaterial.getDefaultState()).build();
-                newElements.add(new Transaction<BlockSnapshot>(visualBlock.getLocation().get().createSnapshot(), visualBlock));
-           }
+            // set Y values for any remaining visualization blocks
+            height = getVisibleHeight(world, pos, x, height, z, liquidTransparent);
+            this.elements.add(world, x, height, z, states[shape.materials[i]]);
         }
     }
 
-    public void addRightLine(World world, int y, BlockType cornerMaterial, BlockType accentMaterial) {
-        BlockSnapshot rightVisualBlock1 =
-                snapshotBuilder.from(new Location<World>(world, bigx, y, smallz)).blockState(cornerMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(rightVisualBlock1.getLocation().get().createSnapshot(), rightVisualBlock1));
-        BlockSnapshot rightVisualBlock2 =
-                snapshotBuilder.from(new Location<World>(world, bigx, y, smallz + 1)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(rightVisualBlock2.getLocation().get().createSnapshot(), rightVisualBlock2));
-        for (int z = smallz + STEP; z < bigz - STEP / 2; z += STEP) {
-            if ((y != 0 && z >= smallz && z <= bigz) || (z > minz && z < maxz)) {
-                BlockSnapshot visualBlock =
-                        snapshotBuilder.from(new Location<World>(world, bigx, y, z)).blockState(accentMaterial.getDefaultState()).build();
-                newElements.add(new Transaction<BlockSnapshot>(visualBlock.getLocation().get().createSnapshot(), visualBlock));
-            }
-        }
-        BlockSnapshot rightVisualBlock3 =
-                snapshotBuilder.from(new Location<World>(world, bigx, y, bigz - 1)).blockState(accentMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(rightVisualBlock3.getLocation().get().createSnapshot(), rightVisualBlock3));
-        BlockSnapshot rightVisualBlock4 =
-                snapshotBuilder.from(new Location<World>(world, bigx, y, bigz)).blockState(cornerMaterial.getDefaultState()).build();
-        newElements.add(new Transaction<BlockSnapshot>(rightVisualBlock4.getLocation().get().createSnapshot(), rightVisualBlock4));
+    private BlockState[] getMaterialStates() {
+        return new BlockState[] {cornerMaterial.getDefaultState(), accentMaterial.getDefaultState(), fillerMaterial.getDefaultState()};
     }
 
-    public List<Transaction<BlockSnapshot>> getVisualElements() {
-        return this.elements;
-    }
-
-    // removes any elements which are out of visualization range
-    private void removeElementsOutOfRange(ArrayList<Transaction<BlockSnapshot>> elements, int minx, int minz, int maxx, int maxz) {
-        for (int i = 0; i < elements.size(); i++) {
-            Location<World> location = elements.get(i).getFinal().getLocation().get();
-            if (location.getX() < minx || location.getX() > maxx || location.getZ() < minz || location.getZ() > maxz) {
-                elements.remove(i--);
+    // finds a block the player can probably see. this is how visualizations
+    // "cling" to the ground or ceiling
+    private static int getVisibleHeight(World world, BlockPos.MutableBlockPos pos, int x, int y, int z, boolean waterIsTransparent) {
+        final Chunk chunk = ((net.minecraft.world.World) world).getChunkFromChunkCoords(x >> 4, z >> 4);
+        final int maxY = world.getDimension().getBuildHeight() - 1;
+        boolean transparent = isTransparent(chunk.getBlockState(pos.setPos(x, y, z)), waterIsTransparent);
+        final int direction = transparent ? -1 : 1;
+
+        // nothing above the height map blocks light, so the walk down would pass over
+        // every one of those blocks. start from the top of the column instead
+        if (transparent && y >= 1 && y < maxY) {
+            int surfaceY = Math.max(0, chunk.getHeightValue(x & 15, z & 15) - 1);
+            if (surfaceY < y) {
+                y = surfaceY;
+                transparent = isTransparent(chunk.getBlockState(pos.setPos(x, y, z)), waterIsTransparent);
             }
         }
-    }
 
-    // finds a block the player can probably see. this is how visualizations
-    // "cling" to the ground or ceiling
-    private static Location<World> getVisibleLocation(World world, int x, int y, int z, boolean waterIsTransparent) {
-        BlockSnapshot block = world.createSnapshot(x, y, z);
-        Direction direction = (isTransparent(block.getState(), waterIsTransparent)) ? Direction.DOWN : Direction.UP;
-
-        while (block.getPosition().getY() >= 1 &&
-                block.getPosition().getY() < world.getDimension().getBuildHeight() - 1 &&
-                (!isTransparent(block.getLocation().get().getRelative(Direction.UP).getBlock(), waterIsTransparent)
-                        || isTransparent(block.getState(), waterIsTransparent))) {
-            block = block.getLocation().get().getRelative(direction).createSnapshot();
+        while (y >= 1 && y < maxY && (transparent || !isTransparent(chunk.getBlockState(pos.setPos(x, y + 1, z)), waterIsTransparent))) {
+            y += direction;
+            transparent = isTransparent(chunk.getBlockState(pos.setPos(x, y, z)), waterIsTransparent);
         }
 
-        return block.getLocation().get();
+        return y;
     }
 
     // helper method for above. allows visualization blocks to sit underneath
     // partly transparent blocks like grass and fence
-    private static boolean isTransparent(BlockState blockstate, boolean waterIsTransparent) {
-        IBlockState iblockstate = (IBlockState)(Object) blockstate;
-        Optional<MatterProperty> matterProperty = blockstate.getProperty(MatterProperty.class);
-        if (!waterIsTransparent && matterProperty.isPresent() && matterProperty.get().getValue() == MatterProperty.Matter.LIQUID) {
+    private static boolean isTransparent(IBlockState blockstate, boolean waterIsTransparent) {
+        if (!waterIsTransparent && blockstate.getMaterial().isLiquid()) {
             return false;
         }
-        return !iblockstate.isOpaqueCube();
+        return !blockstate.isOpaqueCube();
     }
 
     public static Visualization fromClaims(Iterable<Claim> claims) {
@@ -488,4 +347,126 @@ public static Visualization fromClaims(Iterable<Claim> claims) {
 
         return visualization;
     }
+
+    // border blocks of a claim as primitive positions, 2d claims use a y of 0
+    private static class Shape {
+
+        private final int smallx;
+        private final int smally;
+        private final int smallz;
+        private final int bigx;
+        private final int bigy;
+        private final int bigz;
+        private final boolean cuboid;
+        private final boolean showCorners;
+        private int[] positions = new int[96];
+        private byte[] materials = new byte[32];
+        private int size;
+
+        private Shape(Visualization visualization, boolean cuboid, boolean showCorners) {
+            this.smallx = visualization.smallx;
+            this.smally = visualization.smally;
+            this.smallz = visualization.smallz;
+            this.bigx = visualization.bigx;
+            this.bigy = visualization.bigy;
+            this.bigz = visualization.bigz;
+            this.cuboid = cuboid;
+            this.showCorners = showCorners;
+
+            if (!cuboid) {
+                this.addTopLine(0, CORNER, ACCENT);
+                this.addBottomLine(0, ACCENT);
+                this.addLeftLine(0, CORNER, ACCENT);
+                this.addRightLine(0, CORNER, ACCENT);
+                return;
+            }
+
+            this.addTopLine(smally, CORNER, ACCENT);
+            for (int y = smally + STEP; y < bigy - STEP / 2; y += STEP) {
+                this.addTopLine(y, FILLER, FILLER);
+            }
+            this.addTopLine(bigy, CORNER, ACCENT);
+            this.addBottomLine(smally, ACCENT);
+            for (int y = smally + STEP; y < bigy - STEP / 2; y += STEP) {
+                this.addBottomLine(y, FILLER);
+            }
+            this.addBottomLine(bigy, ACCENT);
+            this.addLeftLine(smally, CORNER, ACCENT);
+            for (int y = smally + STEP; y < bigy - STEP / 2; y += STEP) {
+                this.addLeftLine(y, FILLER, FILLER);
+            }
+            this.addLeftLine(bigy, CORNER, ACCENT);
+            this.addRightLine(smally, CORNER, ACCENT);
+            for (int y = smally + STEP; y < bigy - STEP / 2; y += STEP) {
+                this.addRightLine(y, FILLER, FILLER);
+            }
+            this.addRightLine(bigy, CORNER, ACCENT);
+            if (showCorners) {
+                // top corners
+                this.addCorners(bigy - 1, ACCENT);
+                // bottom corners
+                this.addCorners(smally + 1, ACCENT);
+            }
+        }
+
+        private boolean matches(Visualization visualization, boolean cuboid, boolean showCorners) {
+            return this.smallx == visualization.smallx && this.smally == visualization.smally && this.smallz == visualization.smallz
+                    && this.bigx == visualization.bigx && this.bigy == visualization.bigy && this.bigz == visualization.bigz
+                    && this.cuboid == cuboid && (!cuboid || this.showCorners == showCorners);
+        }
+
+        private void add(int x, int y, int z, byte material) {
+            if (this.size == this.materials.length) {
+                this.materials = Arrays.copyOf(this.materials, this.size * 2);
+                this.positions = Arrays.copyOf(this.positions, this.size * 6);
+            }
+            this.positions[this.size * 3] = x;
+            this.positions[this.size * 3 + 1] = y;
+            this.positions[this.size * 3 + 2] = z;
+            this.materials[this.size++] = material;
+        }
+
+        private void addCorners(int y, byte accent) {
+            this.add(smallx, y, bigz, accent);
+            this.add(bigx, y, bigz, accent);
+            this.add(bigx, y, smallz, accent);
+            this.add(smallx, y, smallz, accent);
+        }
+
+        private void addTopLine(int y, byte corner, byte accent) {
+            this.add(smallx, y, bigz, corner);
+            this.add(smallx + 1, y, bigz, accent);
+            this.add(bigx - 1, y, bigz, accent);
+            for (int x = smallx + STEP; x < bigx - STEP / 2; x += STEP) {
+                this.add(x, y, bigz, accent);
+            }
+        }
+
+        private void addBottomLine(int y, byte accent) {
+            this.add(smallx + 1, y, smallz, accent);
+            this.add(bigx - 1, y, smallz, accent);
+            for (int x = smallx + STEP; x < bigx - STEP / 2; x += STEP) {
+                this.add(x, y, smallz, accent);
+            }
+        }
+
+        private void addLeftLine(int y, byte corner, byte accent) {
+            this.add(smallx, y, smallz, corner);
+            this.add(smallx, y, smallz + 1, accent);
+            this.add(smallx, y, bigz - 1, accent);
+            for (int z = smallz + STEP; z < bigz - STEP / 2; z += STEP) {
+                this.add(smallx, y, z, accent);
+            }
+        }
+
+        private void addRightLine(int y, byte corner, byte accent) {
+            this.add(bigx, y, smallz, corner);
+            this.add(bigx, y, smallz + 1, accent);
+            for (int z = smallz + STEP; z < bigz - STEP / 2; z += STEP) {
+                this.add(bigx, y, z, accent);
+            }
+            this.add(bigx, y, bigz - 1, accent);
+            this.add(bigx, y, bigz, corner);
+        }
+    }
 }
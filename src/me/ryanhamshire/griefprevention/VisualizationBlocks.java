@@ -0,0 +1,216 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.block.Block;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.entity.player.EntityPlayerMP;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.network.play.server.SPacketMultiBlockChange;
+import net.minecraft.util.math.BlockPos;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.world.World;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The fake blocks of a visualization, stored as primitive positions and sent
+ * to players as one multi block change packet per chunk.
+ */
+public class VisualizationBlocks {
+
+    // positions are packed into the sort key next to the element index
+    private static final int INDEX_BITS = 20;
+    private static final int MAX_ELEMENTS = 1 << INDEX_BITS;
+    // reused for every batch, packets are only built on the main thread
+    private static final PacketBuffer PACKET_BUFFER = new PacketBuffer(Unpooled.buffer());
+
+    private World world;
+    private int[] positions = new int[48];
+    private BlockState[] states = new BlockState[16];
+    private int size;
+
+    public World getWorld() {
+        return this.world;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    public void add(World world, int x, int y, int z, BlockState state) {
+        if (this.size == MAX_ELEMENTS) {
+            return;
+        }
+        if (this.world == null) {
+            this.world = world;
+        }
+        if (this.size == this.states.length) {
+            this.states = Arrays.copyOf(this.states, this.size * 2);
+            this.positions = Arrays.copyOf(this.positions, this.size * 6);
+        }
+        this.positions[this.size * 3] = x;
+        this.positions[this.size * 3 + 1] = y;
+        this.positions[this.size * 3 + 2] = z;
+        this.states[this.size++] = state;
+    }
+
+    public void addAll(VisualizationBlocks blocks) {
+        for (int i = 0; i < blocks.size; i++) {
+            this.add(blocks.world, blocks.positions[i * 3], blocks.positions[i * 3 + 1], blocks.positions[i * 3 + 2], blocks.states[i]);
+        }
+    }
+
+    public VisualizationBlocks copy() {
+        VisualizationBlocks copy = new VisualizationBlocks();
+        copy.world = this.world;
+        copy.positions = Arrays.copyOf(this.positions, this.size * 3);
+        copy.states = Arrays.copyOf(this.states, this.size);
+        copy.size = this.size;
+        return copy;
+    }
+
+    public void clear() {
+        Arrays.fill(this.states, 0, this.size, null);
+        this.size = 0;
+        this.world = null;
+    }
+
+    // removes any elements which are out of visualization range
+    public void removeOutOfRange(int minx, int minz, int maxx, int maxz) {
+        int kept = 0;
+        for (int i = 0; i < this.size; i++) {
+            int x = this.positions[i * 3];
+            int z = this.positions[i * 3 + 2];
+            if (x < minx || x > maxx || z < minz || z > maxz) {
+                continue;
+            }
+            System.arraycopy(this.positions, i * 3, this.positions, kept * 3, 3);
+            this.states[kept++] = this.states[i];
+        }
+        Arrays.fill(this.states, kept, this.size, null);
+        this.size = kept;
+    }
+
+    // sends the fake blocks to the player
+    public void sendFakeBlocks(Player player) {
+        this.send(player, false);
+    }
+
+    // sends the current world blocks at every element, undoing the fake blocks
+    public void sendRealBlocks(Player player) {
+        this.send(player, true);
+    }
+
+    private void send(Player player, boolean real) {
+        if (this.size == 0) {
+            return;
+        }
+
+        // sort elements by chunk, keeping insertion order within a chunk so later elements still win
+        long[] order = new long[this.size];
+        int count = 0;
+        for (int i = 0; i < this.size; i++) {
+            int y = this.positions[i * 3 + 1];
+            if (y < 0 || y > 255) {
+                continue;
+            }
+            long chunkX = (this.positions[i * 3] >> 4) & 0x3FFFFF;
+            long chunkZ = (this.positions[i * 3 + 2] >> 4) & 0x3FFFFF;
+            order[count++] = chunkX << 42 | chunkZ << INDEX_BITS | i;
+        }
+        Arrays.sort(order, 0, count);
+
+        final net.minecraft.world.World world = (net.minecraft.world.World) this.world;
+        final BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        int start = 0;
+        while (start < count) {
+            long chunkKey = order[start] >>> INDEX_BITS;
+            int end = start + 1;
+            while (end < count && (order[end] >>> INDEX_BITS) == chunkKey) {
+                end++;
+            }
+
+            if (end - start == 1) {
+                this.sendSingleBlocks(player, world, pos, order, start, end, real);
+            } else {
+                this.sendChunkBatch(player, world, pos, order, start, end, real);
+            }
+            start = end;
+        }
+    }
+
+    private void sendChunkBatch(Player player, net.minecraft.world.World world, BlockPos.MutableBlockPos pos, long[] order, int start, int end,
+            boolean real) {
+        // the packet is read back from the batch written in its wire format, so no chunk has to back it
+        PacketBuffer buffer = PACKET_BUFFER;
+        buffer.clear();
+        int first = (int) (order[start] & (MAX_ELEMENTS - 1));
+        buffer.writeInt(this.positions[first * 3] >> 4);
+        buffer.writeInt(this.positions[first * 3 + 2] >> 4);
+        buffer.writeVarIntToBuffer(end - start);
+        for (int j = start; j < end; j++) {
+            int i = (int) (order[j] & (MAX_ELEMENTS - 1));
+            int x = this.positions[i * 3];
+            int y = this.positions[i * 3 + 1];
+            int z = this.positions[i * 3 + 2];
+            IBlockState state = real ? world.getBlockState(pos.setPos(x, y, z)) : (IBlockState) this.states[i];
+            buffer.writeShort((x & 15) << 12 | (z & 15) << 8 | y);
+            buffer.writeVarIntToBuffer(Block.BLOCK_STATE_IDS.get(state));
+        }
+
+        SPacketMultiBlockChange packet = new SPacketMultiBlockChange();
+        try {
+            packet.readPacketData(buffer);
+        } catch (IOException e) {
+            GriefPrevention.instance.getLogger().error("Failed to build visualization packet for chunk " + (this.positions[first * 3] >> 4) + ", "
+                    + (this.positions[first * 3 + 2] >> 4) + ", sending its blocks one at a time.", e);
+            this.sendSingleBlocks(player, world, pos, order, start, end, real);
+            return;
+        } finally {
+            buffer.clear();
+        }
+        ((EntityPlayerMP) player).connection.sendPacket(packet);
+    }
+
+    private void sendSingleBlocks(Player player, net.minecraft.world.World world, BlockPos.MutableBlockPos pos, long[] order, int start, int end,
+            boolean real) {
+        for (int j = start; j < end; j++) {
+            int i = (int) (order[j] & (MAX_ELEMENTS - 1));
+            int x = this.positions[i * 3];
+            int y = this.positions[i * 3 + 1];
+            int z = this.positions[i * 3 + 2];
+            BlockState state = real ? (BlockState) world.getBlockState(pos.setPos(x, y, z)) : this.states[i];
+            player.sendBlockChange(x, y, z, state);
+        }
+    }
+}
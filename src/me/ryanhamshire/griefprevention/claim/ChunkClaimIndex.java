@@ -0,0 +1,336 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.claim;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import java.util.concurrent.locks.StampedLock;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link ClaimSpatialIndex} backed by an open addressing table keyed by
+ * primitive chunk coordinates.
+ *
+ * <p>Chunks covered by a single claim share one array owned by that claim so
+ * large claims cost a table slot per chunk and nothing more.</p>
+ */
+public class ChunkClaimIndex implements ClaimSpatialIndex {
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final Claim[] EMPTY = new Claim[0];
+
+    // lookups may come from async chat and permission checks while the main thread mutates,
+    // they read optimistically and fall back to the read lock if a write got in between
+    private final StampedLock lock = new StampedLock();
+    // Claim -> chunk bounds the claim was registered with
+    private final Map<Claim, Registration> registrations = new IdentityHashMap<>();
+    private final ClaimChunkMask chunkMask = new ClaimChunkMask();
+    // replaced as a whole on rehash, so a lookup never mixes arrays of different sizes
+    private Table table;
+    private int size;
+    private int resizeThreshold;
+
+    public ChunkClaimIndex() {
+        this.allocate(INITIAL_CAPACITY);
+    }
+
+    @Override
+    public void addClaim(Claim claim) {
+        final long stamp = this.lock.writeLock();
+        try {
+            this.register(claim);
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void removeClaim(Claim claim) {
+        final long stamp = this.lock.writeLock();
+        try {
+            this.unregister(claim);
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void updateClaim(Claim claim) {
+        final long stamp = this.lock.writeLock();
+        try {
+            this.unregister(claim);
+            this.register(claim);
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    @Nullable
+    public Claim[] getClaimsInChunk(int chunkX, int chunkZ) {
+        final long key = chunkKey(chunkX, chunkZ);
+        final long stamp = this.lock.tryOptimisticRead();
+        Claim[] claims = this.table.get(key);
+        if (!this.lock.validate(stamp)) {
+            final long readStamp = this.lock.readLock();
+            try {
+                claims = this.table.get(key);
+            } finally {
+                this.lock.unlockRead(readStamp);
+            }
+        }
+        return claims;
+    }
+
+    @Override
+    public boolean isClaimFree(int chunkX, int chunkZ) {
+        final long stamp = this.lock.tryOptimisticRead();
+        boolean claimFree = this.chunkMask.isClaimFree(chunkX, chunkZ);
+        if (!this.lock.validate(stamp)) {
+            final long readStamp = this.lock.readLock();
+            try {
+                claimFree = this.chunkMask.isClaimFree(chunkX, chunkZ);
+            } finally {
+                this.lock.unlockRead(readStamp);
+            }
+        }
+        return claimFree;
+    }
+
+    @Override
+    public int getChunkCount() {
+        return this.size;
+    }
+
+    @Override
+    public void clear() {
+        final long stamp = this.lock.writeLock();
+        try {
+            this.registrations.clear();
+            this.chunkMask.clear();
+            this.allocate(INITIAL_CAPACITY);
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    private void register(Claim claim) {
+        if (this.registrations.containsKey(claim)) {
+            return;
+        }
+
+        Registration registration = new Registration(claim);
+        this.registrations.put(claim, registration);
+        this.chunkMask.add(registration.minChunkX, registration.minChunkZ, registration.maxChunkX, registration.maxChunkZ);
+        for (int x = registration.minChunkX; x <= registration.maxChunkX; x++) {
+            for (int z = registration.minChunkZ; z <= registration.maxChunkZ; z++) {
+                this.insert(chunkKey(x, z), registration);
+            }
+        }
+    }
+
+    private void unregister(Claim claim) {
+        Registration registration = this.registrations.remove(claim);
+        if (registration == null) {
+            return;
+        }
+
+        this.chunkMask.remove(registration.minChunkX, registration.minChunkZ, registration.maxChunkX, registration.maxChunkZ);
+
+        for (int x = registration.minChunkX; x <= registration.maxChunkX; x++) {
+            for (int z = registration.minChunkZ; z <= registration.maxChunkZ; z++) {
+                this.delete(chunkKey(x, z), claim);
+            }
+        }
+    }
+
+    private void insert(long key, Registration registration) {
+        final long[] keys = this.table.keys;
+        final Claim[][] values = this.table.values;
+        final int mask = this.table.mask;
+        int index = mix(key) & mask;
+        Claim[] claims;
+        while ((claims = values[index]) != null) {
+            if (keys[index] == key) {
+                for (Claim claim : claims) {
+                    if (claim == registration.claim) {
+                        return;
+                    }
+                }
+                Claim[] newClaims = Arrays.copyOf(claims, claims.length + 1);
+                newClaims[claims.length] = registration.claim;
+                values[index] = newClaims;
+                return;
+            }
+            index = (index + 1) & mask;
+        }
+
+        keys[index] = key;
+        values[index] = registration.single;
+        if (++this.size > this.resizeThreshold) {
+            this.rehash(keys.length << 1);
+        }
+    }
+
+    private void delete(long key, Claim claim) {
+        final long[] keys = this.table.keys;
+        final Claim[][] values = this.table.values;
+        final int mask = this.table.mask;
+        int index = mix(key) & mask;
+        Claim[] claims;
+        while ((claims = values[index]) != null) {
+            if (keys[index] == key) {
+                break;
+            }
+            index = (index + 1) & mask;
+        }
+        if (claims == null) {
+            return;
+        }
+
+        if (claims.length > 1) {
+            Claim[] newClaims = EMPTY;
+            for (int i = 0; i < claims.length; i++) {
+                if (claims[i] == claim) {
+                    newClaims = new Claim[claims.length - 1];
+                    System.arraycopy(claims, 0, newClaims, 0, i);
+                    System.arraycopy(claims, i + 1, newClaims, i, claims.length - i - 1);
+                    break;
+                }
+            }
+            if (newClaims.length == 1) {
+                // go back to sharing the remaining claim's array
+                newClaims = this.registrations.get(newClaims[0]).single;
+            }
+            if (newClaims.length != 0) {
+                values[index] = newClaims;
+            }
+            return;
+        }
+        if (claims[0] != claim) {
+            return;
+        }
+
+        // backward shift deletion keeps probe sequences intact without tombstones
+        int gap = index;
+        index = (index + 1) & mask;
+        while (values[index] != null) {
+            int home = mix(keys[index]) & mask;
+            if (((index - home) & mask) >= ((index - gap) & mask)) {
+                keys[gap] = keys[index];
+                values[gap] = values[index];
+                gap = index;
+            }
+            index = (index + 1) & mask;
+        }
+        keys[gap] = 0;
+        values[gap] = null;
+        this.size--;
+    }
+
+    private void rehash(int capacity) {
+        final Table oldTable = this.table;
+        final Table newTable = new Table(capacity);
+        for (int i = 0; i < oldTable.keys.length; i++) {
+            if (oldTable.values[i] != null) {
+                int index = mix(oldTable.keys[i]) & newTable.mask;
+                while (newTable.values[index] != null) {
+                    index = (index + 1) & newTable.mask;
+                }
+                newTable.keys[index] = oldTable.keys[i];
+                newTable.values[index] = oldTable.values[i];
+            }
+        }
+
+        this.resizeThreshold = (capacity >> 1) + (capacity >> 2);
+        this.table = newTable;
+    }
+
+    private void allocate(int capacity) {
+        this.table = new Table(capacity);
+        this.resizeThreshold = (capacity >> 1) + (capacity >> 2);
+        this.size = 0;
+    }
+
+    // same packing as ChunkPos.chunkXZ2Int
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return (long) chunkX & 0xFFFFFFFFL | ((long) chunkZ & 0xFFFFFFFFL) << 32;
+    }
+
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private static final class Table {
+
+        final long[] keys;
+        final Claim[][] values;
+        final int mask;
+
+        Table(int capacity) {
+            this.keys = new long[capacity];
+            this.values = new Claim[capacity][];
+            this.mask = capacity - 1;
+        }
+
+        // the load factor keeps a free slot in every table, so a probe always ends even mid write
+        @Nullable
+        Claim[] get(long key) {
+            int index = mix(key) & this.mask;
+            Claim[] claims;
+            while ((claims = this.values[index]) != null) {
+                if (this.keys[index] == key) {
+                    return claims;
+                }
+                index = (index + 1) & this.mask;
+            }
+            return null;
+        }
+    }
+
+    private static final class Registration {
+
+        final Claim claim;
+        final Claim[] single;
+        final int minChunkX;
+        final int minChunkZ;
+        final int maxChunkX;
+        final int maxChunkZ;
+
+        Registration(Claim claim) {
+            this.claim = claim;
+            this.single = new Claim[] {claim};
+            this.minChunkX = claim.getLesserBoundaryCorner().getBlockX() >> 4;
+            this.minChunkZ = claim.getLesserBoundaryCorner().getBlockZ() >> 4;
+            this.maxChunkX = claim.getGreaterBoundaryCorner().getBlockX() >> 4;
+            this.maxChunkZ = claim.getGreaterBoundaryCorner().getBlockZ() >> 4;
+        }
+    }
+}
@@ -26,6 +26,7 @@
 package me.ryanhamshire.griefprevention.claim;
 
 import com.google.common.collect.ImmutableSet;
+import me.ryanhamshire.griefprevention.GPPermissionCache;
 import me.ryanhamshire.griefprevention.GPPermissionHandler;
 import me.ryanhamshire.griefprevention.GPPermissions;
 import me.ryanhamshire.griefprevention.GriefPrevention;
@@ -46,7 +47,6 @@
 import org.spongepowered.api.block.BlockType;
 import org.spongepowered.api.block.BlockTypes;
 import org.spongepowered.api.data.property.block.MatterProperty;
-import org.spongepowered.api.entity.Entity;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.entity.living.player.User;
 import org.spongepowered.api.service.context.Context;
@@ -116,11 +116,12 @@ public enum Type {
     // used by subdivisions to inherit parent permissions
     public boolean inheritParent = true;
 
+    // entities inside this claim, maintained by ClaimEntityCounter for top level claims
+    int entityCount = 0;
+
     public Visualization visualization;
     public List<UUID> playersWatching = new ArrayList<>();
 
-    public PlayerData ownerPlayerData;
-
     public Claim(Location<World> lesserBoundaryCorner, Location<World> greaterBoundaryCorner, Type type) {
         this(lesserBoundaryCorner, greaterBoundaryCorner, UUID.randomUUID(), type);
     }
@@ -142,7 +143,6 @@ public Claim(Location<World> lesserBoundaryCorner, Location<World> greaterBounda
         this.world = lesserBoundaryCorner.getExtent();
         if (player != null) {
             this.ownerID = player.getUniqueId();
-            this.ownerPlayerData = GriefPrevention.instance.dataStore.getOrCreatePlayerData(this.world, this.ownerID);
         }
         this.type = type;
     }
@@ -374,7 +374,7 @@ public boolean hasFullTrust(User user) {
         }
 
         // Builders can place blocks in claims
-        if (this.getClaimData().getBuilders().contains(GriefPrevention.PUBLIC_UUID) || this.getClaimData().getBuilders().contains(user.getUniqueId())) {
+        if (this.getClaimData().getBuilders().isPublic() || this.getClaimData().getBuilders().contains(user.getUniqueId())) {
             return true;
         }
 
@@ -484,7 +484,7 @@ public String allowBuild(Object source, Location<World> location, User user) {
         }
 
         // Builders can place blocks in claims
-        if (this.getClaimData().getBuilders().contains(GriefPrevention.PUBLIC_UUID) || this.getClaimData().getBuilders().contains(user.getUniqueId())) {
+        if (this.getClaimData().getBuilders().isPublic() || this.getClaimData().getBuilders().contains(user.getUniqueId())) {
             return null;
         }
 
@@ -570,7 +570,7 @@ public String allowBreak(Object source, BlockSnapshot blockSnapshot, User user)
             }
 
             // Builders can break blocks
-            if (this.getClaimData().getBuilders().contains(GriefPrevention.PUBLIC_UUID) || this.getClaimData().getBuilders().contains(user.getUniqueId())) {
+            if (this.getClaimData().getBuilders().isPublic() || this.getClaimData().getBuilders().contains(user.getUniqueId())) {
                 return null;
             }
 
@@ -612,9 +612,9 @@ public String allowAccess(User user, Location<World> location, boolean interact)
             return null;
         }
 
-        if (this.getClaimData().getAccessors().contains(GriefPrevention.PUBLIC_UUID)
-                || this.getClaimData().getBuilders().contains(GriefPrevention.PUBLIC_UUID) 
-                || this.getClaimData().getContainers().contains(GriefPrevention.PUBLIC_UUID) 
+        if (this.getClaimData().getAccessors().isPublic()
+                || this.getClaimData().getBuilders().isPublic() 
+                || this.getClaimData().getContainers().isPublic() 
                 || this.getClaimData().getBuilders().contains(user.getUniqueId()) 
                 || this.getClaimData().getContainers().contains(user.getUniqueId())
                 || this.getClaimData().getAccessors().contains(user.getUniqueId())) {
@@ -653,7 +653,7 @@ public String allowItemDrop(User user, Location<World> location) {
             return null;
         }
 
-        if (this.getClaimData().getBuilders().contains(GriefPrevention.PUBLIC_UUID) 
+        if (this.getClaimData().getBuilders().isPublic() 
                 || this.getClaimData().getBuilders().contains(user.getUniqueId())) {
             return null;
         }
@@ -698,8 +698,8 @@ public String allowContainers(User user, Location<World> location) {
             }
         }
 
-        if (this.getClaimData().getBuilders().contains(GriefPrevention.PUBLIC_UUID) 
-                || this.getClaimData().getContainers().contains(GriefPrevention.PUBLIC_UUID) 
+        if (this.getClaimData().getBuilders().isPublic() 
+                || this.getClaimData().getContainers().isPublic() 
                 || this.getClaimData().getBuilders().contains(user.getUniqueId()) 
                 || this.getClaimData().getContainers().contains(user.getUniqueId())) {
             return null;
@@ -730,11 +730,8 @@ public String allowGrantPermission(Player player) {
         }
         
         //anyone who's in the managers (/PermissionTrust) list can do this
-        for(int i = 0; i < this.getClaimData().getManagers().size(); i++) {
-            UUID managerID = this.getClaimData().getManagers().get(i);
-            if(player.getUniqueId().equals(managerID)) {
-                return null;
-            }
+        if(this.getClaimData().getManagers().contains(player.getUniqueId())) {
+            return null;
         }
         
         //permission inheritance for subdivisions
@@ -754,6 +751,7 @@ public String allowGrantPermission(Player player) {
     //clears all permissions (except owner of course)
     public void clearPermissions() {
         this.getClaimData().getManagers().clear();
+        GPPermissionCache.invalidate();
         
         for(Claim child : this.children) {
             child.clearPermissions();
@@ -922,8 +920,13 @@ public boolean overlaps(Claim otherClaim) {
 
     // whether more entities may be added to a claim
     public String allowMoreEntities() {
+        return this.allowMoreEntities(0);
+    }
+
+    // same as above, counting entities accepted but not spawned yet
+    public String allowMoreEntities(int pendingEntities) {
         if (this.parent != null) {
-            return this.parent.allowMoreEntities();
+            return this.parent.allowMoreEntities(pendingEntities);
         }
 
         // this rule only applies to creative mode worlds
@@ -931,8 +934,8 @@ public String allowMoreEntities() {
             return null;
         }
 
-        // admin claims aren't restricted
-        if (this.isAdminClaim()) {
+        // admin claims and the wilderness aren't restricted
+        if (this.isAdminClaim() || this.isWildernessClaim()) {
             return null;
         }
 
@@ -947,29 +950,21 @@ public String allowMoreEntities() {
             return GriefPrevention.instance.dataStore.getMessage(Messages.ClaimTooSmallForEntities);
         }
 
-        // count current entities (ignoring players)
-        int totalEntities = 0;
-        ArrayList<Chunk> chunks = this.getChunks();
-        for (Chunk chunk : chunks) {
-            ArrayList<Entity> entities = (ArrayList<Entity>) chunk.getEntities();
-            for (int i = 0; i < entities.size(); i++) {
-                Entity entity = entities.get(i);
-                if (!(entity instanceof Player) && this.contains(entity.getLocation(), false, false)) {
-                    totalEntities++;
-                    if (totalEntities > maxEntities) {
-                        entity.remove();
-                    }
-                }
-            }
-        }
-
-        if (totalEntities > maxEntities) {
+        // entities are counted as they come and go, so there is no need to scan the claim
+        if (this.entityCount + pendingEntities > maxEntities) {
             return GriefPrevention.instance.dataStore.getMessage(Messages.TooManyEntitiesInClaim);
         }
 
         return null;
     }
 
+    public int getEntityCount() {
+        if (this.parent != null) {
+            return this.parent.getEntityCount();
+        }
+        return this.entityCount;
+    }
+
     // implements a strict ordering of claims, used to keep the claims
     // collection sorted for faster searching
     boolean greaterThan(Claim otherClaim) {
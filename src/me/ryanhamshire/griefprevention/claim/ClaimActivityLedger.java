@@ -0,0 +1,76 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.claim;
+
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * Last seen times of claim owners in a single world.
+ *
+ * <p>Logins and world changes only touch the owner's entry. The times are
+ * copied into the owner's claim data when the world is saved, so claim files
+ * are written in one batch instead of on every login.</p>
+ */
+public class ClaimActivityLedger {
+
+    // Owner UUID -> activity recorded since the last save
+    private final Map<UUID, Activity> owners = Maps.newHashMap();
+
+    public synchronized void touch(UUID ownerUniqueId, long now) {
+        Activity activity = this.owners.get(ownerUniqueId);
+        if (activity == null) {
+            activity = new Activity();
+            this.owners.put(ownerUniqueId, activity);
+        }
+        activity.lastSeen = now;
+    }
+
+    // epoch millis the owner was last seen since the last save, or -1
+    public synchronized long getLastSeen(UUID ownerUniqueId) {
+        final Activity activity = this.owners.get(ownerUniqueId);
+        return activity == null ? -1 : activity.lastSeen;
+    }
+
+    // hands every recorded time to the consumer and forgets them
+    public synchronized void drain(ObjLongConsumer<UUID> consumer) {
+        for (Map.Entry<UUID, Activity> entry : this.owners.entrySet()) {
+            consumer.accept(entry.getKey(), entry.getValue().lastSeen);
+        }
+        this.owners.clear();
+    }
+
+    public synchronized int size() {
+        return this.owners.size();
+    }
+
+    private static final class Activity {
+
+        long lastSeen;
+    }
+}
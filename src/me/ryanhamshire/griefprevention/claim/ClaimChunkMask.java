@@ -0,0 +1,190 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.claim;
+
+import javax.annotation.Nullable;
+
+/**
+ * Tracks which chunks contain or border a claim.
+ *
+ * <p>Chunks are grouped into 32x32 regions holding a bit per chunk, so
+ * asking whether anything near a chunk is claimed costs one table probe and
+ * one bit test. A count per chunk keeps the bits exact when claims are
+ * removed or resized.</p>
+ *
+ * <p>Not thread safe on its own, {@link ChunkClaimIndex} guards it with its
+ * lock.</p>
+ */
+final class ClaimChunkMask {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int REGION_SHIFT = 5;
+    private static final int REGION_MASK = (1 << REGION_SHIFT) - 1;
+
+    private Region[] regions;
+    private int size;
+    private int mask;
+    private int resizeThreshold;
+    // most lookups land in the region of the previous one
+    @Nullable private Region lastRegion;
+    // bumped on clear, a lookup racing the clear could otherwise leave a dropped region in lastRegion
+    private int generation;
+
+    ClaimChunkMask() {
+        this.allocate(INITIAL_CAPACITY);
+    }
+
+    boolean isClaimFree(int chunkX, int chunkZ) {
+        final Region region = this.getRegion(ChunkClaimIndex.chunkKey(chunkX >> REGION_SHIFT, chunkZ >> REGION_SHIFT));
+        return region == null || !region.isSet((chunkZ & REGION_MASK) << REGION_SHIFT | (chunkX & REGION_MASK));
+    }
+
+    // marks the claimed chunks and the ring of chunks around them
+    void add(int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) {
+        this.update(minChunkX - 1, minChunkZ - 1, maxChunkX + 1, maxChunkZ + 1, 1);
+    }
+
+    void remove(int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ) {
+        this.update(minChunkX - 1, minChunkZ - 1, maxChunkX + 1, maxChunkZ + 1, -1);
+    }
+
+    void clear() {
+        this.allocate(INITIAL_CAPACITY);
+    }
+
+    private void update(int minChunkX, int minChunkZ, int maxChunkX, int maxChunkZ, int delta) {
+        for (int x = minChunkX; x <= maxChunkX; x++) {
+            for (int z = minChunkZ; z <= maxChunkZ; z++) {
+                final long key = ChunkClaimIndex.chunkKey(x >> REGION_SHIFT, z >> REGION_SHIFT);
+                Region region = this.getRegion(key);
+                if (region == null) {
+                    if (delta < 0) {
+                        continue;
+                    }
+                    region = this.insert(key);
+                }
+                region.add((z & REGION_MASK) << REGION_SHIFT | (x & REGION_MASK), delta);
+            }
+        }
+    }
+
+    @Nullable
+    private Region getRegion(long key) {
+        final Region lastRegion = this.lastRegion;
+        if (lastRegion != null && lastRegion.key == key && lastRegion.generation == this.generation) {
+            return lastRegion;
+        }
+
+        // the mask comes from the array itself so a lookup racing a rehash stays in bounds
+        final Region[] regions = this.regions;
+        final int mask = regions.length - 1;
+        int index = mix(key) & mask;
+        Region region;
+        while ((region = regions[index]) != null) {
+            if (region.key == key) {
+                this.lastRegion = region;
+                return region;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    // empty regions are kept until the world unloads, they are small and claims tend to come back
+    private Region insert(long key) {
+        final Region region = new Region(key, this.generation);
+        int index = mix(key) & this.mask;
+        while (this.regions[index] != null) {
+            index = (index + 1) & this.mask;
+        }
+        this.regions[index] = region;
+        if (++this.size > this.resizeThreshold) {
+            this.rehash(this.regions.length << 1);
+        }
+        return region;
+    }
+
+    private void rehash(int capacity) {
+        final Region[] oldRegions = this.regions;
+        final Region[] newRegions = new Region[capacity];
+        final int newMask = capacity - 1;
+        for (Region region : oldRegions) {
+            if (region != null) {
+                int index = mix(region.key) & newMask;
+                while (newRegions[index] != null) {
+                    index = (index + 1) & newMask;
+                }
+                newRegions[index] = region;
+            }
+        }
+
+        this.mask = newMask;
+        this.resizeThreshold = (capacity >> 1) + (capacity >> 2);
+        this.regions = newRegions;
+    }
+
+    private void allocate(int capacity) {
+        this.regions = new Region[capacity];
+        this.mask = capacity - 1;
+        this.resizeThreshold = (capacity >> 1) + (capacity >> 2);
+        this.size = 0;
+        this.lastRegion = null;
+        this.generation++;
+    }
+
+    private static int mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xFF51AFD7ED558CCDL;
+        key ^= key >>> 33;
+        return (int) key;
+    }
+
+    private static final class Region {
+
+        final long key;
+        final int generation;
+        final long[] bits = new long[(1 << (REGION_SHIFT * 2)) >> 6];
+        final int[] counts = new int[1 << (REGION_SHIFT * 2)];
+
+        Region(long key, int generation) {
+            this.key = key;
+            this.generation = generation;
+        }
+
+        boolean isSet(int index) {
+            return (this.bits[index >>> 6] & (1L << index)) != 0;
+        }
+
+        void add(int index, int delta) {
+            final int count = this.counts[index] += delta;
+            if (count > 0) {
+                this.bits[index >>> 6] |= 1L << index;
+            } else {
+                this.counts[index] = 0;
+                this.bits[index >>> 6] &= ~(1L << index);
+            }
+        }
+    }
+}
@@ -24,59 +24,94 @@
  */
 package me.ryanhamshire.griefprevention.claim;
 
+import com.google.common.collect.ImmutableSet;
 import me.ryanhamshire.griefprevention.GriefPrevention;
 import me.ryanhamshire.griefprevention.PlayerData;
+import org.spongepowered.api.Sponge;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.service.context.Context;
 import org.spongepowered.api.service.context.ContextCalculator;
+import org.spongepowered.api.service.permission.PermissionService;
 import org.spongepowered.api.service.permission.Subject;
 
+import java.util.Map;
 import java.util.Set;
-import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.annotation.Nullable;
+
+/**
+ * Adds the contexts of the claim a player is standing in.
+ *
+ * <p>Permission plugins call this for every permission check, so the contexts
+ * are not looked up here. They are kept per player and only replaced when the
+ * player moves into another claim or claims change.</p>
+ */
 public class ClaimContextCalculator implements ContextCalculator<Subject> {
 
+    // Player identifier -> contexts of the claim the player is in
+    private static final Map<String, Set<Context>> PLAYER_CONTEXTS = new ConcurrentHashMap<>();
+    private static final AtomicBoolean REFRESH_PENDING = new AtomicBoolean();
+
     @Override
     public void accumulateContexts(Subject calculable, Set<Context> accumulator) {
-        if (calculable.getCommandSource().isPresent() && calculable.getCommandSource().get() instanceof Player) {
-            Player player = (Player) calculable.getCommandSource().get();
-            PlayerData playerData = GriefPrevention.instance.dataStore.getPlayerData(player.getWorld(), player.getUniqueId());
-            if (playerData == null) {
-                return;
-            }
-
-            Claim sourceClaim = GriefPrevention.instance.dataStore.getClaimAtPlayer(playerData, player.getLocation(), false);
-            if (sourceClaim != null) {
-                if (playerData == null || playerData.ignoreClaims) {
-                    return;
-                }
-
-                accumulator.add(sourceClaim.getContext());
-                if (sourceClaim.parent != null && sourceClaim.inheritParent) {
-                    accumulator.add(sourceClaim.parent.getContext());
-                }
-            }
+        if (!calculable.getContainingCollection().getIdentifier().equals(PermissionService.SUBJECTS_USER)) {
+            return;
         }
 
+        final Set<Context> contexts = PLAYER_CONTEXTS.get(calculable.getIdentifier());
+        if (contexts != null) {
+            accumulator.addAll(contexts);
+        }
     }
 
     @Override
     public boolean matches(Context context, Subject subject) {
-        if (context.equals("gp_claim")) {
-            if (subject.getCommandSource().isPresent() && subject.getCommandSource().get() instanceof Player) {
-                Player player = (Player) subject.getCommandSource().get();
-                PlayerData playerData = GriefPrevention.instance.dataStore.getPlayerData(player.getWorld(), player.getUniqueId());
-                if (playerData == null) {
-                    return false;
-                }
-
-                Claim playerClaim = GriefPrevention.instance.dataStore.getClaimAtPlayer(playerData, player.getLocation(), false);
-                if (playerClaim != null && playerClaim.id.equals(UUID.fromString(context.getValue()))) {
-                    return true;
-                }
-            }
+        if (context.getKey().equals("gp_claim")) {
+            final Set<Context> contexts = PLAYER_CONTEXTS.get(subject.getIdentifier());
+            return contexts != null && contexts.contains(context);
         }
 
         return false;
     }
+
+    // must be called whenever the player may have entered another claim
+    public static void updatePlayer(Player player, @Nullable PlayerData playerData, @Nullable Claim claim) {
+        Set<Context> contexts;
+        if (claim == null || playerData == null || playerData.ignoreClaims) {
+            contexts = ImmutableSet.of();
+        } else if (claim.parent != null && claim.inheritParent) {
+            contexts = ImmutableSet.of(claim.getContext(), claim.parent.getContext());
+        } else {
+            contexts = ImmutableSet.of(claim.getContext());
+        }
+        PLAYER_CONTEXTS.put(player.getIdentifier(), contexts);
+    }
+
+    // looks up the claim the player is in, must be called on the main thread
+    public static void refreshPlayer(Player player) {
+        final PlayerData playerData = GriefPrevention.instance.dataStore.getPlayerData(player.getWorld(), player.getUniqueId());
+        final Claim claim = playerData == null ? null : GriefPrevention.instance.dataStore.getClaimAtPlayer(playerData, player.getLocation(), false);
+        updatePlayer(player, playerData, claim);
+    }
+
+    public static void removePlayer(Player player) {
+        PLAYER_CONTEXTS.remove(player.getIdentifier());
+    }
+
+    // must be called whenever claims are created, removed, resized or change inheritance
+    // all online players are refreshed once on the next tick, however many claims changed
+    public static void invalidate() {
+        if (GriefPrevention.instance == null || !REFRESH_PENDING.compareAndSet(false, true)) {
+            return;
+        }
+
+        Sponge.getScheduler().createTaskBuilder().execute(() -> {
+            REFRESH_PENDING.set(false);
+            for (Player player : Sponge.getServer().getOnlinePlayers()) {
+                refreshPlayer(player);
+            }
+        }).submit(GriefPrevention.instance);
+    }
 }
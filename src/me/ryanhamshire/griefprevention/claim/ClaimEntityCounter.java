@@ -0,0 +1,228 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.claim;
+
+import me.ryanhamshire.griefprevention.GriefPrevention;
+import org.spongepowered.api.entity.Entity;
+import org.spongepowered.api.entity.ExperienceOrb;
+import org.spongepowered.api.entity.Item;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.world.Chunk;
+import org.spongepowered.api.world.World;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+/**
+ * Counts the entities inside each top level claim of creative mode worlds,
+ * the only worlds where entity limits apply.
+ *
+ * <p>Counts are kept current from entity spawns, deaths, chunk unloads and
+ * claim border crossings, so entity limits never scan chunks. Entities in
+ * the wilderness aren't tracked until they move into a claim. Claims that
+ * are created or resized over existing entities count them through
+ * {@link #rescan(Claim)}. Tracked entities that disappear or wander into
+ * another claim without an event are caught by {@link #reconcile()}, which
+ * rechecks a slice of them every tick. Everything here runs on the main
+ * thread.</p>
+ */
+public class ClaimEntityCounter {
+
+    // main thread time spent rechecking tracked entities each tick
+    private static final long TICK_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    // Entity UUID -> top level claim the entity is counted in
+    private static final Map<UUID, TrackedEntity> TRACKED = new HashMap<>();
+    // entities left to recheck in the current reconcile pass
+    private static final Deque<UUID> RECONCILE_QUEUE = new ArrayDeque<>();
+
+    // players are never counted, neither are drops which come and go constantly
+    public static boolean isCounted(Entity entity) {
+        return !(entity instanceof Player) && !(entity instanceof Item) && !(entity instanceof ExperienceOrb);
+    }
+
+    // entity limits only apply to claims of creative mode worlds
+    public static boolean isCountedIn(World world) {
+        return GriefPrevention.instance.claimModeIsActive(world.getProperties(), ClaimsMode.Creative);
+    }
+
+    public static void track(Entity entity, @Nullable Claim claim) {
+        if (claim == null || !isCounted(entity)) {
+            return;
+        }
+
+        final TrackedEntity tracked = TRACKED.get(entity.getUniqueId());
+        if (tracked != null) {
+            moveTo(tracked, claim);
+            return;
+        }
+        if (!isTrackedIn(claim)) {
+            return;
+        }
+
+        final Claim topClaim = getTopClaim(claim);
+        TRACKED.put(entity.getUniqueId(), new TrackedEntity(entity, topClaim));
+        topClaim.entityCount++;
+    }
+
+    public static void untrack(Entity entity) {
+        untrack(entity.getUniqueId());
+    }
+
+    // must be called when an entity may have crossed into another claim
+    public static void moved(Entity entity, @Nullable Claim claim) {
+        track(entity, claim);
+    }
+
+    public static boolean isTracked(Entity entity) {
+        return TRACKED.containsKey(entity.getUniqueId());
+    }
+
+    // counts the loaded entities of a claim that was just created or resized, call once its index entry is updated
+    public static void rescan(Claim claim) {
+        final Claim topClaim = getTopClaim(claim);
+        // admin and very large claims have no limit to keep a count for
+        if (!isTrackedIn(topClaim) || topClaim.isAdminClaim() || topClaim.getArea() > 10000) {
+            return;
+        }
+
+        // entities a shrinking claim left behind
+        for (TrackedEntity tracked : new ArrayList<>(TRACKED.values())) {
+            if (tracked.claim == topClaim) {
+                recheck(tracked);
+            }
+        }
+
+        final World world = topClaim.getLesserBoundaryCorner().getExtent();
+        final int smallChunkX = topClaim.getLesserBoundaryCorner().getBlockX() >> 4;
+        final int smallChunkZ = topClaim.getLesserBoundaryCorner().getBlockZ() >> 4;
+        final int bigChunkX = topClaim.getGreaterBoundaryCorner().getBlockX() >> 4;
+        final int bigChunkZ = topClaim.getGreaterBoundaryCorner().getBlockZ() >> 4;
+        for (int chunkX = smallChunkX; chunkX <= bigChunkX; chunkX++) {
+            for (int chunkZ = smallChunkZ; chunkZ <= bigChunkZ; chunkZ++) {
+                // unloaded chunks are counted as they load
+                final Chunk chunk = world.getChunk(chunkX, 0, chunkZ).orElse(null);
+                if (chunk == null) {
+                    continue;
+                }
+                for (Entity entity : chunk.getEntities()) {
+                    if (isCounted(entity) && !isTracked(entity)) {
+                        track(entity, GriefPrevention.instance.dataStore.getClaimAt(entity.getLocation(), false, null));
+                    }
+                }
+            }
+        }
+    }
+
+    public static void unloadChunk(Chunk chunk) {
+        for (Entity entity : chunk.getEntities()) {
+            untrack(entity.getUniqueId());
+        }
+    }
+
+    public static int getTrackedCount() {
+        return TRACKED.size();
+    }
+
+    // rechecks tracked entities within the tick budget, starting a new pass once every entity was checked
+    public static void reconcile() {
+        if (RECONCILE_QUEUE.isEmpty()) {
+            RECONCILE_QUEUE.addAll(TRACKED.keySet());
+        }
+
+        final long deadline = System.nanoTime() + TICK_BUDGET_NANOS;
+        UUID entityUniqueId;
+        while (System.nanoTime() < deadline && (entityUniqueId = RECONCILE_QUEUE.poll()) != null) {
+            final TrackedEntity tracked = TRACKED.get(entityUniqueId);
+            if (tracked != null) {
+                recheck(tracked);
+            }
+        }
+    }
+
+    private static void recheck(TrackedEntity tracked) {
+        final Entity entity = tracked.entity.get();
+        if (entity == null || entity.isRemoved()) {
+            untrack(tracked.uniqueId);
+            return;
+        }
+
+        moveTo(tracked, GriefPrevention.instance.dataStore.getClaimAt(entity.getLocation(), false, null));
+    }
+
+    private static void untrack(UUID entityUniqueId) {
+        final TrackedEntity tracked = TRACKED.remove(entityUniqueId);
+        if (tracked != null) {
+            tracked.claim.entityCount--;
+        }
+    }
+
+    private static void moveTo(TrackedEntity tracked, @Nullable Claim claim) {
+        if (claim == null) {
+            return;
+        }
+        if (!isTrackedIn(claim)) {
+            // left for the wilderness or a world without limits
+            untrack(tracked.uniqueId);
+            return;
+        }
+
+        final Claim topClaim = getTopClaim(claim);
+        if (topClaim != tracked.claim) {
+            tracked.claim.entityCount--;
+            topClaim.entityCount++;
+            tracked.claim = topClaim;
+        }
+    }
+
+    private static boolean isTrackedIn(Claim claim) {
+        return !claim.isWildernessClaim() && isCountedIn(claim.getLesserBoundaryCorner().getExtent());
+    }
+
+    private static Claim getTopClaim(Claim claim) {
+        return claim.parent != null ? claim.parent : claim;
+    }
+
+    private static final class TrackedEntity {
+
+        final UUID uniqueId;
+        final WeakReference<Entity> entity;
+        Claim claim;
+
+        TrackedEntity(Entity entity, Claim claim) {
+            this.uniqueId = entity.getUniqueId();
+            this.entity = new WeakReference<>(entity);
+            this.claim = claim;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.claim;
+
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+/**
+ * Remembers the claim an entity was last found in together with a block
+ * region in which a claim lookup is guaranteed to return that same claim.
+ *
+ * <p>Moves that stay inside the region are answered with a few integer
+ * comparisons. {@link #invalidate()} must be called whenever a claim is
+ * created, resized or deleted so no entity keeps a stale region.</p>
+ */
+public class ClaimRegionCache {
+
+    private static final AtomicInteger VERSION = new AtomicInteger();
+
+    @Nullable private Claim claim;
+    @Nullable private UUID worldUniqueId;
+    private int version;
+    private boolean checkChildren;
+    private int minX;
+    private int minY;
+    private int minZ;
+    private int maxX;
+    private int maxY;
+    private int maxZ;
+
+    // must be called whenever claim boundaries change
+    public static void invalidate() {
+        VERSION.incrementAndGet();
+    }
+
+    /**
+     * Gets the cached claim if the location is still inside its region.
+     *
+     * @param location The location to check
+     * @return The cached claim, or null if a full lookup is needed
+     */
+    @Nullable
+    public Claim getClaim(Location<World> location) {
+        final Claim claim = this.claim;
+        if (claim == null || this.version != VERSION.get()) {
+            return null;
+        }
+
+        final int x = location.getBlockX();
+        final int y = location.getBlockY();
+        final int z = location.getBlockZ();
+        if (x < this.minX || x > this.maxX || z < this.minZ || z > this.maxZ || y < this.minY || y > this.maxY
+                || !location.getExtent().getUniqueId().equals(this.worldUniqueId)) {
+            return null;
+        }
+
+        if (this.checkChildren) {
+            // the region covers the whole claim, subdivisions inside it take precedence
+            for (int i = 0; i < claim.children.size(); i++) {
+                Claim subdivision = claim.children.get(i);
+                if (subdivision.contains(location, false, false)) {
+                    return null;
+                }
+            }
+        }
+
+        return claim;
+    }
+
+    /**
+     * Caches the result of a claim lookup.
+     *
+     * @param claim The claim found at the location
+     * @param location The location that was looked up
+     * @param claimIndex The spatial index of the location's world
+     */
+    public void update(Claim claim, Location<World> location, ClaimSpatialIndex claimIndex) {
+        this.claim = null;
+        this.version = VERSION.get();
+        this.worldUniqueId = location.getExtent().getUniqueId();
+        this.checkChildren = false;
+        if (claim.isWildernessClaim()) {
+            final int chunkX = location.getBlockX() >> 4;
+            final int chunkZ = location.getBlockZ() >> 4;
+            if (claimIndex.getClaimsInChunk(chunkX, chunkZ) != null) {
+                // wilderness between claims, not worth tracking
+                return;
+            }
+
+            this.minX = chunkX << 4;
+            this.minZ = chunkZ << 4;
+            this.maxX = this.minX + 15;
+            this.maxZ = this.minZ + 15;
+            this.minY = Integer.MIN_VALUE;
+            this.maxY = Integer.MAX_VALUE;
+        } else {
+            this.setBounds(claim);
+            if (claim.parent != null) {
+                // subdivisions are only found inside their parent
+                final int minX = this.minX;
+                final int minY = this.minY;
+                final int minZ = this.minZ;
+                final int maxX = this.maxX;
+                final int maxY = this.maxY;
+                final int maxZ = this.maxZ;
+                this.setBounds(claim.parent);
+                this.minX = Math.max(this.minX, minX);
+                this.minY = Math.max(this.minY, minY);
+                this.minZ = Math.max(this.minZ, minZ);
+                this.maxX = Math.min(this.maxX, maxX);
+                this.maxY = Math.min(this.maxY, maxY);
+                this.maxZ = Math.min(this.maxZ, maxZ);
+            } else {
+                this.checkChildren = !claim.children.isEmpty();
+            }
+        }
+
+        this.claim = claim;
+    }
+
+    public void clear() {
+        this.claim = null;
+        this.worldUniqueId = null;
+    }
+
+    private void setBounds(Claim claim) {
+        this.minX = claim.lesserBoundaryCorner.getBlockX();
+        this.minY = claim.lesserBoundaryCorner.getBlockY();
+        this.minZ = claim.lesserBoundaryCorner.getBlockZ();
+        this.maxX = claim.greaterBoundaryCorner.getBlockX();
+        this.maxY = claim.cuboid ? claim.greaterBoundaryCorner.getBlockY() : Integer.MAX_VALUE;
+        this.maxZ = claim.greaterBoundaryCorner.getBlockZ();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.claim;
+
+import javax.annotation.Nullable;
+
+/**
+ * Spatial lookup of top level claims in a single world.
+ *
+ * <p>Implementations are mutated on the main thread only but must allow
+ * lookups from any thread, as chat and permission checks run async. Lookups
+ * must not allocate as they run for nearly every block and entity event.</p>
+ */
+public interface ClaimSpatialIndex {
+
+    /**
+     * Registers a top level claim using its current boundary corners.
+     *
+     * @param claim The claim
+     */
+    void addClaim(Claim claim);
+
+    /**
+     * Unregisters a claim using the bounds it was last registered with.
+     *
+     * @param claim The claim
+     */
+    void removeClaim(Claim claim);
+
+    /**
+     * Re-registers a claim after its boundary corners have changed.
+     *
+     * @param claim The claim
+     */
+    void updateClaim(Claim claim);
+
+    /**
+     * Gets the claims which intersect a chunk.
+     *
+     * <p>The returned array is shared and must not be modified.</p>
+     *
+     * @param chunkX The chunk x coordinate
+     * @param chunkZ The chunk z coordinate
+     * @return The claims in chunk, or null if chunk has no claims
+     */
+    @Nullable
+    Claim[] getClaimsInChunk(int chunkX, int chunkZ);
+
+    /**
+     * Checks whether a chunk and the eight chunks around it contain no claims.
+     *
+     * @param chunkX The chunk x coordinate
+     * @param chunkZ The chunk z coordinate
+     * @return True if nothing in or next to the chunk is claimed
+     */
+    boolean isClaimFree(int chunkX, int chunkZ);
+
+    /**
+     * Gets the number of chunks which contain at least one claim.
+     *
+     * @return The chunk count
+     */
+    int getChunkCount();
+
+    void clear();
+}
@@ -26,10 +26,14 @@
 
 import com.google.common.collect.Maps;
 import me.ryanhamshire.griefprevention.DataStore;
+import me.ryanhamshire.griefprevention.GPPermissionCache;
 import me.ryanhamshire.griefprevention.GriefPrevention;
 import me.ryanhamshire.griefprevention.PlayerData;
+import me.ryanhamshire.griefprevention.PlayerDataCache;
+import me.ryanhamshire.griefprevention.PlayerSummary;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
 import me.ryanhamshire.griefprevention.configuration.PlayerStorageData;
+import me.ryanhamshire.griefprevention.task.CleanupUnusedClaimsTask;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.service.context.Context;
 import org.spongepowered.api.service.permission.Subject;
@@ -39,12 +43,9 @@
 
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 import javax.annotation.Nullable;
 
@@ -54,17 +55,19 @@ public class ClaimWorldManager {
     private GriefPreventionConfig<?> activeConfig;
 
     // Player UUID -> player data
-    private Map<UUID, PlayerData> playerDataList = Maps.newHashMap();
+    private PlayerDataCache playerDataList = new PlayerDataCache();
     // Player UUID -> storage
     private Map<UUID, PlayerStorageData> playerStorageList = Maps.newHashMap();
-    // Player UUID -> claims
+    // Owner UUID -> claims, kept for every owner whether or not their player data is loaded
     private Map<UUID, List<Claim>> playerClaimList = Maps.newHashMap();
     // World claim list
     private List<Claim> worldClaims = new ArrayList<>();
     // Claim UUID -> Claim
     private Map<UUID, Claim> claimUniqueIdMap = Maps.newHashMap();
-    // String -> Claim
-    private ConcurrentHashMap<Long, Set<Claim>> chunksToClaimsMap = new ConcurrentHashMap<>();
+    // Chunk -> Claims
+    private ClaimSpatialIndex claimIndex = new ChunkClaimIndex();
+    // Owner UUID -> last seen, written into the claims on save
+    private ClaimActivityLedger activityLedger = new ClaimActivityLedger();
     private Claim theWildernessClaim;
 
     public ClaimWorldManager() {
@@ -100,22 +103,20 @@ private PlayerData createPlayerData(UUID playerUniqueId) {
         }
 
         Subject playerSubject = GriefPrevention.instance.permissionService.getUserSubjects().get(playerUniqueId.toString());
-        PlayerStorageData playerStorage = new PlayerStorageData(playerFilePath);
-        List<Claim> claimList = new ArrayList<>();
-        for (Claim claim : this.worldClaims) {
-            if (claim.parent != null) {
-               if (claim.parent.ownerID.equals(playerUniqueId)) {
-                   claimList.add(claim);
-               }
-            } else {
-                if (claim.ownerID.equals(playerUniqueId)) {
-                    claimList.add(claim);
-                }
-            }
+        // an evicted player may still be waiting to be written, reloading the file would lose the newer values
+        PlayerStorageData playerStorage = this.getPlayerDataList().takeReleasedStorage(playerUniqueId);
+        if (playerStorage == null) {
+            playerStorage = GriefPrevention.instance.dataStore.createPlayerStorageData(this.worldProperties, playerUniqueId, playerFilePath);
+        }
+        List<Claim> claimList = null;
+        if (DataStore.USE_GLOBAL_PLAYER_STORAGE) {
+            // global player data spans all worlds, so it gets its own list and the owner index stays per world
+            claimList = GriefPrevention.instance.dataStore.getOwnerClaims(playerUniqueId);
+        } else {
+            claimList = this.playerClaimList.computeIfAbsent(playerUniqueId, k -> new ArrayList<>());
         }
 
         PlayerData playerData = new PlayerData(this.worldProperties, playerUniqueId, playerStorage, playerSubject, this.activeConfig, claimList);
-        this.playerClaimList.put(playerUniqueId, claimList);
         this.playerStorageList.put(playerUniqueId, playerStorage);
         if (DataStore.USE_GLOBAL_PLAYER_STORAGE) {
             DataStore.GLOBAL_PLAYER_DATA.put(playerUniqueId, playerData);
@@ -125,9 +126,26 @@ private PlayerData createPlayerData(UUID playerUniqueId) {
         return playerData;
     }
 
-    public void removePlayer(UUID playerUniqueId) {
-        this.playerClaimList.remove(playerUniqueId);
+    // called when the player's data is evicted from the cache, the storage has been queued for writing
+    public void removePlayerStorage(UUID playerUniqueId) {
         this.playerStorageList.remove(playerUniqueId);
+    }
+
+    // expiration options of a claim owner, loading the owner only if it was never cached before
+    public PlayerSummary getPlayerSummary(UUID playerUniqueId) {
+        PlayerSummary summary = this.getPlayerDataList().getSummary(playerUniqueId);
+        if (summary == null) {
+            summary = new PlayerSummary(this.getOrCreatePlayerData(playerUniqueId));
+        }
+        return summary;
+    }
+
+    public void removePlayer(UUID playerUniqueId) {
+        // the owner index outlives player data as the claims are still in the world
+        PlayerStorageData playerStorage = this.playerStorageList.remove(playerUniqueId);
+        if (playerStorage != null) {
+            this.getPlayerDataList().releaseStorage(playerUniqueId, playerStorage);
+        }
         if (DataStore.USE_GLOBAL_PLAYER_STORAGE) {
             DataStore.GLOBAL_PLAYER_DATA.remove(playerUniqueId);
         } else {
@@ -141,64 +159,85 @@ public void addWorldClaim(Claim claim) {
                 return;
             }
     
-            UUID ownerId = claim.ownerID;
-            if (!this.worldClaims.contains(claim)) {
+            if (this.claimUniqueIdMap.putIfAbsent(claim.id, claim) == null) {
                 this.worldClaims.add(claim);
+                this.claimIndex.addClaim(claim);
+                ClaimRegionCache.invalidate();
+                ClaimContextCalculator.invalidate();
+                CleanupUnusedClaimsTask.schedule(claim);
             }
-            if (!this.claimUniqueIdMap.containsKey(claim.id)) {
-                this.claimUniqueIdMap.put(claim.id, claim);
-            }
-
-            PlayerData playerData = null;
-            if (DataStore.USE_GLOBAL_PLAYER_STORAGE) {
-                playerData = DataStore.GLOBAL_PLAYER_DATA.get(ownerId);
-            } else {
-                playerData = this.playerDataList.get(ownerId);
-            }
-            if (claim.parent == null && playerData != null) {
-                List<Claim> playerClaims = playerData.getClaims();
-                if (!playerClaims.contains(claim)) {
-                    playerClaims.add(claim);
-                }
-            } else {
-                this.createPlayerData(ownerId);
-            }
-    
-            Set<Long> chunkHashes = claim.getChunkHashes();
-            for (Long chunkHash : chunkHashes) {
-                Set<Claim> claimsInChunk = this.getChunksToClaimsMap().get(chunkHash);
-                if (claimsInChunk == null) {
-                    claimsInChunk = new HashSet<Claim>();
-                    this.getChunksToClaimsMap().put(chunkHash, claimsInChunk);
-                }
-
-                claimsInChunk.add(claim);
-            }
+            this.addOwnerClaim(claim.ownerID, claim);
         } else {
             this.theWildernessClaim = claim;
         }
     }
 
     public void removePlayerClaim(Claim claim) {
-        // player may be offline so check is needed
-        if (this.playerClaimList.get(claim.ownerID) != null) {
-            this.playerClaimList.get(claim.ownerID).remove(claim);
-        }
+        this.removeOwnerClaim(claim.ownerID, claim);
         this.worldClaims.remove(claim);
         this.claimUniqueIdMap.remove(claim.id);
     }
 
+    private void addOwnerClaim(UUID ownerId, Claim claim) {
+        if (ownerId == null) {
+            return;
+        }
+
+        List<Claim> ownerClaims = this.playerClaimList.computeIfAbsent(ownerId, k -> new ArrayList<>());
+        if (!ownerClaims.contains(claim)) {
+            ownerClaims.add(claim);
+        }
+
+        // owners that aren't loaded pick up their claim list when their data is loaded on demand
+        PlayerData playerData = this.getLoadedPlayerData(ownerId);
+        if (playerData != null && playerData.getClaims() != ownerClaims && !playerData.getClaims().contains(claim)) {
+            // global player data keeps its own list of claims across all worlds
+            playerData.getClaims().add(claim);
+        }
+    }
+
+    private void removeOwnerClaim(UUID ownerId, Claim claim) {
+        if (ownerId == null) {
+            return;
+        }
+
+        List<Claim> ownerClaims = this.playerClaimList.get(ownerId);
+        if (ownerClaims != null) {
+            ownerClaims.remove(claim);
+        }
+
+        // player may be offline so check is needed
+        PlayerData playerData = this.getLoadedPlayerData(ownerId);
+        if (playerData != null && playerData.getClaims() != ownerClaims) {
+            playerData.getClaims().remove(claim);
+        }
+    }
+
+    @Nullable
+    private PlayerData getLoadedPlayerData(UUID playerUniqueId) {
+        if (DataStore.USE_GLOBAL_PLAYER_STORAGE) {
+            return DataStore.GLOBAL_PLAYER_DATA.get(playerUniqueId);
+        }
+        return this.playerDataList.get(playerUniqueId);
+    }
+
+    // claims owned by the player in this world, without loading the player
+    @Nullable
+    public List<Claim> getOwnerClaims(UUID playerUniqueId) {
+        return this.playerClaimList.get(playerUniqueId);
+    }
+
     @Nullable
     public Claim getClaimByUUID(UUID claimUniqueId) {
         return this.claimUniqueIdMap.get(claimUniqueId);
     }
 
-    @Nullable
     public List<Claim> getPlayerClaims(UUID playerUniqueId) {
         if (this.playerClaimList.get(playerUniqueId) == null) {
             this.getOrCreatePlayerData(playerUniqueId);
         }
-        return this.playerClaimList.get(playerUniqueId);
+        // global player data may already exist without an entry for this world
+        return this.playerClaimList.computeIfAbsent(playerUniqueId, k -> new ArrayList<>());
     }
 
     public void createWildernessClaim(WorldProperties worldProperties) {
@@ -225,15 +264,15 @@ public List<Claim> getWorldClaims() {
         return this.worldClaims;
     }
 
-    public Map<UUID, PlayerData> getPlayerDataList() {
+    public PlayerDataCache getPlayerDataList() {
         if (DataStore.USE_GLOBAL_PLAYER_STORAGE) {
             return DataStore.GLOBAL_PLAYER_DATA;
         }
         return this.playerDataList;
     }
 
-    public ConcurrentHashMap<Long, Set<Claim>> getChunksToClaimsMap() {
-        return this.chunksToClaimsMap;
+    public ClaimSpatialIndex getClaimIndex() {
+        return this.claimIndex;
     }
 
     public void transferClaimOwner(Claim claim, UUID newOwnerID) throws NoTransferException {
@@ -247,7 +286,6 @@ public void transferClaimOwner(Claim claim, UUID newOwnerID) throws NoTransferEx
             return;
         }
 
-        PlayerData ownerData = this.getOrCreatePlayerData(claim.ownerID);
         // determine new owner
         PlayerData newOwnerData = this.getOrCreatePlayerData(newOwnerID);
 
@@ -255,18 +293,42 @@ public void transferClaimOwner(Claim claim, UUID newOwnerID) throws NoTransferEx
             throw new NoTransferException("Could not locate PlayerData for new owner with UUID " + newOwnerID + ".");
         }
         // transfer
+        this.removeOwnerClaim(claim.ownerID, claim);
         claim.ownerID = newOwnerID;
         claim.getClaimData().setClaimOwnerUniqueId(newOwnerID);
 
         // adjust blocks and other records
-        if (ownerData != null) {
-              ownerData.getClaims().remove(claim);
-        }
-        newOwnerData.getClaims().add(claim);
+        this.addOwnerClaim(newOwnerID, claim);
         claim.getClaimStorage().save();
+        GPPermissionCache.invalidate();
+    }
+
+    public ClaimActivityLedger getActivityLedger() {
+        return this.activityLedger;
+    }
+
+    // epoch millis the claim was last active, or -1 if unknown
+    public long getClaimLastActive(Claim claim) {
+        final UUID ownerUniqueId = claim.parent != null ? claim.parent.ownerID : claim.ownerID;
+        final long lastSeen = ownerUniqueId == null ? -1 : this.activityLedger.getLastSeen(ownerUniqueId);
+        return Math.max(claim.getClaimData().getLastActiveMillis(), lastSeen);
     }
 
     public void save() {
+        // copy owner activity into their claims, so those are written in this batch
+        this.activityLedger.drain((ownerUniqueId, lastSeen) -> {
+            final List<Claim> claimList = this.playerClaimList.get(ownerUniqueId);
+            if (claimList == null) {
+                return;
+            }
+            for (Claim claim : claimList) {
+                claim.getClaimData().setLastActiveMillis(lastSeen);
+                for (Claim subdivision : claim.children) {
+                    subdivision.getClaimData().setLastActiveMillis(lastSeen);
+                }
+            }
+        });
+
         for (List<Claim> claimList : this.playerClaimList.values()) {
             for (Claim claim : claimList) {
                 if (claim.getClaimData().requiresSave()) {
@@ -277,20 +339,26 @@ public void save() {
             }
         }
 
-        for (PlayerStorageData storageData : this.playerStorageList.values()) {
-            if (storageData != null) {
-                storageData.save();
-            }
-        }
+        PlayerStorageData.saveAll(new ArrayList<>(this.playerStorageList.values()));
     }
 
     public void unload() {
+        if (DataStore.USE_GLOBAL_PLAYER_STORAGE) {
+            // global player data outlives the world, drop the claims it picked up here
+            for (Map.Entry<UUID, List<Claim>> entry : this.playerClaimList.entrySet()) {
+                PlayerData playerData = DataStore.GLOBAL_PLAYER_DATA.get(entry.getKey());
+                if (playerData != null) {
+                    playerData.getClaims().removeAll(entry.getValue());
+                }
+            }
+        }
         this.playerClaimList.clear();
         this.playerDataList.clear();
         this.playerStorageList.clear();
         this.worldClaims.clear();
         this.claimUniqueIdMap.clear();
-        this.chunksToClaimsMap.clear();
+        this.claimIndex.clear();
+        ClaimRegionCache.invalidate();
         if (this.theWildernessClaim != null) {
             this.theWildernessClaim.unload();
             this.theWildernessClaim = null;
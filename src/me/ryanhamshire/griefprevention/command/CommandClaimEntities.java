@@ -0,0 +1,139 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.command;
+
+import com.flowpowered.math.vector.Vector3d;
+import com.google.common.collect.Lists;
+import me.ryanhamshire.griefprevention.GPPermissions;
+import me.ryanhamshire.griefprevention.GriefPrevention;
+import me.ryanhamshire.griefprevention.claim.Claim;
+import me.ryanhamshire.griefprevention.claim.ClaimEntityCounter;
+import me.ryanhamshire.griefprevention.claim.ClaimWorldManager;
+import me.ryanhamshire.griefprevention.claim.ClaimsMode;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.command.CommandPermissionException;
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.command.spec.CommandExecutor;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.service.pagination.PaginationList;
+import org.spongepowered.api.service.pagination.PaginationService;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.action.TextActions;
+import org.spongepowered.api.text.format.TextColors;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+import org.spongepowered.api.world.storage.WorldProperties;
+
+import java.util.Comparator;
+import java.util.List;
+
+public class CommandClaimEntities implements CommandExecutor {
+
+    @Override
+    public CommandResult execute(CommandSource src, CommandContext ctx) {
+        WorldProperties worldProperties = ctx.<WorldProperties>getOne("world").orElse(null);
+        if (worldProperties == null) {
+            if (src instanceof Player) {
+                worldProperties = ((Player) src).getWorld().getProperties();
+            } else {
+                worldProperties = Sponge.getServer().getDefaultWorld().get();
+            }
+        }
+
+        if (!src.hasPermission(GPPermissions.COMMAND_CLAIM_ENTITIES)) {
+            try {
+                throw new CommandPermissionException();
+            } catch (CommandPermissionException e) {
+                src.sendMessage(e.getText());
+                return CommandResult.success();
+            }
+        }
+
+        ClaimWorldManager claimWorldManager = GriefPrevention.instance.dataStore.getClaimWorldManager(worldProperties);
+        if (claimWorldManager == null) {
+            src.sendMessage(Text.of(TextColors.RED, "Claims are not enabled in world ", worldProperties.getWorldName(), "."));
+            return CommandResult.success();
+        }
+        if (!GriefPrevention.instance.claimModeIsActive(worldProperties, ClaimsMode.Creative)) {
+            src.sendMessage(Text.of(TextColors.RED, "Entities are only counted in creative mode worlds."));
+            return CommandResult.success();
+        }
+
+        // counts are maintained by ClaimEntityCounter so listing them never touches a chunk
+        List<Claim> claimList = Lists.newArrayList();
+        for (Claim claim : claimWorldManager.getWorldClaims()) {
+            if (claim.getEntityCount() > 0) {
+                claimList.add(claim);
+            }
+        }
+        claimList.sort(Comparator.comparingInt(Claim::getEntityCount).reversed());
+
+        List<Text> claimsTextList = Lists.newArrayList();
+        for (Claim claim : claimList) {
+            Location<World> southWest = claim.lesserBoundaryCorner.setPosition(new Vector3d(claim.lesserBoundaryCorner.getPosition().getX(), 65.0D, claim.greaterBoundaryCorner.getPosition().getZ()));
+            Text claimName = claim.getClaimData().getClaimName();
+            if (claimName == null) {
+                claimName = Text.of(TextColors.GREEN, claim.getOwnerName());
+            }
+
+            Text claimInfoCommandClick = Text.builder().append(Text.of(
+                    TextColors.GREEN, claimName))
+            .onClick(TextActions.executeCallback(CommandHelper.createCommandConsumer(src, "claiminfo", claim.id.toString())))
+            .onHover(TextActions.showText(Text.of("Click here to check claim info.")))
+            .build();
+
+            Text claimCoordsTPClick = Text.builder().append(Text.of(
+                    TextColors.GRAY, southWest.getBlockPosition()))
+            .onClick(TextActions.executeCallback(CommandHelper.createTeleportConsumer(src, southWest, claim)))
+            .onHover(TextActions.showText(Text.of("Click here to teleport to ", claimName, ".")))
+            .build();
+
+            // same limit allowMoreEntities applies
+            String limit = "none";
+            if (!claim.isAdminClaim() && claim.getArea() <= 10000) {
+                limit = String.valueOf(claim.getArea() / 50);
+            }
+
+            claimsTextList.add(Text.builder()
+                    .append(Text.of(
+                            claimInfoCommandClick, TextColors.WHITE, " : ",
+                            claimCoordsTPClick, " ",
+                            TextColors.YELLOW, "(Entities : " + claim.getEntityCount() + ", Limit : " + limit + ")"))
+                    .build());
+        }
+        if (claimsTextList.size() == 0) {
+            claimsTextList.add(Text.of(TextColors.RED, "No claims with entities found in world."));
+        }
+
+        PaginationService paginationService = Sponge.getServiceManager().provide(PaginationService.class).get();
+        PaginationList.Builder paginationBuilder = paginationService.builder()
+                .title(Text.of(TextColors.AQUA, "Claim Entities (", ClaimEntityCounter.getTrackedCount(), " tracked)")).padding(Text.of("-")).contents(claimsTextList);
+        paginationBuilder.sendTo(src);
+
+        return CommandResult.success();
+    }
+}
@@ -24,6 +24,7 @@
  */
 package me.ryanhamshire.griefprevention.command;
 
+import me.ryanhamshire.griefprevention.GPPermissionCache;
 import me.ryanhamshire.griefprevention.GriefPrevention;
 import me.ryanhamshire.griefprevention.Messages;
 import me.ryanhamshire.griefprevention.PlayerData;
@@ -58,6 +59,7 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
         }
 
         playerData.debugClaimPermissions = !playerData.debugClaimPermissions;
+        GPPermissionCache.invalidate();
 
         if (!playerData.debugClaimPermissions) {
             GriefPrevention.sendMessage(player, Text.of(TextColors.WHITE, "Claim flags debug ", TextColors.RED, "OFF"));
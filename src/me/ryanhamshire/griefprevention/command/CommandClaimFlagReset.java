@@ -24,6 +24,7 @@
  */
 package me.ryanhamshire.griefprevention.command;
 
+import me.ryanhamshire.griefprevention.GPPermissionCache;
 import me.ryanhamshire.griefprevention.GPPermissions;
 import me.ryanhamshire.griefprevention.GriefPrevention;
 import me.ryanhamshire.griefprevention.PlayerData;
@@ -85,6 +86,7 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
                 GriefPrevention.GLOBAL_SUBJECT.getSubjectData().clearPermissions(contextSet);
             }
         }
+        GPPermissionCache.invalidate();
 
         GriefPrevention.sendMessage(src, Text.of(TextMode.Success, "Claim flags reset to defaults successfully."));
         return CommandResult.success();
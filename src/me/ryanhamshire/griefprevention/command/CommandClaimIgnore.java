@@ -29,6 +29,7 @@
 import me.ryanhamshire.griefprevention.Messages;
 import me.ryanhamshire.griefprevention.PlayerData;
 import me.ryanhamshire.griefprevention.TextMode;
+import me.ryanhamshire.griefprevention.claim.ClaimContextCalculator;
 import org.spongepowered.api.command.CommandException;
 import org.spongepowered.api.command.CommandResult;
 import org.spongepowered.api.command.CommandSource;
@@ -50,6 +51,7 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
 
         PlayerData playerData = GriefPrevention.instance.dataStore.getOrCreatePlayerData(player.getWorld(), player.getUniqueId());
         playerData.ignoreClaims = !playerData.ignoreClaims;
+        ClaimContextCalculator.refreshPlayer(player);
 
         // toggle ignore claims mode on or off
         if (!playerData.ignoreClaims) {
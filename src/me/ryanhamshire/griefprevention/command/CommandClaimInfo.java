@@ -140,11 +140,9 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
             // ignore
         }
 
-        try {
-            Instant instant = Instant.parse(claim.getClaimData().getDateLastActive());
-            lastActive = Date.from(instant);
-        } catch(DateTimeParseException ex) {
-            // ignore
+        long lastActiveMillis = GriefPrevention.instance.dataStore.getClaimWorldManager(claim.world.getProperties()).getClaimLastActive(claim);
+        if (lastActiveMillis >= 0) {
+            lastActive = new Date(lastActiveMillis);
         }
 
         Text claimName = Text.of(TextColors.YELLOW, "Name", TextColors.WHITE, " : ", TextColors.GRAY, name == null ? NONE : name);
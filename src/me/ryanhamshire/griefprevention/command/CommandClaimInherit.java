@@ -24,9 +24,11 @@
  */
 package me.ryanhamshire.griefprevention.command;
 
+import me.ryanhamshire.griefprevention.GPPermissionCache;
 import me.ryanhamshire.griefprevention.GriefPrevention;
 import me.ryanhamshire.griefprevention.TextMode;
 import me.ryanhamshire.griefprevention.claim.Claim;
+import me.ryanhamshire.griefprevention.claim.ClaimContextCalculator;
 import org.spongepowered.api.command.CommandException;
 import org.spongepowered.api.command.CommandResult;
 import org.spongepowered.api.command.CommandSource;
@@ -55,6 +57,8 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
         }
         claim.inheritParent = !claim.inheritParent;
         claim.getClaimData().setRequiresSave(true);
+        GPPermissionCache.invalidate();
+        ClaimContextCalculator.invalidate();
 
         if (!claim.inheritParent) {
             GriefPrevention.sendMessage(player, Text.of(TextColors.WHITE, "Subdivision inheritance ", TextColors.RED, "OFF"));
@@ -29,7 +29,6 @@
 import com.google.common.collect.Lists;
 import me.ryanhamshire.griefprevention.GPPermissions;
 import me.ryanhamshire.griefprevention.GriefPrevention;
-import me.ryanhamshire.griefprevention.PlayerData;
 import me.ryanhamshire.griefprevention.TextMode;
 import me.ryanhamshire.griefprevention.claim.Claim;
 import org.spongepowered.api.Sponge;
@@ -84,9 +83,8 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
             }
         }
 
-        // load the target player's data
-        PlayerData playerData = GriefPrevention.instance.dataStore.getOrCreatePlayerData(worldProperties, user.getUniqueId());
-        List<Claim> claimList = playerData.getClaims();
+        // load the target player's claims in this world
+        List<Claim> claimList = GriefPrevention.instance.dataStore.getClaimWorldManager(worldProperties).getPlayerClaims(user.getUniqueId());
         List<Text> claimsTextList = Lists.newArrayList();
         if (claimList.size() > 0) {
             for (Claim claim : claimList) {
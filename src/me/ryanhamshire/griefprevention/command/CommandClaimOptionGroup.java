@@ -25,6 +25,7 @@
 package me.ryanhamshire.griefprevention.command;
 
 import com.google.common.collect.Lists;
+import me.ryanhamshire.griefprevention.GPOptionCache;
 import me.ryanhamshire.griefprevention.GPPermissions;
 import me.ryanhamshire.griefprevention.GriefPrevention;
 import me.ryanhamshire.griefprevention.PlayerData;
@@ -107,6 +108,8 @@ public CommandResult execute(CommandSource src, CommandContext args) throws Comm
         }
 
         if (subj.getSubjectData().setOption(contexts, option, value)) {
+            GPOptionCache.invalidate();
+            GriefPrevention.instance.dataStore.refreshPlayerOptions();
             GriefPrevention.sendMessage(src, Text.of("Set option ", TextColors.AQUA, option, TextColors.WHITE, " to ", TextColors.GREEN, value, TextColors.WHITE, " on group ", TextColors.GOLD, subj.getIdentifier(), TextColors.WHITE, "."));
         } else {
             GriefPrevention.sendMessage(src, Text.of(TextMode.Err, "The permission plugin failed to set the option."));
@@ -25,6 +25,7 @@
 package me.ryanhamshire.griefprevention.command;
 
 import com.google.common.collect.Lists;
+import me.ryanhamshire.griefprevention.GPPermissionCache;
 import me.ryanhamshire.griefprevention.GPPermissions;
 import me.ryanhamshire.griefprevention.GriefPrevention;
 import me.ryanhamshire.griefprevention.PlayerData;
@@ -115,6 +116,7 @@ public CommandResult execute(CommandSource src, CommandContext args) throws Comm
         }
 
         subj.getSubjectData().setPermission(contexts, permission, tristateValue);
+        GPPermissionCache.invalidate();
         GriefPrevention.sendMessage(src, Text.of("Set permission ", TextColors.AQUA, permission, TextColors.WHITE, " to ", TextColors.GREEN, value, TextColors.WHITE, " on group ", TextColors.GOLD, subj.getIdentifier(), TextColors.WHITE, "."));
         return CommandResult.success();
     }
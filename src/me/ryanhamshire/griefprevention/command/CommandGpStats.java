@@ -0,0 +1,56 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.command;
+
+import me.ryanhamshire.griefprevention.configuration.ClaimStorageQueue;
+import me.ryanhamshire.griefprevention.event.SpawnEntityEvaluator;
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.command.spec.CommandExecutor;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+public class CommandGpStats implements CommandExecutor {
+
+    @Override
+    public CommandResult execute(CommandSource src, CommandContext ctx) {
+        final Text GP_TEXT = Text.of(TextColors.RESET, "[", TextColors.AQUA, "GP", TextColors.WHITE, "] ");
+        src.sendMessage(Text.of(
+                GP_TEXT, TextColors.GRAY, "Claim storage queue ", TextColors.AQUA, ClaimStorageQueue.getQueueDepth(), TextColors.WHITE, " | ",
+                TextColors.GRAY, "Writes ", TextColors.AQUA, ClaimStorageQueue.getTotalWrites(), TextColors.WHITE, " | ",
+                TextColors.GRAY, "Average ", TextColors.AQUA, String.format("%.2fms", ClaimStorageQueue.getAverageWriteMillis()), TextColors.WHITE, " | ",
+                TextColors.GRAY, "Max ", TextColors.AQUA, String.format("%.2fms", ClaimStorageQueue.getMaxWriteMillis())));
+        src.sendMessage(Text.of(
+                GP_TEXT, TextColors.GRAY, "Spawn events ", TextColors.AQUA, SpawnEntityEvaluator.getTotalEvents(), TextColors.WHITE, " | ",
+                TextColors.GRAY, "Entities ", TextColors.AQUA, SpawnEntityEvaluator.getTotalEntities(), TextColors.WHITE, " | ",
+                TextColors.GRAY, "Permission groups ", TextColors.AQUA, SpawnEntityEvaluator.getTotalGroups(), TextColors.WHITE, " | ",
+                TextColors.GRAY, "Average group ", TextColors.AQUA, String.format("%.2f", SpawnEntityEvaluator.getAverageGroupSize()), TextColors.WHITE, " | ",
+                TextColors.GRAY, "Max group ", TextColors.AQUA, SpawnEntityEvaluator.getMaxGroupSize(), TextColors.WHITE, " | ",
+                TextColors.GRAY, "Time saved ", TextColors.AQUA, String.format("%.2fms", SpawnEntityEvaluator.getSavedMillis())));
+
+        return CommandResult.success();
+    }
+}
@@ -27,6 +27,7 @@
 
 import com.google.common.collect.ImmutableList;
 import me.ryanhamshire.griefprevention.GPFlags;
+import me.ryanhamshire.griefprevention.GPPermissionCache;
 import me.ryanhamshire.griefprevention.GPPermissions;
 import me.ryanhamshire.griefprevention.GriefPrevention;
 import me.ryanhamshire.griefprevention.Messages;
@@ -383,6 +384,7 @@ public static CommandResult applyFlagPermission(CommandSource src, Subject subje
             }
 
             GriefPrevention.GLOBAL_SUBJECT.getSubjectData().setPermission(contexts, flagPermission, value);
+            GPPermissionCache.invalidate();
             src.sendMessage(Text.of(
                     Text.builder().append(Text.of(
                             TextColors.WHITE, "\n[", TextColors.AQUA, "Return to flags", TextColors.WHITE, "]\n"))
@@ -399,6 +401,7 @@ public static CommandResult applyFlagPermission(CommandSource src, Subject subje
             }
 
             subject.getSubjectData().setPermission(contexts, flagPermission, value);
+            GPPermissionCache.invalidate();
             src.sendMessage(Text.of(
                     Text.builder().append(Text.of(
                             TextColors.WHITE, "\n[", TextColors.AQUA, "Return to flags", TextColors.WHITE, "]\n"))
@@ -436,6 +439,7 @@ public static Consumer<CommandSource> createFlagConsumer(CommandSource src, Subj
 
             Set<Context> newContexts = new HashSet<>(contexts);
             subject.getSubjectData().setPermission(newContexts, flagPermission, newValue);
+            GPPermissionCache.invalidate();
             src.sendMessage(Text.of(
                     TextColors.GREEN, "Set permission of ", 
                     TextColors.AQUA, targetFlag, 
@@ -635,15 +639,15 @@ public static void handleTrustCommand(Player player, ClaimPermission claimPermis
 
         String location = GriefPrevention.instance.dataStore.getMessage(Messages.LocationCurrentClaim);
         for (Claim currentClaim : targetClaims) {
-            ArrayList<UUID> memberList = null;
+            List<UUID> memberList = null;
             if (claimPermission == ClaimPermission.ACCESS) {
-                memberList = (ArrayList<UUID>) currentClaim.getClaimData().getAccessors();
+                memberList = currentClaim.getClaimData().getAccessors();
             } else if (claimPermission == ClaimPermission.INVENTORY) {
-                memberList = (ArrayList<UUID>) currentClaim.getClaimData().getContainers();
+                memberList = currentClaim.getClaimData().getContainers();
             } else if (claimPermission == ClaimPermission.BUILD) {
-                memberList = (ArrayList<UUID>) currentClaim.getClaimData().getBuilders();
+                memberList = currentClaim.getClaimData().getBuilders();
             } else if (claimPermission == ClaimPermission.PERMISSION) {
-                memberList = (ArrayList<UUID>) currentClaim.getClaimData().getManagers();
+                memberList = currentClaim.getClaimData().getManagers();
             }
 
             if (memberList.contains(user.getUniqueId())) {
@@ -659,6 +663,7 @@ public static void handleTrustCommand(Player player, ClaimPermission claimPermis
 
             currentClaim.getClaimData().setRequiresSave(true);
         }
+        GPPermissionCache.invalidate();
 
         //notify player
         String recipientName = user.getName();
@@ -25,6 +25,7 @@
  */
 package me.ryanhamshire.griefprevention.command;
 
+import me.ryanhamshire.griefprevention.GPPermissionCache;
 import me.ryanhamshire.griefprevention.GriefPrevention;
 import me.ryanhamshire.griefprevention.Messages;
 import me.ryanhamshire.griefprevention.PlayerData;
@@ -96,6 +97,7 @@ public CommandResult execute(CommandSource src, CommandContext ctx) {
         claim.getClaimData().getContainers().remove(targetPlayer.get().getUniqueId());
         claim.getClaimData().getManagers().remove(targetPlayer.get().getUniqueId());
         claim.getClaimData().setRequiresSave(true);
+        GPPermissionCache.invalidate();
 
         GriefPrevention.sendMessage(player, TextMode.Success, Messages.UntrustIndividualSingleClaim, subject);
         return CommandResult.success();
@@ -0,0 +1,69 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.configuration;
+
+import me.ryanhamshire.griefprevention.GriefPrevention;
+import me.ryanhamshire.griefprevention.claim.Claim;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+/**
+ * Claim data kept in a world's {@link ClaimLogStorage} instead of its own file.
+ */
+public class BinaryClaimStorageData extends ClaimStorageData {
+
+    private final ClaimLogStorage log;
+    private final UUID claimId;
+
+    public BinaryClaimStorageData(ClaimLogStorage log, Claim claim, Path path) {
+        super(path, null);
+        this.log = log;
+        this.claimId = claim.id;
+        this.getConfig().setWorldUniqueId(claim.id);
+        this.getConfig().setClaimOwnerUniqueId(claim.ownerID);
+        this.getConfig().setClaimType(claim.type);
+    }
+
+    public BinaryClaimStorageData(ClaimLogStorage log, UUID claimId, Path path, @Nullable CommentedConfigurationNode root) {
+        super(path, root);
+        this.log = log;
+        this.claimId = claimId;
+    }
+
+    @Override
+    protected void writeSnapshot(CommentedConfigurationNode snapshot) throws IOException {
+        this.log.put(this.claimId, snapshot.getNode(GriefPrevention.MOD_ID));
+    }
+
+    @Override
+    protected void deleteSnapshot() throws IOException {
+        this.log.delete(this.claimId);
+    }
+}
@@ -32,7 +32,7 @@
 import org.spongepowered.api.text.Text;
 
 import java.time.Instant;
-import java.util.ArrayList;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -41,6 +41,9 @@
 public class ClaimDataConfig extends ConfigCategory implements IClaimData {
 
     private boolean requiresSave = false;
+    // dateLastActive as epoch millis, parsed once per date string
+    private String parsedDateLastActive;
+    private long lastActiveMillis = -1;
 
     @Setting(value = ClaimStorageData.MAIN_WORLD_UUID)//, comment = "The world uuid associated with claim.")
     private UUID worldUniqueId;
@@ -65,13 +68,13 @@ public class ClaimDataConfig extends ConfigCategory implements IClaimData {
     @Setting(value = ClaimStorageData.MAIN_GREATER_BOUNDARY_CORNER)//, comment = "The greater boundary corner location of claim.")
     private String greaterBoundaryCornerPos;
     @Setting(value = ClaimStorageData.MAIN_ACCESSORS)//, comment = "The accessors associated with claim. Note: Accessors can interact with all blocks except inventory containers like chests.")
-    private List<UUID> accessors = new ArrayList<>();
+    private List<UUID> accessors = new TrustList();
     @Setting(value = ClaimStorageData.MAIN_BUILDERS)//, comment = "The builders associated with claim. Note: Builders can do everything accessors and containers do with the addition of placing and breaking blocks.")
-    private List<UUID> builders = new ArrayList<>();
+    private List<UUID> builders = new TrustList();
     @Setting(value = ClaimStorageData.MAIN_CONTAINERS)//, comment = "The containers associated with claim. Note: Containers can do everything accessors with the addition of inventory access.")
-    private List<UUID> containers = new ArrayList<>();
+    private List<UUID> containers = new TrustList();
     @Setting(value = ClaimStorageData.MAIN_MANAGERS)//, comment = "The managers associated with claim. Note: Managers have permission to grant trust and flag permissions within claim.")
-    private List<UUID> managers = new ArrayList<>();
+    private List<UUID> managers = new TrustList();
     @Setting
     private Map<UUID, SubDivisionDataConfig> subdivisions = Maps.newHashMap();
 
@@ -111,6 +114,15 @@ public String getDateLastActive() {
         return this.dateLastActive;
     }
 
+    public long getLastActiveMillis() {
+        // compared by reference, the string is replaced whenever the config is loaded or set
+        if (this.dateLastActive != this.parsedDateLastActive) {
+            this.lastActiveMillis = parseEpochMillis(this.dateLastActive);
+            this.parsedDateLastActive = this.dateLastActive;
+        }
+        return this.lastActiveMillis;
+    }
+
     public Text getClaimName() {
         return this.claimName;
     }
@@ -131,20 +143,32 @@ public String getGreaterBoundaryCorner() {
         return this.greaterBoundaryCornerPos;
     }
 
-    public List<UUID> getAccessors() {
-        return this.accessors;
+    public TrustList getAccessors() {
+        if (!(this.accessors instanceof TrustList)) {
+            this.accessors = TrustList.of(this.accessors);
+        }
+        return (TrustList) this.accessors;
     }
 
-    public List<UUID> getBuilders() {
-        return this.builders;
+    public TrustList getBuilders() {
+        if (!(this.builders instanceof TrustList)) {
+            this.builders = TrustList.of(this.builders);
+        }
+        return (TrustList) this.builders;
     }
 
-    public List<UUID> getContainers() {
-        return this.containers;
+    public TrustList getContainers() {
+        if (!(this.containers instanceof TrustList)) {
+            this.containers = TrustList.of(this.containers);
+        }
+        return (TrustList) this.containers;
     }
 
-    public List<UUID> getManagers() {
-        return this.managers;
+    public TrustList getManagers() {
+        if (!(this.managers instanceof TrustList)) {
+            this.managers = TrustList.of(this.managers);
+        }
+        return (TrustList) this.managers;
     }
 
     public void setCuboid(boolean cuboid) {
@@ -161,6 +185,12 @@ public void setDateLastActive(String date) {
         this.dateLastActive = date;
     }
 
+    public void setLastActiveMillis(long millis) {
+        this.setDateLastActive(Instant.ofEpochMilli(millis).toString());
+        this.parsedDateLastActive = this.dateLastActive;
+        this.lastActiveMillis = millis;
+    }
+
     public void setClaimName(Text name) {
         this.requiresSave = true;
         this.claimName = name;
@@ -188,22 +218,22 @@ public void setGreaterBoundaryCorner(String location) {
 
     public void setAccessors(List<UUID> accessors) {
         this.requiresSave = true;
-        this.accessors = accessors;
+        this.accessors = TrustList.of(accessors);
     }
 
     public void setBuilders(List<UUID> builders) {
         this.requiresSave = true;
-        this.builders = builders;
+        this.builders = TrustList.of(builders);
     }
 
     public void setContainers(List<UUID> containers) {
         this.requiresSave = true;
-        this.containers = containers;
+        this.containers = TrustList.of(containers);
     }
 
     public void setManagers(List<UUID> coowners) {
         this.requiresSave = true;
-        this.managers = coowners;
+        this.managers = TrustList.of(coowners);
     }
 
     public Map<UUID, SubDivisionDataConfig> getSubdivisions() {
@@ -227,4 +257,16 @@ public boolean inheritParent() {
     public void setInheritParent(boolean flag) {
         // only used by subdivisions
     }
-}
\ No newline at end of file
+
+    // -1 if the date is missing or can't be read
+    static long parseEpochMillis(String date) {
+        if (date == null) {
+            return -1;
+        }
+        try {
+            return Instant.parse(date).toEpochMilli();
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+}
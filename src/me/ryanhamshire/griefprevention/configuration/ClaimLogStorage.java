@@ -0,0 +1,504 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.configuration;
+
+import me.ryanhamshire.griefprevention.CustomLogEntryTypes;
+import me.ryanhamshire.griefprevention.GriefPrevention;
+import ninja.leaping.configurate.ConfigurationNode;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.commented.SimpleCommentedConfigurationNode;
+import ninja.leaping.configurate.hocon.HoconConfigurationLoader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary log holding every claim of a world in a single file.
+ *
+ * <p>The file starts with a magic number and format version followed by
+ * records of {@code [length][crc32][op][claim uuid][payload]}. A put record
+ * carries the claim's config node in a compact tagged encoding, a delete
+ * record carries no payload. The last record for a claim wins. A torn
+ * record at the end of the file, left by a crash mid-append, is truncated
+ * on open.</p>
+ *
+ * <p>Mutations are appended and the file is compacted once more than half
+ * of it is superseded records. All access after {@link #open()} happens on
+ * the claim storage writer thread.</p>
+ */
+public class ClaimLogStorage {
+
+    public static final String FILE_NAME = "claims.gpdb";
+
+    private static final int MAGIC = 0x4750434C; // GPCL
+    private static final int FORMAT_VERSION = 1;
+    private static final int FILE_HEADER_SIZE = 8;
+    // length + crc
+    private static final int RECORD_HEADER_SIZE = 8;
+    // op + uuid
+    private static final int RECORD_BODY_MIN_SIZE = 17;
+    private static final long COMPACTION_MIN_WASTE = 64 * 1024;
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_DELETE = 2;
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_MAP = 1;
+    private static final byte TAG_LIST = 2;
+    private static final byte TAG_STRING = 3;
+    private static final byte TAG_BOOLEAN = 4;
+    private static final byte TAG_INT = 5;
+    private static final byte TAG_LONG = 6;
+    private static final byte TAG_DOUBLE = 7;
+    private static final byte TAG_FLOAT = 8;
+
+    private final Path path;
+    private FileChannel channel;
+    private long size;
+    private long liveBytes;
+    // Claim UUID -> offset and length of its latest put record
+    private final Map<UUID, long[]> records = new LinkedHashMap<>();
+
+    public ClaimLogStorage(Path path) {
+        this.path = path;
+    }
+
+    public Path getPath() {
+        return this.path;
+    }
+
+    /**
+     * Reads the log and opens it for appending.
+     *
+     * @return The claim config nodes keyed by claim id, in log order
+     */
+    public synchronized Map<UUID, CommentedConfigurationNode> open() throws IOException {
+        Files.createDirectories(this.path.getParent());
+        this.channel = FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.records.clear();
+        this.liveBytes = 0;
+        if (this.channel.size() < FILE_HEADER_SIZE) {
+            this.channel.truncate(0);
+            this.writeFileHeader(this.channel);
+            this.size = FILE_HEADER_SIZE;
+            return Collections.emptyMap();
+        }
+
+        // read through heap buffers, a mapping would keep the file from being truncated or replaced later
+        final long fileSize = this.channel.size();
+        final ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        readFully(this.channel, header, 0);
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException("File " + this.path + " is not a claim log.");
+        }
+        final int version = header.getInt();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported claim log version " + version + " in " + this.path + ".");
+        }
+
+        final Map<UUID, CommentedConfigurationNode> claims = new LinkedHashMap<>();
+        final ByteBuffer recordHeader = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+        final CRC32 crc = new CRC32();
+        long position = FILE_HEADER_SIZE;
+        while (fileSize - position >= RECORD_HEADER_SIZE) {
+            recordHeader.clear();
+            readFully(this.channel, recordHeader, position);
+            recordHeader.flip();
+            final int length = recordHeader.getInt();
+            final int checksum = recordHeader.getInt();
+            if (length < RECORD_BODY_MIN_SIZE || length > fileSize - position - RECORD_HEADER_SIZE) {
+                break;
+            }
+
+            final ByteBuffer body = ByteBuffer.allocate(length);
+            readFully(this.channel, body, position + RECORD_HEADER_SIZE);
+            crc.reset();
+            crc.update(body.array(), 0, length);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            body.flip();
+
+            final byte op = body.get();
+            final UUID claimId = new UUID(body.getLong(), body.getLong());
+            this.removeRecord(claimId);
+            claims.remove(claimId);
+            final int recordSize = RECORD_HEADER_SIZE + length;
+            if (op == OP_PUT) {
+                CommentedConfigurationNode root = SimpleCommentedConfigurationNode.root(ClaimStorageData.getConfigurationOptions());
+                readNode(body, root.getNode(GriefPrevention.MOD_ID));
+                claims.put(claimId, root);
+                this.records.put(claimId, new long[] {position, recordSize});
+                this.liveBytes += recordSize;
+            }
+            position += recordSize;
+        }
+
+        this.size = position;
+        if (this.size < fileSize) {
+            GriefPrevention.addLogEntry("Truncated " + (fileSize - this.size) + " bytes of incomplete data from the end of " + this.path + ".");
+            this.channel.truncate(this.size);
+        }
+        return claims;
+    }
+
+    public synchronized void put(UUID claimId, ConfigurationNode node) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(OP_PUT);
+        out.writeLong(claimId.getMostSignificantBits());
+        out.writeLong(claimId.getLeastSignificantBits());
+        writeNode(out, node);
+        final int recordSize = this.append(bytes.toByteArray());
+        this.removeRecord(claimId);
+        this.records.put(claimId, new long[] {this.size - recordSize, recordSize});
+        this.liveBytes += recordSize;
+        this.compactIfNeeded();
+    }
+
+    public synchronized void delete(UUID claimId) throws IOException {
+        if (!this.records.containsKey(claimId)) {
+            return;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(RECORD_BODY_MIN_SIZE);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(OP_DELETE);
+        out.writeLong(claimId.getMostSignificantBits());
+        out.writeLong(claimId.getLeastSignificantBits());
+        this.append(bytes.toByteArray());
+        this.removeRecord(claimId);
+        this.compactIfNeeded();
+    }
+
+    public synchronized void close() throws IOException {
+        if (this.channel == null) {
+            return;
+        }
+
+        this.compactIfNeeded();
+        this.channel.force(true);
+        this.channel.close();
+        this.channel = null;
+    }
+
+    public synchronized int getClaimCount() {
+        return this.records.size();
+    }
+
+    public synchronized long getSize() {
+        return this.size;
+    }
+
+    // rewrites the log with only the latest record of each live claim
+    public synchronized void compact() throws IOException {
+        final Path tempPath = this.path.resolveSibling(this.path.getFileName() + ClaimStorageData.TEMP_FILE_SUFFIX);
+        final Map<UUID, long[]> compacted = new LinkedHashMap<>();
+        long position = FILE_HEADER_SIZE;
+        try (FileChannel out = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            this.writeFileHeader(out);
+            // copied through the heap, transferTo may map the source which would keep it from being replaced
+            final ByteBuffer buffer = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+            for (Map.Entry<UUID, long[]> entry : this.records.entrySet()) {
+                final long[] record = entry.getValue();
+                long copied = 0;
+                while (copied < record[1]) {
+                    buffer.clear();
+                    buffer.limit((int) Math.min(buffer.capacity(), record[1] - copied));
+                    readFully(this.channel, buffer, record[0] + copied);
+                    buffer.flip();
+                    copied += buffer.remaining();
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                }
+                compacted.put(entry.getKey(), new long[] {position, record[1]});
+                position += record[1];
+            }
+            out.force(true);
+        }
+
+        this.channel.close();
+        try {
+            Files.move(tempPath, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempPath, this.path, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            this.channel = FileChannel.open(this.path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.size = this.channel.size();
+        }
+
+        this.records.clear();
+        this.records.putAll(compacted);
+        this.liveBytes = position - FILE_HEADER_SIZE;
+    }
+
+    private void compactIfNeeded() throws IOException {
+        final long waste = this.size - FILE_HEADER_SIZE - this.liveBytes;
+        if (waste > COMPACTION_MIN_WASTE && waste > this.liveBytes) {
+            this.compact();
+        }
+    }
+
+    private int append(byte[] body) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + body.length);
+        buffer.putInt(body.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(body);
+        buffer.flip();
+        long position = this.size;
+        while (buffer.hasRemaining()) {
+            position += this.channel.write(buffer, position);
+        }
+        this.size = position;
+        return RECORD_HEADER_SIZE + body.length;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new EOFException("Unexpected end of claim log.");
+            }
+            position += read;
+        }
+    }
+
+    private void removeRecord(UUID claimId) {
+        final long[] record = this.records.remove(claimId);
+        if (record != null) {
+            this.liveBytes -= record[1];
+        }
+    }
+
+    private void writeFileHeader(FileChannel out) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(FORMAT_VERSION);
+        header.flip();
+        out.position(0);
+        while (header.hasRemaining()) {
+            out.write(header);
+        }
+    }
+
+    private static void writeNode(DataOutputStream out, ConfigurationNode node) throws IOException {
+        if (node.hasMapChildren()) {
+            final Map<Object, ? extends ConfigurationNode> children = node.getChildrenMap();
+            out.writeByte(TAG_MAP);
+            out.writeInt(children.size());
+            for (Map.Entry<Object, ? extends ConfigurationNode> entry : children.entrySet()) {
+                writeString(out, String.valueOf(entry.getKey()));
+                writeNode(out, entry.getValue());
+            }
+        } else if (node.hasListChildren()) {
+            final List<? extends ConfigurationNode> children = node.getChildrenList();
+            out.writeByte(TAG_LIST);
+            out.writeInt(children.size());
+            for (ConfigurationNode child : children) {
+                writeNode(out, child);
+            }
+        } else {
+            final Object value = node.getValue();
+            if (value == null) {
+                out.writeByte(TAG_NULL);
+            } else if (value instanceof Map) {
+                out.writeByte(TAG_MAP);
+                out.writeInt(0);
+            } else if (value instanceof List) {
+                out.writeByte(TAG_LIST);
+                out.writeInt(0);
+            } else if (value instanceof Boolean) {
+                out.writeByte(TAG_BOOLEAN);
+                out.writeBoolean((Boolean) value);
+            } else if (value instanceof Integer) {
+                out.writeByte(TAG_INT);
+                out.writeInt((Integer) value);
+            } else if (value instanceof Long) {
+                out.writeByte(TAG_LONG);
+                out.writeLong((Long) value);
+            } else if (value instanceof Double) {
+                out.writeByte(TAG_DOUBLE);
+                out.writeDouble((Double) value);
+            } else if (value instanceof Float) {
+                out.writeByte(TAG_FLOAT);
+                out.writeFloat((Float) value);
+            } else {
+                out.writeByte(TAG_STRING);
+                writeString(out, value.toString());
+            }
+        }
+    }
+
+    private static void readNode(ByteBuffer in, ConfigurationNode node) throws IOException {
+        final byte tag = in.get();
+        switch (tag) {
+            case TAG_NULL:
+                break;
+            case TAG_MAP: {
+                final int count = in.getInt();
+                if (count == 0) {
+                    node.setValue(Collections.emptyMap());
+                }
+                for (int i = 0; i < count; i++) {
+                    readNode(in, node.getNode(readString(in)));
+                }
+                break;
+            }
+            case TAG_LIST: {
+                final int count = in.getInt();
+                if (count == 0) {
+                    node.setValue(Collections.emptyList());
+                }
+                for (int i = 0; i < count; i++) {
+                    readNode(in, node.getAppendedNode());
+                }
+                break;
+            }
+            case TAG_STRING:
+                node.setValue(readString(in));
+                break;
+            case TAG_BOOLEAN:
+                node.setValue(in.get() != 0);
+                break;
+            case TAG_INT:
+                node.setValue(in.getInt());
+                break;
+            case TAG_LONG:
+                node.setValue(in.getLong());
+                break;
+            case TAG_DOUBLE:
+                node.setValue(in.getDouble());
+                break;
+            case TAG_FLOAT:
+                node.setValue(in.getFloat());
+                break;
+            default:
+                throw new IOException("Unknown node tag " + tag + ".");
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        final byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Copies every claim file in a claim data folder into a new log.
+     *
+     * <p>The claim files are left untouched.</p>
+     *
+     * @return The number of claims converted
+     */
+    public static int importClaimFiles(Path claimDataPath, Path logPath) throws IOException {
+        final Path tempPath = logPath.resolveSibling(logPath.getFileName() + ClaimStorageData.TEMP_FILE_SUFFIX);
+        Files.deleteIfExists(tempPath);
+        final ClaimLogStorage log = new ClaimLogStorage(tempPath);
+        log.open();
+        int count = 0;
+        try {
+            final File[] files = claimDataPath.toFile().listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    if (!file.isFile() || file.getName().endsWith(ClaimStorageData.TEMP_FILE_SUFFIX)) {
+                        continue;
+                    }
+
+                    final UUID claimId;
+                    try {
+                        claimId = UUID.fromString(file.getName());
+                    } catch (IllegalArgumentException e) {
+                        continue;
+                    }
+
+                    try {
+                        CommentedConfigurationNode root = HoconConfigurationLoader.builder().setPath(file.toPath()).build()
+                                .load(ClaimStorageData.getConfigurationOptions());
+                        log.put(claimId, root.getNode(GriefPrevention.MOD_ID));
+                        count++;
+                    } catch (IOException e) {
+                        GriefPrevention.addLogEntry("Could not convert claim file " + file.getAbsolutePath() + ": " + e.getMessage(), CustomLogEntryTypes.Exception);
+                    }
+                }
+            }
+        } finally {
+            log.close();
+        }
+
+        Files.move(tempPath, logPath, StandardCopyOption.REPLACE_EXISTING);
+        return count;
+    }
+
+    /**
+     * Writes every claim in a log out as claim files.
+     *
+     * <p>The log is left untouched.</p>
+     *
+     * @return The number of claims converted
+     */
+    public static int exportClaimFiles(Path logPath, Path claimDataPath) throws IOException {
+        final ClaimLogStorage log = new ClaimLogStorage(logPath);
+        final Map<UUID, CommentedConfigurationNode> claims;
+        try {
+            claims = log.open();
+        } finally {
+            log.close();
+        }
+
+        Files.createDirectories(claimDataPath);
+        for (Map.Entry<UUID, CommentedConfigurationNode> entry : claims.entrySet()) {
+            HoconConfigurationLoader.builder().setPath(claimDataPath.resolve(entry.getKey().toString())).build().save(entry.getValue());
+        }
+        return claims.size();
+    }
+}
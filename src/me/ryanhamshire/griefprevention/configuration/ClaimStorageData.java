@@ -34,16 +34,17 @@
 import ninja.leaping.configurate.objectmapping.ObjectMapper;
 import ninja.leaping.configurate.objectmapping.ObjectMappingException;
 import ninja.leaping.configurate.objectmapping.serialize.TypeSerializers;
-import org.spongepowered.api.util.Functional;
 import org.spongepowered.common.SpongeImpl;
 import org.spongepowered.common.util.IpSet;
 
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ForkJoinPool;
+
+import javax.annotation.Nullable;
 
 public class ClaimStorageData {
 
@@ -54,6 +55,8 @@ public class ClaimStorageData {
     private ClaimDataConfig configBase;
     public Path filePath;
 
+    public static final String TEMP_FILE_SUFFIX = ".tmp";
+
     // MAIN
     public static final String MAIN_WORLD_UUID = "world-uuid";
     public static final String MAIN_OWNER_UUID = "owner-uuid";
@@ -114,26 +117,64 @@ public ClaimStorageData(Path path) {
         }
     }
 
+    // storage that is not backed by its own file, the root node is supplied by the caller
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    protected ClaimStorageData(Path path, @Nullable CommentedConfigurationNode root) {
+        this.filePath = path;
+        try {
+            this.configMapper = (ObjectMapper.BoundInstance) ObjectMapper.forClass(ClaimDataConfig.class).bindToNew();
+            if (root != null) {
+                this.root = root;
+            }
+            reload();
+        } catch (Exception e) {
+            SpongeImpl.getLogger().error("Failed to initialize configuration", e);
+        }
+    }
+
     public ClaimDataConfig getConfig() {
         return this.configBase;
     }
 
+    // queues this claim to be written by the claim storage writer
     public void save() {
+        ClaimStorageQueue.markDirty(this);
+    }
+
+    // captures the current claim data, must be called on the main thread
+    @Nullable
+    CommentedConfigurationNode createSnapshot() {
         try {
-            this.configMapper.serialize(this.root.getNode(GriefPrevention.MOD_ID));
-            this.loader.save(this.root);
+            CommentedConfigurationNode snapshot = SimpleCommentedConfigurationNode.root(this.root.getOptions());
+            this.configMapper.serialize(snapshot.getNode(GriefPrevention.MOD_ID));
             this.configBase.setRequiresSave(false);
-        } catch (IOException | ObjectMappingException e) {
+            return snapshot;
+        } catch (ObjectMappingException e) {
             SpongeImpl.getLogger().error("Failed to save configuration", e);
+            return null;
+        }
+    }
+
+    // writes a snapshot next to the claim file then swaps it in
+    protected void writeSnapshot(CommentedConfigurationNode snapshot) throws IOException {
+        Path tempPath = this.filePath.resolveSibling(this.filePath.getFileName() + TEMP_FILE_SUFFIX);
+        HoconConfigurationLoader.builder().setPath(tempPath).build().save(snapshot);
+        try {
+            Files.move(tempPath, this.filePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempPath, this.filePath, StandardCopyOption.REPLACE_EXISTING);
         }
     }
 
+    protected void deleteSnapshot() throws IOException {
+        Files.deleteIfExists(this.filePath);
+    }
+
     public void reload() {
         try {
-            this.root = this.loader.load(ConfigurationOptions.defaults()
-                    .setSerializers(
-                            TypeSerializers.getDefaultSerializers().newChild().registerType(TypeToken.of(IpSet.class), new IpSet.IpSetSerializer()))
-                    .setHeader(GriefPrevention.CONFIG_HEADER));
+            if (this.loader != null) {
+                this.root = this.loader.load(getConfigurationOptions());
+            }
             // Remove empty strings as they are no longer serializable in 1.9+
             boolean requiresSave = false;
             for (Map.Entry<Object, ? extends CommentedConfigurationNode> mapEntry : this.root.getNode(GriefPrevention.MOD_ID).getChildrenMap().entrySet()) {
@@ -155,14 +196,11 @@ public void reload() {
         }
     }
 
-    public CompletableFuture<CommentedConfigurationNode> updateSetting(String key, Object value) {
-        return Functional.asyncFailableFuture(() -> {
-            CommentedConfigurationNode upd = getSetting(key);
-            upd.setValue(value);
-            this.configBase = this.configMapper.populate(this.root.getNode(GriefPrevention.MOD_ID));
-            this.loader.save(this.root);
-            return upd;
-        }, ForkJoinPool.commonPool());
+    public static ConfigurationOptions getConfigurationOptions() {
+        return ConfigurationOptions.defaults()
+                .setSerializers(
+                        TypeSerializers.getDefaultSerializers().newChild().registerType(TypeToken.of(IpSet.class), new IpSet.IpSetSerializer()))
+                .setHeader(GriefPrevention.CONFIG_HEADER);
     }
 
     public CommentedConfigurationNode getRootNode() {
@@ -0,0 +1,189 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.configuration;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import me.ryanhamshire.griefprevention.GriefPrevention;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import org.spongepowered.common.SpongeImpl;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-behind persistence for {@link ClaimStorageData}.
+ *
+ * <p>Storages are marked dirty and coalesced until the
+ * next {@link #flush()}, which snapshots them into detached nodes and hands
+ * the batch to a single writer thread. Deletes go through the same thread
+ * so they can never be overtaken by an older write.</p>
+ */
+public class ClaimStorageQueue {
+
+    private static final Set<ClaimStorageData> DIRTY = Collections.newSetFromMap(new IdentityHashMap<>());
+    private static final AtomicInteger PENDING_WRITES = new AtomicInteger();
+    private static final AtomicLong TOTAL_WRITES = new AtomicLong();
+    private static final AtomicLong TOTAL_WRITE_NANOS = new AtomicLong();
+    private static final AtomicLong MAX_WRITE_NANOS = new AtomicLong();
+    private static ExecutorService executor = createExecutor();
+
+    public static synchronized void markDirty(ClaimStorageData storage) {
+        DIRTY.add(storage);
+    }
+
+    public static synchronized void delete(ClaimStorageData storage) {
+        DIRTY.remove(storage);
+        PENDING_WRITES.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                storage.deleteSnapshot();
+            } catch (IOException e) {
+                SpongeImpl.getLogger().error("Failed to delete claim data at " + storage.filePath, e);
+                GriefPrevention.addLogEntry("Error: Unable to delete claim file \"" + storage.filePath + "\".");
+            } finally {
+                PENDING_WRITES.decrementAndGet();
+            }
+        });
+    }
+
+    // snapshots all dirty storages and queues them for writing, must be called on the main thread
+    public static synchronized void flush() {
+        if (DIRTY.isEmpty()) {
+            return;
+        }
+
+        final List<ClaimStorageData> storages = new ArrayList<>(DIRTY.size());
+        final List<CommentedConfigurationNode> snapshots = new ArrayList<>(DIRTY.size());
+        for (ClaimStorageData storage : DIRTY) {
+            CommentedConfigurationNode snapshot = storage.createSnapshot();
+            if (snapshot != null) {
+                storages.add(storage);
+                snapshots.add(snapshot);
+            }
+        }
+        DIRTY.clear();
+
+        PENDING_WRITES.addAndGet(storages.size());
+        executor.execute(() -> {
+            for (int i = 0; i < storages.size(); i++) {
+                final long start = System.nanoTime();
+                try {
+                    storages.get(i).writeSnapshot(snapshots.get(i));
+                } catch (Exception e) {
+                    SpongeImpl.getLogger().error("Failed to save claim data to " + storages.get(i).filePath, e);
+                } finally {
+                    recordWrite(System.nanoTime() - start);
+                    PENDING_WRITES.decrementAndGet();
+                }
+            }
+        });
+    }
+
+    // runs a storage task on the writer thread after everything queued before it
+    public static void execute(Runnable task) {
+        PENDING_WRITES.incrementAndGet();
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (Exception e) {
+                SpongeImpl.getLogger().error("Failed to run claim storage task", e);
+            } finally {
+                PENDING_WRITES.decrementAndGet();
+            }
+        });
+    }
+
+    // runs a storage task on the writer thread and blocks for its result
+    public static <T> T submitAndWait(Callable<T> task) throws Exception {
+        flush();
+        try {
+            return executor.submit(task).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    // blocks until everything queued so far has been written
+    public static void flushAndWait() {
+        flush();
+        try {
+            executor.submit(() -> {}).get(60, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            SpongeImpl.getLogger().error("Timed out waiting for claim data to be written", e);
+        }
+    }
+
+    public static void shutdown() {
+        flushAndWait();
+        executor.shutdown();
+        GriefPrevention.addLogEntry("Claim storage writer stopped. Writes: " + TOTAL_WRITES.get() + ", average latency: "
+                + getAverageWriteMillis() + "ms, max latency: " + getMaxWriteMillis() + "ms.");
+        executor = createExecutor();
+    }
+
+    // dirty storages waiting for the next flush plus writes not yet completed
+    public static synchronized int getQueueDepth() {
+        return DIRTY.size() + PENDING_WRITES.get();
+    }
+
+    public static long getTotalWrites() {
+        return TOTAL_WRITES.get();
+    }
+
+    public static double getAverageWriteMillis() {
+        long writes = TOTAL_WRITES.get();
+        return writes == 0 ? 0 : TOTAL_WRITE_NANOS.get() / (double) writes / 1000000D;
+    }
+
+    public static double getMaxWriteMillis() {
+        return MAX_WRITE_NANOS.get() / 1000000D;
+    }
+
+    private static void recordWrite(long nanos) {
+        TOTAL_WRITES.incrementAndGet();
+        TOTAL_WRITE_NANOS.addAndGet(nanos);
+        long max;
+        while (nanos > (max = MAX_WRITE_NANOS.get()) && !MAX_WRITE_NANOS.compareAndSet(max, nanos)) {
+        }
+    }
+
+    private static ExecutorService createExecutor() {
+        return Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("GriefPrevention Claim Writer").setDaemon(true).build());
+    }
+}
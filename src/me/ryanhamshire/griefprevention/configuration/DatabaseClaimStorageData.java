@@ -0,0 +1,82 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.configuration;
+
+import me.ryanhamshire.griefprevention.DatabaseDataStore;
+import me.ryanhamshire.griefprevention.GriefPrevention;
+import me.ryanhamshire.griefprevention.claim.Claim;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.objectmapping.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+/**
+ * Claim data kept in the claim tables of a {@link DatabaseDataStore}.
+ */
+public class DatabaseClaimStorageData extends ClaimStorageData {
+
+    private final DatabaseDataStore dataStore;
+    private final UUID claimId;
+
+    public DatabaseClaimStorageData(DatabaseDataStore dataStore, Claim claim, Path path) {
+        super(path, null);
+        this.dataStore = dataStore;
+        this.claimId = claim.id;
+        this.getConfig().setWorldUniqueId(claim.id);
+        this.getConfig().setClaimOwnerUniqueId(claim.ownerID);
+        this.getConfig().setClaimType(claim.type);
+    }
+
+    public DatabaseClaimStorageData(DatabaseDataStore dataStore, UUID claimId, Path path, @Nullable CommentedConfigurationNode root) {
+        super(path, root);
+        this.dataStore = dataStore;
+        this.claimId = claimId;
+    }
+
+    // runs on the writer thread, the snapshot is mapped into detached claim data before writing
+    @Override
+    protected void writeSnapshot(CommentedConfigurationNode snapshot) throws IOException {
+        try {
+            ClaimDataConfig claimData = ObjectMapper.forClass(ClaimDataConfig.class).bindToNew().populate(snapshot.getNode(GriefPrevention.MOD_ID));
+            this.dataStore.writeClaimData(this.claimId, claimData);
+        } catch (Exception e) {
+            throw new IOException("Unable to write claim " + this.claimId + " to the database.", e);
+        }
+    }
+
+    @Override
+    protected void deleteSnapshot() throws IOException {
+        try {
+            this.dataStore.deleteClaimData(this.claimId);
+        } catch (SQLException e) {
+            throw new IOException("Unable to delete claim " + this.claimId + " from the database.", e);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.configuration;
+
+import me.ryanhamshire.griefprevention.DatabaseDataStore;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+
+import java.util.UUID;
+
+/**
+ * Player data kept in the player table of a {@link DatabaseDataStore}.
+ */
+public class DatabasePlayerStorageData extends PlayerStorageData {
+
+    private final DatabaseDataStore dataStore;
+    private final String worldKey;
+    private final UUID playerUniqueId;
+
+    public DatabasePlayerStorageData(DatabaseDataStore dataStore, String worldKey, UUID playerUniqueId, int accruedClaimBlocks,
+            int bonusClaimBlocks, boolean cuboidMode) {
+        super();
+        this.dataStore = dataStore;
+        this.worldKey = worldKey;
+        this.playerUniqueId = playerUniqueId;
+        this.getConfig().setAccruedClaimBlocks(accruedClaimBlocks);
+        this.getConfig().setBonusClaimBlocks(bonusClaimBlocks);
+        this.getConfig().setCuboidMode(cuboidMode);
+        this.getConfig().setRequiresSave(false);
+    }
+
+    // queues the current values for the writer thread
+    @Override
+    public void save() {
+        if (!this.getConfig().requiresSave()) {
+            return;
+        }
+
+        this.dataStore.savePlayerData(this.worldKey, this.playerUniqueId, this.getConfig().getAccruedClaimBlocks(),
+                this.getConfig().getBonusClaimBlocks(), this.getConfig().getCuboidMode());
+        this.getConfig().setRequiresSave(false);
+    }
+
+    // database rows are already written by the writer thread, so nothing is left to snapshot
+    @Override
+    CommentedConfigurationNode createSnapshot() {
+        this.save();
+        return null;
+    }
+}
@@ -48,6 +48,8 @@ public interface IClaimData {
 
     String getDateLastActive();
 
+    long getLastActiveMillis();
+
     Text getClaimName();
 
     Text getGreetingMessage();
@@ -58,13 +60,13 @@ public interface IClaimData {
 
     String getGreaterBoundaryCorner();
 
-    List<UUID> getAccessors();
+    TrustList getAccessors();
 
-    List<UUID> getBuilders();
+    TrustList getBuilders();
 
-    List<UUID> getContainers();
+    TrustList getContainers();
 
-    List<UUID> getManagers();
+    TrustList getManagers();
 
     void setClaimOwnerUniqueId(UUID newClaimOwner);
 
@@ -76,6 +78,8 @@ public interface IClaimData {
 
     void setDateLastActive(String date);
 
+    void setLastActiveMillis(long millis);
+
     void setClaimName(Text name);
 
     void setGreetingMessage(Text message);
@@ -37,6 +37,9 @@
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ForkJoinPool;
 
@@ -61,7 +64,22 @@ public PlayerStorageData(Path path) {
             this.configMapper = (ObjectMapper.BoundInstance) ObjectMapper.forClass(PlayerDataConfig.class).bindToNew();
 
             reload();
-            save();
+            if (this.configBase.requiresSave()) {
+                this.configMapper.serialize(this.root.getNode(GriefPrevention.MOD_ID));
+                this.loader.save(this.root);
+                this.configBase.setRequiresSave(false);
+            }
+        } catch (Exception e) {
+            SpongeImpl.getLogger().error("Failed to initialize configuration", e);
+        }
+    }
+
+    // storage that is not backed by a file, values are supplied by the caller
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    protected PlayerStorageData() {
+        try {
+            this.configMapper = (ObjectMapper.BoundInstance) ObjectMapper.forClass(PlayerDataConfig.class).bindToNew();
+            reload();
         } catch (Exception e) {
             SpongeImpl.getLogger().error("Failed to initialize configuration", e);
         }
@@ -71,22 +89,69 @@ public PlayerDataConfig getConfig() {
         return this.configBase;
     }
 
+    // queued behind every earlier snapshot of this storage, so writes land in the order they were made
+    // must be called on the main thread
     public void save() {
-        try {
-            if (this.configBase.requiresSave()) {
-                this.configMapper.serialize(this.root.getNode(GriefPrevention.MOD_ID));
-                this.loader.save(this.root);
-                this.configBase.setRequiresSave(false);
+        saveAll(Collections.singletonList(this));
+    }
+
+    // saves every modified storage with a single task on the storage writer thread, must be called on the main thread
+    public static void saveAll(List<PlayerStorageData> storages) {
+        final List<PlayerStorageData> pending = new ArrayList<>(storages.size());
+        final List<CommentedConfigurationNode> snapshots = new ArrayList<>(storages.size());
+        for (PlayerStorageData storage : storages) {
+            if (storage == null) {
+                continue;
             }
-        } catch (IOException | ObjectMappingException e) {
+            CommentedConfigurationNode snapshot = storage.createSnapshot();
+            if (snapshot != null) {
+                pending.add(storage);
+                snapshots.add(snapshot);
+            }
+        }
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        ClaimStorageQueue.execute(() -> {
+            for (int i = 0; i < pending.size(); i++) {
+                try {
+                    pending.get(i).writeSnapshot(snapshots.get(i));
+                } catch (IOException e) {
+                    SpongeImpl.getLogger().error("Failed to save configuration", e);
+                }
+            }
+        });
+    }
+
+    // detached copy of the modified values, null when there is nothing to write
+    CommentedConfigurationNode createSnapshot() {
+        if (!this.configBase.requiresSave()) {
+            return null;
+        }
+        try {
+            CommentedConfigurationNode snapshot = SimpleCommentedConfigurationNode.root(this.root.getOptions());
+            this.configMapper.serialize(snapshot.getNode(GriefPrevention.MOD_ID));
+            this.configBase.setRequiresSave(false);
+            return snapshot;
+        } catch (ObjectMappingException e) {
             SpongeImpl.getLogger().error("Failed to save configuration", e);
+            return null;
+        }
+    }
+
+    protected void writeSnapshot(CommentedConfigurationNode snapshot) throws IOException {
+        synchronized (this) {
+            this.loader.save(snapshot);
         }
     }
 
     public void reload() {
         try {
-            this.root = this.loader.load(ConfigurationOptions.defaults()
-                    .setHeader(GriefPrevention.CONFIG_HEADER));
+            if (this.loader != null) {
+                this.root = this.loader.load(ConfigurationOptions.defaults()
+                        .setHeader(GriefPrevention.CONFIG_HEADER));
+            }
             this.configBase = this.configMapper.populate(this.root.getNode(GriefPrevention.MOD_ID));
         } catch (Exception e) {
             SpongeImpl.getLogger().error("Failed to load configuration", e);
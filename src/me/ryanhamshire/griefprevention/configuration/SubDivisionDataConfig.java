@@ -34,7 +34,6 @@
 import org.spongepowered.api.text.Text;
 
 import java.time.Instant;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -42,6 +41,9 @@
 public class SubDivisionDataConfig extends ConfigCategory implements IClaimData {
 
     private IClaimData parent;
+    // dateLastActive as epoch millis, parsed once per date string
+    private String parsedDateLastActive;
+    private long lastActiveMillis = -1;
 
     @Setting(value = ClaimStorageData.MAIN_CLAIM_NAME)//, comment = "The name associated with subdivision.")
     public Text claimName;
@@ -62,13 +64,13 @@ public class SubDivisionDataConfig extends ConfigCategory implements IClaimData
     @Setting(value = ClaimStorageData.MAIN_GREATER_BOUNDARY_CORNER)//, comment = "The greater boundary corner location of subdivision.")
     public String greaterBoundaryCornerPos;
     @Setting(value = ClaimStorageData.MAIN_ACCESSORS)//, comment = "The accessors associated with subdivision.")
-    public List<UUID> accessors = new ArrayList<>();
+    public List<UUID> accessors = new TrustList();
     @Setting(value = ClaimStorageData.MAIN_BUILDERS)//, comment = "The builders associated with subdivision.")
-    public List<UUID> builders = new ArrayList<>();
+    public List<UUID> builders = new TrustList();
     @Setting(value = ClaimStorageData.MAIN_CONTAINERS)//, comment = "The containers associated with subdivision.")
-    public List<UUID> containers = new ArrayList<>();
+    public List<UUID> containers = new TrustList();
     @Setting(value = ClaimStorageData.MAIN_MANAGERS)//, comment = "The managers associated with subdivision.")
-    public List<UUID> managers = new ArrayList<>();
+    public List<UUID> managers = new TrustList();
     @Setting(value = ClaimStorageData.SUB_INHERIT_PARENT)
     public boolean inheritParent = true;
 
@@ -109,6 +111,14 @@ public String getDateLastActive() {
         return this.dateLastActive;
     }
     @Override
+    public long getLastActiveMillis() {
+        if (this.dateLastActive != this.parsedDateLastActive) {
+            this.lastActiveMillis = ClaimDataConfig.parseEpochMillis(this.dateLastActive);
+            this.parsedDateLastActive = this.dateLastActive;
+        }
+        return this.lastActiveMillis;
+    }
+    @Override
     public Text getClaimName() {
         return this.claimName;
     }
@@ -129,20 +139,32 @@ public String getGreaterBoundaryCorner() {
         return this.greaterBoundaryCornerPos;
     }
     @Override
-    public List<UUID> getAccessors() {
-        return this.accessors;
+    public TrustList getAccessors() {
+        if (!(this.accessors instanceof TrustList)) {
+            this.accessors = TrustList.of(this.accessors);
+        }
+        return (TrustList) this.accessors;
     }
     @Override
-    public List<UUID> getBuilders() {
-        return this.builders;
+    public TrustList getBuilders() {
+        if (!(this.builders instanceof TrustList)) {
+            this.builders = TrustList.of(this.builders);
+        }
+        return (TrustList) this.builders;
     }
     @Override
-    public List<UUID> getContainers() {
-        return this.containers;
+    public TrustList getContainers() {
+        if (!(this.containers instanceof TrustList)) {
+            this.containers = TrustList.of(this.containers);
+        }
+        return (TrustList) this.containers;
     }
     @Override
-    public List<UUID> getManagers() {
-        return this.managers;
+    public TrustList getManagers() {
+        if (!(this.managers instanceof TrustList)) {
+            this.managers = TrustList.of(this.managers);
+        }
+        return (TrustList) this.managers;
     }
 
     @Override
@@ -166,6 +188,13 @@ public void setDateLastActive(String date) {
         this.dateLastActive = date;
     }
 
+    @Override
+    public void setLastActiveMillis(long millis) {
+        this.setDateLastActive(Instant.ofEpochMilli(millis).toString());
+        this.parsedDateLastActive = this.dateLastActive;
+        this.lastActiveMillis = millis;
+    }
+
     @Override
     public void setClaimName(Text name) {
         this.parent.setRequiresSave(true);
@@ -198,22 +227,22 @@ public void setGreaterBoundaryCorner(String location) {
 
     public void setAccessors(List<UUID> accessors) {
         this.parent.setRequiresSave(true);
-        this.accessors = accessors;
+        this.accessors = TrustList.of(accessors);
     }
 
     public void setBuilders(List<UUID> builders) {
         this.parent.setRequiresSave(true);
-        this.builders = builders;
+        this.builders = TrustList.of(builders);
     }
 
     public void setContainers(List<UUID> containers) {
         this.parent.setRequiresSave(true);
-        this.containers = containers;
+        this.containers = TrustList.of(containers);
     }
 
     public void setManagers(List<UUID> coowners) {
         this.parent.setRequiresSave(true);
-        this.managers = coowners;
+        this.managers = TrustList.of(coowners);
     }
 
     public boolean requiresSave() {
@@ -0,0 +1,151 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.configuration;
+
+import me.ryanhamshire.griefprevention.GriefPrevention;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.UUID;
+
+/**
+ * An ordered list of trusted UUIDs with constant time membership checks.
+ *
+ * <p>Entries are kept in a list so they serialize to the same HOCON lists as
+ * before, while a count per UUID answers {@link #contains(Object)} without a
+ * scan. Whether {@link GriefPrevention#PUBLIC_UUID} is present is tracked
+ * separately so public trust checks don't need a lookup at all.</p>
+ */
+public class TrustList extends AbstractList<UUID> implements RandomAccess {
+
+    private final ArrayList<UUID> entries;
+    private final Map<UUID, Integer> counts;
+    private boolean isPublic;
+
+    public TrustList() {
+        this.entries = new ArrayList<>();
+        this.counts = new HashMap<>();
+    }
+
+    public TrustList(Collection<UUID> uuids) {
+        this.entries = new ArrayList<>(uuids.size());
+        this.counts = new HashMap<>(Math.max(16, uuids.size() * 2));
+        for (UUID uuid : uuids) {
+            this.add(uuid);
+        }
+    }
+
+    // lists deserialized by configurate are wrapped the first time they're accessed
+    public static TrustList of(List<UUID> uuids) {
+        return uuids instanceof TrustList ? (TrustList) uuids : new TrustList(uuids);
+    }
+
+    public boolean isPublic() {
+        return this.isPublic;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return this.counts.containsKey(o);
+    }
+
+    @Override
+    public int indexOf(Object o) {
+        return this.counts.containsKey(o) ? this.entries.indexOf(o) : -1;
+    }
+
+    @Override
+    public int lastIndexOf(Object o) {
+        return this.counts.containsKey(o) ? this.entries.lastIndexOf(o) : -1;
+    }
+
+    @Override
+    public UUID get(int index) {
+        return this.entries.get(index);
+    }
+
+    @Override
+    public int size() {
+        return this.entries.size();
+    }
+
+    @Override
+    public void add(int index, UUID uuid) {
+        this.entries.add(index, uuid);
+        this.modCount++;
+        this.track(uuid);
+    }
+
+    @Override
+    public UUID set(int index, UUID uuid) {
+        UUID previous = this.entries.set(index, uuid);
+        this.untrack(previous);
+        this.track(uuid);
+        return previous;
+    }
+
+    @Override
+    public UUID remove(int index) {
+        UUID previous = this.entries.remove(index);
+        this.modCount++;
+        this.untrack(previous);
+        return previous;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!this.counts.containsKey(o)) {
+            return false;
+        }
+        return super.remove(o);
+    }
+
+    @Override
+    public void clear() {
+        this.entries.clear();
+        this.counts.clear();
+        this.isPublic = false;
+        this.modCount++;
+    }
+
+    private void track(UUID uuid) {
+        this.counts.merge(uuid, 1, Integer::sum);
+        if (GriefPrevention.PUBLIC_UUID.equals(uuid)) {
+            this.isPublic = true;
+        }
+    }
+
+    private void untrack(UUID uuid) {
+        if (this.counts.computeIfPresent(uuid, (k, count) -> count == 1 ? null : count - 1) == null
+                && GriefPrevention.PUBLIC_UUID.equals(uuid)) {
+            this.isPublic = false;
+        }
+    }
+}
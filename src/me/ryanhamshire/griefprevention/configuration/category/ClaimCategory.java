@@ -45,6 +45,9 @@ public class ClaimCategory extends ConfigCategory {
     public boolean deliverManuals = false;
     @Setting(value = "auto-nature-restore", comment = "Whether survival claims will be automatically restored to nature when auto-deleted.")
     public boolean claimAutoNatureRestore = false;
+    @Setting(value = "restore-nature-wilderness", comment = "Whether restoring nature changes unclaimed blocks and removes unclaimed paintings and item frames. "
+            + "Restoring nature used to leave every block alone, so this is off by default.")
+    public boolean restoreNatureWilderness = false;
     @Setting(value = "extend-into-ground-distance", comment = "How far below the shoveled block a new claim will reach. Set to 255 if you want to always extend to bedrock.")
     public int extendIntoGroundDistance = 5;
     @Setting(value = "claim-max-depth", comment = "Limit on how deep claims can go.")
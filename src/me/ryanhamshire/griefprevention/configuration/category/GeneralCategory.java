@@ -58,4 +58,6 @@ public class GeneralCategory extends ConfigCategory {
     public boolean protectItemsOnDeathNonPvp = true;
     @Setting(value = "chat-rules-enabled", comment = "Whether chat should be monitored and filtered by rules.")
     public boolean chatProtectionEnabled = false;
+    @Setting(value = "permission-cache-expiration", comment = "How many seconds a cached claim permission decision stays valid. Set to 0 to disable the cache. (Default: 30)")
+    public int permissionCacheExpiration = 30;
 }
\ No newline at end of file
@@ -38,4 +38,12 @@ public class LoggingCategory extends ConfigCategory {
     public boolean loggingSocialActions = false;
     @Setting(value = "suspicious-activity", comment = "Log suspicious activity.")
     public boolean loggingSuspiciousActivity = false;
+    @Setting(value = "json-format", comment = "Write log entries as JSON lines instead of plain text.")
+    public boolean loggingJsonFormat = false;
+    @Setting(value = "max-file-size", comment = "The size in megabytes after which a new log file is started for the same day. Set to 0 to disable. (Default: 10)")
+    public int loggingMaxFileSize = 10;
+    @Setting(value = "buffer-size", comment = "The number of log entries that can wait to be written. (Default: 8192)")
+    public int loggingBufferSize = 8192;
+    @Setting(value = "block-when-full", comment = "Whether threads should wait for the log writer when the buffer is full instead of dropping the entry.")
+    public boolean loggingBlockWhenFull = false;
 }
\ No newline at end of file
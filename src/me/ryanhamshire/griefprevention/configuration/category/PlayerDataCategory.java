@@ -32,4 +32,6 @@ public class PlayerDataCategory extends ConfigCategory {
 
     @Setting(value = "use-global-storage", comment = "Whether player data should be stored per world. True will store all data in the default world.")
     public boolean useGlobalPlayerDataStorage = false;
+    @Setting(value = "cache-size", comment = "The number of player data entries kept in memory. Offline players are unloaded, least recently used first, once this is exceeded. Set to 0 to never unload.")
+    public int cacheSize = 1000;
 }
\ No newline at end of file
@@ -0,0 +1,42 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.configuration.category;
+
+import ninja.leaping.configurate.objectmapping.Setting;
+import ninja.leaping.configurate.objectmapping.serialize.ConfigSerializable;
+
+@ConfigSerializable
+public class StorageCategory extends ConfigCategory {
+
+    @Setting(value = "claim-storage-format", comment = "The format used to store claims. Accepts 'file' for one file per claim 'binary' for a single log file per world or 'database' for the SQL database configured in the database category."
+            + "\nNote: Claims are converted automatically when switching between 'file' and 'binary' and from either of them to 'database'. The previous data is kept with a '.converted' suffix."
+            + "\nSwitching from 'database' to another format is not supported, the plugin will refuse to load until this is set back.")
+    public String claimStorageFormat = "file";
+
+    @Setting(value = "parallel-claim-loading", comment = "Whether claim files should be parsed on multiple threads when a world loads.")
+    public boolean parallelClaimLoading = true;
+    @Setting(value = "claim-loading-threads", comment = "The number of threads used to parse claim files. Set to 0 to use one per available processor. (Default: 0)")
+    public int claimLoadingThreads = 0;
+}
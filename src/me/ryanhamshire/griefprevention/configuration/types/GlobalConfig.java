@@ -29,6 +29,7 @@
 import me.ryanhamshire.griefprevention.configuration.category.MigratorCategory;
 import me.ryanhamshire.griefprevention.configuration.category.PlayerDataCategory;
 import me.ryanhamshire.griefprevention.configuration.category.SpamCategory;
+import me.ryanhamshire.griefprevention.configuration.category.StorageCategory;
 import ninja.leaping.configurate.objectmapping.Setting;
 
 public class GlobalConfig extends ConfigBase {
@@ -41,6 +42,8 @@ public class GlobalConfig extends ConfigBase {
     public PlayerDataCategory playerdata = new PlayerDataCategory();
     @Setting
     public SpamCategory spam = new SpamCategory();
+    @Setting
+    public StorageCategory storage = new StorageCategory();
     @Setting(comment = 
             "List of migrators that convert other protection data into GP claim data." + 
             "\nNote: These migrators will NOT change or delete your data. It simply reads and creates new data for GriefPrevention.")
@@ -37,10 +37,12 @@
 import me.ryanhamshire.griefprevention.Visualization;
 import me.ryanhamshire.griefprevention.VisualizationType;
 import me.ryanhamshire.griefprevention.claim.Claim;
+import me.ryanhamshire.griefprevention.claim.ClaimRegionCache;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
 import net.minecraft.inventory.IInventory;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.block.BlockSnapshot;
+import org.spongepowered.api.block.BlockState;
 import org.spongepowered.api.block.BlockTypes;
 import org.spongepowered.api.block.tileentity.TileEntity;
 import org.spongepowered.api.data.Transaction;
@@ -71,11 +73,16 @@
 
 import java.lang.ref.WeakReference;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
+import javax.annotation.Nullable;
+
 //event handlers related to blocks
 public class BlockEventHandler {
 
@@ -106,6 +113,14 @@ public void onBlockPre(ChangeBlockEvent.Pre event) {
                 GPTimings.BLOCK_PRE_EVENT.stopTimingIfSync();
                 return;
             }
+
+            // without a user, changes that stay in the wilderness are always allowed
+            if (user == null && this.dataStore.isClaimFree(sourceLocation) && this.areClaimFree(event.getLocations())) {
+                GPTimings.BLOCK_PRE_CLAIM_FREE.startTimingIfSync();
+                GPTimings.BLOCK_PRE_CLAIM_FREE.stopTimingIfSync();
+                GPTimings.BLOCK_PRE_EVENT.stopTimingIfSync();
+                return;
+            }
     
             Claim sourceClaim = this.dataStore.getClaimAt(sourceLocation, true, null);
             for (Location<World> location : event.getLocations()) {
@@ -187,6 +202,14 @@ public void onBlockNotify(NotifyNeighborBlockEvent event, @Root BlockSnapshot bl
             return;
         }
 
+        // neighbours are never more than one chunk away, so none of them can be claimed either
+        if (this.dataStore.isClaimFree(sourceLocation)) {
+            GPTimings.BLOCK_NOTIFY_CLAIM_FREE.startTimingIfSync();
+            GPTimings.BLOCK_NOTIFY_CLAIM_FREE.stopTimingIfSync();
+            GPTimings.BLOCK_NOTIFY_EVENT.stopTimingIfSync();
+            return;
+        }
+
         Claim sourceClaim = this.getSourceClaim(event.getCause());
         if (sourceClaim == null) {
             GPTimings.BLOCK_NOTIFY_EVENT.stopTimingIfSync();
@@ -361,6 +384,10 @@ public void onExplosion(ExplosionEvent.Post event) {
             creator = ((IMixinEntity) entity).getTrackedPlayer(NbtDataUtil.SPONGE_ENTITY_CREATOR).orElse(null);
         }
 
+        // blocks are grouped by claim so permissions are resolved once per claim instead of once per block
+        final int seaLevel = ((net.minecraft.world.World) event.getTargetWorld()).getSeaLevel();
+        final ClaimRegionCache regionCache = new ClaimRegionCache();
+        final Map<Claim, ExplosionClaimResult> claimResults = new IdentityHashMap<>();
         for (Transaction<BlockSnapshot> transaction : event.getTransactions()) {
             BlockSnapshot blockSnapshot = transaction.getOriginal();
             Location<World> location = blockSnapshot.getLocation().orElse(null);
@@ -368,27 +395,63 @@ public void onExplosion(ExplosionEvent.Post event) {
                 continue;
             }
 
-            Claim claim =  GriefPrevention.instance.dataStore.getClaimAt(blockSnapshot.getLocation().get(), false, null);
-            if (GPPermissionHandler.getClaimPermission(claim, GPPermissions.EXPLOSION_SURFACE, source, blockSnapshot.getLocation(), creator) == Tristate.FALSE && location.getPosition().getY() > ((net.minecraft.world.World) event.getTargetWorld()).getSeaLevel()) {
+            Claim claim = this.dataStore.getClaimAt(location, regionCache);
+            ExplosionClaimResult claimResult = claimResults.get(claim);
+            if (claimResult == null) {
+                boolean surfaceDenied = GPPermissionHandler.getClaimPermission(claim, GPPermissions.EXPLOSION_SURFACE, source, blockSnapshot.getLocation(), creator) == Tristate.FALSE;
+                claimResult = new ExplosionClaimResult(claim, surfaceDenied);
+                claimResults.put(claim, claimResult);
+            }
+
+            if (claimResult.surfaceDenied && location.getBlockY() > seaLevel) {
                 transaction.setValid(false);
                 continue;
             }
 
-            String denyReason = claim.allowBreak(source, blockSnapshot, creator);
+            String denyReason = claimResult.allowBreak(source, blockSnapshot, creator);
             if (denyReason != null) {
-                // Avoid lagging server from large explosions.
-                if (event.getTransactions().size() > 100) {
+                // only the protected blocks are kept, the rest of the explosion goes ahead
+                transaction.setValid(false);
+                if (!claimResult.logged) {
                     GriefPrevention.addEventLogEntry(event, claim, location, creator, denyReason);
-                    event.setCancelled(true);
-                    GPTimings.EXPLOSION_EVENT.stopTimingIfSync();
-                    return;
+                    claimResult.logged = true;
                 }
-                transaction.setValid(false);
             }
         }
         GPTimings.EXPLOSION_EVENT.stopTimingIfSync();
     }
 
+    // explosion results for one claim, break decisions only depend on the block state unless the claim is under siege
+    private static final class ExplosionClaimResult {
+
+        final Claim claim;
+        final boolean surfaceDenied;
+        final Map<BlockState, String> denyReasons = new HashMap<>();
+        boolean logged;
+
+        ExplosionClaimResult(Claim claim, boolean surfaceDenied) {
+            this.claim = claim;
+            this.surfaceDenied = surfaceDenied;
+        }
+
+        @Nullable
+        String allowBreak(Object source, BlockSnapshot blockSnapshot, @Nullable User creator) {
+            if (this.claim.siegeData != null || this.claim.doorsOpen) {
+                // siege rules check the live block at each location
+                return this.claim.allowBreak(source, blockSnapshot, creator);
+            }
+
+            final BlockState state = blockSnapshot.getState();
+            if (this.denyReasons.containsKey(state)) {
+                return this.denyReasons.get(state);
+            }
+
+            final String denyReason = this.claim.allowBreak(source, blockSnapshot, creator);
+            this.denyReasons.put(state, denyReason);
+            return denyReason;
+        }
+    }
+
     @Listener(order = Order.FIRST)
     public void onBlockBreak(ChangeBlockEvent.Break event) {
         GPTimings.BLOCK_BREAK_EVENT.startTimingIfSync();
@@ -455,6 +518,17 @@ public void onBlockPlace(ChangeBlockEvent.Place event) {
             playerData = this.dataStore.getOrCreatePlayerData(world, user.getUniqueId());
         }
 
+        if (user == null) {
+            // without a user, changes that stay in the wilderness are always allowed
+            Location<World> sourceLocation = this.getSourceLocation(event.getCause());
+            if (sourceLocation != null && this.dataStore.isClaimFree(sourceLocation) && this.areTransactionsClaimFree(event.getTransactions())) {
+                GPTimings.BLOCK_PLACE_CLAIM_FREE.startTimingIfSync();
+                GPTimings.BLOCK_PLACE_CLAIM_FREE.stopTimingIfSync();
+                GPTimings.BLOCK_PLACE_EVENT.stopTimingIfSync();
+                return;
+            }
+        }
+
         GriefPreventionConfig<?> activeConfig = GriefPrevention.getActiveConfig(world.getProperties());
         Claim sourceClaim = this.getSourceClaim(event.getCause());
         if (sourceClaim == null) {
@@ -665,6 +739,35 @@ public void onSignChanged(ChangeSignEvent event, @First User user) {
         GPTimings.SIGN_CHANGE_EVENT.stopTimingIfSync();
     }
 
+    @Nullable
+    private Location<World> getSourceLocation(Cause cause) {
+        Optional<BlockSnapshot> blockSource = cause.first(BlockSnapshot.class);
+        if (blockSource.isPresent()) {
+            return blockSource.get().getLocation().orElse(null);
+        }
+
+        return cause.first(Entity.class).map(Entity::getLocation).orElse(null);
+    }
+
+    private boolean areClaimFree(Collection<Location<World>> locations) {
+        for (Location<World> location : locations) {
+            if (!this.dataStore.isClaimFree(location)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean areTransactionsClaimFree(List<Transaction<BlockSnapshot>> transactions) {
+        for (Transaction<BlockSnapshot> transaction : transactions) {
+            Location<World> location = transaction.getFinal().getLocation().orElse(null);
+            if (location != null && !this.dataStore.isClaimFree(location)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public Claim getSourceClaim(Cause cause) {
         Optional<Entity> entitySource = cause.first(Entity.class);
         Optional<BlockSnapshot> blockSource = cause.first(BlockSnapshot.class);
@@ -34,6 +34,9 @@
 import me.ryanhamshire.griefprevention.PlayerData;
 import me.ryanhamshire.griefprevention.TextMode;
 import me.ryanhamshire.griefprevention.claim.Claim;
+import me.ryanhamshire.griefprevention.claim.ClaimContextCalculator;
+import me.ryanhamshire.griefprevention.claim.ClaimEntityCounter;
+import me.ryanhamshire.griefprevention.claim.ClaimRegionCache;
 import me.ryanhamshire.griefprevention.claim.ClaimWorldManager;
 import me.ryanhamshire.griefprevention.claim.ClaimsMode;
 import net.minecraft.entity.EntityLiving;
@@ -80,17 +83,17 @@
 import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
 import org.spongepowered.api.world.explosion.Explosion;
-import org.spongepowered.api.world.storage.WorldProperties;
 import org.spongepowered.common.SpongeImplHooks;
 import org.spongepowered.common.data.util.NbtDataUtil;
 import org.spongepowered.common.interfaces.entity.IMixinEntity;
 
 import java.lang.ref.WeakReference;
-import java.time.Instant;
 import java.util.Calendar;
 import java.util.Iterator;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.WeakHashMap;
 import java.util.function.Predicate;
 
 //handles events related to entities
@@ -98,6 +101,8 @@ public class EntityEventHandler {
 
     // convenience reference for the singleton datastore
     private DataStore dataStore;
+    // moving entity -> claim region it was last seen in
+    private final Map<Entity, ClaimRegionCache> claimRegionCaches = new WeakHashMap<>();
 
     public EntityEventHandler(DataStore dataStore) {
         this.dataStore = dataStore;
@@ -180,35 +185,32 @@ public void onEntitySpawn(SpawnEntityEvent event, @First SpawnCause spawnCause)
         }
 
         User user = event.getCause().first(User.class).orElse(null);
-        event.filterEntities(new Predicate<Entity>() {
-            @Override
-            public boolean test(Entity entity) {
-                Claim claim = GriefPrevention.instance.dataStore.getClaimAt(entity.getLocation(), false, null);
-                if (claim != null) {
-                    String permission = GPPermissions.ENTITY_SPAWN;
-                    if (entity instanceof EntityItem || entity instanceof EntityXPOrb) {
-                        if (user == null || claim.allowItemDrop(user, entity.getLocation()) == null) {
-                            return true;
-                        }
-                        // If we reached this point, XP orbs shouldn't be allowed to spawn
-                        if (entity instanceof EntityXPOrb) {
-                            return false;
-                        }
-                        permission = GPPermissions.ITEM_SPAWN;
-                    }
-                    String entityType = entity.getType() == null ? "unknown" : entity.getType().getId();
-                    if (GPPermissionHandler.getClaimPermission(claim, permission, spawnCause, entity, user) == Tristate.FALSE) {
-                        GriefPrevention.addEventLogEntry(event, claim, entity.getLocation(), user, "Not allowed to spawn " + entityType + " within claim.");
-                        return false;
-                    }
-                }
-                return true;
-            }
-        });
+        SpawnEntityEvaluator evaluator = new SpawnEntityEvaluator(event, spawnCause, user);
+        event.filterEntities(evaluator);
+        evaluator.finish();
 
         GPTimings.ENTITY_SPAWN_EVENT.stopTimingIfSync();
     }
 
+    // count the entities that made it into the world
+    @Listener(order = Order.POST)
+    public void onEntitySpawnPost(SpawnEntityEvent event) {
+        if (event instanceof DropItemEvent || !ClaimEntityCounter.isCountedIn(event.getTargetWorld())) {
+            return;
+        }
+
+        for (Entity entity : event.getEntities()) {
+            if (ClaimEntityCounter.isCounted(entity)) {
+                ClaimEntityCounter.track(entity, this.dataStore.getClaimAt(entity.getLocation(), false, null));
+            }
+        }
+    }
+
+    @Listener(order = Order.POST)
+    public void onEntityDestruct(DestructEntityEvent event) {
+        ClaimEntityCounter.untrack(event.getTargetEntity());
+    }
+
     @Listener(order = Order.FIRST)
     public void onEntityAttack(AttackEntityEvent event, @First DamageSource damageSource) {
         GPTimings.ENTITY_ATTACK_EVENT.startTimingIfSync();
@@ -580,18 +582,26 @@ public void onEntityMove(MoveEntityEvent event){
         }
 
         World world = event.getTargetEntity().getWorld();
+        Player player = null;
+        PlayerData playerData = null;
+        if (entity instanceof Player) {
+            player = (Player) entity;
+            playerData = this.dataStore.getOrCreatePlayerData(world, player.getUniqueId());
+            // counts towards the afk check of claim block delivery
+            playerData.afkCheckMovement++;
+        }
+
         if (!GriefPrevention.instance.claimsEnabledForWorld(world.getProperties())) {
+            if (player != null) {
+                // a player arriving from a world with claims keeps no claim contexts here
+                ClaimContextCalculator.updatePlayer(player, playerData, null);
+            }
             GPTimings.ENTITY_MOVE_EVENT.stopTimingIfSync();
             return;
         }
 
-        Player player = null;
-        PlayerData playerData = null;
         User owner = null;
-        if (entity instanceof Player) {
-            player = (Player) entity;
-            playerData = this.dataStore.getOrCreatePlayerData(world, player.getUniqueId());
-        } else {
+        if (player == null) {
             if (((net.minecraft.entity.Entity) entity).getControllingPassenger() instanceof Player) {
                 player = (Player) ((net.minecraft.entity.Entity) entity).getControllingPassenger();
                 playerData = this.dataStore.getOrCreatePlayerData(world, player.getUniqueId());
@@ -600,14 +610,20 @@ public void onEntityMove(MoveEntityEvent event){
         }
 
         if (player == null && owner == null) {
+            // unowned mobs wandering in from the wilderness still count towards the entity limit of the claim
+            if (ClaimEntityCounter.isCountedIn(world) && ClaimEntityCounter.isCounted(entity) && !ClaimEntityCounter.isTracked(entity)) {
+                ClaimRegionCache regionCache = this.claimRegionCaches.computeIfAbsent(entity, k -> new ClaimRegionCache());
+                ClaimEntityCounter.moved(entity, this.dataStore.getClaimAt(event.getToTransform().getLocation(), regionCache));
+            }
             GPTimings.ENTITY_MOVE_EVENT.stopTimingIfSync();
             return;
         }
 
         Location<World> fromLocation = event.getFromTransform().getLocation();
         Location<World> toLocation = event.getToTransform().getLocation();
-        Claim fromClaim = this.dataStore.getClaimAt(fromLocation, false, null);
-        Claim toClaim = this.dataStore.getClaimAt(toLocation, false, null);
+        ClaimRegionCache regionCache = this.claimRegionCaches.computeIfAbsent(entity, k -> new ClaimRegionCache());
+        Claim fromClaim = this.dataStore.getClaimAt(fromLocation, regionCache);
+        Claim toClaim = this.dataStore.getClaimAt(toLocation, regionCache);
 
         User user = player != null ? player : owner;
         // enter
@@ -651,7 +667,9 @@ public void onEntityMove(MoveEntityEvent event){
                 if (farewellMessage != null && !farewellMessage.equals(Text.of())) {
                     player.sendMessage(farewellMessage);
                 }
+                ClaimContextCalculator.updatePlayer(player, playerData, toClaim);
             }
+            ClaimEntityCounter.moved(entity, toClaim);
         }
         GPTimings.ENTITY_MOVE_EVENT.stopTimingIfSync();
     }
@@ -820,19 +838,7 @@ public void onEntityTeleport(MoveEntityEvent.Teleport event) {
             ClaimWorldManager claimWorldManager = GriefPrevention.instance.dataStore.getClaimWorldManager(destination.getExtent().getProperties());
 
             // update lastActive timestamps for claims this player owns
-            WorldProperties worldProperties = destination.getExtent().getProperties();
-            UUID playerUniqueId = player.getUniqueId();
-            for (Claim claim : this.dataStore.getClaimWorldManager(worldProperties).getWorldClaims()) {
-                if (claim.ownerID.equals(playerUniqueId)) {
-                    // update lastActive timestamp for claim
-                    claim.getClaimData().setDateLastActive(Instant.now().toString());
-                    claimWorldManager.addWorldClaim(claim);
-                } else if (claim.parent != null && claim.parent.ownerID.equals(playerUniqueId)) {
-                    // update lastActive timestamp for subdivisions if parent owner logs on
-                    claim.getClaimData().setDateLastActive(Instant.now().toString());
-                    claimWorldManager.addWorldClaim(claim);
-                }
-            }
+            claimWorldManager.getActivityLedger().touch(player.getUniqueId(), System.currentTimeMillis());
         }
 
         // TODO
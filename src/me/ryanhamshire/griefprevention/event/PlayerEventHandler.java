@@ -27,6 +27,7 @@
 
 import com.flowpowered.math.vector.Vector3d;
 import com.google.common.collect.Sets;
+import me.ryanhamshire.griefprevention.ChatSpamAnalyzer;
 import me.ryanhamshire.griefprevention.CustomLogEntryTypes;
 import me.ryanhamshire.griefprevention.DataStore;
 import me.ryanhamshire.griefprevention.GPPermissionHandler;
@@ -41,7 +42,7 @@
 import me.ryanhamshire.griefprevention.Visualization;
 import me.ryanhamshire.griefprevention.VisualizationType;
 import me.ryanhamshire.griefprevention.claim.Claim;
-import me.ryanhamshire.griefprevention.claim.ClaimWorldManager;
+import me.ryanhamshire.griefprevention.claim.ClaimContextCalculator;
 import me.ryanhamshire.griefprevention.claim.ClaimsMode;
 import me.ryanhamshire.griefprevention.claim.CreateClaimResult;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
@@ -125,8 +126,6 @@
 import org.spongepowered.common.util.VecHelper;
 
 import java.lang.ref.WeakReference;
-import java.time.Instant;
-import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Collection;
@@ -155,6 +154,9 @@ public class PlayerEventHandler {
     // regex pattern for the "how do i claim land?" scanner
     private Pattern howToClaimPattern = null;
 
+    // chat and monitored command spam scoring
+    private final ChatSpamAnalyzer spamAnalyzer = new ChatSpamAnalyzer();
+
     // typical constructor, yawn
     public PlayerEventHandler(DataStore dataStore, GriefPrevention plugin) {
         this.dataStore = dataStore;
@@ -263,13 +265,6 @@ else if (!player.hasPermission(GPPermissions.SPAM) && this.dataStore.bannedWordF
         GPTimings.PLAYER_CHAT_EVENT.stopTimingIfSync();
     }
 
-    // last chat message shown, regardless of who sent it
-    private String lastChatMessage = "";
-    private long lastChatMessageTimestamp = 0;
-
-    // number of identical messages in a row
-    private int duplicateMessageCount = 0;
-
     // returns true if the message should be sent, false if it should be muted
     private boolean handlePlayerChat(Player player, String message, Event event) {
         // FEATURE: automatically educate players about claiming land
@@ -295,25 +290,22 @@ private boolean handlePlayerChat(Player player, String message, Event event) {
         if (player.hasPermission(GPPermissions.SPAM))
             return false;
 
-        boolean spam = false;
-        String mutedReason = null;
-
         // prevent bots from chatting - require movement before talking for any newish players
         PlayerData playerData = this.dataStore.getOrCreatePlayerData(player.getWorld(), player.getUniqueId());
+        boolean preMovement = false;
         if (playerData.noChatLocation != null) {
             Location<World> currentLocation = player.getLocation();
             if (currentLocation.getBlockX() == playerData.noChatLocation.getBlockX() &&
                     currentLocation.getBlockZ() == playerData.noChatLocation.getBlockZ()) {
                 GriefPrevention.sendMessage(player, TextMode.Err, Messages.NoChatUntilMove, 10L);
-                spam = true;
-                mutedReason = "pre-movement chat";
+                preMovement = true;
             } else {
                 playerData.noChatLocation = null;
             }
         }
 
-        // remedy any CAPS SPAM, exception for very short messages which could be emoticons like =D or XD
-        if (message.length() > 4 && this.stringsAreSimilar(message.toUpperCase(), message)) {
+        // remedy any CAPS SPAM
+        if (ChatSpamAnalyzer.isShouting(message)) {
             // exception for strings containing forward slash to avoid changing
             // a case-sensitive URL
             if (event instanceof MessageEvent) {
@@ -321,188 +313,47 @@ private boolean handlePlayerChat(Player player, String message, Event event) {
             }
         }
 
-        // always mute an exact match to the last chat message
-        long now = new Date().getTime();
-        if (mutedReason != null && message.equals(this.lastChatMessage) && now - this.lastChatMessageTimestamp < 750) {
-            playerData.spamCount += ++this.duplicateMessageCount;
-            spam = true;
-            mutedReason = "repeat message";
-        } else {
-            this.lastChatMessage = message;
-            this.lastChatMessageTimestamp = now;
-            this.duplicateMessageCount = 0;
-        }
-
-        // where other types of spam are concerned, casing isn't significant
-        message = message.toLowerCase();
-
-        // check message content and timing
-        long millisecondsSinceLastMessage = now - playerData.lastMessageTimestamp.getTime();
-
-        // if the message came too close to the last one
-        if (millisecondsSinceLastMessage < 1500) {
-            // increment the spam counter
-            playerData.spamCount++;
-            spam = true;
-        }
-
-        // if it's very similar to the last message from the same player and
-        // within 10 seconds of that message
-        if (mutedReason == null && this.stringsAreSimilar(message, playerData.lastMessage)
-                && now - playerData.lastMessageTimestamp.getTime() < 10000) {
-            playerData.spamCount++;
-            spam = true;
-            mutedReason = "similar message";
-        }
-
-        // filter IP addresses
-        if (mutedReason == null) {
-            if (GriefPrevention.instance.containsBlockedIP(message)) {
-                // spam notation
-                playerData.spamCount += 1;
-                spam = true;
-
-                // block message
-                mutedReason = "IP address";
-            }
-        }
-
-        // if the message was mostly non-alpha-numerics or doesn't include much
-        // whitespace, consider it a spam (probably ansi art or random text gibberish)
-        if (mutedReason == null && message.length() > 5) {
-            int symbolsCount = 0;
-            int whitespaceCount = 0;
-            for (int i = 0; i < message.length(); i++) {
-                char character = message.charAt(i);
-                if (!(Character.isLetterOrDigit(character))) {
-                    symbolsCount++;
-                }
-
-                if (Character.isWhitespace(character)) {
-                    whitespaceCount++;
-                }
-            }
-
-            if (symbolsCount > message.length() / 2 || (message.length() > 15 && whitespaceCount < message.length() / 10)) {
-                spam = true;
-                if (playerData.spamCount > 0)
-                    mutedReason = "gibberish";
-                playerData.spamCount++;
-            }
-        }
-
-        // very short messages close together are spam
-        if (mutedReason == null && message.length() < 5 && millisecondsSinceLastMessage < 3000) {
-            spam = true;
-            playerData.spamCount++;
+        ChatSpamAnalyzer.Action action = this.spamAnalyzer.analyze(player.getUniqueId(), message, preMovement);
+        if (action == ChatSpamAnalyzer.Action.ALLOW) {
+            return false;
         }
 
-        // in any case, record the timestamp of this message and also its
-        // content for next time
-        playerData.lastMessageTimestamp = new Date();
-        playerData.lastMessage = message;
-
-        // if the message was determined to be a spam, consider taking action
-        if (spam) {
-            // anything above level 8 for a player which has received a
-            // warning... kick or if enabled, ban
-            if (playerData.spamCount > 8 && playerData.spamWarned) {
-                if (GriefPrevention.getGlobalConfig().getConfig().spam.autoBanOffenders) {
-                    // log entry
-                    GriefPrevention.addLogEntry("Banning " + player.getName() + " for spam.", CustomLogEntryTypes.AdminActivity);
-
-                    // kick and ban
-                    PlayerKickBanTask task =
-                            new PlayerKickBanTask(player, GriefPrevention.getGlobalConfig().getConfig().spam.banMessage, "GriefPrevention Anti-Spam", true);
-                    Sponge.getGame().getScheduler().createTaskBuilder().delayTicks(1).execute(task).submit(GriefPrevention.instance);
-                } else {
-                    // log entry
-                    GriefPrevention.addLogEntry("Kicking " + player.getName() + " for spam.", CustomLogEntryTypes.AdminActivity);
-
-                    // just kick
-                    PlayerKickBanTask task = new PlayerKickBanTask(player, "", "GriefPrevention Anti-Spam", false);
-                    Sponge.getGame().getScheduler().createTaskBuilder().delayTicks(1).execute(task).submit(GriefPrevention.instance);
-                }
-
-                return true;
-            }
-
-            // cancel any messages while at or above the third spam level and issue warnings anything above level 2, mute and warn
-            if (playerData.spamCount >= 4) {
-                if (mutedReason == null) {
-                    mutedReason = "too-frequent text";
-                }
-                if (!playerData.spamWarned) {
-                    GriefPrevention.sendMessage(player, Text.of(TextMode.Warn, GriefPrevention.getGlobalConfig().getConfig().spam.banWarningMessage), 10L);
-                    GriefPrevention.addLogEntry("Warned " + player.getName() + " about spam penalties.", CustomLogEntryTypes.Debug, false);
-                    playerData.spamWarned = true;
-                }
-            }
+        // anything above level 8 for a player which has received a warning... kick or if enabled, ban
+        if (action == ChatSpamAnalyzer.Action.KICK) {
+            if (GriefPrevention.getGlobalConfig().getConfig().spam.autoBanOffenders) {
+                // log entry
+                GriefPrevention.addLogEntry("Banning " + player.getName() + " for spam.", CustomLogEntryTypes.AdminActivity);
 
-            if (mutedReason != null) {
-                // make a log entry
-                GriefPrevention.addLogEntry("Muted " + mutedReason + ".");
-                GriefPrevention.addLogEntry("Muted " + player.getName() + " " + mutedReason + ":" + message, CustomLogEntryTypes.Debug, false);
+                // kick and ban
+                PlayerKickBanTask task =
+                        new PlayerKickBanTask(player, GriefPrevention.getGlobalConfig().getConfig().spam.banMessage, "GriefPrevention Anti-Spam", true);
+                Sponge.getGame().getScheduler().createTaskBuilder().delayTicks(1).execute(task).submit(GriefPrevention.instance);
+            } else {
+                // log entry
+                GriefPrevention.addLogEntry("Kicking " + player.getName() + " for spam.", CustomLogEntryTypes.AdminActivity);
 
-                // cancelling the event guarantees other players don't receive the message
-                return true;
+                // just kick
+                PlayerKickBanTask task = new PlayerKickBanTask(player, "", "GriefPrevention Anti-Spam", false);
+                Sponge.getGame().getScheduler().createTaskBuilder().delayTicks(1).execute(task).submit(GriefPrevention.instance);
             }
-        }
-
-        // otherwise if not a spam, reset the spam counter for this player
-        else {
-            playerData.spamCount = 0;
-            playerData.spamWarned = false;
-        }
-
-        return false;
-    }
 
-    // if two strings are 75% identical, they're too close to follow each other in the chat
-    private boolean stringsAreSimilar(String message, String lastMessage) {
-        // determine which is shorter
-        String shorterString, longerString;
-        if (lastMessage.length() < message.length()) {
-            shorterString = lastMessage;
-            longerString = message;
-        } else {
-            shorterString = message;
-            longerString = lastMessage;
+            return true;
         }
 
-        if (shorterString.length() <= 5)
-            return shorterString.equals(longerString);
-
-        // set similarity tolerance
-        int maxIdenticalCharacters = longerString.length() - longerString.length() / 4;
-
-        // trivial check on length
-        if (shorterString.length() < maxIdenticalCharacters)
-            return false;
-
-        // compare forward
-        int identicalCount = 0;
-        int i;
-        for (i = 0; i < shorterString.length(); i++) {
-            if (shorterString.charAt(i) == longerString.charAt(i))
-                identicalCount++;
-            if (identicalCount > maxIdenticalCharacters)
-                return true;
+        if (action == ChatSpamAnalyzer.Action.WARN) {
+            GriefPrevention.sendMessage(player, Text.of(TextMode.Warn, GriefPrevention.getGlobalConfig().getConfig().spam.banWarningMessage), 10L);
+            GriefPrevention.addLogEntry("Warned " + player.getName() + " about spam penalties.", CustomLogEntryTypes.Debug, false);
         }
 
-        // compare backward
-        int j;
-        for (j = 0; j < shorterString.length() - i; j++) {
-            if (shorterString.charAt(shorterString.length() - j - 1) == longerString.charAt(longerString.length() - j - 1))
-                identicalCount++;
-            if (identicalCount > maxIdenticalCharacters)
-                return true;
-        }
+        // make a log entry
+        ChatSpamAnalyzer.Reason mutedReason = this.spamAnalyzer.getMutedReason(player.getUniqueId());
+        GriefPrevention.addLogEntry("Muted " + mutedReason + ".");
+        GriefPrevention.addLogEntry("Muted " + player.getName() + " " + mutedReason + ":" + message, CustomLogEntryTypes.Debug, false);
 
-        return false;
+        // cancelling the event guarantees other players don't receive the message
+        return true;
     }
 
-
     // when a player uses a slash command...
     @Listener(order = Order.FIRST)
     public void onPlayerCommand(SendCommandEvent event, @First Player player) {
@@ -744,20 +595,8 @@ public void onPlayerLogin(ClientConnectionEvent.Login event) {
         PlayerData playerData = this.dataStore.getOrCreatePlayerData(worldProperties, playerUniqueId);
         playerData.receivedDropUnlockAdvertisement = false;
         playerData.ipAddress = event.getConnection().getAddress().getAddress();
-        ClaimWorldManager claimWorldManager = this.dataStore.getClaimWorldManager(worldProperties);
-        String dateNow = Instant.now().toString();
-        for (Claim claim : claimWorldManager.getWorldClaims()) {
-            if (claim.ownerID.equals(playerUniqueId)) {
-                // update lastActive timestamp for claim
-                claim.getClaimData().setDateLastActive(dateNow);
-                // update timestamps for subdivisions
-                for (Claim subdivision : claim.children) {
-                    subdivision.getClaimData().setDateLastActive(dateNow);
-                }
-                claim.getClaimData().setRequiresSave(true);
-                claimWorldManager.addWorldClaim(claim);
-            }
-        }
+        // update lastActive timestamp for the player's claims, written out on the next world save
+        this.dataStore.getClaimWorldManager(worldProperties).getActivityLedger().touch(playerUniqueId, System.currentTimeMillis());
         GPTimings.PLAYER_LOGIN_EVENT.stopTimingIfSync();
     }
 
@@ -778,6 +617,7 @@ public void onPlayerJoin(ClientConnectionEvent.Join event) {
         long now = nowDate.getTime();
         PlayerData playerData = this.dataStore.getOrCreatePlayerData(player.getWorld(), playerID);
         playerData.lastSpawn = now;
+        ClaimContextCalculator.refreshPlayer(player);
 
         // if newish, prevent chat until he's moved a bit to prove he's not a bot
         //if (player.getOrCreate(AchievementData.class).isPresent() && !player.getAchievementData().achievements().contains(Achievements.MINE_WOOD)) {
@@ -882,6 +722,8 @@ public void onPlayerDisconnect(ClientConnectionEvent.Disconnect event) {
         if (playerData.visualRevertTask != null) {
             playerData.visualRevertTask.cancel();
         }
+        this.spamAnalyzer.removePlayer(player.getUniqueId());
+        ClaimContextCalculator.removePlayer(player);
     }
 
     // when a player spawns, conditionally apply temporary pvp protection
@@ -897,6 +739,7 @@ public void onPlayerRespawn(RespawnPlayerEvent event) {
         PlayerData playerData = GriefPrevention.instance.dataStore.getOrCreatePlayerData(player.getWorld(), player.getUniqueId());
         playerData.lastSpawn = Calendar.getInstance().getTimeInMillis();
         playerData.lastPvpTimestamp = 0; // no longer in pvp combat
+        ClaimContextCalculator.refreshPlayer(player);
 
         // also send him any messaged from grief prevention he would have
         // received while dead
@@ -1103,8 +946,8 @@ else if (player != null && playerData.siegeData != null) {
             Claim claim = this.dataStore.getClaimAtPlayer(playerData, location, false);
             if (claim != null) {
                 // allow trusted users
-                if (claim.getClaimData().getBuilders().contains(GriefPrevention.PUBLIC_UUID) 
-                        || claim.getClaimData().getContainers().contains(GriefPrevention.PUBLIC_UUID) 
+                if (claim.getClaimData().getBuilders().isPublic() 
+                        || claim.getClaimData().getContainers().isPublic() 
                         || claim.getClaimData().getBuilders().contains(user.getUniqueId()) 
                         || claim.getClaimData().getContainers().contains(user.getUniqueId())
                         || claim.getClaimData().getAccessors().contains(user.getUniqueId())) {
@@ -2330,13 +2173,8 @@ private boolean investigateClaim(Player player, BlockSnapshot clickedBlock, Opti
 
         // if deleteclaims permission, show last active claim date
         if (!claim.isAdminClaim() && player.hasPermission(GPPermissions.COMMAND_DELETE_CLAIMS)) {
-            Date lastActive = null;
-            try {
-                Instant instant = Instant.parse(claim.getClaimData().getDateLastActive());
-                lastActive = Date.from(instant);
-            } catch(DateTimeParseException ex) {
-                // ignore
-            }
+            long lastActiveMillis = this.dataStore.getClaimWorldManager(claim.world.getProperties()).getClaimLastActive(claim);
+            Date lastActive = lastActiveMillis >= 0 ? new Date(lastActiveMillis) : null;
 
             GriefPrevention.sendMessage(player, TextMode.Info, Messages.ClaimLastActive, lastActive != null ? lastActive.toString() : "Unknown");
 
@@ -0,0 +1,188 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.event;
+
+import me.ryanhamshire.griefprevention.GPPermissionHandler;
+import me.ryanhamshire.griefprevention.GPPermissions;
+import me.ryanhamshire.griefprevention.GriefPrevention;
+import me.ryanhamshire.griefprevention.claim.Claim;
+import me.ryanhamshire.griefprevention.claim.ClaimEntityCounter;
+import me.ryanhamshire.griefprevention.claim.ClaimRegionCache;
+import net.minecraft.entity.item.EntityItem;
+import net.minecraft.entity.item.EntityXPOrb;
+import org.spongepowered.api.entity.Entity;
+import org.spongepowered.api.entity.living.player.User;
+import org.spongepowered.api.event.cause.entity.spawn.SpawnCause;
+import org.spongepowered.api.event.entity.SpawnEntityEvent;
+import org.spongepowered.api.util.Tristate;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+import javax.annotation.Nullable;
+
+/**
+ * Decides which entities of a single spawn event may spawn.
+ *
+ * <p>The spawn cause and user are shared by every entity of an event, so
+ * entities are grouped by claim and permission identifier and each group's
+ * permission is resolved once. Claim lookups go through a shared
+ * {@link ClaimRegionCache}, so entities spawning close together skip the
+ * claim index as well. Only used on the main thread.</p>
+ */
+public class SpawnEntityEvaluator implements Predicate<Entity> {
+
+    private static long totalEvents;
+    private static long totalEntities;
+    private static long totalGroups;
+    private static long totalGroupedEntities;
+    private static long maxGroupSize;
+    private static long savedNanos;
+
+    private final SpawnEntityEvent event;
+    private final SpawnCause spawnCause;
+    @Nullable private final User user;
+    private final ClaimRegionCache regionCache = new ClaimRegionCache();
+    // Claim -> permission identifier -> decision shared by every entity of the group
+    private final Map<Claim, Map<String, Decision>> decisions = new HashMap<>();
+    // Claim -> entities accepted by this event, only counted once the event has passed
+    private final Map<Claim, Integer> pendingEntities = new HashMap<>();
+
+    SpawnEntityEvaluator(SpawnEntityEvent event, SpawnCause spawnCause, @Nullable User user) {
+        this.event = event;
+        this.spawnCause = spawnCause;
+        this.user = user;
+    }
+
+    @Override
+    public boolean test(Entity entity) {
+        totalEntities++;
+        Claim claim = GriefPrevention.instance.dataStore.getClaimAt(entity.getLocation(), this.regionCache);
+        if (claim == null) {
+            return true;
+        }
+
+        String permission = GPPermissions.ENTITY_SPAWN;
+        if (entity instanceof EntityItem || entity instanceof EntityXPOrb) {
+            // drops depend on the block they land in, so this part can't be shared
+            if (this.user == null || claim.allowItemDrop(this.user, entity.getLocation()) == null) {
+                return true;
+            }
+            // If we reached this point, XP orbs shouldn't be allowed to spawn
+            if (entity instanceof EntityXPOrb) {
+                return false;
+            }
+            permission = GPPermissions.ITEM_SPAWN;
+        }
+
+        if (!this.getDecision(claim, permission, entity).allowed) {
+            return false;
+        }
+
+        // creative mode claims can only hold a limited number of entities
+        if (ClaimEntityCounter.isCounted(entity)) {
+            final Claim topClaim = claim.parent != null ? claim.parent : claim;
+            final int pending = this.pendingEntities.getOrDefault(topClaim, 0);
+            String denyReason = topClaim.allowMoreEntities(pending);
+            if (denyReason != null) {
+                GriefPrevention.addEventLogEntry(this.event, claim, entity.getLocation(), this.user, denyReason);
+                return false;
+            }
+            this.pendingEntities.put(topClaim, pending + 1);
+        }
+        return true;
+    }
+
+    // must be called once the event's entities were filtered
+    void finish() {
+        totalEvents++;
+        for (Map<String, Decision> claimDecisions : this.decisions.values()) {
+            for (Decision decision : claimDecisions.values()) {
+                totalGroups++;
+                totalGroupedEntities += decision.size;
+                maxGroupSize = Math.max(maxGroupSize, decision.size);
+                // every member after the first reused a decision that took costNanos to resolve
+                savedNanos += decision.costNanos * (decision.size - 1);
+            }
+        }
+    }
+
+    private Decision getDecision(Claim claim, String permission, Entity entity) {
+        String targetId = GPPermissionHandler.getPermissionIdentifier(entity);
+        Map<String, Decision> claimDecisions = this.decisions.computeIfAbsent(claim, k -> new HashMap<>());
+        String key = permission.equals(GPPermissions.ENTITY_SPAWN) ? targetId : permission + "|" + targetId;
+        Decision decision = claimDecisions.get(key);
+        if (decision == null) {
+            final long start = System.nanoTime();
+            boolean allowed = GPPermissionHandler.getClaimPermission(claim, permission, this.spawnCause, entity, this.user) != Tristate.FALSE;
+            decision = new Decision(allowed, System.nanoTime() - start);
+            claimDecisions.put(key, decision);
+            if (!allowed) {
+                String entityType = entity.getType() == null ? "unknown" : entity.getType().getId();
+                GriefPrevention.addEventLogEntry(this.event, claim, entity.getLocation(), this.user, "Not allowed to spawn " + entityType + " within claim.");
+            }
+        }
+        decision.size++;
+        return decision;
+    }
+
+    public static long getTotalEvents() {
+        return totalEvents;
+    }
+
+    public static long getTotalEntities() {
+        return totalEntities;
+    }
+
+    public static long getTotalGroups() {
+        return totalGroups;
+    }
+
+    public static double getAverageGroupSize() {
+        return totalGroups == 0 ? 0 : totalGroupedEntities / (double) totalGroups;
+    }
+
+    public static long getMaxGroupSize() {
+        return maxGroupSize;
+    }
+
+    // estimated from the cost of each group's first decision
+    public static double getSavedMillis() {
+        return savedNanos / 1000000D;
+    }
+
+    private static final class Decision {
+
+        final boolean allowed;
+        final long costNanos;
+        int size;
+
+        Decision(boolean allowed, long costNanos) {
+            this.allowed = allowed;
+            this.costNanos = costNanos;
+        }
+    }
+}
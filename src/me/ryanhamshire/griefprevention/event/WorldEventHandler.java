@@ -26,11 +26,15 @@
 
 import me.ryanhamshire.griefprevention.GPTimings;
 import me.ryanhamshire.griefprevention.GriefPrevention;
+import me.ryanhamshire.griefprevention.claim.ClaimEntityCounter;
 import me.ryanhamshire.griefprevention.claim.ClaimWorldManager;
+import org.spongepowered.api.entity.Entity;
 import org.spongepowered.api.event.Listener;
 import org.spongepowered.api.event.world.LoadWorldEvent;
 import org.spongepowered.api.event.world.SaveWorldEvent;
 import org.spongepowered.api.event.world.UnloadWorldEvent;
+import org.spongepowered.api.event.world.chunk.LoadChunkEvent;
+import org.spongepowered.api.event.world.chunk.UnloadChunkEvent;
 
 public class WorldEventHandler {
 
@@ -38,6 +42,12 @@ public class WorldEventHandler {
     public void onWorldLoad(LoadWorldEvent event) {
         GPTimings.WORLD_LOAD_EVENT.startTimingIfSync();
         GriefPrevention.instance.dataStore.loadWorldData(event.getTargetWorld());
+        // entities already loaded with the spawn chunks never fire a spawn event
+        if (ClaimEntityCounter.isCountedIn(event.getTargetWorld())) {
+            for (Entity entity : event.getTargetWorld().getEntities()) {
+                ClaimEntityCounter.track(entity, GriefPrevention.instance.dataStore.getClaimAt(entity.getLocation(), false, null));
+            }
+        }
         GPTimings.WORLD_LOAD_EVENT.stopTimingIfSync();
     }
 
@@ -48,6 +58,26 @@ public void onWorldUnload(UnloadWorldEvent event) {
         GPTimings.WORLD_UNLOAD_EVENT.stopTimingIfSync();
     }
 
+    @Listener
+    public void onChunkLoad(LoadChunkEvent event) {
+        if (!ClaimEntityCounter.isCountedIn(event.getTargetChunk().getWorld())) {
+            return;
+        }
+
+        for (Entity entity : event.getTargetChunk().getEntities()) {
+            ClaimEntityCounter.track(entity, GriefPrevention.instance.dataStore.getClaimAt(entity.getLocation(), false, null));
+        }
+    }
+
+    @Listener
+    public void onChunkUnload(UnloadChunkEvent event) {
+        if (!ClaimEntityCounter.isCountedIn(event.getTargetChunk().getWorld())) {
+            return;
+        }
+
+        ClaimEntityCounter.unloadChunk(event.getTargetChunk());
+    }
+
     @Listener
     public void onWorldSave(SaveWorldEvent event) {
         GPTimings.WORLD_SAVE_EVENT.startTimingIfSync();
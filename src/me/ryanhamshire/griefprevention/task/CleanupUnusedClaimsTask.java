@@ -27,89 +27,143 @@
 
 import me.ryanhamshire.griefprevention.CustomLogEntryTypes;
 import me.ryanhamshire.griefprevention.GriefPrevention;
+import me.ryanhamshire.griefprevention.PlayerSummary;
 import me.ryanhamshire.griefprevention.claim.Claim;
 import me.ryanhamshire.griefprevention.claim.ClaimWorldManager;
 import me.ryanhamshire.griefprevention.claim.ClaimsMode;
 import me.ryanhamshire.griefprevention.configuration.GriefPreventionConfig;
-import org.spongepowered.api.Sponge;
 import org.spongepowered.api.world.storage.WorldProperties;
 
-import java.time.Duration;
-import java.time.Instant;
-import java.time.format.DateTimeParseException;
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
 
 //FEATURE: automatically remove inactive claims
-//runs every 5 minutes on the main thread
+//runs every tick on the main thread, only looking at claims whose expiration is due
 public class CleanupUnusedClaimsTask implements Runnable {
 
-    @SuppressWarnings({"unchecked", "rawtypes"})
+    // main thread time spent expiring claims each tick
+    private static final long TICK_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    // claims ordered by the time they are next due to be checked
+    private static final PriorityQueue<ExpiringClaim> EXPIRATIONS = new PriorityQueue<>();
+
+    // queues a claim to be checked when it could first expire
+    public static void schedule(Claim claim) {
+        if (claim.isAdminClaim() || claim.isWildernessClaim() || claim.parent != null) {
+            return;
+        }
+        if (GriefPrevention.getGlobalConfig().getConfig().claim.cleanupTaskInterval <= 0) {
+            return;
+        }
+
+        // the first check works out when the claim can actually expire
+        requeue(claim, 0);
+    }
+
+    private static void requeue(Claim claim, long checkTime) {
+        synchronized (EXPIRATIONS) {
+            EXPIRATIONS.add(new ExpiringClaim(claim, checkTime));
+        }
+    }
+
+    private static ExpiringClaim pollDue(long now) {
+        synchronized (EXPIRATIONS) {
+            ExpiringClaim next = EXPIRATIONS.peek();
+            return next != null && next.checkTime <= now ? EXPIRATIONS.poll() : null;
+        }
+    }
+
+    // claims waiting for their next expiration check
+    public static int getQueueDepth() {
+        synchronized (EXPIRATIONS) {
+            return EXPIRATIONS.size();
+        }
+    }
+
     @Override
     public void run() {
-        for (WorldProperties worldProperties : Sponge.getServer().getAllWorldProperties()) {
-            // don't do anything when there are no claims
-            ClaimWorldManager claimWorldManager = GriefPrevention.instance.dataStore.getClaimWorldManager(worldProperties);
-            ArrayList<Claim> claimList = (ArrayList<Claim>) claimWorldManager.getWorldClaims();
-            if (claimList.size() == 0) {
-                continue;
-            }
-
-            Iterator<Claim> iterator = ((ArrayList) claimList.clone()).iterator();
-            while (iterator.hasNext()) {
-                Claim claim = iterator.next();
-                // skip administrative claims
-                if (claim.isAdminClaim() || claim.ownerPlayerData == null) {
-                    continue;
-                }
-    
-                GriefPreventionConfig<?> activeConfig = GriefPrevention.getActiveConfig(worldProperties);
-                // determine area of the default chest claim
-                int areaOfDefaultClaim = 0;
-                if (activeConfig.getConfig().claim.claimRadius >= 0) {
-                    areaOfDefaultClaim = (int) Math.pow(activeConfig.getConfig().claim.claimRadius * 2 + 1, 2);
-                }
-    
-                Instant claimLastActive = null;
-                try {
-                    claimLastActive = Instant.parse(claim.getClaimData().getDateLastActive());
-                } catch (DateTimeParseException e) {
-                    continue;
-                }
-    
-                // if this claim is a chest claim and those are set to expire
-                if (claim.getArea() <= areaOfDefaultClaim && claim.ownerPlayerData.optionChestClaimExpiration > 0) {
-                    if (claimLastActive.plus(Duration.ofDays(claim.ownerPlayerData.optionChestClaimExpiration))
-                            .isBefore(Instant.now())) {
-                        claim.removeSurfaceFluids(null);
-                        GriefPrevention.instance.dataStore.deleteClaim(claim, true);
-    
-                        // if configured to do so, restore the land to natural
-                        if (GriefPrevention.instance.claimModeIsActive(worldProperties, ClaimsMode.Creative) || activeConfig
-                                .getConfig().claim.claimAutoNatureRestore) {
-                            GriefPrevention.instance.restoreClaim(claim, 0);
-                        }
-    
-                        GriefPrevention.addLogEntry(" " + claim.getOwnerName() + "'s new player claim " + "'" + claim.id + "' expired.", CustomLogEntryTypes.AdminActivity);
-                    }
-                }
-    
-                if (claim.ownerPlayerData.optionPlayerClaimExpiration > 0) {
-                    if (claimLastActive.plus(Duration.ofDays(claim.ownerPlayerData.optionPlayerClaimExpiration))
-                            .isBefore(Instant.now())) {
-                        GriefPrevention.instance.dataStore.deleteClaim(claim, true);
-                        GriefPrevention.addLogEntry("Removed " + claim.getOwnerName() + "'s unused claim @ "
-                                + GriefPrevention.getfriendlyLocationString(claim.getLesserBoundaryCorner()), CustomLogEntryTypes.AdminActivity);
-
-                        // if configured to do so, restore the land to natural
-                        if (GriefPrevention.instance.claimModeIsActive(worldProperties, ClaimsMode.Creative)
-                                || activeConfig.getConfig().claim.claimAutoNatureRestore) {
-                            // restore the claim area to natural state
-                            GriefPrevention.instance.restoreClaim(claim, 0);
-                        }
-                    }
-                }
-            }
+        final long deadline = System.nanoTime() + TICK_BUDGET_NANOS;
+        final long now = System.currentTimeMillis();
+        ExpiringClaim next;
+        while (System.nanoTime() < deadline && (next = pollDue(now)) != null) {
+            this.check(next.claim, now);
+        }
+    }
+
+    private void check(Claim claim, long now) {
+        // skip claims which were deleted or replaced since they were queued
+        WorldProperties worldProperties = claim.world.getProperties();
+        ClaimWorldManager claimWorldManager = GriefPrevention.instance.dataStore.getClaimWorldManager(worldProperties);
+        if (claimWorldManager == null || claimWorldManager.getClaimByUUID(claim.id) != claim || claim.isAdminClaim() || claim.ownerID == null) {
+            return;
+        }
+
+        GriefPreventionConfig<?> activeConfig = GriefPrevention.getActiveConfig(worldProperties);
+        long recheckTime = now + TimeUnit.MINUTES.toMillis(GriefPrevention.getGlobalConfig().getConfig().claim.cleanupTaskInterval);
+        final long claimLastActive = claimWorldManager.getClaimLastActive(claim);
+        if (claimLastActive < 0) {
+            requeue(claim, recheckTime);
+            return;
+        }
+
+        // evicted owners are checked through their summary instead of being loaded again
+        PlayerSummary owner = claimWorldManager.getPlayerSummary(claim.ownerID);
+
+        // determine area of the default chest claim
+        int areaOfDefaultClaim = 0;
+        if (activeConfig.getConfig().claim.claimRadius >= 0) {
+            areaOfDefaultClaim = (int) Math.pow(activeConfig.getConfig().claim.claimRadius * 2 + 1, 2);
+        }
+
+        // if this claim is a chest claim and those are set to expire
+        long chestExpiration = Long.MAX_VALUE;
+        if (claim.getArea() <= areaOfDefaultClaim && owner.optionChestClaimExpiration > 0) {
+            chestExpiration = claimLastActive + TimeUnit.DAYS.toMillis(owner.optionChestClaimExpiration);
+        }
+        long playerExpiration = Long.MAX_VALUE;
+        if (owner.optionPlayerClaimExpiration > 0) {
+            playerExpiration = claimLastActive + TimeUnit.DAYS.toMillis(owner.optionPlayerClaimExpiration);
+        }
+
+        // claims that were active since they were queued, or can't expire at all, go back in the queue
+        // no later than the next cleanup interval, as option changes and resizes can bring the expiration forward
+        long expiration = Math.min(chestExpiration, playerExpiration);
+        if (expiration >= now) {
+            requeue(claim, expiration < recheckTime ? expiration + 1 : recheckTime);
+            return;
+        }
+
+        if (chestExpiration < now) {
+            claim.removeSurfaceFluids(null);
+            GriefPrevention.instance.dataStore.deleteClaim(claim, true);
+            GriefPrevention.addLogEntry(" " + claim.getOwnerName() + "'s new player claim " + "'" + claim.id + "' expired.", CustomLogEntryTypes.AdminActivity);
+        } else {
+            GriefPrevention.instance.dataStore.deleteClaim(claim, true);
+            GriefPrevention.addLogEntry("Removed " + claim.getOwnerName() + "'s unused claim @ "
+                    + GriefPrevention.getfriendlyLocationString(claim.getLesserBoundaryCorner()), CustomLogEntryTypes.AdminActivity);
+        }
+
+        // if configured to do so, restore the land to natural
+        // the chunks are queued and restored over the following ticks
+        if (GriefPrevention.instance.claimModeIsActive(worldProperties, ClaimsMode.Creative)
+                || activeConfig.getConfig().claim.claimAutoNatureRestore) {
+            GriefPrevention.instance.restoreClaim(claim, 0);
+        }
+    }
+
+    private static class ExpiringClaim implements Comparable<ExpiringClaim> {
+
+        private final Claim claim;
+        private final long checkTime;
+
+        private ExpiringClaim(Claim claim, long checkTime) {
+            this.claim = claim;
+            this.checkTime = checkTime;
+        }
+
+        @Override
+        public int compareTo(ExpiringClaim other) {
+            return Long.compare(this.checkTime, other.checkTime);
         }
     }
 }
@@ -27,19 +27,16 @@
 
 import me.ryanhamshire.griefprevention.CustomLogEntryTypes;
 import me.ryanhamshire.griefprevention.DataStore;
-import me.ryanhamshire.griefprevention.GPOptions;
 import me.ryanhamshire.griefprevention.GriefPrevention;
 import me.ryanhamshire.griefprevention.PlayerData;
 import me.ryanhamshire.griefprevention.configuration.PlayerStorageData;
-import me.ryanhamshire.griefprevention.util.PlayerUtils;
 import org.spongepowered.api.Sponge;
 import org.spongepowered.api.data.manipulator.mutable.entity.VehicleData;
 import org.spongepowered.api.data.property.block.MatterProperty;
-import org.spongepowered.api.entity.Entity;
 import org.spongepowered.api.entity.living.player.Player;
-import org.spongepowered.api.world.Location;
-import org.spongepowered.api.world.World;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
 
 //FEATURE: give players claim blocks for playing, as long as they're not away from their computer
@@ -47,44 +44,26 @@
 //runs every 5 minutes in the main thread, grants blocks per hour / 12 to each online player who appears to be actively playing
 public class DeliverClaimBlocksTask implements Runnable {
 
-    private Player player;
-
-    public DeliverClaimBlocksTask(Player player) {
-        this.player = player;
-    }
+    // block boundaries a player has to cross between deliveries to count as active
+    private static final int MIN_AFK_CHECK_MOVEMENT = 3;
 
     @Override
     public void run() {
-        if (this.player == null) {
-            for (World world : Sponge.getServer().getWorlds()) {
-                // if no player specified, this task will create a player-specific task
-                // for each player, scheduled one tick apart
-                int i = 0;
-                for (Entity entity : world.getEntities()) {
-                    if (!(entity instanceof Player)) {
-                        continue;
-                    }
-
-                    Player player = (Player) entity;
-                    int accrualPerHour = PlayerUtils.getOptionIntValue(player, GPOptions.BLOCKS_ACCRUED_PER_HOUR, 120);
-                    if (accrualPerHour > 0) {
-                        DeliverClaimBlocksTask newTask = new DeliverClaimBlocksTask(player);
-                        Sponge.getGame().getScheduler().createTaskBuilder().delayTicks(i++).execute(newTask)
-                                .submit(GriefPrevention.instance);
-                    }
-                }
+        DataStore dataStore = GriefPrevention.instance.dataStore;
+        List<PlayerStorageData> modifiedStorages = new ArrayList<>();
+        for (Player player : Sponge.getServer().getOnlinePlayers()) {
+            PlayerData playerData = dataStore.getOrCreatePlayerData(player.getWorld(), player.getUniqueId());
+            int movement = playerData.afkCheckMovement;
+            playerData.afkCheckMovement = 0;
+            // cached, only reaches the permission plugin once the resolved options expire
+            playerData.refreshPlayerOptions();
+            if (playerData.optionBlocksAccruedPerHour <= 0) {
+                continue;
             }
-        }
 
-        // otherwise, deliver claim blocks to the specified player
-        else {
-            DataStore dataStore = GriefPrevention.instance.dataStore;
-            PlayerData playerData = dataStore.getOrCreatePlayerData(player.getWorld(), player.getUniqueId());
-            Location<World> lastLocation = playerData.lastAfkCheckLocation;
             // if he's not in a vehicle and has moved at least three blocks since the last check and he's not being pushed around by fluids
             Optional<MatterProperty> matterProperty = player.getLocation().getBlock().getProperty(MatterProperty.class);
-            if (!player.get(VehicleData.class).isPresent() &&
-                    (lastLocation == null || lastLocation.getPosition().distanceSquared(player.getLocation().getPosition()) >= 0) &&
+            if (movement >= MIN_AFK_CHECK_MOVEMENT && !player.get(VehicleData.class).isPresent() &&
                     matterProperty.isPresent() && matterProperty.get().getValue() != MatterProperty.Matter.LIQUID) {
                 // add blocks
                 int accruedBlocks = playerData.optionBlocksAccruedPerHour / 12;
@@ -94,17 +73,14 @@ public void run() {
 
                 GriefPrevention.addLogEntry("Delivering " + accruedBlocks + " blocks to " + player.getName(), CustomLogEntryTypes.Debug, false);
                 PlayerStorageData playerStorage = playerData.getStorageData();
-                if (playerStorage == null) {
-                    GriefPrevention.instance.dataStore.getOrCreatePlayerData(player.getWorld().getProperties(), player.getUniqueId());
-                    playerStorage = playerData.getStorageData();
-                }
                 playerStorage.getConfig().setAccruedClaimBlocks(playerStorage.getConfig().getAccruedClaimBlocks() + accruedBlocks);
+                modifiedStorages.add(playerStorage);
             } else {
                 GriefPrevention.addLogEntry(player.getName() + " isn't active enough.", CustomLogEntryTypes.Debug, false);
             }
-
-            // remember current location for next time
-            playerData.lastAfkCheckLocation = player.getLocation();
         }
+
+        // write everything delivered this round in one batch
+        PlayerStorageData.saveAll(modifiedStorages);
     }
 }
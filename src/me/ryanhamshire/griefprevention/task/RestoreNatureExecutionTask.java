@@ -27,8 +27,10 @@
 
 import me.ryanhamshire.griefprevention.GriefPrevention;
 import me.ryanhamshire.griefprevention.PlayerData;
+import me.ryanhamshire.griefprevention.Visualization;
+import me.ryanhamshire.griefprevention.VisualizationType;
 import me.ryanhamshire.griefprevention.claim.Claim;
-import org.spongepowered.api.block.BlockSnapshot;
+import me.ryanhamshire.griefprevention.claim.ClaimWorldManager;
 import org.spongepowered.api.block.BlockState;
 import org.spongepowered.api.block.BlockTypes;
 import org.spongepowered.api.entity.Entity;
@@ -41,16 +43,20 @@
 import org.spongepowered.api.world.Location;
 import org.spongepowered.api.world.World;
 
-import java.lang.ref.WeakReference;
 import java.util.Optional;
 
+import javax.annotation.Nullable;
+
 //this main thread task takes the output from the RestoreNatureProcessingTask\
-//and updates the world accordingly
-class RestoreNatureExecutionTask implements Runnable {
+//and updates the world accordingly, a slice of columns at a time
+class RestoreNatureExecutionTask {
+
+    private static final int COLUMNS = 16 * 16;
 
     // results from processing thread
-    // will be applied to the world
-    private BlockSnapshot[][][] snapshots;
+    // will be applied to the world, null when unclaimed blocks may not be changed
+    @Nullable
+    private RestoreNatureVolume volume;
 
     // boundaries for changes
     private int miny;
@@ -61,48 +67,108 @@ class RestoreNatureExecutionTask implements Runnable {
     // when the restoration is complete)
     private Player player;
 
-    public RestoreNatureExecutionTask(BlockSnapshot[][][] snapshots, int miny, Location<World> lesserCorner, Location<World> greaterCorner,
+    // whether unclaimed blocks may be changed, restoring used to leave everything alone
+    private final boolean restoreWilderness;
+    // columns inside a claim, resolved once before the first block is changed
+    private boolean[] claimedColumns;
+    private int nextColumn = 0;
+
+    public RestoreNatureExecutionTask(@Nullable RestoreNatureVolume volume, int miny, Location<World> lesserCorner, Location<World> greaterCorner,
             Player player) {
-        this.snapshots = snapshots;
+        this.volume = volume;
         this.miny = miny;
         this.lesserCorner = lesserCorner;
         this.greaterCorner = greaterCorner;
         this.player = player;
+        this.restoreWilderness = GriefPrevention.getActiveConfig(lesserCorner.getExtent().getProperties()).getConfig().claim.restoreNatureWilderness;
     }
 
-    @Override
-    public void run() {
+    // applies changes until the deadline passes, returns true once the whole chunk has been restored
+    public boolean run(long deadline) {
+        if (this.volume == null) {
+            this.finish();
+            return true;
+        }
+        if (this.claimedColumns == null) {
+            this.claimedColumns = this.resolveClaimedColumns();
+        }
+
         // apply changes to the world, but ONLY to unclaimed blocks
         // note that the edge of the results is not applied (the 1-block-wide
         // band around the outside of the chunk)
         // those data were sent to the processing thread for referernce
         // purposes, but aren't part of the area selected for restoration
-        WeakReference<Claim> cachedClaim = null;
-        for (int x = 1; x < this.snapshots.length - 1; x++) {
-            for (int z = 1; z < this.snapshots[0][0].length - 1; z++) {
-                for (int y = this.miny; y < this.snapshots[0].length; y++) {
-                    BlockSnapshot blockUpdate = this.snapshots[x][y][z];
-                    BlockState currentBlock = blockUpdate.getLocation().get().getBlock();
-                    if (blockUpdate.getState() != currentBlock) {
-                        Claim claim = GriefPrevention.instance.dataStore.getClaimAt(blockUpdate.getLocation().get(), false, cachedClaim);
-                        if (claim != null) {
-                            cachedClaim = new WeakReference<>(claim);
-                            break;
-                        }
-
-                        blockUpdate.restore(true, BlockChangeFlag.PHYSICS);
-                    }
+        while (this.nextColumn < COLUMNS) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            int column = this.nextColumn++;
+            if (!this.claimedColumns[column]) {
+                this.restoreColumn(1 + (column >> 4), 1 + (column & 15));
+            }
+        }
+
+        this.finish();
+        return true;
+    }
+
+    private boolean[] resolveClaimedColumns() {
+        boolean[] claimed = new boolean[COLUMNS];
+        World world = this.volume.getWorld();
+        ClaimWorldManager claimWorldManager = GriefPrevention.instance.dataStore.getClaimWorldManager(world.getProperties());
+        if (claimWorldManager == null) {
+            return claimed;
+        }
+
+        int chunkX = this.lesserCorner.getBlockX() >> 4;
+        int chunkZ = this.lesserCorner.getBlockZ() >> 4;
+        Claim[] claims = claimWorldManager.getClaimIndex().getClaimsInChunk(chunkX, chunkZ);
+        if (claims == null) {
+            return claimed;
+        }
+
+        // a column under any part of a claim is left alone, cuboid claims included
+        int chunkMinX = chunkX << 4;
+        int chunkMinZ = chunkZ << 4;
+        for (Claim claim : claims) {
+            int minX = Math.max(claim.getLesserBoundaryCorner().getBlockX() - chunkMinX, 0);
+            int minZ = Math.max(claim.getLesserBoundaryCorner().getBlockZ() - chunkMinZ, 0);
+            int maxX = Math.min(claim.getGreaterBoundaryCorner().getBlockX() - chunkMinX, 15);
+            int maxZ = Math.min(claim.getGreaterBoundaryCorner().getBlockZ() - chunkMinZ, 15);
+            for (int x = minX; x <= maxX; x++) {
+                for (int z = minZ; z <= maxZ; z++) {
+                    claimed[x << 4 | z] = true;
                 }
             }
         }
+        return claimed;
+    }
+
+    private void restoreColumn(int x, int z) {
+        World world = this.volume.getWorld();
+        int blockX = this.volume.getMinX() + x;
+        int blockZ = this.volume.getMinZ() + z;
+        for (int y = Math.max(this.miny, 0); y < this.volume.getHeight(); y++) {
+            if (!this.volume.isChanged(x, y, z)) {
+                continue;
+            }
+
+            BlockState blockUpdate = this.volume.getState(x, y, z);
+            if (world.getBlock(blockX, y, blockZ) != blockUpdate) {
+                world.setBlock(blockX, y, blockZ, blockUpdate, BlockChangeFlag.PHYSICS, GriefPrevention.pluginCause);
+            }
+        }
+    }
 
+    private void finish() {
         // clean up any entities in the chunk, ensure no players are suffocated
         Optional<Chunk> chunk = this.lesserCorner.getExtent().getChunk(this.lesserCorner.getBlockX() >> 4, 0, this.lesserCorner.getBlockZ() >> 4);
         if (chunk.isPresent()) {
             for (Entity entity : chunk.get().getEntities()) {
                 if (!(entity instanceof Player || entity instanceof Animal)) {
                     // hanging entities (paintings, item frames) are protected when they're in land claims
-                    if (!(entity instanceof Hanging) || GriefPrevention.instance.dataStore.getClaimAt(entity.getLocation(), false, null) == null) {
+                    if (!(entity instanceof Hanging) || (this.restoreWilderness
+                            && GriefPrevention.instance.dataStore.getClaimAt(entity.getLocation(), false, null).isWildernessClaim())) {
                         // everything else is removed
                         entity.remove();
                     }
@@ -120,11 +186,9 @@ public void run() {
         if (player != null) {
             Claim claim = new Claim(lesserCorner, greaterCorner, Claim.Type.BASIC);
             PlayerData playerData = GriefPrevention.instance.dataStore.getOrCreatePlayerData(claim.world, player.getUniqueId());
-            // TODO
-            /*claim.getVisualizer().createClaimBlockVisuals(height, locality, playerData);
-            Visualization visualization =
-                    Visualization.FromClaim(claim, player.getLocation().getBlockY(), VisualizationType.RestoreNature, player.getLocation(), playerData);
-            Visualization.Apply(player, visualization);*/
+            Visualization visualization = new Visualization(claim, VisualizationType.RestoreNature);
+            visualization.createClaimBlockVisuals(player.getLocation().getBlockY(), player.getLocation(), playerData);
+            visualization.apply(player);
         }
     }
 }
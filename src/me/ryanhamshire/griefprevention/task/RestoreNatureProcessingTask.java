@@ -25,9 +25,7 @@
  */
 package me.ryanhamshire.griefprevention.task;
 
-import me.ryanhamshire.griefprevention.GriefPrevention;
-import org.spongepowered.api.Sponge;
-import org.spongepowered.api.block.BlockSnapshot;
+import org.spongepowered.api.block.BlockState;
 import org.spongepowered.api.block.BlockType;
 import org.spongepowered.api.block.BlockTypes;
 import org.spongepowered.api.block.trait.EnumTraits;
@@ -50,7 +48,7 @@ public class RestoreNatureProcessingTask implements Runnable {
 
     // world information captured from the main thread
     // will be updated and sent back to main thread to be applied to the world
-    private BlockSnapshot[][][] snapshots;
+    private RestoreNatureVolume volume;
 
     // other information collected from the main thread.
     // not to be updated, only to be passed back to main thread to provide some
@@ -73,10 +71,10 @@ public class RestoreNatureProcessingTask implements Runnable {
     // a "complete" list of player-placed blocks. MUST BE MAINTAINED as patches introduce more
     private ArrayList<BlockType> playerBlocks;
 
-    public RestoreNatureProcessingTask(BlockSnapshot[][][] snapshots, int miny, DimensionType environment, BiomeType biome,
+    public RestoreNatureProcessingTask(RestoreNatureVolume volume, int miny, DimensionType environment, BiomeType biome,
             Location<World> lesserBoundaryCorner, Location<World> greaterBoundaryCorner, int seaLevel, boolean aggressiveMode, boolean creativeMode,
             Player player) {
-        this.snapshots = snapshots;
+        this.volume = volume;
         this.miny = miny;
         if (this.miny < 0) {
             this.miny = 0;
@@ -164,10 +162,9 @@ public void run() {
         // remove any player-placed leaves
         this.removePlayerLeaves();
 
-        // schedule main thread task to apply the result to the world
-        RestoreNatureExecutionTask task =
-                new RestoreNatureExecutionTask(this.snapshots, this.miny, this.lesserBoundaryCorner, this.greaterBoundaryCorner, this.player);
-        Sponge.getGame().getScheduler().createTaskBuilder().execute(task).submit(GriefPrevention.instance);
+        // queue the result to be applied to the world in slices on the main thread
+        RestoreNatureQueue.queueExecution(
+                new RestoreNatureExecutionTask(this.volume, this.miny, this.lesserBoundaryCorner, this.greaterBoundaryCorner, this.player));
     }
 
     private void removePlayerLeaves() {
@@ -175,13 +172,13 @@ private void removePlayerLeaves() {
             return;
         }
 
-        for (int x = 1; x < snapshots.length - 1; x++) {
-            for (int z = 1; z < snapshots[0][0].length - 1; z++) {
-                for (int y = this.seaLevel - 1; y < snapshots[0].length; y++) {
+        for (int x = 1; x < RestoreNatureVolume.SIZE - 1; x++) {
+            for (int z = 1; z < RestoreNatureVolume.SIZE - 1; z++) {
+                for (int y = this.seaLevel - 1; y < this.volume.getHeight(); y++) {
                     // note: see minecraft wiki data values for leaves
-                    BlockSnapshot block = snapshots[x][y][z];
-                    if (block.getState().getType() == BlockTypes.LEAVES && ((((IMixinBlockState) block.getState()).getStateMeta()) & 0x4) != 0) {
-                        snapshots[x][y][z] = block.withState(BlockTypes.AIR.getDefaultState());
+                    BlockState block = this.volume.getState(x, y, z);
+                    if (block.getType() == BlockTypes.LEAVES && ((((IMixinBlockState) block).getStateMeta()) & 0x4) != 0) {
+                        this.volume.setState(x, y, z, BlockTypes.AIR.getDefaultState());
                     }
                 }
             }
@@ -191,35 +188,35 @@ private void removePlayerLeaves() {
     // converts sandstone adjacent to sand to sand, and any other sandstone to
     // air
     private void removeSandstone() {
-        for (int x = 1; x < snapshots.length - 1; x++) {
-            for (int z = 1; z < snapshots[0][0].length - 1; z++) {
-                for (int y = snapshots[0].length - 2; y > miny; y--) {
-                    if (snapshots[x][y][z].getState().getType() != BlockTypes.SANDSTONE) {
+        for (int x = 1; x < RestoreNatureVolume.SIZE - 1; x++) {
+            for (int z = 1; z < RestoreNatureVolume.SIZE - 1; z++) {
+                for (int y = this.volume.getHeight() - 2; y > miny; y--) {
+                    if (this.volume.getType(x, y, z) != BlockTypes.SANDSTONE) {
                         continue;
                     }
 
-                    BlockSnapshot leftBlock = this.snapshots[x + 1][y][z];
-                    BlockSnapshot rightBlock = this.snapshots[x - 1][y][z];
-                    BlockSnapshot upBlock = this.snapshots[x][y][z + 1];
-                    BlockSnapshot downBlock = this.snapshots[x][y][z - 1];
-                    BlockSnapshot underBlock = this.snapshots[x][y - 1][z];
-                    BlockSnapshot aboveBlock = this.snapshots[x][y + 1][z];
+                    BlockState leftBlock = this.volume.getState(x + 1, y, z);
+                    BlockState rightBlock = this.volume.getState(x - 1, y, z);
+                    BlockState upBlock = this.volume.getState(x, y, z + 1);
+                    BlockState downBlock = this.volume.getState(x, y, z - 1);
+                    BlockState underBlock = this.volume.getState(x, y - 1, z);
+                    BlockState aboveBlock = this.volume.getState(x, y + 1, z);
 
                     // skip blocks which may cause a cave-in
-                    if (aboveBlock.getState().getType() == BlockTypes.SAND && underBlock.getState().getType() == BlockTypes.AIR) {
+                    if (aboveBlock.getType() == BlockTypes.SAND && underBlock.getType() == BlockTypes.AIR) {
                         continue;
                     }
 
                     // count adjacent non-air/non-leaf blocks
-                    if (leftBlock.getState().getType() == BlockTypes.SAND ||
-                            rightBlock.getState().getType() == BlockTypes.SAND ||
-                            upBlock.getState().getType() == BlockTypes.SAND ||
-                            downBlock.getState().getType() == BlockTypes.SAND ||
-                            aboveBlock.getState().getType() == BlockTypes.SAND ||
-                            underBlock.getState().getType() == BlockTypes.SAND) {
-                        snapshots[x][y][z] = snapshots[x][y][z].withState(BlockTypes.SAND.getDefaultState());
+                    if (leftBlock.getType() == BlockTypes.SAND ||
+                            rightBlock.getType() == BlockTypes.SAND ||
+                            upBlock.getType() == BlockTypes.SAND ||
+                            downBlock.getType() == BlockTypes.SAND ||
+                            aboveBlock.getType() == BlockTypes.SAND ||
+                            underBlock.getType() == BlockTypes.SAND) {
+                        this.volume.setState(x, y, z, BlockTypes.SAND.getDefaultState());
                     } else {
-                        snapshots[x][y][z] = snapshots[x][y][z].withState(BlockTypes.AIR.getDefaultState());
+                        this.volume.setState(x, y, z, BlockTypes.AIR.getDefaultState());
                     }
                 }
             }
@@ -231,38 +228,38 @@ private void reduceStone() {
             return;
         }
 
-        for (int x = 1; x < snapshots.length - 1; x++) {
-            for (int z = 1; z < snapshots[0][0].length - 1; z++) {
+        for (int x = 1; x < RestoreNatureVolume.SIZE - 1; x++) {
+            for (int z = 1; z < RestoreNatureVolume.SIZE - 1; z++) {
                 int thisy = this.highestY(x, z, true);
 
-                while (thisy > this.seaLevel - 1 && (this.snapshots[x][thisy][z].getState().getType() == BlockTypes.STONE
-                        || this.snapshots[x][thisy][z].getState().getType() == BlockTypes.SANDSTONE)) {
-                    BlockSnapshot leftBlock = this.snapshots[x + 1][thisy][z];
-                    BlockSnapshot rightBlock = this.snapshots[x - 1][thisy][z];
-                    BlockSnapshot upBlock = this.snapshots[x][thisy][z + 1];
-                    BlockSnapshot downBlock = this.snapshots[x][thisy][z - 1];
+                while (thisy > this.seaLevel - 1 && (this.volume.getType(x, thisy, z) == BlockTypes.STONE
+                        || this.volume.getType(x, thisy, z) == BlockTypes.SANDSTONE)) {
+                    BlockState leftBlock = this.volume.getState(x + 1, thisy, z);
+                    BlockState rightBlock = this.volume.getState(x - 1, thisy, z);
+                    BlockState upBlock = this.volume.getState(x, thisy, z + 1);
+                    BlockState downBlock = this.volume.getState(x, thisy, z - 1);
 
                     // count adjacent non-air/non-leaf blocks
                     byte adjacentBlockCount = 0;
-                    if (leftBlock.getState().getType() != BlockTypes.AIR && leftBlock.getState().getType() != BlockTypes.LEAVES
-                            && leftBlock.getState().getType() != BlockTypes.VINE) {
+                    if (leftBlock.getType() != BlockTypes.AIR && leftBlock.getType() != BlockTypes.LEAVES
+                            && leftBlock.getType() != BlockTypes.VINE) {
                         adjacentBlockCount++;
                     }
-                    if (rightBlock.getState().getType() != BlockTypes.AIR && rightBlock.getState().getType() != BlockTypes.LEAVES
-                            && rightBlock.getState().getType() != BlockTypes.VINE) {
+                    if (rightBlock.getType() != BlockTypes.AIR && rightBlock.getType() != BlockTypes.LEAVES
+                            && rightBlock.getType() != BlockTypes.VINE) {
                         adjacentBlockCount++;
                     }
-                    if (downBlock.getState().getType() != BlockTypes.AIR && downBlock.getState().getType() != BlockTypes.LEAVES
-                            && downBlock.getState().getType() != BlockTypes.VINE) {
+                    if (downBlock.getType() != BlockTypes.AIR && downBlock.getType() != BlockTypes.LEAVES
+                            && downBlock.getType() != BlockTypes.VINE) {
                         adjacentBlockCount++;
                     }
-                    if (upBlock.getState().getType() != BlockTypes.AIR && upBlock.getState().getType() != BlockTypes.LEAVES
-                            && upBlock.getState().getType() != BlockTypes.VINE) {
+                    if (upBlock.getType() != BlockTypes.AIR && upBlock.getType() != BlockTypes.LEAVES
+                            && upBlock.getType() != BlockTypes.VINE) {
                         adjacentBlockCount++;
                     }
 
                     if (adjacentBlockCount < 3) {
-                        this.snapshots[x][thisy][z] = this.snapshots[x][thisy][z].withState(BlockTypes.AIR.getDefaultState());
+                        this.volume.setState(x, thisy, z, BlockTypes.AIR.getDefaultState());
                     }
 
                     thisy--;
@@ -279,35 +276,35 @@ private void reduceLogs() {
         boolean jungleBiome = this.biome == BiomeTypes.JUNGLE || this.biome == BiomeTypes.JUNGLE_HILLS;
 
         // scan all blocks above sea level
-        for (int x = 1; x < snapshots.length - 1; x++) {
-            for (int z = 1; z < snapshots[0][0].length - 1; z++) {
-                for (int y = this.seaLevel - 1; y < snapshots[0].length; y++) {
-                    BlockSnapshot block = snapshots[x][y][z];
+        for (int x = 1; x < RestoreNatureVolume.SIZE - 1; x++) {
+            for (int z = 1; z < RestoreNatureVolume.SIZE - 1; z++) {
+                for (int y = this.seaLevel - 1; y < this.volume.getHeight(); y++) {
+                    BlockState block = this.volume.getState(x, y, z);
 
                     // skip non-logs
-                    if (block.getState().getType() != BlockTypes.LOG) {
+                    if (block.getType() != BlockTypes.LOG) {
                         continue;
                     }
-                    if (block.getState().getType() != BlockTypes.LOG2) {
+                    if (block.getType() != BlockTypes.LOG2) {
                         continue;
                     }
 
                     // if in jungle biome, skip jungle logs
-                    Optional<? extends Enum<?>> enumProperty = block.getState().getTraitValue(EnumTraits.LOG_VARIANT);
+                    Optional<? extends Enum<?>> enumProperty = block.getTraitValue(EnumTraits.LOG_VARIANT);
                     if (jungleBiome && enumProperty.isPresent() && enumProperty.get().name().equalsIgnoreCase("jungle")) {
                         continue;
                     }
 
                     // examine adjacent blocks for logs
-                    BlockSnapshot leftBlock = this.snapshots[x + 1][y][z];
-                    BlockSnapshot rightBlock = this.snapshots[x - 1][y][z];
-                    BlockSnapshot upBlock = this.snapshots[x][y][z + 1];
-                    BlockSnapshot downBlock = this.snapshots[x][y][z - 1];
+                    BlockState leftBlock = this.volume.getState(x + 1, y, z);
+                    BlockState rightBlock = this.volume.getState(x - 1, y, z);
+                    BlockState upBlock = this.volume.getState(x, y, z + 1);
+                    BlockState downBlock = this.volume.getState(x, y, z - 1);
 
                     // if any, remove the log
-                    if (leftBlock.getState().getType() == BlockTypes.LOG || rightBlock.getState().getType() == BlockTypes.LOG
-                            || upBlock.getState().getType() == BlockTypes.LOG || downBlock.getState().getType() == BlockTypes.LOG) {
-                        this.snapshots[x][y][z] = this.snapshots[x][y][z].withState(BlockTypes.AIR.getDefaultState());
+                    if (leftBlock.getType() == BlockTypes.LOG || rightBlock.getType() == BlockTypes.LOG
+                            || upBlock.getType() == BlockTypes.LOG || downBlock.getType() == BlockTypes.LOG) {
+                        this.volume.setState(x, y, z, BlockTypes.AIR.getDefaultState());
                     }
                 }
             }
@@ -321,12 +318,12 @@ private void removePlayerBlocks() {
         }
 
         // remove all player blocks
-        for (int x = 1; x < snapshots.length - 1; x++) {
-            for (int z = 1; z < snapshots[0][0].length - 1; z++) {
-                for (int y = miny; y < snapshots[0].length - 1; y++) {
-                    BlockSnapshot block = snapshots[x][y][z];
-                    if (this.playerBlocks.contains(block.getState().getType())) {
-                        snapshots[x][y][z] = block.withState(BlockTypes.AIR.getDefaultState());
+        for (int x = 1; x < RestoreNatureVolume.SIZE - 1; x++) {
+            for (int z = 1; z < RestoreNatureVolume.SIZE - 1; z++) {
+                for (int y = miny; y < this.volume.getHeight() - 1; y++) {
+                    BlockState block = this.volume.getState(x, y, z);
+                    if (this.playerBlocks.contains(block.getType())) {
+                        this.volume.setState(x, y, z, BlockTypes.AIR.getDefaultState());
                     }
                 }
             }
@@ -339,16 +336,16 @@ private void removeHanging() {
             miny = 1;
         }
 
-        for (int x = 1; x < snapshots.length - 1; x++) {
-            for (int z = 1; z < snapshots[0][0].length - 1; z++) {
-                for (int y = miny; y < snapshots[0].length - 1; y++) {
-                    BlockSnapshot block = snapshots[x][y][z];
-                    BlockSnapshot underBlock = snapshots[x][y - 1][z];
+        for (int x = 1; x < RestoreNatureVolume.SIZE - 1; x++) {
+            for (int z = 1; z < RestoreNatureVolume.SIZE - 1; z++) {
+                for (int y = miny; y < this.volume.getHeight() - 1; y++) {
+                    BlockState block = this.volume.getState(x, y, z);
+                    BlockState underBlock = this.volume.getState(x, y - 1, z);
 
-                    if (underBlock.getState().getType() == BlockTypes.AIR || underBlock.getState().getType() == BlockTypes.WATER
-                            || underBlock.getState().getType() == BlockTypes.LAVA || underBlock.getState().getType() == BlockTypes.LEAVES) {
-                        if (this.notAllowedToHang.contains(block.getState().getType())) {
-                            snapshots[x][y][z] = block.withState(BlockTypes.AIR.getDefaultState());
+                    if (underBlock.getType() == BlockTypes.AIR || underBlock.getType() == BlockTypes.WATER
+                            || underBlock.getType() == BlockTypes.LAVA || underBlock.getType() == BlockTypes.LEAVES) {
+                        if (this.notAllowedToHang.contains(block.getType())) {
+                            this.volume.setState(x, y, z, BlockTypes.AIR.getDefaultState());
                         }
                     }
                 }
@@ -375,24 +372,24 @@ private void removeWallsAndTowers() {
         boolean changed;
         do {
             changed = false;
-            for (int x = 1; x < snapshots.length - 1; x++) {
-                for (int z = 1; z < snapshots[0][0].length - 1; z++) {
+            for (int x = 1; x < RestoreNatureVolume.SIZE - 1; x++) {
+                for (int z = 1; z < RestoreNatureVolume.SIZE - 1; z++) {
                     int thisy = this.highestY(x, z, false);
-                    if (excludedBlocksArray.contains(this.snapshots[x][thisy][z].getState().getType())) {
+                    if (excludedBlocksArray.contains(this.volume.getType(x, thisy, z))) {
                         continue;
                     }
 
                     int righty = this.highestY(x + 1, z, false);
                     int lefty = this.highestY(x - 1, z, false);
                     while (lefty < thisy && righty < thisy) {
-                        this.snapshots[x][thisy--][z] = this.snapshots[x][thisy--][z].withState(BlockTypes.AIR.getDefaultState());
+                        this.volume.setState(x, thisy--, z, BlockTypes.AIR.getDefaultState());
                         changed = true;
                     }
 
                     int upy = this.highestY(x, z + 1, false);
                     int downy = this.highestY(x, z - 1, false);
                     while (upy < thisy && downy < thisy) {
-                        this.snapshots[x][thisy--][z] = this.snapshots[x][thisy--][z].withState(BlockTypes.AIR.getDefaultState());
+                        this.volume.setState(x, thisy--, z, BlockTypes.AIR.getDefaultState());
                         changed = true;
                     }
                 }
@@ -401,18 +398,18 @@ private void removeWallsAndTowers() {
     }
 
     private void coverSurfaceStone() {
-        for (int x = 1; x < snapshots.length - 1; x++) {
-            for (int z = 1; z < snapshots[0][0].length - 1; z++) {
+        for (int x = 1; x < RestoreNatureVolume.SIZE - 1; x++) {
+            for (int z = 1; z < RestoreNatureVolume.SIZE - 1; z++) {
                 int y = this.highestY(x, z, true);
-                BlockSnapshot block = snapshots[x][y][z];
+                BlockState block = this.volume.getState(x, y, z);
 
-                if (block.getState().getType() == BlockTypes.STONE || block.getState().getType() == BlockTypes.GRAVEL
-                        || block.getState().getType() == BlockTypes.FARMLAND
-                        || block.getState().getType() == BlockTypes.DIRT || block.getState().getType() == BlockTypes.SANDSTONE) {
+                if (block.getType() == BlockTypes.STONE || block.getType() == BlockTypes.GRAVEL
+                        || block.getType() == BlockTypes.FARMLAND
+                        || block.getType() == BlockTypes.DIRT || block.getType() == BlockTypes.SANDSTONE) {
                     if (this.biome == BiomeTypes.DESERT || this.biome == BiomeTypes.DESERT_HILLS || this.biome == BiomeTypes.BEACH) {
-                        this.snapshots[x][y][z] = this.snapshots[x][y][z].withState(BlockTypes.SAND.getDefaultState());
+                        this.volume.setState(x, y, z, BlockTypes.SAND.getDefaultState());
                     } else {
-                        this.snapshots[x][y][z] = this.snapshots[x][y][z].withState(BlockTypes.GRASS.getDefaultState());
+                        this.volume.setState(x, y, z, BlockTypes.GRASS.getDefaultState());
                     }
                 }
             }
@@ -437,30 +434,30 @@ private void fillHolesAndTrenches() {
         boolean changed;
         do {
             changed = false;
-            for (int x = 1; x < snapshots.length - 1; x++) {
-                for (int z = 1; z < snapshots[0][0].length - 1; z++) {
-                    for (int y = 0; y < snapshots[0].length - 1; y++) {
-                        BlockSnapshot block = this.snapshots[x][y][z];
-                        if (!fillableBlocks.contains(block.getState().getType())) {
+            for (int x = 1; x < RestoreNatureVolume.SIZE - 1; x++) {
+                for (int z = 1; z < RestoreNatureVolume.SIZE - 1; z++) {
+                    for (int y = 0; y < this.volume.getHeight() - 1; y++) {
+                        BlockState block = this.volume.getState(x, y, z);
+                        if (!fillableBlocks.contains(block.getType())) {
                             continue;
                         }
 
-                        BlockSnapshot leftBlock = this.snapshots[x + 1][y][z];
-                        BlockSnapshot rightBlock = this.snapshots[x - 1][y][z];
+                        BlockState leftBlock = this.volume.getState(x + 1, y, z);
+                        BlockState rightBlock = this.volume.getState(x - 1, y, z);
 
-                        if (!fillableBlocks.contains(leftBlock.getState().getType()) && !fillableBlocks.contains(rightBlock.getState().getType())) {
-                            if (!notSuitableForFillBlocks.contains(rightBlock.getState().getType())) {
-                                this.snapshots[x][y][z] = block.withState(rightBlock.getState().getType().getDefaultState());
+                        if (!fillableBlocks.contains(leftBlock.getType()) && !fillableBlocks.contains(rightBlock.getType())) {
+                            if (!notSuitableForFillBlocks.contains(rightBlock.getType())) {
+                                this.volume.setState(x, y, z, rightBlock.getType().getDefaultState());
                                 changed = true;
                             }
                         }
 
-                        BlockSnapshot upBlock = this.snapshots[x][y][z + 1];
-                        BlockSnapshot downBlock = this.snapshots[x][y][z - 1];
+                        BlockState upBlock = this.volume.getState(x, y, z + 1);
+                        BlockState downBlock = this.volume.getState(x, y, z - 1);
 
-                        if (!fillableBlocks.contains(upBlock.getState().getType()) && !fillableBlocks.contains(downBlock.getState().getType())) {
-                            if (!notSuitableForFillBlocks.contains(downBlock.getState().getType())) {
-                                this.snapshots[x][y][z] = block.withState(downBlock.getState().getType().getDefaultState());
+                        if (!fillableBlocks.contains(upBlock.getType()) && !fillableBlocks.contains(downBlock.getType())) {
+                            if (!notSuitableForFillBlocks.contains(downBlock.getType())) {
+                                this.volume.setState(x, y, z, downBlock.getType().getDefaultState());
                                 changed = true;
                             }
                         }
@@ -479,14 +476,14 @@ private void fixWater() {
         boolean changed;
 
         // remove hanging water or lava
-        for (int x = 1; x < snapshots.length - 1; x++) {
-            for (int z = 1; z < snapshots[0][0].length - 1; z++) {
-                for (int y = miny; y < snapshots[0].length - 1; y++) {
-                    BlockSnapshot block = this.snapshots[x][y][z];
-                    BlockSnapshot underBlock = this.snapshots[x][y - 1][z];
-                    if (block.getState().getType() == BlockTypes.WATER || block.getState().getType() == BlockTypes.LAVA) {
-                        if (underBlock.getState().getType() == BlockTypes.AIR || ((((IMixinBlockState) underBlock.getState()).getStateMeta()) != 0)) {
-                            this.snapshots[x][y][z] = block.withState(BlockTypes.AIR.getDefaultState());
+        for (int x = 1; x < RestoreNatureVolume.SIZE - 1; x++) {
+            for (int z = 1; z < RestoreNatureVolume.SIZE - 1; z++) {
+                for (int y = miny; y < this.volume.getHeight() - 1; y++) {
+                    BlockState block = this.volume.getState(x, y, z);
+                    BlockState underBlock = this.volume.getState(x, y - 1, z);
+                    if (block.getType() == BlockTypes.WATER || block.getType() == BlockTypes.LAVA) {
+                        if (underBlock.getType() == BlockTypes.AIR || ((((IMixinBlockState) underBlock).getStateMeta()) != 0)) {
+                            this.volume.setState(x, y, z, BlockTypes.AIR.getDefaultState());
                         }
                     }
                 }
@@ -497,46 +494,46 @@ private void fixWater() {
         do {
             changed = false;
             for (int y = Math.max(this.seaLevel - 10, 0); y <= this.seaLevel; y++) {
-                for (int x = 1; x < snapshots.length - 1; x++) {
-                    for (int z = 1; z < snapshots[0][0].length - 1; z++) {
-                        BlockSnapshot block = snapshots[x][y][z];
+                for (int x = 1; x < RestoreNatureVolume.SIZE - 1; x++) {
+                    for (int z = 1; z < RestoreNatureVolume.SIZE - 1; z++) {
+                        BlockState block = this.volume.getState(x, y, z);
 
                         // only consider air blocks and flowing water blocks for upgrade to water source blocks
-                        if (block.getState().getType() == BlockTypes.AIR || (block.getState().getType() == BlockTypes.WATER
-                                && (((IMixinBlockState) block.getState()).getStateMeta()) != 0)) {
-                            BlockSnapshot leftBlock = this.snapshots[x + 1][y][z];
-                            BlockSnapshot rightBlock = this.snapshots[x - 1][y][z];
-                            BlockSnapshot upBlock = this.snapshots[x][y][z + 1];
-                            BlockSnapshot downBlock = this.snapshots[x][y][z - 1];
-                            BlockSnapshot underBlock = this.snapshots[x][y - 1][z];
+                        if (block.getType() == BlockTypes.AIR || (block.getType() == BlockTypes.WATER
+                                && (((IMixinBlockState) block).getStateMeta()) != 0)) {
+                            BlockState leftBlock = this.volume.getState(x + 1, y, z);
+                            BlockState rightBlock = this.volume.getState(x - 1, y, z);
+                            BlockState upBlock = this.volume.getState(x, y, z + 1);
+                            BlockState downBlock = this.volume.getState(x, y, z - 1);
+                            BlockState underBlock = this.volume.getState(x, y - 1, z);
 
                             // block underneath MUST be source water
-                            if (underBlock.getState().getType() != BlockTypes.WATER
-                                    || (((IMixinBlockState) underBlock.getState()).getStateMeta()) != 0) {
+                            if (underBlock.getType() != BlockTypes.WATER
+                                    || (((IMixinBlockState) underBlock).getStateMeta()) != 0) {
                                 continue;
                             }
 
                             // count adjacent source water blocks
                             byte adjacentSourceWaterCount = 0;
-                            if (leftBlock.getState().getType() == BlockTypes.WATER
-                                    && (((IMixinBlockState) leftBlock.getState()).getStateMeta()) == 0) {
+                            if (leftBlock.getType() == BlockTypes.WATER
+                                    && (((IMixinBlockState) leftBlock).getStateMeta()) == 0) {
                                 adjacentSourceWaterCount++;
                             }
-                            if (rightBlock.getState().getType() == BlockTypes.WATER
-                                    && (((IMixinBlockState) rightBlock.getState()).getStateMeta()) == 0) {
+                            if (rightBlock.getType() == BlockTypes.WATER
+                                    && (((IMixinBlockState) rightBlock).getStateMeta()) == 0) {
                                 adjacentSourceWaterCount++;
                             }
-                            if (upBlock.getState().getType() == BlockTypes.WATER && (((IMixinBlockState) upBlock.getState()).getStateMeta()) == 0) {
+                            if (upBlock.getType() == BlockTypes.WATER && (((IMixinBlockState) upBlock).getStateMeta()) == 0) {
                                 adjacentSourceWaterCount++;
                             }
-                            if (downBlock.getState().getType() == BlockTypes.WATER
-                                    && (((IMixinBlockState) downBlock.getState()).getStateMeta()) == 0) {
+                            if (downBlock.getType() == BlockTypes.WATER
+                                    && (((IMixinBlockState) downBlock).getStateMeta()) == 0) {
                                 adjacentSourceWaterCount++;
                             }
 
                             // at least two adjacent blocks must be source water
                             if (adjacentSourceWaterCount >= 2) {
-                                snapshots[x][y][z] = block.withState(BlockTypes.WATER.getDefaultState());
+                                this.volume.setState(x, y, z, BlockTypes.WATER.getDefaultState());
                                 changed = true;
                             }
                         }
@@ -558,13 +555,13 @@ private void removeDumpedFluids() {
         if (this.environment.equals(DimensionTypes.NETHER)) {
             return;
         }
-        for (int x = 1; x < snapshots.length - 1; x++) {
-            for (int z = 1; z < snapshots[0][0].length - 1; z++) {
-                for (int y = this.seaLevel - 1; y < snapshots[0].length - 1; y++) {
-                    BlockSnapshot block = snapshots[x][y][z];
-                    if (block.getState().getType() == BlockTypes.WATER || block.getState().getType() == BlockTypes.LAVA ||
-                            block.getState().getType() == BlockTypes.WATER || block.getState().getType() == BlockTypes.LAVA) {
-                        snapshots[x][y][z] = block.withState(BlockTypes.AIR.getDefaultState());
+        for (int x = 1; x < RestoreNatureVolume.SIZE - 1; x++) {
+            for (int z = 1; z < RestoreNatureVolume.SIZE - 1; z++) {
+                for (int y = this.seaLevel - 1; y < this.volume.getHeight() - 1; y++) {
+                    BlockState block = this.volume.getState(x, y, z);
+                    if (block.getType() == BlockTypes.WATER || block.getType() == BlockTypes.LAVA ||
+                            block.getType() == BlockTypes.WATER || block.getType() == BlockTypes.LAVA) {
+                        this.volume.setState(x, y, z, BlockTypes.AIR.getDefaultState());
                     }
                 }
             }
@@ -573,15 +570,15 @@ private void removeDumpedFluids() {
 
     private int highestY(int x, int z, boolean ignoreLeaves) {
         int y;
-        for (y = snapshots[0].length - 1; y > 0; y--) {
-            BlockSnapshot block = this.snapshots[x][y][z];
-            if (block.getState().getType() != BlockTypes.AIR &&
-                    !(ignoreLeaves && block.getState().getType() == BlockTypes.SNOW) &&
-                    !(ignoreLeaves && block.getState().getType() == BlockTypes.LEAVES) &&
-                    !(block.getState().getType() == BlockTypes.WATER) &&
-                    !(block.getState().getType() == BlockTypes.FLOWING_WATER) &&
-                    !(block.getState().getType() == BlockTypes.LAVA) &&
-                    !(block.getState().getType() == BlockTypes.FLOWING_LAVA)) {
+        for (y = this.volume.getHeight() - 1; y > 0; y--) {
+            BlockState block = this.volume.getState(x, y, z);
+            if (block.getType() != BlockTypes.AIR &&
+                    !(ignoreLeaves && block.getType() == BlockTypes.SNOW) &&
+                    !(ignoreLeaves && block.getType() == BlockTypes.LEAVES) &&
+                    !(block.getType() == BlockTypes.WATER) &&
+                    !(block.getType() == BlockTypes.FLOWING_WATER) &&
+                    !(block.getType() == BlockTypes.LAVA) &&
+                    !(block.getType() == BlockTypes.FLOWING_LAVA)) {
                 return y;
             }
         }
@@ -0,0 +1,152 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.task;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import me.ryanhamshire.griefprevention.GriefPrevention;
+import me.ryanhamshire.griefprevention.claim.ClaimsMode;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.world.Location;
+import org.spongepowered.api.world.World;
+import org.spongepowered.common.SpongeImpl;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules restore nature work.
+ *
+ * <p>Chunks are captured and their results applied on the main thread within
+ * a per tick time budget, while the processing in between runs on a small
+ * worker pool. Restoring a whole claim no longer stalls a single tick.</p>
+ */
+public class RestoreNatureQueue {
+
+    // main thread time spent capturing and applying chunks each tick
+    private static final long TICK_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+    private static final int WORKER_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+    // main thread only
+    private static final Deque<CaptureRequest> CAPTURES = new ArrayDeque<>();
+    private static final Queue<RestoreNatureExecutionTask> EXECUTIONS = new ConcurrentLinkedQueue<>();
+    private static ExecutorService executor = createExecutor();
+
+    // queues a chunk to be captured on a later tick, must be called on the main thread
+    public static void restoreChunk(World world, int chunkX, int chunkZ, int miny, boolean aggressiveMode, Player playerReceivingVisualization) {
+        CAPTURES.add(new CaptureRequest(world, chunkX, chunkZ, miny, aggressiveMode, playerReceivingVisualization));
+    }
+
+    static void queueExecution(RestoreNatureExecutionTask task) {
+        EXECUTIONS.add(task);
+    }
+
+    // runs every tick on the main thread
+    public static void tick() {
+        final long deadline = System.nanoTime() + TICK_BUDGET_NANOS;
+
+        // finish applying processed chunks before capturing more of them
+        RestoreNatureExecutionTask task;
+        while ((task = EXECUTIONS.peek()) != null) {
+            try {
+                if (!task.run(deadline)) {
+                    return;
+                }
+            } catch (Exception e) {
+                SpongeImpl.getLogger().error("Failed to apply restore nature results", e);
+            }
+            EXECUTIONS.poll();
+        }
+
+        while (!CAPTURES.isEmpty() && System.nanoTime() < deadline) {
+            CaptureRequest request = CAPTURES.poll();
+            if (request.world.isLoaded()) {
+                capture(request);
+            }
+        }
+    }
+
+    // chunks waiting to be captured, processed or applied
+    public static int getQueueDepth() {
+        return CAPTURES.size() + EXECUTIONS.size();
+    }
+
+    public static void shutdown() {
+        executor.shutdownNow();
+        CAPTURES.clear();
+        EXECUTIONS.clear();
+        executor = createExecutor();
+    }
+
+    private static void capture(CaptureRequest request) {
+        Location<World> lesserBoundaryCorner = new Location<>(request.world, request.chunkX << 4, 0, request.chunkZ << 4);
+        Location<World> greaterBoundaryCorner = new Location<>(request.world, (request.chunkX << 4) + 15, 0, (request.chunkZ << 4) + 15);
+        if (!GriefPrevention.getActiveConfig(request.world.getProperties()).getConfig().claim.restoreNatureWilderness) {
+            // no block may change, only the entity cleanup and the visualization are left to do
+            queueExecution(new RestoreNatureExecutionTask(null, request.miny, lesserBoundaryCorner, greaterBoundaryCorner, request.player));
+            return;
+        }
+
+        // build a snapshot of this chunk, including 1 block boundary outside of
+        // the chunk all the way around
+        RestoreNatureVolume volume = RestoreNatureVolume.capture(request.world, request.chunkX, request.chunkZ);
+
+        // create task to process those data in another thread
+        int seaLevel = GriefPrevention.instance.getSeaLevel(request.world);
+
+        // when done processing, the task queues its results to be applied on the main thread
+        executor.execute(new RestoreNatureProcessingTask(volume, request.miny, request.world.getDimension().getType(),
+                lesserBoundaryCorner.getBiome(), lesserBoundaryCorner, greaterBoundaryCorner, seaLevel, request.aggressiveMode,
+                GriefPrevention.instance.claimModeIsActive(request.world.getProperties(), ClaimsMode.Creative), request.player));
+    }
+
+    private static ExecutorService createExecutor() {
+        return Executors.newFixedThreadPool(WORKER_THREADS,
+                new ThreadFactoryBuilder().setNameFormat("GriefPrevention Restore Nature Worker %d").setDaemon(true).build());
+    }
+
+    private static class CaptureRequest {
+
+        private final World world;
+        private final int chunkX;
+        private final int chunkZ;
+        private final int miny;
+        private final boolean aggressiveMode;
+        private final Player player;
+
+        private CaptureRequest(World world, int chunkX, int chunkZ, int miny, boolean aggressiveMode, Player player) {
+            this.world = world;
+            this.chunkX = chunkX;
+            this.chunkZ = chunkZ;
+            this.miny = miny;
+            this.aggressiveMode = aggressiveMode;
+            this.player = player;
+        }
+    }
+}
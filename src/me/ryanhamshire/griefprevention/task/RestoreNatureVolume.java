@@ -0,0 +1,161 @@
+/*
+ * This file is part of GriefPrevention, licensed under the MIT License (MIT).
+ *
+ * Copyright (c) bloodmc
+ * Copyright (c) contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package me.ryanhamshire.griefprevention.task;
+
+import net.minecraft.util.math.BlockPos;
+import org.spongepowered.api.block.BlockState;
+import org.spongepowered.api.block.BlockType;
+import org.spongepowered.api.block.BlockTypes;
+import org.spongepowered.api.world.World;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * The block states of a chunk plus a one block border around it, stored as
+ * palette indices so restore nature can process them off the main thread.
+ */
+public class RestoreNatureVolume {
+
+    // 16 blocks of the chunk plus the border on both sides
+    public static final int SIZE = 18;
+    private static final int AIR = 0;
+
+    private final World world;
+    private final int minX;
+    private final int minZ;
+    private final int height;
+    // indexed by column first so the common vertical scans stay sequential
+    private final short[] original;
+    private final short[] blocks;
+    private final Map<BlockState, Integer> paletteIndex = new IdentityHashMap<>();
+    private BlockState[] palette = new BlockState[64];
+    private BlockType[] types = new BlockType[64];
+    private int paletteSize;
+
+    private RestoreNatureVolume(World world, int minX, int minZ, int height) {
+        this.world = world;
+        this.minX = minX;
+        this.minZ = minZ;
+        this.height = height;
+        this.original = new short[SIZE * SIZE * height];
+        this.blocks = new short[SIZE * SIZE * height];
+        this.getPaletteId(BlockTypes.AIR.getDefaultState());
+    }
+
+    // reads the chunk and its border from the world, must be called on the main thread
+    public static RestoreNatureVolume capture(World world, int chunkX, int chunkZ) {
+        final net.minecraft.world.World mcWorld = (net.minecraft.world.World) world;
+        final RestoreNatureVolume volume = new RestoreNatureVolume(world, (chunkX << 4) - 1, (chunkZ << 4) - 1,
+                world.getDimension().getBuildHeight());
+        final BlockPos.MutableBlockPos pos = new BlockPos.MutableBlockPos();
+        for (int x = 0; x < SIZE; x++) {
+            for (int z = 0; z < SIZE; z++) {
+                final int blockX = volume.minX + x;
+                final int blockZ = volume.minZ + z;
+                final net.minecraft.world.chunk.Chunk chunk = mcWorld.getChunkFromChunkCoords(blockX >> 4, blockZ >> 4);
+                // everything above the highest non empty section is air, which is palette id 0
+                final int top = Math.min(volume.height, chunk.getTopFilledSegment() + 16);
+                final int column = (x * SIZE + z) * volume.height;
+                BlockState lastState = null;
+                int lastId = AIR;
+                for (int y = 0; y < top; y++) {
+                    BlockState state = (BlockState) chunk.getBlockState(pos.setPos(blockX, y, blockZ));
+                    if (state != lastState) {
+                        lastState = state;
+                        lastId = volume.getPaletteId(state);
+                    }
+                    volume.original[column + y] = (short) lastId;
+                }
+            }
+        }
+        System.arraycopy(volume.original, 0, volume.blocks, 0, volume.blocks.length);
+        return volume;
+    }
+
+    public World getWorld() {
+        return this.world;
+    }
+
+    // world x of the volume's first column, which is part of the border
+    public int getMinX() {
+        return this.minX;
+    }
+
+    public int getMinZ() {
+        return this.minZ;
+    }
+
+    public int getHeight() {
+        return this.height;
+    }
+
+    public BlockState getState(int x, int y, int z) {
+        if (y < 0 || y >= this.height) {
+            return this.palette[AIR];
+        }
+        return this.palette[this.blocks[this.index(x, y, z)] & 0xFFFF];
+    }
+
+    public BlockType getType(int x, int y, int z) {
+        if (y < 0 || y >= this.height) {
+            return this.types[AIR];
+        }
+        return this.types[this.blocks[this.index(x, y, z)] & 0xFFFF];
+    }
+
+    public void setState(int x, int y, int z, BlockState state) {
+        this.blocks[this.index(x, y, z)] = (short) this.getPaletteId(state);
+    }
+
+    // whether processing replaced the block that was captured
+    public boolean isChanged(int x, int y, int z) {
+        int index = this.index(x, y, z);
+        return this.blocks[index] != this.original[index];
+    }
+
+    private int index(int x, int y, int z) {
+        return (x * SIZE + z) * this.height + y;
+    }
+
+    private int getPaletteId(BlockState state) {
+        Integer id = this.paletteIndex.get(state);
+        if (id != null) {
+            return id;
+        }
+        if (this.paletteSize == 0xFFFF) {
+            throw new IllegalStateException("Too many block states in chunk at " + this.minX + ", " + this.minZ);
+        }
+        if (this.paletteSize == this.palette.length) {
+            this.palette = Arrays.copyOf(this.palette, this.paletteSize * 2);
+            this.types = Arrays.copyOf(this.types, this.paletteSize * 2);
+        }
+        this.palette[this.paletteSize] = state;
+        this.types[this.paletteSize] = state.getType();
+        this.paletteIndex.put(state, this.paletteSize);
+        return this.paletteSize++;
+    }
+}
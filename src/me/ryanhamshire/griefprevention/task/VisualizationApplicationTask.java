@@ -29,10 +29,8 @@
 import me.ryanhamshire.griefprevention.PlayerData;
 import me.ryanhamshire.griefprevention.Visualization;
 import org.spongepowered.api.Sponge;
-import org.spongepowered.api.block.BlockSnapshot;
 import org.spongepowered.api.entity.living.player.Player;
 
-import java.util.ArrayList;
 import java.util.concurrent.TimeUnit;
 
 //applies a visualization for a player by sending him block change packets
@@ -55,17 +53,14 @@ public void run() {
             this.playerData.revertActiveVisual(this.player);
         }
 
-        for (int i = 0; i < visualization.elements.size(); i++) {
-            BlockSnapshot snapshot = visualization.elements.get(i).getFinal();
-            this.player.sendBlockChange(snapshot.getPosition(), snapshot.getState());
-        }
+        this.visualization.elements.sendFakeBlocks(this.player);
 
         // remember the visualization applied to this player for later (so it can be inexpensively reverted)
         if (this.visualization.getClaim() != null) {
             this.playerData.visualClaimId = this.visualization.getClaim().id;
             this.visualization.getClaim().playersWatching.add(this.player.getUniqueId());
         }
-        this.playerData.visualBlocks = new ArrayList<>(visualization.elements);
+        this.playerData.visualBlocks = this.visualization.elements.copy();
 
         // schedule automatic visualization reversion in 60 seconds.
         this.playerData.visualRevertTask = Sponge.getGame().getScheduler().createTaskBuilder().delay(1, TimeUnit.MINUTES)
@@ -41,7 +41,6 @@
 import org.spongepowered.api.util.Tristate;
 import org.spongepowered.common.SpongeImplHooks;
 
-import java.util.HashSet;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -126,8 +125,6 @@ public static int getOptionIntValue(Subject subject, String key, int defaultValu
                 return defaultValue;
             }
         }
-        // Set default option
-        GriefPrevention.GLOBAL_SUBJECT.getTransientSubjectData().setOption(new HashSet<>(), key, String.valueOf(defaultValue));
 
         return defaultValue;
     }
@@ -141,8 +138,6 @@ public static double getOptionDoubleValue(Subject subject, String key, double de
                 return defaultValue;
             }
         }
-        // Set default option
-        GriefPrevention.GLOBAL_SUBJECT.getTransientSubjectData().setOption(new HashSet<>(), key, String.valueOf(defaultValue));
 
         return defaultValue;
     }
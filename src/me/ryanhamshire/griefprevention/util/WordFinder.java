@@ -24,31 +24,148 @@
  */
 package me.ryanhamshire.griefprevention.util;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.TreeMap;
 
+/**
+ * Finds any of a list of words in a message, ignoring case.
+ *
+ * <p>The words are compiled into an Aho-Corasick automaton so a message is
+ * scanned once no matter how many words there are. A word only matches when
+ * it isn't directly preceded or followed by a letter, digit or underscore.</p>
+ */
 public class WordFinder {
 
-    private Pattern pattern;
+    private static final int ROOT = 0;
+
+    // per node transitions, keys sorted for binary search
+    private final char[][] keys;
+    private final int[][] targets;
+    private final int[] fail;
+    // lengths of the words ending at each node, including those reached through fail links
+    private final int[][] outputs;
 
     public WordFinder(List<String> wordsToFind) {
-        StringBuilder patternBuilder = new StringBuilder();
+        List<TreeMap<Character, Integer>> children = new ArrayList<>();
+        List<int[]> nodeOutputs = new ArrayList<>();
+        children.add(new TreeMap<>());
+        nodeOutputs.add(new int[0]);
         for (String word : wordsToFind) {
-            patternBuilder.append("|(([^\\w]|^)" + Pattern.quote(word) + "([^\\w]|$))");
+            if (word.isEmpty()) {
+                continue;
+            }
+
+            int node = ROOT;
+            for (int i = 0; i < word.length(); i++) {
+                char c = fold(word.charAt(i));
+                Integer next = children.get(node).get(c);
+                if (next == null) {
+                    next = children.size();
+                    children.get(node).put(c, next);
+                    children.add(new TreeMap<>());
+                    nodeOutputs.add(new int[0]);
+                }
+                node = next;
+            }
+            int[] lengths = nodeOutputs.get(node);
+            lengths = Arrays.copyOf(lengths, lengths.length + 1);
+            lengths[lengths.length - 1] = word.length();
+            nodeOutputs.set(node, lengths);
         }
 
-        String patternString = patternBuilder.toString();
-        if (patternString.length() > 1) {
-            // trim extraneous leading pipe (|)
-            patternString = patternString.substring(1);
+        final int size = children.size();
+        this.keys = new char[size][];
+        this.targets = new int[size][];
+        this.fail = new int[size];
+        this.outputs = new int[size][];
+        for (int node = 0; node < size; node++) {
+            TreeMap<Character, Integer> transitions = children.get(node);
+            this.keys[node] = new char[transitions.size()];
+            this.targets[node] = new int[transitions.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> entry : transitions.entrySet()) {
+                this.keys[node][i] = entry.getKey();
+                this.targets[node][i++] = entry.getValue();
+            }
         }
 
-        this.pattern = Pattern.compile(patternString, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+        // breadth first, so the fail target of every node is finished before the node itself
+        Deque<Integer> queue = new ArrayDeque<>();
+        this.outputs[ROOT] = nodeOutputs.get(ROOT);
+        for (int child : this.targets[ROOT]) {
+            this.fail[child] = ROOT;
+            this.outputs[child] = nodeOutputs.get(child);
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            for (int i = 0; i < this.keys[node].length; i++) {
+                char c = this.keys[node][i];
+                int child = this.targets[node][i];
+                int state = this.fail[node];
+                int next;
+                while ((next = this.transition(state, c)) < 0 && state != ROOT) {
+                    state = this.fail[state];
+                }
+                this.fail[child] = next < 0 ? ROOT : next;
+                this.outputs[child] = merge(nodeOutputs.get(child), this.outputs[this.fail[child]]);
+                queue.add(child);
+            }
+        }
     }
 
     public boolean hasMatch(String input) {
-        Matcher matcher = this.pattern.matcher(input);
-        return matcher.find();
+        final int length = input.length();
+        int state = ROOT;
+        for (int i = 0; i < length; i++) {
+            char c = fold(input.charAt(i));
+            int next;
+            while ((next = this.transition(state, c)) < 0 && state != ROOT) {
+                state = this.fail[state];
+            }
+            state = next < 0 ? ROOT : next;
+
+            for (int wordLength : this.outputs[state]) {
+                int start = i + 1 - wordLength;
+                if ((start == 0 || !isWordChar(input.charAt(start - 1))) && (i + 1 == length || !isWordChar(input.charAt(i + 1)))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private int transition(int node, char c) {
+        int index = Arrays.binarySearch(this.keys[node], c);
+        return index < 0 ? -1 : this.targets[node][index];
+    }
+
+    private static int[] merge(int[] first, int[] second) {
+        if (second.length == 0) {
+            return first;
+        }
+        if (first.length == 0) {
+            return second;
+        }
+        int[] merged = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, merged, first.length, second.length);
+        return merged;
+    }
+
+    // same folding as a case insensitive unicode regex, which however leaves characters without an
+    // upper case form alone, so a banned sharp s only matched itself there while it matches the capital
+    // sharp s (U+1E9E) as well here
+    private static char fold(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    // the \w character class
+    private static boolean isWordChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
     }
 }